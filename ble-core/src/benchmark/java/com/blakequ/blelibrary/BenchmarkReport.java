@@ -0,0 +1,58 @@
+package com.blakequ.blelibrary;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Writes the results of a benchmark to {@code <benchmark.reportDir>/<benchmark>.txt}, replacing
+ * the report of the previous run. The first line describes the machine, the results are only
+ * comparable between runs on the same one.
+ */
+public final class BenchmarkReport {
+    private final PrintWriter mWriter;
+
+    private BenchmarkReport(final PrintWriter writer) {
+        mWriter = writer;
+    }
+
+    /**
+     * Starts the report of a benchmark.
+     *
+     * @param benchmark the benchmark class
+     * @return the report
+     * @throws IOException if the report can't be created
+     */
+    public static BenchmarkReport open(final Class<?> benchmark) throws IOException {
+        final File dir = new File(System.getProperty("benchmark.reportDir", "build/reports/benchmarks"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+        final BenchmarkReport report = new BenchmarkReport(new PrintWriter(
+                new FileWriter(new File(dir, benchmark.getSimpleName() + ".txt")), true));
+        report.line("%s, available processors %d, %s %s, %s %s", benchmark.getSimpleName(),
+                Runtime.getRuntime().availableProcessors(),
+                System.getProperty("java.vm.name"), System.getProperty("java.version"),
+                System.getProperty("os.name"), System.getProperty("os.arch"));
+        return report;
+    }
+
+    /**
+     * Adds a line to the report.
+     *
+     * @param format the format of the line, see {@link String#format(String, Object...)}
+     * @param args   the arguments of the format
+     */
+    public void line(final String format, final Object... args) {
+        mWriter.println(String.format(Locale.US, format, args));
+    }
+
+    /**
+     * Ends the report.
+     */
+    public void close() {
+        mWriter.close();
+    }
+}
@@ -0,0 +1,87 @@
+package com.blakequ.blelibrary.device.beacon;
+
+import com.blakequ.blelibrary.BenchmarkReport;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Measures the cost of classifying a scan record against the number of layouts, for the
+ * registry and for a linear scan over the same layouts. The record is manufacturer data of
+ * an unknown vendor, the common case in a crowded venue and the worst one for a scan. The
+ * registry should cost about the same for 1 and 25 layouts, the scan should grow with them.
+ */
+public class BeaconLayoutRegistryBenchmark {
+    private static final int MATCHES = 1000000;
+    private static final int ROUNDS = 5;
+    private static final byte[] UNKNOWN_RECORD = new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x59, 0, 2, 0x15,
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 1, 0, 2, (byte) 0xc5};
+
+    private static volatile long sSink;
+
+    private static BeaconLayout[] layouts(final int count) {
+        final BeaconLayout[] layouts = new BeaconLayout[count];
+        layouts[0] = BeaconLayouts.IBEACON;
+        for (int i = 1; i < count; i++) {
+            final int companyIdentifier = 0x0100 + i;
+            layouts[i] = new BeaconLayout.Builder("vendor" + i, BeaconType.CUSTOM, BeaconLayouts.AD_TYPE_MANUFACTURER_SPECIFIC_DATA)
+                    .setMatch(0, (byte) companyIdentifier, (byte) (companyIdentifier >> 8), (byte) 2, (byte) 0x15)
+                    .addField(BeaconLayouts.FIELD_MAJOR, 20, 2, true)
+                    .build();
+        }
+        return layouts;
+    }
+
+    private static long registry(final BeaconLayout[] layouts) {
+        final BeaconLayoutRegistry.Builder builder = new BeaconLayoutRegistry.Builder();
+        for (BeaconLayout layout : layouts) {
+            builder.add(layout);
+        }
+        final BeaconLayoutRegistry registry = builder.build();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < MATCHES; i++) {
+                sum += registry.matchStructure(0xff, UNKNOWN_RECORD, 5, 25);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            sSink = sum;
+        }
+        return best;
+    }
+
+    private static long linear(final BeaconLayout[] layouts) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < MATCHES; i++) {
+                for (int j = 0; j < layouts.length; j++) {
+                    if (layouts[j].matches(0xff, UNKNOWN_RECORD, 5, 25)) {
+                        sum += j;
+                        break;
+                    }
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            sSink = sum;
+        }
+        return best;
+    }
+
+    @Test
+    public void matchCostAgainstLayoutCount() throws IOException {
+        final BenchmarkReport report = BenchmarkReport.open(getClass());
+        try {
+            for (int count : new int[]{1, 5, 25}) {
+                final BeaconLayout[] layouts = layouts(count);
+                report.line("%2d layouts: registry %.1f ns/match, linear scan %.1f ns/match", count,
+                        (double) registry(layouts) / MATCHES, (double) linear(layouts) / MATCHES);
+            }
+        } finally {
+            report.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.blakequ.blelibrary.device;
+
+import com.blakequ.blelibrary.util.MacAddress;
+
+import java.util.UUID;
+
+/**
+ * The stable identity of a scanned device: its bluetooth address, or for an iBeacon its
+ * UUID, major and minor, which survive an address rotation.
+ * <p>
+ * Unlike the device objects, whose readings change with every advert, an identity is
+ * immutable and its hash is computed once, so it is a cheap and safe key for hash based
+ * collections.
+ */
+public final class DeviceIdentity {
+    private static final int KIND_ADDRESS = 1;
+    private static final int KIND_IBEACON = 2;
+
+    private final int mKind;
+    private final long mAddress;
+    private final long mUuidMostSignificantBits;
+    private final long mUuidLeastSignificantBits;
+    private final int mMajor;
+    private final int mMinor;
+    private final int mHash;
+
+    private DeviceIdentity(final int kind, final long address, final long uuidMostSignificantBits,
+                           final long uuidLeastSignificantBits, final int major, final int minor) {
+        mKind = kind;
+        mAddress = address;
+        mUuidMostSignificantBits = uuidMostSignificantBits;
+        mUuidLeastSignificantBits = uuidLeastSignificantBits;
+        mMajor = major;
+        mMinor = minor;
+
+        final int prime = 31;
+        int result = kind;
+        result = prime * result + (int) (address ^ (address >>> 32));
+        result = prime * result + (int) (uuidMostSignificantBits ^ (uuidMostSignificantBits >>> 32));
+        result = prime * result + (int) (uuidLeastSignificantBits ^ (uuidLeastSignificantBits >>> 32));
+        result = prime * result + major;
+        result = prime * result + minor;
+        mHash = result;
+    }
+
+    /**
+     * Creates the identity of a device known by its address.
+     *
+     * @param address the bluetooth address, see {@link MacAddress}
+     * @return the identity
+     */
+    public static DeviceIdentity ofAddress(final long address) {
+        return new DeviceIdentity(KIND_ADDRESS, address, 0, 0, 0, 0);
+    }
+
+    /**
+     * Creates the identity of an iBeacon.
+     *
+     * @param uuidMostSignificantBits  the most significant bits of the proximity UUID
+     * @param uuidLeastSignificantBits the least significant bits of the proximity UUID
+     * @param major                    the major value
+     * @param minor                    the minor value
+     * @return the identity
+     */
+    public static DeviceIdentity ofIBeacon(final long uuidMostSignificantBits, final long uuidLeastSignificantBits,
+                                           final int major, final int minor) {
+        return new DeviceIdentity(KIND_IBEACON, MacAddress.INVALID, uuidMostSignificantBits,
+                uuidLeastSignificantBits, major, minor);
+    }
+
+    /**
+     * Checks if this identity is an address.
+     *
+     * @return true if created by {@link #ofAddress(long)}
+     */
+    public boolean isAddress() {
+        return mKind == KIND_ADDRESS;
+    }
+
+    /**
+     * Checks if this identity is an iBeacon one.
+     *
+     * @return true if created by {@link #ofIBeacon(long, long, int, int)}
+     */
+    public boolean isIBeacon() {
+        return mKind == KIND_IBEACON;
+    }
+
+    /**
+     * Gets the address.
+     *
+     * @return the address, or {@link MacAddress#INVALID} for an iBeacon identity
+     */
+    public long getAddress() {
+        return mAddress;
+    }
+
+    /**
+     * Gets the most significant bits of the iBeacon UUID.
+     *
+     * @return the bits, 0 for an address identity
+     */
+    public long getUuidMostSignificantBits() {
+        return mUuidMostSignificantBits;
+    }
+
+    /**
+     * Gets the least significant bits of the iBeacon UUID.
+     *
+     * @return the bits, 0 for an address identity
+     */
+    public long getUuidLeastSignificantBits() {
+        return mUuidLeastSignificantBits;
+    }
+
+    /**
+     * Gets the iBeacon major value.
+     *
+     * @return the major value, 0 for an address identity
+     */
+    public int getMajor() {
+        return mMajor;
+    }
+
+    /**
+     * Gets the iBeacon minor value.
+     *
+     * @return the minor value, 0 for an address identity
+     */
+    public int getMinor() {
+        return mMinor;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof DeviceIdentity))
+            return false;
+        final DeviceIdentity other = (DeviceIdentity) obj;
+        return mHash == other.mHash
+                && mKind == other.mKind
+                && mAddress == other.mAddress
+                && mUuidMostSignificantBits == other.mUuidMostSignificantBits
+                && mUuidLeastSignificantBits == other.mUuidLeastSignificantBits
+                && mMajor == other.mMajor
+                && mMinor == other.mMinor;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return mHash;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        if (mKind == KIND_ADDRESS) {
+            return "DeviceIdentity [address=" + MacAddress.toString(mAddress) + "]";
+        }
+        return "DeviceIdentity [uuid=" + new UUID(mUuidMostSignificantBits, mUuidLeastSignificantBits)
+                + ", major=" + mMajor + ", minor=" + mMinor + "]";
+    }
+}
@@ -0,0 +1,176 @@
+package com.blakequ.blelibrary.device.beacon;
+
+import java.util.Arrays;
+
+/**
+ * A burst of decoded adverts stored column by column, one primitive array per field, so
+ * matching and aggregation can run as plain loops over arrays.
+ * <p>
+ * Row i of every column describes the same advert, rows are valid up to {@link #size()}.
+ * The arrays returned by the getters are the live columns: they are replaced when the
+ * batch grows, so fetch them again after filling the batch. Adverts which are not a known
+ * beacon are kept with {@link BeaconType#NOT_A_BEACON} and zero identifiers.
+ * <p>
+ * A batch can be cleared and refilled to avoid allocating per burst. It is not thread safe.
+ */
+public final class BeaconBatch {
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final BeaconType[] BEACON_TYPES = BeaconType.values();
+
+    private int mSize;
+    private long[] mAddresses;
+    private int[] mRssi;
+    private long[] mTimestamps;
+    private byte[] mBeaconTypes;
+    private long[] mUuidMostSignificantBits;
+    private long[] mUuidLeastSignificantBits;
+    private int[] mMajors;
+    private int[] mMinors;
+    private int[] mTxPowers;
+
+    public BeaconBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of rows to allocate up front
+     */
+    public BeaconBatch(final int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    private void allocate(final int capacity) {
+        mAddresses = new long[capacity];
+        mRssi = new int[capacity];
+        mTimestamps = new long[capacity];
+        mBeaconTypes = new byte[capacity];
+        mUuidMostSignificantBits = new long[capacity];
+        mUuidLeastSignificantBits = new long[capacity];
+        mMajors = new int[capacity];
+        mMinors = new int[capacity];
+        mTxPowers = new int[capacity];
+    }
+
+    /**
+     * Makes room for at least capacity rows, keeping the current ones.
+     *
+     * @param capacity the number of rows
+     */
+    public void ensureCapacity(final int capacity) {
+        if (capacity <= mAddresses.length) {
+            return;
+        }
+        final int grown = Math.max(capacity, mAddresses.length * 2);
+        mAddresses = Arrays.copyOf(mAddresses, grown);
+        mRssi = Arrays.copyOf(mRssi, grown);
+        mTimestamps = Arrays.copyOf(mTimestamps, grown);
+        mBeaconTypes = Arrays.copyOf(mBeaconTypes, grown);
+        mUuidMostSignificantBits = Arrays.copyOf(mUuidMostSignificantBits, grown);
+        mUuidLeastSignificantBits = Arrays.copyOf(mUuidLeastSignificantBits, grown);
+        mMajors = Arrays.copyOf(mMajors, grown);
+        mMinors = Arrays.copyOf(mMinors, grown);
+        mTxPowers = Arrays.copyOf(mTxPowers, grown);
+    }
+
+    /**
+     * Drops every row, keeping the allocated columns.
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Appends a row with the columns which do not depend on the payload, the beacon
+     * columns are reset.
+     *
+     * @return the index of the row
+     */
+    int append(final long address, final int rssi, final long timestamp) {
+        ensureCapacity(mSize + 1);
+        final int i = mSize++;
+        mAddresses[i] = address;
+        mRssi[i] = rssi;
+        mTimestamps[i] = timestamp;
+        mBeaconTypes[i] = (byte) BeaconType.NOT_A_BEACON.ordinal();
+        mUuidMostSignificantBits[i] = 0;
+        mUuidLeastSignificantBits[i] = 0;
+        mMajors[i] = 0;
+        mMinors[i] = 0;
+        mTxPowers[i] = 0;
+        return i;
+    }
+
+    void setBeacon(final int i, final BeaconType type, final long uuidMostSignificantBits,
+                   final long uuidLeastSignificantBits, final int major, final int minor, final int txPower) {
+        mBeaconTypes[i] = (byte) type.ordinal();
+        mUuidMostSignificantBits[i] = uuidMostSignificantBits;
+        mUuidLeastSignificantBits[i] = uuidLeastSignificantBits;
+        mMajors[i] = major;
+        mMinors[i] = minor;
+        mTxPowers[i] = txPower;
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return the row count
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Gets the beacon type of a row.
+     *
+     * @param index the row
+     * @return the beacon type
+     */
+    public BeaconType getBeaconType(final int index) {
+        if (index >= mSize) {
+            throw new IndexOutOfBoundsException("row " + index + " of " + mSize);
+        }
+        return BEACON_TYPES[mBeaconTypes[index]];
+    }
+
+    /**
+     * Gets the MAC addresses, see {@link com.blakequ.blelibrary.util.MacAddress}.
+     */
+    public long[] getAddresses() {
+        return mAddresses;
+    }
+
+    public int[] getRssi() {
+        return mRssi;
+    }
+
+    public long[] getTimestamps() {
+        return mTimestamps;
+    }
+
+    /**
+     * Gets the beacon types as {@link BeaconType} ordinals.
+     */
+    public byte[] getBeaconTypes() {
+        return mBeaconTypes;
+    }
+
+    public long[] getUuidMostSignificantBits() {
+        return mUuidMostSignificantBits;
+    }
+
+    public long[] getUuidLeastSignificantBits() {
+        return mUuidLeastSignificantBits;
+    }
+
+    public int[] getMajors() {
+        return mMajors;
+    }
+
+    public int[] getMinors() {
+        return mMinors;
+    }
+
+    public int[] getTxPowers() {
+        return mTxPowers;
+    }
+}
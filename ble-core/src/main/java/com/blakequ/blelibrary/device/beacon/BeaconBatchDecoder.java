@@ -0,0 +1,144 @@
+package com.blakequ.blelibrary.device.beacon;
+
+import com.blakequ.blelibrary.util.MacAddress;
+
+/**
+ * Decodes bursts of raw adverts, such as batch scan results or replayed scans, into a
+ * {@link BeaconBatch}.
+ * <p>
+ * Records are classified against a {@link BeaconLayoutRegistry} and the identifier fields
+ * of the matching layout are read into the batch columns: {@link BeaconLayouts#FIELD_UUID_HIGH}
+ * and {@link BeaconLayouts#FIELD_UUID_LOW} for the UUID, {@link BeaconLayouts#FIELD_MAJOR}
+ * or {@link BeaconLayouts#FIELD_ID2} for the major, {@link BeaconLayouts#FIELD_MINOR} or
+ * {@link BeaconLayouts#FIELD_ID3} for the minor and {@link BeaconLayouts#FIELD_TX_POWER}.
+ * Layouts without such a field leave the column at 0. The field positions are resolved
+ * once per layout when the decoder is created.
+ */
+public final class BeaconBatchDecoder {
+    private final BeaconLayoutRegistry mRegistry;
+    // Field index of each column per layout, -1 when the layout has no such field
+    private final int[] mUuidHighFields;
+    private final int[] mUuidLowFields;
+    private final int[] mMajorFields;
+    private final int[] mMinorFields;
+    private final int[] mTxPowerFields;
+
+    /**
+     * Creates a decoder for the layouts currently used by {@link BeaconClassifier}.
+     */
+    public BeaconBatchDecoder() {
+        this(BeaconClassifier.getLayoutRegistry());
+    }
+
+    /**
+     * @param registry the layouts to decode
+     */
+    public BeaconBatchDecoder(final BeaconLayoutRegistry registry) {
+        final int count = registry.getLayoutCount();
+        mRegistry = registry;
+        mUuidHighFields = new int[count];
+        mUuidLowFields = new int[count];
+        mMajorFields = new int[count];
+        mMinorFields = new int[count];
+        mTxPowerFields = new int[count];
+        for (int i = 0; i < count; i++) {
+            final BeaconLayout layout = registry.getLayout(i);
+            mUuidHighFields[i] = layout.getFieldIndex(BeaconLayouts.FIELD_UUID_HIGH);
+            mUuidLowFields[i] = layout.getFieldIndex(BeaconLayouts.FIELD_UUID_LOW);
+            mMajorFields[i] = fieldIndex(layout, BeaconLayouts.FIELD_MAJOR, BeaconLayouts.FIELD_ID2);
+            mMinorFields[i] = fieldIndex(layout, BeaconLayouts.FIELD_MINOR, BeaconLayouts.FIELD_ID3);
+            mTxPowerFields[i] = layout.getFieldIndex(BeaconLayouts.FIELD_TX_POWER);
+        }
+    }
+
+    private static int fieldIndex(final BeaconLayout layout, final String name, final String alternative) {
+        final int index = layout.getFieldIndex(name);
+        return index >= 0 ? index : layout.getFieldIndex(alternative);
+    }
+
+    /**
+     * Gets the layouts this decoder reads.
+     *
+     * @return the layout registry
+     */
+    public BeaconLayoutRegistry getRegistry() {
+        return mRegistry;
+    }
+
+    /**
+     * Appends count adverts given as parallel arrays to a batch.
+     *
+     * @param addresses   the MAC addresses, see {@link MacAddress}
+     * @param rssi        the RSSI of each advert
+     * @param scanRecords the raw scan records, null entries are kept as non beacons
+     * @param timestamps  the time each advert was received
+     * @param offset      the index of the first advert in the arrays
+     * @param count       the number of adverts
+     * @param batch       the batch to append to
+     */
+    public void decode(final long[] addresses, final int[] rssi, final byte[][] scanRecords,
+                       final long[] timestamps, final int offset, final int count,
+                       final BeaconBatch batch) {
+        batch.ensureCapacity(batch.size() + count);
+        for (int i = offset; i < offset + count; i++) {
+            decodeRow(batch, addresses[i], rssi[i], scanRecords[i], timestamps[i]);
+        }
+    }
+
+    /**
+     * Appends count adverts to a batch, parsing the address strings.
+     *
+     * @param addresses   the MAC addresses as strings, see {@link MacAddress#parse(String)}
+     * @param rssi        the RSSI of each advert
+     * @param scanRecords the raw scan records, null entries are kept as non beacons
+     * @param timestamps  the time each advert was received
+     * @param offset      the index of the first advert in the arrays
+     * @param count       the number of adverts
+     * @param batch       the batch to append to
+     */
+    public void decode(final String[] addresses, final int[] rssi, final byte[][] scanRecords,
+                       final long[] timestamps, final int offset, final int count,
+                       final BeaconBatch batch) {
+        batch.ensureCapacity(batch.size() + count);
+        for (int i = offset; i < offset + count; i++) {
+            decodeRow(batch, MacAddress.parse(addresses[i]), rssi[i], scanRecords[i], timestamps[i]);
+        }
+    }
+
+    /**
+     * Appends a single advert to a batch.
+     *
+     * @param address    the MAC address, see {@link MacAddress}
+     * @param rssi       the RSSI
+     * @param scanRecord the raw scan record, null is kept as a non beacon
+     * @param timestamp  the time the advert was received
+     * @param batch      the batch to append to
+     */
+    public void decode(final long address, final int rssi, final byte[] scanRecord,
+                       final long timestamp, final BeaconBatch batch) {
+        decodeRow(batch, address, rssi, scanRecord, timestamp);
+    }
+
+    private void decodeRow(final BeaconBatch batch, final long address, final int rssi,
+                           final byte[] scanRecord, final long timestamp) {
+        final int row = batch.append(address, rssi, timestamp);
+        final long classification = mRegistry.match(scanRecord);
+        if (classification == BeaconClassifier.NOT_A_BEACON) {
+            return;
+        }
+
+        final int layoutIndex = BeaconClassifier.getLayoutIndex(classification);
+        final BeaconLayout layout = mRegistry.getLayout(layoutIndex);
+        final int offset = BeaconClassifier.getPayloadOffset(classification);
+        batch.setBeacon(row, BeaconClassifier.getBeaconType(classification),
+                read(layout, scanRecord, offset, mUuidHighFields[layoutIndex]),
+                read(layout, scanRecord, offset, mUuidLowFields[layoutIndex]),
+                (int) read(layout, scanRecord, offset, mMajorFields[layoutIndex]),
+                (int) read(layout, scanRecord, offset, mMinorFields[layoutIndex]),
+                (int) read(layout, scanRecord, offset, mTxPowerFields[layoutIndex]));
+    }
+
+    private static long read(final BeaconLayout layout, final byte[] scanRecord, final int offset, final int field) {
+        return field < 0 ? 0 : layout.readField(scanRecord, offset, field);
+    }
+}
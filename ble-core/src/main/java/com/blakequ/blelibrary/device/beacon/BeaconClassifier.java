@@ -0,0 +1,118 @@
+package com.blakequ.blelibrary.device.beacon;
+
+/**
+ * Classifies a raw scan record as a beacon in a single pass over its bytes.
+ * <p>
+ * Records are matched against a {@link BeaconLayoutRegistry}, by default the one of
+ * {@link BeaconLayouts#createDefaultRegistry()}. Nothing is allocated and malformed records
+ * never throw, so it is cheap enough to run on the scan callback thread.
+ * <p>
+ * The result is packed in a long, read it with {@link #getBeaconType(long)},
+ * {@link #getLayoutIndex(long)}, {@link #getPayloadOffset(long)} and
+ * {@link #getPayloadLength(long)}.
+ */
+public final class BeaconClassifier {
+    /**
+     * The classification of a record which is not a known beacon.
+     */
+    public static final long NOT_A_BEACON = 0;
+
+    private static final BeaconType[] BEACON_TYPES = BeaconType.values();
+
+    private static volatile BeaconLayoutRegistry sLayoutRegistry = BeaconLayouts.createDefaultRegistry();
+
+    private BeaconClassifier(){
+        // TO AVOID INSTANTIATION
+    }
+
+    /**
+     * Gets the registry used by {@link #classify(byte[])}.
+     *
+     * @return the layout registry
+     */
+    public static BeaconLayoutRegistry getLayoutRegistry() {
+        return sLayoutRegistry;
+    }
+
+    /**
+     * Sets the registry used by {@link #classify(byte[])}, for example one built from
+     * {@link BeaconLayouts#createDefaultBuilder()} with vendor layouts added.
+     *
+     * @param registry the layout registry
+     */
+    public static void setLayoutRegistry(final BeaconLayoutRegistry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("registry is null");
+        }
+        sLayoutRegistry = registry;
+    }
+
+    /**
+     * Classifies a raw scan record.
+     *
+     * @param scanRecord the scan record of Bluetooth LE advertisement and/or scan response
+     * @return the packed classification, {@link #NOT_A_BEACON} if no beacon was recognised
+     */
+    public static long classify(final byte[] scanRecord) {
+        return sLayoutRegistry.match(scanRecord);
+    }
+
+    /**
+     * Classifies manufacturer data held in a larger array.
+     *
+     * @param source the array holding the manufacturer data
+     * @param offset the offset of the manufacturer data in source
+     * @param length the length of the manufacturer data
+     * @return the packed classification, {@link #NOT_A_BEACON} if no beacon was recognised
+     */
+    public static long classifyManufacturerData(final byte[] source, final int offset, final int length) {
+        return sLayoutRegistry.matchStructure(BeaconLayouts.AD_TYPE_MANUFACTURER_SPECIFIC_DATA, source, offset, length);
+    }
+
+    static long pack(final BeaconType type, final int layoutIndex, final int offset, final int length) {
+        return ((long) type.ordinal() << 48) | ((long) (layoutIndex & 0xFFFF) << 32)
+                | ((long) (offset & 0xFFFF) << 16) | (length & 0xFFFF);
+    }
+
+    /**
+     * Gets the beacon type of a classification.
+     *
+     * @param classification the result of {@link #classify(byte[])}
+     * @return the beacon type
+     */
+    public static BeaconType getBeaconType(final long classification) {
+        return BEACON_TYPES[(int) (classification >>> 48)];
+    }
+
+    /**
+     * Gets the index of the matching layout in the registry which made the classification,
+     * see {@link BeaconLayoutRegistry#getLayout(long)}.
+     *
+     * @param classification the result of {@link #classify(byte[])}
+     * @return the layout index
+     */
+    public static int getLayoutIndex(final long classification) {
+        return (int) (classification >>> 32) & 0xFFFF;
+    }
+
+    /**
+     * Gets the offset in the scan record of the beacon payload, which is the data of the
+     * matching AD structure.
+     *
+     * @param classification the result of {@link #classify(byte[])}
+     * @return the payload offset
+     */
+    public static int getPayloadOffset(final long classification) {
+        return (int) (classification >>> 16) & 0xFFFF;
+    }
+
+    /**
+     * Gets the length of the beacon payload.
+     *
+     * @param classification the result of {@link #classify(byte[])}
+     * @return the payload length
+     */
+    public static int getPayloadLength(final long classification) {
+        return (int) classification & 0xFFFF;
+    }
+}
@@ -0,0 +1,339 @@
+package com.blakequ.blelibrary.device.beacon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Declares the format of a beacon frame: the AD structure it is sent in, the bytes which
+ * identify it and the position of its fields.
+ * <p>
+ * Offsets are relative to the first data byte of the AD structure, the type byte not
+ * included. A layout is immutable once built, use {@link Builder} to declare one and a
+ * {@link BeaconLayoutRegistry} to match it against scan records.
+ */
+public final class BeaconLayout {
+    /**
+     * The widest field, in bytes, which can be read into a long.
+     */
+    public static final int MAX_FIELD_WIDTH = 8;
+
+    private final String mName;
+    private final BeaconType mBeaconType;
+    private final int mAdType;
+    private final int mMatchOffset;
+    private final byte[] mMatchBytes;
+    private final int mMinDataLength;
+
+    private final String[] mFieldNames;
+    private final int[] mFieldOffsets;
+    private final int[] mFieldWidths;
+    private final boolean[] mFieldBigEndian;
+    private final boolean[] mFieldSigned;
+
+    private BeaconLayout(final Builder builder) {
+        final int count = builder.mFields.size();
+        mName = builder.mName;
+        mBeaconType = builder.mBeaconType;
+        mAdType = builder.mAdType;
+        mMatchOffset = builder.mMatchOffset;
+        mMatchBytes = builder.mMatchBytes;
+
+        mFieldNames = new String[count];
+        mFieldOffsets = new int[count];
+        mFieldWidths = new int[count];
+        mFieldBigEndian = new boolean[count];
+        mFieldSigned = new boolean[count];
+
+        int minDataLength = Math.max(builder.mMinDataLength, mMatchOffset + mMatchBytes.length);
+        for (int i = 0; i < count; i++) {
+            final Field field = builder.mFields.get(i);
+            mFieldNames[i] = field.name;
+            mFieldOffsets[i] = field.offset;
+            mFieldWidths[i] = field.width;
+            mFieldBigEndian[i] = field.bigEndian;
+            mFieldSigned[i] = field.signed;
+            minDataLength = Math.max(minDataLength, field.offset + field.width);
+        }
+        mMinDataLength = minDataLength;
+    }
+
+    /**
+     * Gets the name of the layout.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Gets the beacon type reported for frames matching this layout.
+     *
+     * @return the beacon type
+     */
+    public BeaconType getBeaconType() {
+        return mBeaconType;
+    }
+
+    /**
+     * Gets the AD type of the structure carrying the frame.
+     *
+     * @return the AD type
+     */
+    public int getAdType() {
+        return mAdType;
+    }
+
+    /**
+     * Gets the offset of the identifying bytes.
+     *
+     * @return the match offset
+     */
+    public int getMatchOffset() {
+        return mMatchOffset;
+    }
+
+    /**
+     * Gets the length of the identifying bytes.
+     *
+     * @return the match length
+     */
+    public int getMatchLength() {
+        return mMatchBytes.length;
+    }
+
+    /**
+     * Gets one of the identifying bytes.
+     *
+     * @param index the index in the identifying bytes
+     * @return the byte
+     */
+    public byte getMatchByte(final int index) {
+        return mMatchBytes[index];
+    }
+
+    /**
+     * Gets the smallest data length of a matching structure, enough to hold the identifying
+     * bytes and every field.
+     *
+     * @return the minimum data length
+     */
+    public int getMinDataLength() {
+        return mMinDataLength;
+    }
+
+    /**
+     * Gets the number of fields.
+     *
+     * @return the field count
+     */
+    public int getFieldCount() {
+        return mFieldNames.length;
+    }
+
+    /**
+     * Gets the name of a field.
+     *
+     * @param field the field index
+     * @return the field name
+     */
+    public String getFieldName(final int field) {
+        return mFieldNames[field];
+    }
+
+    /**
+     * Gets the index of a field. Look it up once and keep it, the index is stable for the
+     * lifetime of the layout.
+     *
+     * @param name the field name
+     * @return the field index, or -1 if there is no such field
+     */
+    public int getFieldIndex(final String name) {
+        for (int i = 0; i < mFieldNames.length; i++) {
+            if (mFieldNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether the data of an AD structure matches this layout.
+     *
+     * @param adType     the AD type of the structure
+     * @param source     the array holding the structure data, usually the whole scan record
+     * @param dataOffset the offset of the structure data in source
+     * @param dataLength the length of the structure data
+     * @return true if the identifying bytes match and the data is long enough for every field
+     */
+    public boolean matches(final int adType, final byte[] source, final int dataOffset, final int dataLength) {
+        if (adType != mAdType || dataLength < mMinDataLength) {
+            return false;
+        }
+        final int start = dataOffset + mMatchOffset;
+        for (int i = 0; i < mMatchBytes.length; i++) {
+            if (source[start + i] != mMatchBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a field of a matching structure. Unsigned fields are zero extended, signed ones
+     * sign extended.
+     *
+     * @param source     the array holding the structure data
+     * @param dataOffset the offset of the structure data in source
+     * @param field      the field index
+     * @return the field value
+     */
+    public long readField(final byte[] source, final int dataOffset, final int field) {
+        final int start = dataOffset + mFieldOffsets[field];
+        final int width = mFieldWidths[field];
+        long value = 0;
+        if (mFieldBigEndian[field]) {
+            for (int i = 0; i < width; i++) {
+                value = (value << 8) | (source[start + i] & 0xFF);
+            }
+        } else {
+            for (int i = width - 1; i >= 0; i--) {
+                value = (value << 8) | (source[start + i] & 0xFF);
+            }
+        }
+        if (mFieldSigned[field] && width < MAX_FIELD_WIDTH) {
+            final int shift = 64 - 8 * width;
+            value = (value << shift) >> shift;
+        }
+        return value;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "BeaconLayout [mName=" + mName + ", mBeaconType=" + mBeaconType
+                + ", mAdType=" + mAdType + ", mMatchOffset=" + mMatchOffset
+                + ", mMatchBytes=" + Arrays.toString(mMatchBytes)
+                + ", mFieldNames=" + Arrays.toString(mFieldNames) + "]";
+    }
+
+    private static final class Field {
+        final String name;
+        final int offset;
+        final int width;
+        final boolean bigEndian;
+        final boolean signed;
+
+        Field(final String name, final int offset, final int width, final boolean bigEndian, final boolean signed) {
+            this.name = name;
+            this.offset = offset;
+            this.width = width;
+            this.bigEndian = bigEndian;
+            this.signed = signed;
+        }
+    }
+
+    /**
+     * Builder for {@link BeaconLayout}.
+     */
+    public static final class Builder {
+        private final String mName;
+        private final BeaconType mBeaconType;
+        private final int mAdType;
+        private int mMatchOffset;
+        private byte[] mMatchBytes;
+        private int mMinDataLength;
+        private final List<Field> mFields = new ArrayList<>();
+
+        /**
+         * @param name       the name of the layout
+         * @param beaconType the type reported for matching frames
+         * @param adType     the AD type of the structure carrying the frame
+         */
+        public Builder(final String name, final BeaconType beaconType, final int adType) {
+            if (name == null || beaconType == null || beaconType == BeaconType.NOT_A_BEACON) {
+                throw new IllegalArgumentException("a layout needs a name and a beacon type");
+            }
+            if (adType < 0 || adType > 0xFF) {
+                throw new IllegalArgumentException("invalid AD type " + adType);
+            }
+            mName = name;
+            mBeaconType = beaconType;
+            mAdType = adType;
+        }
+
+        /**
+         * Sets the bytes identifying the frame.
+         *
+         * @param offset the offset of the bytes in the structure data
+         * @param bytes  the identifying bytes, at least one
+         */
+        public Builder setMatch(final int offset, final byte... bytes) {
+            if (offset < 0 || bytes == null || bytes.length == 0) {
+                throw new IllegalArgumentException("a layout needs at least one identifying byte");
+            }
+            mMatchOffset = offset;
+            mMatchBytes = bytes.clone();
+            return this;
+        }
+
+        /**
+         * Sets the smallest data length of a matching structure. It is raised if needed so
+         * that every field fits.
+         *
+         * @param minDataLength the minimum data length
+         */
+        public Builder setMinDataLength(final int minDataLength) {
+            mMinDataLength = minDataLength;
+            return this;
+        }
+
+        /**
+         * Adds an unsigned field.
+         *
+         * @param name      the field name
+         * @param offset    the offset of the field in the structure data
+         * @param width     the width in bytes, 1 to {@link #MAX_FIELD_WIDTH}
+         * @param bigEndian true if the most significant byte comes first
+         */
+        public Builder addField(final String name, final int offset, final int width, final boolean bigEndian) {
+            return addField(name, offset, width, bigEndian, false);
+        }
+
+        /**
+         * Adds a two's complement signed field.
+         *
+         * @param name      the field name
+         * @param offset    the offset of the field in the structure data
+         * @param width     the width in bytes, 1 to {@link #MAX_FIELD_WIDTH}
+         * @param bigEndian true if the most significant byte comes first
+         */
+        public Builder addSignedField(final String name, final int offset, final int width, final boolean bigEndian) {
+            return addField(name, offset, width, bigEndian, true);
+        }
+
+        private Builder addField(final String name, final int offset, final int width,
+                                 final boolean bigEndian, final boolean signed) {
+            if (name == null || offset < 0 || width < 1 || width > MAX_FIELD_WIDTH) {
+                throw new IllegalArgumentException("invalid field " + name + " at " + offset + " width " + width);
+            }
+            for (Field field : mFields) {
+                if (field.name.equals(name)) {
+                    throw new IllegalArgumentException("duplicate field " + name);
+                }
+            }
+            mFields.add(new Field(name, offset, width, bigEndian, signed));
+            return this;
+        }
+
+        public BeaconLayout build() {
+            if (mMatchBytes == null) {
+                throw new IllegalStateException("layout " + mName + " has no identifying bytes");
+            }
+            return new BeaconLayout(this);
+        }
+    }
+}
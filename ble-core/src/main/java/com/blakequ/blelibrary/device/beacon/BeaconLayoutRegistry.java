@@ -0,0 +1,314 @@
+package com.blakequ.blelibrary.device.beacon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of {@link BeaconLayout}s compiled for matching.
+ * <p>
+ * Layouts are grouped by the position of their identifying bytes: the AD type, the match
+ * offset and the number of bytes used as key, up to four. Each group keeps a hash table
+ * from the key to its layouts, so matching a structure costs one lookup per group and does
+ * not grow with the number of layouts. Groups are tried in the order their first layout
+ * was added, and within a group the first added layout wins.
+ * <p>
+ * A registry is immutable, build a new one with {@link Builder} to add layouts.
+ */
+public final class BeaconLayoutRegistry {
+    private static final int MAX_KEY_BYTES = 4;
+    private static final int MAX_LAYOUTS = 0xFFFF;
+
+    private final BeaconLayout[] mLayouts;
+    // Next layout with the same group and key, or -1
+    private final int[] mNext;
+    // Groups indexed by AD type
+    private final Group[][] mGroups = new Group[256][];
+
+    private BeaconLayoutRegistry(final List<BeaconLayout> layouts) {
+        mLayouts = layouts.toArray(new BeaconLayout[layouts.size()]);
+        mNext = new int[mLayouts.length];
+
+        final List<GroupBuilder> builders = new ArrayList<>();
+        for (int i = 0; i < mLayouts.length; i++) {
+            final BeaconLayout layout = mLayouts[i];
+            final int keyLength = Math.min(MAX_KEY_BYTES, layout.getMatchLength());
+            GroupBuilder group = null;
+            for (GroupBuilder candidate : builders) {
+                if (candidate.adType == layout.getAdType()
+                        && candidate.matchOffset == layout.getMatchOffset()
+                        && candidate.keyLength == keyLength) {
+                    group = candidate;
+                    break;
+                }
+            }
+            if (group == null) {
+                group = new GroupBuilder(layout.getAdType(), layout.getMatchOffset(), keyLength);
+                builders.add(group);
+            }
+            group.add(i, layoutKey(layout, keyLength));
+        }
+
+        for (GroupBuilder builder : builders) {
+            final Group group = builder.compile(mNext);
+            final Group[] current = mGroups[builder.adType];
+            if (current == null) {
+                mGroups[builder.adType] = new Group[]{group};
+            } else {
+                final Group[] grown = new Group[current.length + 1];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                grown[current.length] = group;
+                mGroups[builder.adType] = grown;
+            }
+        }
+    }
+
+    private static int layoutKey(final BeaconLayout layout, final int keyLength) {
+        int key = 0;
+        for (int i = 0; i < keyLength; i++) {
+            key = (key << 8) | (layout.getMatchByte(i) & 0xFF);
+        }
+        return key;
+    }
+
+    private static int readKey(final byte[] source, final int offset, final int keyLength) {
+        int key = 0;
+        for (int i = 0; i < keyLength; i++) {
+            key = (key << 8) | (source[offset + i] & 0xFF);
+        }
+        return key;
+    }
+
+    private static int mix(final int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Gets the number of layouts.
+     *
+     * @return the layout count
+     */
+    public int getLayoutCount() {
+        return mLayouts.length;
+    }
+
+    /**
+     * Gets a layout by its index, in the order layouts were added.
+     *
+     * @param index the layout index
+     * @return the layout
+     */
+    public BeaconLayout getLayout(final int index) {
+        return mLayouts[index];
+    }
+
+    /**
+     * Gets the layout a classification was made with.
+     *
+     * @param classification a result of this registry
+     * @return the layout, or null for {@link BeaconClassifier#NOT_A_BEACON}
+     */
+    public BeaconLayout getLayout(final long classification) {
+        if (classification == BeaconClassifier.NOT_A_BEACON) {
+            return null;
+        }
+        return mLayouts[BeaconClassifier.getLayoutIndex(classification)];
+    }
+
+    /**
+     * Finds the first AD structure of a raw scan record matching a layout.
+     *
+     * @param scanRecord the scan record of Bluetooth LE advertisement and/or scan response
+     * @return the packed classification, see {@link BeaconClassifier}
+     */
+    public long match(final byte[] scanRecord) {
+        if (scanRecord == null) {
+            return BeaconClassifier.NOT_A_BEACON;
+        }
+
+        final int end = scanRecord.length;
+        int pos = 0;
+        while (pos < end) {
+            final int length = scanRecord[pos] & 0xFF;
+            if (length == 0 || pos + 1 + length > end) {
+                break;
+            }
+            final Group[] groups = mGroups[scanRecord[pos + 1] & 0xFF];
+            if (groups != null) {
+                final long result = matchGroups(groups, scanRecord, pos + 2, length - 1);
+                if (result != BeaconClassifier.NOT_A_BEACON) {
+                    return result;
+                }
+            }
+            pos += 1 + length;
+        }
+        return BeaconClassifier.NOT_A_BEACON;
+    }
+
+    /**
+     * Matches the data of a single AD structure.
+     *
+     * @param adType     the AD type of the structure
+     * @param source     the array holding the structure data, usually the whole scan record
+     * @param dataOffset the offset of the structure data in source
+     * @param dataLength the length of the structure data
+     * @return the packed classification, see {@link BeaconClassifier}
+     */
+    public long matchStructure(final int adType, final byte[] source, final int dataOffset, final int dataLength) {
+        if (source == null || adType < 0 || adType > 0xFF
+                || dataOffset < 0 || dataLength < 0 || dataOffset + dataLength > source.length) {
+            return BeaconClassifier.NOT_A_BEACON;
+        }
+        final Group[] groups = mGroups[adType];
+        if (groups == null) {
+            return BeaconClassifier.NOT_A_BEACON;
+        }
+        return matchGroups(groups, source, dataOffset, dataLength);
+    }
+
+    private long matchGroups(final Group[] groups, final byte[] source, final int dataOffset, final int dataLength) {
+        for (Group group : groups) {
+            if (dataLength < group.matchOffset + group.keyLength) {
+                continue;
+            }
+            final int key = readKey(source, dataOffset + group.matchOffset, group.keyLength);
+            for (int i = group.find(key); i >= 0; i = mNext[i]) {
+                final BeaconLayout layout = mLayouts[i];
+                if (dataLength >= layout.getMinDataLength()
+                        && tailMatches(layout, group.keyLength, source, dataOffset + group.matchOffset)) {
+                    return BeaconClassifier.pack(layout.getBeaconType(), i, dataOffset, dataLength);
+                }
+            }
+        }
+        return BeaconClassifier.NOT_A_BEACON;
+    }
+
+    private static boolean tailMatches(final BeaconLayout layout, final int from, final byte[] source, final int start) {
+        for (int i = from; i < layout.getMatchLength(); i++) {
+            if (source[start + i] != layout.getMatchByte(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Layouts sharing an AD type, match offset and key length, hashed by key.
+     */
+    private static final class Group {
+        final int matchOffset;
+        final int keyLength;
+        final int mask;
+        final int[] keys;
+        // First layout of each slot, -1 for an empty slot
+        final int[] heads;
+
+        Group(final int matchOffset, final int keyLength, final int size) {
+            this.matchOffset = matchOffset;
+            this.keyLength = keyLength;
+            this.mask = size - 1;
+            this.keys = new int[size];
+            this.heads = new int[size];
+        }
+
+        int find(final int key) {
+            int slot = mix(key) & mask;
+            int head;
+            while ((head = heads[slot]) >= 0) {
+                if (keys[slot] == key) {
+                    return head;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    private static final class GroupBuilder {
+        final int adType;
+        final int matchOffset;
+        final int keyLength;
+        final List<Integer> layouts = new ArrayList<>();
+        final List<Integer> keys = new ArrayList<>();
+
+        GroupBuilder(final int adType, final int matchOffset, final int keyLength) {
+            this.adType = adType;
+            this.matchOffset = matchOffset;
+            this.keyLength = keyLength;
+        }
+
+        void add(final int layout, final int key) {
+            layouts.add(layout);
+            keys.add(key);
+        }
+
+        Group compile(final int[] next) {
+            int size = 2;
+            while (size < keys.size() * 2) {
+                size <<= 1;
+            }
+            final Group group = new Group(matchOffset, keyLength, size);
+            Arrays.fill(group.heads, -1);
+            // Last layout of each key chain, by slot
+            final int[] tails = new int[size];
+            for (int i = 0; i < layouts.size(); i++) {
+                final int layout = layouts.get(i);
+                final int key = keys.get(i);
+                next[layout] = -1;
+                int slot = mix(key) & group.mask;
+                while (group.heads[slot] >= 0 && group.keys[slot] != key) {
+                    slot = (slot + 1) & group.mask;
+                }
+                if (group.heads[slot] < 0) {
+                    group.keys[slot] = key;
+                    group.heads[slot] = layout;
+                } else {
+                    next[tails[slot]] = layout;
+                }
+                tails[slot] = layout;
+            }
+            return group;
+        }
+    }
+
+    /**
+     * Builder for {@link BeaconLayoutRegistry}.
+     */
+    public static final class Builder {
+        private final List<BeaconLayout> mLayouts = new ArrayList<>();
+
+        public Builder() {
+        }
+
+        /**
+         * Starts from the layouts of an existing registry.
+         *
+         * @param registry the registry to extend
+         */
+        public Builder(final BeaconLayoutRegistry registry) {
+            Collections.addAll(mLayouts, registry.mLayouts);
+        }
+
+        /**
+         * Adds a layout. Layouts added first win when a frame matches several of them.
+         *
+         * @param layout the layout
+         */
+        public Builder add(final BeaconLayout layout) {
+            if (layout == null) {
+                throw new IllegalArgumentException("layout is null");
+            }
+            if (mLayouts.size() == MAX_LAYOUTS) {
+                throw new IllegalStateException("too many layouts");
+            }
+            mLayouts.add(layout);
+            return this;
+        }
+
+        public BeaconLayoutRegistry build() {
+            return new BeaconLayoutRegistry(mLayouts);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.blakequ.blelibrary.device.beacon;
+
+import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconConstants;
+import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconDecoder;
+
+/**
+ * The beacon layouts known to the library.
+ * <p>
+ * Identifiers wider than {@link BeaconLayout#MAX_FIELD_WIDTH} bytes are split in a high
+ * and a low field.
+ */
+public final class BeaconLayouts {
+    /**
+     * AD type of service data with a 16 bit UUID, see
+     * {@code com.blakequ.blelibrary.device.adrecord.AdRecord#TYPE_SERVICE_DATA}.
+     */
+    public static final int AD_TYPE_SERVICE_DATA = 0x16;
+    /**
+     * AD type of manufacturer specific data, see
+     * {@code com.blakequ.blelibrary.device.adrecord.AdRecord#TYPE_MANUFACTURER_SPECIFIC_DATA}.
+     */
+    public static final int AD_TYPE_MANUFACTURER_SPECIFIC_DATA = 0xFF;
+
+    public static final String FIELD_COMPANY_IDENTIFIER = "companyIdentifier";
+    public static final String FIELD_UUID_HIGH = "uuidHigh";
+    public static final String FIELD_UUID_LOW = "uuidLow";
+    public static final String FIELD_MAJOR = "major";
+    public static final String FIELD_MINOR = "minor";
+    public static final String FIELD_TX_POWER = "txPower";
+    public static final String FIELD_ID2 = "id2";
+    public static final String FIELD_ID3 = "id3";
+    public static final String FIELD_RESERVED = "reserved";
+    public static final String FIELD_NAMESPACE_HIGH = "namespaceHigh";
+    public static final String FIELD_NAMESPACE_LOW = "namespaceLow";
+    public static final String FIELD_INSTANCE = "instance";
+    public static final String FIELD_URL_SCHEME = "urlScheme";
+    public static final String FIELD_VERSION = "version";
+    public static final String FIELD_BATTERY_VOLTAGE = "batteryVoltage";
+    public static final String FIELD_TEMPERATURE = "temperature";
+    public static final String FIELD_ADVERTISING_COUNT = "advertisingCount";
+    public static final String FIELD_UPTIME = "uptime";
+
+    /**
+     * Eddystone service UUID 0xFEAA, little endian as sent in service data.
+     */
+    private static final byte EDDYSTONE_UUID_0 = (byte) 0xAA;
+    private static final byte EDDYSTONE_UUID_1 = (byte) 0xFE;
+
+    /**
+     * Apple iBeacon, manufacturer data 4C 00 02 15.
+     */
+    public static final BeaconLayout IBEACON = new BeaconLayout.Builder(
+            "iBeacon", BeaconType.IBEACON, AD_TYPE_MANUFACTURER_SPECIFIC_DATA)
+            .setMatch(0, IBeaconConstants.MANUFACTURER_DATA_IBEACON_PREFIX)
+            .setMinDataLength(IBeaconDecoder.MANUFACTURER_DATA_LENGTH)
+            .addField(FIELD_COMPANY_IDENTIFIER, 0, 2, false)
+            .addField(FIELD_UUID_HIGH, 4, 8, true)
+            .addField(FIELD_UUID_LOW, 12, 8, true)
+            .addField(FIELD_MAJOR, 20, 2, true)
+            .addField(FIELD_MINOR, 22, 2, true)
+            .addSignedField(FIELD_TX_POWER, 24, 1, true)
+            .build();
+
+    /**
+     * AltBeacon, manufacturer data with the BE AC beacon code after any company identifier.
+     */
+    public static final BeaconLayout ALTBEACON = new BeaconLayout.Builder(
+            "AltBeacon", BeaconType.ALTBEACON, AD_TYPE_MANUFACTURER_SPECIFIC_DATA)
+            .setMatch(2, (byte) 0xBE, (byte) 0xAC)
+            .addField(FIELD_COMPANY_IDENTIFIER, 0, 2, false)
+            .addField(FIELD_UUID_HIGH, 4, 8, true)
+            .addField(FIELD_UUID_LOW, 12, 8, true)
+            .addField(FIELD_ID2, 20, 2, true)
+            .addField(FIELD_ID3, 22, 2, true)
+            .addSignedField(FIELD_TX_POWER, 24, 1, true)
+            .addField(FIELD_RESERVED, 25, 1, true)
+            .build();
+
+    /**
+     * Eddystone UID frame, service data of 0xFEAA with frame type 0x00.
+     */
+    public static final BeaconLayout EDDYSTONE_UID = new BeaconLayout.Builder(
+            "Eddystone-UID", BeaconType.EDDYSTONE_UID, AD_TYPE_SERVICE_DATA)
+            .setMatch(0, EDDYSTONE_UUID_0, EDDYSTONE_UUID_1, (byte) 0x00)
+            .addSignedField(FIELD_TX_POWER, 3, 1, true)
+            .addField(FIELD_NAMESPACE_HIGH, 4, 2, true)
+            .addField(FIELD_NAMESPACE_LOW, 6, 8, true)
+            .addField(FIELD_INSTANCE, 14, 6, true)
+            .build();
+
+    /**
+     * Eddystone URL frame, service data of 0xFEAA with frame type 0x10. The encoded URL
+     * follows the scheme byte up to the end of the structure.
+     */
+    public static final BeaconLayout EDDYSTONE_URL = new BeaconLayout.Builder(
+            "Eddystone-URL", BeaconType.EDDYSTONE_URL, AD_TYPE_SERVICE_DATA)
+            .setMatch(0, EDDYSTONE_UUID_0, EDDYSTONE_UUID_1, (byte) 0x10)
+            .addSignedField(FIELD_TX_POWER, 3, 1, true)
+            .addField(FIELD_URL_SCHEME, 4, 1, true)
+            .build();
+
+    /**
+     * Eddystone TLM frame, service data of 0xFEAA with frame type 0x20. The temperature is
+     * a signed 8.8 fixed point value.
+     */
+    public static final BeaconLayout EDDYSTONE_TLM = new BeaconLayout.Builder(
+            "Eddystone-TLM", BeaconType.EDDYSTONE_TLM, AD_TYPE_SERVICE_DATA)
+            .setMatch(0, EDDYSTONE_UUID_0, EDDYSTONE_UUID_1, (byte) 0x20)
+            .addField(FIELD_VERSION, 3, 1, true)
+            .addField(FIELD_BATTERY_VOLTAGE, 4, 2, true)
+            .addSignedField(FIELD_TEMPERATURE, 6, 2, true)
+            .addField(FIELD_ADVERTISING_COUNT, 8, 4, true)
+            .addField(FIELD_UPTIME, 12, 4, true)
+            .build();
+
+    private BeaconLayouts(){
+        // TO AVOID INSTANTIATION
+    }
+
+    /**
+     * Creates a registry of the layouts known to the library, iBeacon first.
+     *
+     * @return the registry
+     */
+    public static BeaconLayoutRegistry createDefaultRegistry() {
+        return createDefaultBuilder().build();
+    }
+
+    /**
+     * Creates a registry builder holding the layouts known to the library, to add vendor
+     * layouts to.
+     *
+     * @return the builder
+     */
+    public static BeaconLayoutRegistry.Builder createDefaultBuilder() {
+        return new BeaconLayoutRegistry.Builder()
+                .add(IBEACON)
+                .add(ALTBEACON)
+                .add(EDDYSTONE_UID)
+                .add(EDDYSTONE_URL)
+                .add(EDDYSTONE_TLM);
+    }
+}
@@ -0,0 +1,70 @@
+package com.blakequ.blelibrary.device.beacon;
+
+import java.util.Arrays;
+
+/**
+ *
+ */
+public abstract class BeaconManufacturerData {
+    private final BeaconType mBeaconType;
+    private final byte[] mSource;
+    private final int mOffset;
+    private final int mLength;
+    private byte[] mData;
+
+    protected BeaconManufacturerData(final BeaconType expectedType, final byte[] data){
+        this(expectedType, data, 0, data == null ? 0 : data.length);
+        this.mData = data;
+    }
+
+    /**
+     * Wraps manufacturer data which is part of a larger array, usually the whole scan record.
+     * Nothing is copied unless {@link #getData()} is called.
+     *
+     * @param expectedType the beacon type the data must match
+     * @param source       the array holding the manufacturer data
+     * @param offset       the offset of the manufacturer data in source
+     * @param length       the length of the manufacturer data
+     * @throws IllegalArgumentException if the data is not of the expected type
+     */
+    protected BeaconManufacturerData(final BeaconType expectedType, final byte[] source,
+                                     final int offset, final int length){
+        if (source == null || BeaconClassifier.getBeaconType(
+                BeaconClassifier.classifyManufacturerData(source, offset, length)) != expectedType) {
+            throw new IllegalArgumentException(
+                    "Manufacturer record '"
+                            + (source == null ? null : Arrays.toString(Arrays.copyOfRange(source, offset, offset + length)))
+                            + "' is not from a " + expectedType);
+        }
+
+        this.mSource = source;
+        this.mOffset = offset;
+        this.mLength = length;
+        this.mBeaconType = expectedType;
+    }
+
+    public BeaconType getBeaconType(){
+        return mBeaconType;
+    }
+
+    public byte[] getData(){
+        if (mData == null) {
+            mData = Arrays.copyOfRange(mSource, mOffset, mOffset + mLength);
+        }
+        return mData;
+    }
+
+    /**
+     * Gets the array holding the manufacturer data, see {@link #getOffset()}.
+     */
+    protected byte[] getSource(){
+        return mSource;
+    }
+
+    /**
+     * Gets the offset of the manufacturer data in {@link #getSource()}.
+     */
+    protected int getOffset(){
+        return mOffset;
+    }
+}
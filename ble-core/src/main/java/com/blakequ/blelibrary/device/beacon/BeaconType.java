@@ -0,0 +1,35 @@
+package com.blakequ.blelibrary.device.beacon;
+
+/**
+ * ble device type
+ */
+public enum BeaconType {
+    /**
+     * not ibeacon device
+     */
+    NOT_A_BEACON,
+    /**
+     * ibeacon device
+     * */
+    IBEACON,
+    /**
+     * AltBeacon device
+     */
+    ALTBEACON,
+    /**
+     * Eddystone UID frame
+     */
+    EDDYSTONE_UID,
+    /**
+     * Eddystone URL frame
+     */
+    EDDYSTONE_URL,
+    /**
+     * Eddystone TLM (telemetry) frame
+     */
+    EDDYSTONE_TLM,
+    /**
+     * a vendor format declared with a {@link BeaconLayout}
+     */
+    CUSTOM,
+}
@@ -0,0 +1,58 @@
+package com.blakequ.blelibrary.device.beacon.ibeacon;
+
+import com.blakequ.blelibrary.util.ByteReader;
+
+/**
+ * Reads the fields of an iBeacon manufacturer record straight from the bytes of a scan
+ * record, without copying or allocating anything.
+ * <p>
+ * Every method takes the array holding the record and the offset of the first byte of the
+ * manufacturer data (the company identifier), see {@link IBeaconManufacturerData} for the
+ * layout. The caller must make sure the record is an iBeacon, for example with
+ * {@link com.blakequ.blelibrary.device.beacon.BeaconClassifier}.
+ */
+public final class IBeaconDecoder {
+    /**
+     * Length in bytes of the iBeacon manufacturer data.
+     */
+    public static final int MANUFACTURER_DATA_LENGTH = 25;
+
+    private static final int OFFSET_ADVERTISEMENT = 2;
+    private static final int OFFSET_UUID = 4;
+    private static final int OFFSET_MAJOR = 20;
+    private static final int OFFSET_MINOR = 22;
+    private static final int OFFSET_TX_POWER = 24;
+
+    private IBeaconDecoder(){
+        // TO AVOID INSTANTIATION
+    }
+
+    public static int getCompanyIdentifier(final byte[] source, final int offset) {
+        // Little endian
+        return ByteReader.uint16LE(source, offset);
+    }
+
+    public static int getIBeaconAdvertisement(final byte[] source, final int offset) {
+        return ByteReader.uint16BE(source, offset + OFFSET_ADVERTISEMENT);
+    }
+
+    public static long getUuidMostSignificantBits(final byte[] source, final int offset) {
+        return ByteReader.int64BE(source, offset + OFFSET_UUID);
+    }
+
+    public static long getUuidLeastSignificantBits(final byte[] source, final int offset) {
+        return ByteReader.int64BE(source, offset + OFFSET_UUID + 8);
+    }
+
+    public static int getMajor(final byte[] source, final int offset) {
+        return ByteReader.uint16BE(source, offset + OFFSET_MAJOR);
+    }
+
+    public static int getMinor(final byte[] source, final int offset) {
+        return ByteReader.uint16BE(source, offset + OFFSET_MINOR);
+    }
+
+    public static int getCalibratedTxPower(final byte[] source, final int offset) {
+        return source[offset + OFFSET_TX_POWER];
+    }
+}
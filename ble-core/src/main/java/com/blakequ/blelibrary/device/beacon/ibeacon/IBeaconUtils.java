@@ -1,12 +1,11 @@
 package com.blakequ.blelibrary.device.beacon.ibeacon;
 
 
-import com.blakequ.blelibrary.util.ByteUtils;
-
 final class IBeaconUtils {
     private static final double DISTANCE_THRESHOLD_WTF = 0.0;
     private static final double DISTANCE_THRESHOLD_IMMEDIATE = 0.5;
     private static final double DISTANCE_THRESHOLD_NEAR = 3.0;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     private IBeaconUtils(){
         // TO AVOID INSTANTIATION
@@ -51,7 +50,7 @@ final class IBeaconUtils {
                 sb.append('-');
             }
 
-            final int intFromByte = ByteUtils.getIntFromByte(uuid[i]);
+            final int intFromByte = uuid[i] & 0xFF;
             if(intFromByte <= 0xF){
                 sb.append('0');
             }
@@ -62,6 +61,28 @@ final class IBeaconUtils {
         return sb.toString();
     }
 
+    /**
+     * Formats a UUID given as two longs the same way as {@link #calculateUuidString(byte[])}.
+     *
+     * @param msb the most significant bits of the UUID
+     * @param lsb the least significant bits of the UUID
+     * @return the UUID string
+     */
+    public static String calculateUuidString(final long msb, final long lsb) {
+        final char[] chars = new char[36];
+        int pos = 0;
+        for (int i = 0; i < 16; i++) {
+            if (i == 4 || i == 6 || i == 8 || i == 10) {
+                chars[pos++] = '-';
+            }
+            final long bits = i < 8 ? msb : lsb;
+            final int intFromByte = (int) (bits >>> (56 - 8 * (i & 7))) & 0xFF;
+            chars[pos++] = HEX_DIGITS[intFromByte >>> 4];
+            chars[pos++] = HEX_DIGITS[intFromByte & 0x0F];
+        }
+        return new String(chars);
+    }
+
     public static IBeaconDistanceDescriptor getDistanceDescriptor(final double accuracy) {
         if (accuracy < DISTANCE_THRESHOLD_WTF) {
             return IBeaconDistanceDescriptor.UNKNOWN;
@@ -0,0 +1,78 @@
+package com.blakequ.blelibrary.device.rssi;
+
+/**
+ * The auto regressive moving average filter commonly used for beacon ranging: every reading
+ * moves the estimate by a fixed fraction of its distance to the reading, whatever the time
+ * elapsed since the previous one.
+ */
+public final class ArmaRssiFilter implements RssiFilter {
+    /**
+     * The default fraction applied to every reading.
+     */
+    public static final double DEFAULT_COEFFICIENT = 0.1;
+
+    private final double mCoefficient;
+    private boolean mHasValue;
+    private double mEstimate;
+
+    public ArmaRssiFilter() {
+        this(DEFAULT_COEFFICIENT);
+    }
+
+    /**
+     * @param coefficient the fraction applied to every reading, greater than 0 and at most 1
+     */
+    public ArmaRssiFilter(final double coefficient) {
+        if (!(coefficient > 0 && coefficient <= 1)) {
+            throw new IllegalArgumentException("coefficient must be in (0, 1]: " + coefficient);
+        }
+        mCoefficient = coefficient;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#addReading(long, int)
+     */
+    @Override
+    public double addReading(final long timestamp, final int rssi) {
+        if (!mHasValue) {
+            mHasValue = true;
+            mEstimate = rssi;
+        } else {
+            mEstimate -= mCoefficient * (mEstimate - rssi);
+        }
+        return mEstimate;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#hasValue()
+     */
+    @Override
+    public boolean hasValue() {
+        return mHasValue;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#getFilteredRssi()
+     */
+    @Override
+    public double getFilteredRssi() {
+        return mHasValue ? mEstimate : 0;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#reset()
+     */
+    @Override
+    public void reset() {
+        mHasValue = false;
+        mEstimate = 0;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "ArmaRssiFilter [mCoefficient=" + mCoefficient + ", mEstimate=" + mEstimate + "]";
+    }
+}
@@ -0,0 +1,87 @@
+package com.blakequ.blelibrary.device.rssi;
+
+/**
+ * An exponential moving average weighted by time rather than by reading count.
+ * <p>
+ * The weight of a reading is {@code 1 - exp(-elapsed / timeConstant)}, so a device advertising
+ * at 10Hz is smoothed over the same time span as one advertising at 1Hz, and a reading
+ * following a long gap replaces most of the stale estimate.
+ */
+public final class ExponentialRssiFilter implements RssiFilter {
+    /**
+     * The default time constant, in milliseconds.
+     */
+    public static final long DEFAULT_TIME_CONSTANT = 2000;
+
+    private final double mTimeConstant;
+    private boolean mHasValue;
+    private double mEstimate;
+    private long mLastTimestamp;
+
+    public ExponentialRssiFilter() {
+        this(DEFAULT_TIME_CONSTANT);
+    }
+
+    /**
+     * @param timeConstant the time after which a reading weighs 1/e of its initial weight, in
+     *                     milliseconds, at least 1
+     */
+    public ExponentialRssiFilter(final long timeConstant) {
+        if (timeConstant < 1) {
+            throw new IllegalArgumentException("timeConstant must be at least 1: " + timeConstant);
+        }
+        mTimeConstant = timeConstant;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#addReading(long, int)
+     */
+    @Override
+    public double addReading(final long timestamp, final int rssi) {
+        if (!mHasValue) {
+            mHasValue = true;
+            mEstimate = rssi;
+        } else {
+            final long elapsed = Math.max(0, timestamp - mLastTimestamp);
+            // Readings sharing a timestamp are averaged as if they were a few ms apart
+            final double alpha = 1 - Math.exp(-Math.max(1, elapsed) / mTimeConstant);
+            mEstimate += alpha * (rssi - mEstimate);
+        }
+        mLastTimestamp = timestamp;
+        return mEstimate;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#hasValue()
+     */
+    @Override
+    public boolean hasValue() {
+        return mHasValue;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#getFilteredRssi()
+     */
+    @Override
+    public double getFilteredRssi() {
+        return mHasValue ? mEstimate : 0;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#reset()
+     */
+    @Override
+    public void reset() {
+        mHasValue = false;
+        mEstimate = 0;
+        mLastTimestamp = 0;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "ExponentialRssiFilter [mTimeConstant=" + mTimeConstant + ", mEstimate=" + mEstimate + "]";
+    }
+}
@@ -0,0 +1,101 @@
+package com.blakequ.blelibrary.device.rssi;
+
+/**
+ * A one dimensional Kalman filter assuming the true rssi stays constant between readings.
+ * <p>
+ * The estimate uncertainty grows with the time elapsed since the previous reading, so the
+ * filter follows a moving device quickly after a gap while staying smooth under a steady
+ * stream of adverts.
+ */
+public final class KalmanRssiFilter implements RssiFilter {
+    /**
+     * The default process noise, in dBm^2 per second.
+     */
+    public static final double DEFAULT_PROCESS_NOISE = 1.0;
+    /**
+     * The default measurement noise, in dBm^2.
+     */
+    public static final double DEFAULT_MEASUREMENT_NOISE = 16.0;
+
+    private final double mProcessNoise;
+    private final double mMeasurementNoise;
+    private boolean mHasValue;
+    private double mEstimate;
+    private double mErrorCovariance;
+    private long mLastTimestamp;
+
+    public KalmanRssiFilter() {
+        this(DEFAULT_PROCESS_NOISE, DEFAULT_MEASUREMENT_NOISE);
+    }
+
+    /**
+     * @param processNoise     how fast the true rssi may drift, in dBm^2 per second
+     * @param measurementNoise the variance of a single reading, in dBm^2
+     */
+    public KalmanRssiFilter(final double processNoise, final double measurementNoise) {
+        if (!(processNoise >= 0)) {
+            throw new IllegalArgumentException("processNoise must not be negative: " + processNoise);
+        }
+        if (!(measurementNoise > 0)) {
+            throw new IllegalArgumentException("measurementNoise must be positive: " + measurementNoise);
+        }
+        mProcessNoise = processNoise;
+        mMeasurementNoise = measurementNoise;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#addReading(long, int)
+     */
+    @Override
+    public double addReading(final long timestamp, final int rssi) {
+        if (!mHasValue) {
+            mHasValue = true;
+            mEstimate = rssi;
+            mErrorCovariance = mMeasurementNoise;
+        } else {
+            final long elapsed = Math.max(0, timestamp - mLastTimestamp);
+            final double predicted = mErrorCovariance + mProcessNoise * elapsed / 1000d;
+            final double gain = predicted / (predicted + mMeasurementNoise);
+            mEstimate += gain * (rssi - mEstimate);
+            mErrorCovariance = (1 - gain) * predicted;
+        }
+        mLastTimestamp = timestamp;
+        return mEstimate;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#hasValue()
+     */
+    @Override
+    public boolean hasValue() {
+        return mHasValue;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#getFilteredRssi()
+     */
+    @Override
+    public double getFilteredRssi() {
+        return mHasValue ? mEstimate : 0;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#reset()
+     */
+    @Override
+    public void reset() {
+        mHasValue = false;
+        mEstimate = 0;
+        mErrorCovariance = 0;
+        mLastTimestamp = 0;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "KalmanRssiFilter [mProcessNoise=" + mProcessNoise + ", mMeasurementNoise=" + mMeasurementNoise
+                + ", mEstimate=" + mEstimate + ", mErrorCovariance=" + mErrorCovariance + "]";
+    }
+}
@@ -0,0 +1,128 @@
+package com.blakequ.blelibrary.device.rssi;
+
+import java.util.Arrays;
+
+/**
+ * The median of the last readings, which unlike an average ignores the short deep fades a
+ * body or a door causes.
+ * <p>
+ * The window is kept as a ring of readings plus a Fenwick tree counting the readings of every
+ * possible rssi value, so adding a reading and finding the median both take
+ * {@code log2(256)} steps whatever the window size.
+ */
+public final class MedianRssiFilter implements RssiFilter {
+    /**
+     * The default number of readings.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 7;
+    private static final int MIN_RSSI = -128;
+    private static final int MAX_RSSI = 127;
+    private static final int DOMAIN_SIZE = MAX_RSSI - MIN_RSSI + 1;
+
+    private final byte[] mWindow;
+    // 1-based Fenwick tree over the rssi domain, slot 0 is unused
+    private final int[] mTree = new int[DOMAIN_SIZE + 1];
+    private int mStart;
+    private int mCount;
+    private double mMedian;
+
+    public MedianRssiFilter() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize the number of readings the median is taken over, at least 1
+     */
+    public MedianRssiFilter(final int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be at least 1: " + windowSize);
+        }
+        mWindow = new byte[windowSize];
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#addReading(long, int)
+     */
+    @Override
+    public double addReading(final long timestamp, final int rssi) {
+        final int capacity = mWindow.length;
+        final int index;
+        if (mCount == capacity) {
+            index = mStart;
+            update(mWindow[index] - MIN_RSSI, -1);
+            mStart = (mStart + 1) % capacity;
+        } else {
+            index = (mStart + mCount) % capacity;
+            mCount++;
+        }
+        final int value = Math.max(MIN_RSSI, Math.min(MAX_RSSI, rssi));
+        mWindow[index] = (byte) value;
+        update(value - MIN_RSSI, 1);
+
+        if ((mCount & 1) == 1) {
+            mMedian = select((mCount + 1) / 2);
+        } else {
+            mMedian = (select(mCount / 2) + select(mCount / 2 + 1)) / 2d;
+        }
+        return mMedian;
+    }
+
+    private void update(final int slot, final int delta) {
+        for (int i = slot + 1; i <= DOMAIN_SIZE; i += i & -i) {
+            mTree[i] += delta;
+        }
+    }
+
+    /**
+     * Finds the k-th smallest reading of the window.
+     *
+     * @param k the 1-based rank
+     * @return the reading
+     */
+    private int select(int k) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(DOMAIN_SIZE); step > 0; step >>= 1) {
+            final int next = position + step;
+            if (next <= DOMAIN_SIZE && mTree[next] < k) {
+                position = next;
+                k -= mTree[next];
+            }
+        }
+        return position + MIN_RSSI;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#hasValue()
+     */
+    @Override
+    public boolean hasValue() {
+        return mCount > 0;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#getFilteredRssi()
+     */
+    @Override
+    public double getFilteredRssi() {
+        return mCount == 0 ? 0 : mMedian;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilter#reset()
+     */
+    @Override
+    public void reset() {
+        Arrays.fill(mTree, 0);
+        mStart = 0;
+        mCount = 0;
+        mMedian = 0;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "MedianRssiFilter [windowSize=" + mWindow.length + ", mCount=" + mCount + ", mMedian=" + mMedian + "]";
+    }
+}
@@ -0,0 +1,51 @@
+package com.blakequ.blelibrary.device.rssi;
+
+/**
+ * A streaming filter smoothing the RSSI readings of a single device.
+ * <p>
+ * Implementations keep their state in fields allocated up front, so feeding a reading never
+ * allocates. They are not thread safe; the owner of a filter must serialise access to it.
+ */
+public interface RssiFilter {
+
+    /**
+     * Feeds a reading to the filter.
+     *
+     * @param timestamp the timestamp of the reading in milliseconds
+     * @param rssi      the reading
+     * @return the filtered rssi after this reading
+     */
+    double addReading(long timestamp, int rssi);
+
+    /**
+     * Checks if at least one reading was fed since the last {@link #reset()}.
+     *
+     * @return true if {@link #getFilteredRssi()} holds a value
+     */
+    boolean hasValue();
+
+    /**
+     * Gets the filtered rssi.
+     *
+     * @return the filtered rssi, or 0 if there is no reading
+     */
+    double getFilteredRssi();
+
+    /**
+     * Forgets every reading.
+     */
+    void reset();
+
+    /**
+     * Creates a new filter for every device, as a filter holds the state of a single device.
+     */
+    interface Factory {
+
+        /**
+         * Creates a new filter.
+         *
+         * @return the filter
+         */
+        RssiFilter newFilter();
+    }
+}
@@ -0,0 +1,99 @@
+package com.blakequ.blelibrary.device.rssi;
+
+/**
+ * Factories of the built in {@link RssiFilter}s, to be set on a region so every device it
+ * matches gets its own filter.
+ */
+public class RssiFilters {
+
+    private RssiFilters() {
+        // TO AVOID INSTANTIATION
+    }
+
+    /**
+     * @return a factory of {@link KalmanRssiFilter}s with the default noise
+     */
+    public static RssiFilter.Factory kalman() {
+        return kalman(KalmanRssiFilter.DEFAULT_PROCESS_NOISE, KalmanRssiFilter.DEFAULT_MEASUREMENT_NOISE);
+    }
+
+    /**
+     * @param processNoise     how fast the true rssi may drift, in dBm^2 per second
+     * @param measurementNoise the variance of a single reading, in dBm^2
+     * @return a factory of {@link KalmanRssiFilter}s
+     */
+    public static RssiFilter.Factory kalman(final double processNoise, final double measurementNoise) {
+        // Fail now rather than on the first matched device
+        new KalmanRssiFilter(processNoise, measurementNoise);
+        return new RssiFilter.Factory() {
+            @Override
+            public RssiFilter newFilter() {
+                return new KalmanRssiFilter(processNoise, measurementNoise);
+            }
+        };
+    }
+
+    /**
+     * @return a factory of {@link ArmaRssiFilter}s with the default coefficient
+     */
+    public static RssiFilter.Factory arma() {
+        return arma(ArmaRssiFilter.DEFAULT_COEFFICIENT);
+    }
+
+    /**
+     * @param coefficient the fraction applied to every reading, greater than 0 and at most 1
+     * @return a factory of {@link ArmaRssiFilter}s
+     */
+    public static RssiFilter.Factory arma(final double coefficient) {
+        new ArmaRssiFilter(coefficient);
+        return new RssiFilter.Factory() {
+            @Override
+            public RssiFilter newFilter() {
+                return new ArmaRssiFilter(coefficient);
+            }
+        };
+    }
+
+    /**
+     * @return a factory of {@link ExponentialRssiFilter}s with the default time constant
+     */
+    public static RssiFilter.Factory exponential() {
+        return exponential(ExponentialRssiFilter.DEFAULT_TIME_CONSTANT);
+    }
+
+    /**
+     * @param timeConstant the time after which a reading weighs 1/e of its initial weight, in
+     *                     milliseconds, at least 1
+     * @return a factory of {@link ExponentialRssiFilter}s
+     */
+    public static RssiFilter.Factory exponential(final long timeConstant) {
+        new ExponentialRssiFilter(timeConstant);
+        return new RssiFilter.Factory() {
+            @Override
+            public RssiFilter newFilter() {
+                return new ExponentialRssiFilter(timeConstant);
+            }
+        };
+    }
+
+    /**
+     * @return a factory of {@link MedianRssiFilter}s with the default window
+     */
+    public static RssiFilter.Factory median() {
+        return median(MedianRssiFilter.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize the number of readings the median is taken over, at least 1
+     * @return a factory of {@link MedianRssiFilter}s
+     */
+    public static RssiFilter.Factory median(final int windowSize) {
+        new MedianRssiFilter(windowSize);
+        return new RssiFilter.Factory() {
+            @Override
+            public RssiFilter newFilter() {
+                return new MedianRssiFilter(windowSize);
+            }
+        };
+    }
+}
@@ -0,0 +1,262 @@
+package com.blakequ.blelibrary.util;
+
+/**
+ * Validates the AD structures of a scan record and decodes the fields a scan record
+ * reports: flags, service UUIDs, local name, tx power level, service data and manufacturer
+ * specific data.
+ * <p>
+ * Fields are handed to a {@link Visitor} as plain values and windows of the scan record, so
+ * each platform builds the containers it needs, see {@link AdvertisementFields} for plain
+ * Java ones. Nothing is copied out of the record here.
+ * <p>
+ * The format is defined in Bluetooth 4.1 specification, Volume 3, Part C, Section 11 and 18.
+ * All numerical multi-byte entities and values use little-endian byte order.
+ */
+public final class AdvertisementDecoder {
+    // The following data type values are assigned by Bluetooth SIG.
+    // For more details refer to Bluetooth 4.1 specification, Volume 3, Part C, Section 18.
+    public static final int DATA_TYPE_FLAGS = 0x01;
+    public static final int DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL = 0x02;
+    public static final int DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE = 0x03;
+    public static final int DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL = 0x04;
+    public static final int DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE = 0x05;
+    public static final int DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL = 0x06;
+    public static final int DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE = 0x07;
+    public static final int DATA_TYPE_LOCAL_NAME_SHORT = 0x08;
+    public static final int DATA_TYPE_LOCAL_NAME_COMPLETE = 0x09;
+    public static final int DATA_TYPE_TX_POWER_LEVEL = 0x0A;
+    public static final int DATA_TYPE_SERVICE_DATA = 0x16;
+    public static final int DATA_TYPE_MANUFACTURER_SPECIFIC_DATA = 0xFF;
+
+    /**
+     * Length of bytes for 16 bit UUID
+     */
+    public static final int UUID_BYTES_16_BIT = 2;
+    /**
+     * Length of bytes for 32 bit UUID
+     */
+    public static final int UUID_BYTES_32_BIT = 4;
+    /**
+     * Length of bytes for 128 bit UUID
+     */
+    public static final int UUID_BYTES_128_BIT = 16;
+
+    // 00000000-0000-1000-8000-00805F9B34FB, 16 and 32 bit UUIDs are added to it
+    private static final long BASE_UUID_MSB = 0x0000000000001000L;
+    private static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+    /**
+     * Receives the fields of a scan record in the order of its AD structures. A field
+     * repeated in the record is reported every time it is found.
+     */
+    public interface Visitor {
+        void onFlags(int flags);
+
+        /**
+         * @param mostSignificantBits  the high bits of the 128 bit form of the UUID
+         * @param leastSignificantBits the low bits of the 128 bit form of the UUID
+         */
+        void onServiceUuid(long mostSignificantBits, long leastSignificantBits);
+
+        void onLocalName(String name);
+
+        void onTxPowerLevel(int txPowerLevel);
+
+        /**
+         * @param uuidMostSignificantBits  the high bits of the 128 bit form of the 16 bit
+         *                                 service data UUID
+         * @param uuidLeastSignificantBits the low bits of the 128 bit form of the UUID
+         * @param source                   the scan record
+         * @param offset                   the offset of the data after the UUID
+         * @param length                   the length of the data
+         */
+        void onServiceData(long uuidMostSignificantBits, long uuidLeastSignificantBits,
+                           byte[] source, int offset, int length);
+
+        /**
+         * @param manufacturerId the company identifier
+         * @param source         the scan record
+         * @param offset         the offset of the data after the company identifier
+         * @param length         the length of the data
+         */
+        void onManufacturerData(int manufacturerId, byte[] source, int offset, int length);
+    }
+
+    private AdvertisementDecoder(){
+        // TO AVOID INSTANTIATION
+    }
+
+    /**
+     * Decodes the fields of a scan record. A rejected record is counted in
+     * {@link ParseStatus} and none of its fields are reported.
+     *
+     * @param parsed  the AD structures of the scan record
+     * @param visitor receives the fields
+     * @return {@link ParseStatus#OK}, or the reason the record was rejected
+     */
+    public static int decode(final ParsedAdvertisement parsed, final Visitor visitor) {
+        final int status = validate(parsed);
+        if (status != ParseStatus.OK) {
+            // Only the records rejected are counted, not every cut one
+            ParseStatus.record(status);
+            return status;
+        }
+
+        final byte[] scanRecord = parsed.getBytes();
+        final int count = parsed.getStructureCount();
+        for (int i = 0; i < count; i++) {
+            final int currentPos = parsed.getDataOffset(i);
+            final int dataLength = parsed.getDataLength(i);
+            switch (parsed.getType(i)) {
+                case DATA_TYPE_FLAGS:
+                    if (dataLength > 0) {
+                        visitor.onFlags(scanRecord[currentPos] & 0xFF);
+                    }
+                    break;
+                case DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL:
+                case DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE:
+                    decodeUuidList(scanRecord, currentPos, dataLength, UUID_BYTES_16_BIT, visitor);
+                    break;
+                case DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL:
+                case DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE:
+                    decodeUuidList(scanRecord, currentPos, dataLength, UUID_BYTES_32_BIT, visitor);
+                    break;
+                case DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL:
+                case DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE:
+                    decodeUuidList(scanRecord, currentPos, dataLength, UUID_BYTES_128_BIT, visitor);
+                    break;
+                case DATA_TYPE_LOCAL_NAME_SHORT:
+                case DATA_TYPE_LOCAL_NAME_COMPLETE:
+                    visitor.onLocalName(new String(scanRecord, currentPos, dataLength));
+                    break;
+                case DATA_TYPE_TX_POWER_LEVEL:
+                    if (dataLength > 0) {
+                        visitor.onTxPowerLevel(scanRecord[currentPos]);
+                    }
+                    break;
+                case DATA_TYPE_SERVICE_DATA:
+                    // The first two bytes of the service data are service data UUID in little
+                    // endian. The rest bytes are service data.
+                    visitor.onServiceData(getUuidMostSignificantBits(scanRecord, currentPos, UUID_BYTES_16_BIT),
+                            BASE_UUID_LSB, scanRecord, currentPos + UUID_BYTES_16_BIT,
+                            dataLength - UUID_BYTES_16_BIT);
+                    break;
+                case DATA_TYPE_MANUFACTURER_SPECIFIC_DATA:
+                    // The first two bytes of the manufacturer specific data are
+                    // manufacturer ids in little endian.
+                    visitor.onManufacturerData(ByteReader.uint16LE(scanRecord, currentPos),
+                            scanRecord, currentPos + 2, dataLength - 2);
+                    break;
+                default:
+                    // Just ignore, we don't handle such data type.
+                    break;
+            }
+        }
+        return ParseStatus.OK;
+    }
+
+    /**
+     * Checks that every AD structure whose contents are decoded is long enough for its type,
+     * so it can be read without any further bounds check. Structures of other types are
+     * never rejected, even when the end of the record cuts them. Nothing is counted in
+     * {@link ParseStatus}. This walks the whole record.
+     *
+     * @param parsed the AD structures of the scan record
+     * @return {@link ParseStatus#OK}, or the reason of the first structure rejected
+     */
+    public static int validate(final ParsedAdvertisement parsed) {
+        final int count = parsed.getStructureCount();
+        // Only the last structure can be cut by the end of the record
+        final int truncatedIndex = parsed.isMalformed() ? count - 1 : -1;
+        for (int i = 0; i < count; i++) {
+            final int status = validate(parsed.getType(i), parsed.getDataLength(i), i == truncatedIndex);
+            if (status != ParseStatus.OK) {
+                return status;
+            }
+        }
+        return ParseStatus.OK;
+    }
+
+    private static int validate(final int type, final int dataLength, final boolean truncated) {
+        switch (type) {
+            case DATA_TYPE_FLAGS:
+            case DATA_TYPE_TX_POWER_LEVEL:
+                // Empty ones are skipped, a cut one is only rejected if its byte is missing
+                return truncated && dataLength < 1 ? ParseStatus.TRUNCATED : ParseStatus.OK;
+            case DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL:
+            case DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE:
+                return validateUuidList(dataLength, UUID_BYTES_16_BIT, truncated);
+            case DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL:
+            case DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE:
+                return validateUuidList(dataLength, UUID_BYTES_32_BIT, truncated);
+            case DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL:
+            case DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE:
+                return validateUuidList(dataLength, UUID_BYTES_128_BIT, truncated);
+            case DATA_TYPE_LOCAL_NAME_SHORT:
+            case DATA_TYPE_LOCAL_NAME_COMPLETE:
+                return truncated ? ParseStatus.TRUNCATED : ParseStatus.OK;
+            case DATA_TYPE_SERVICE_DATA:
+                if (truncated) {
+                    return ParseStatus.TRUNCATED;
+                }
+                return dataLength < UUID_BYTES_16_BIT ? ParseStatus.INVALID_LENGTH : ParseStatus.OK;
+            case DATA_TYPE_MANUFACTURER_SPECIFIC_DATA:
+                if (truncated) {
+                    return ParseStatus.TRUNCATED;
+                }
+                return dataLength < 2 ? ParseStatus.INVALID_LENGTH : ParseStatus.OK;
+            default:
+                return ParseStatus.OK;
+        }
+    }
+
+    private static int validateUuidList(final int dataLength, final int uuidLength, final boolean truncated) {
+        if (truncated) {
+            return ParseStatus.TRUNCATED;
+        }
+        return dataLength % uuidLength != 0 ? ParseStatus.INVALID_UUID_LIST : ParseStatus.OK;
+    }
+
+    private static void decodeUuidList(final byte[] scanRecord, int currentPos, int dataLength,
+                                       final int uuidLength, final Visitor visitor) {
+        while (dataLength > 0) {
+            visitor.onServiceUuid(getUuidMostSignificantBits(scanRecord, currentPos, uuidLength),
+                    getUuidLeastSignificantBits(scanRecord, currentPos, uuidLength));
+            dataLength -= uuidLength;
+            currentPos += uuidLength;
+        }
+    }
+
+    /**
+     * Reads the high bits of the 128 bit form of a 16, 32 or 128 bit UUID, the caller checks
+     * the bounds. 16 and 32 bit UUIDs are converted as uuid * 2^96 + BASE_UUID.
+     *
+     * @param source the array holding the UUID
+     * @param offset the offset of the UUID
+     * @param length the length of the UUID, 2, 4 or 16 bytes
+     * @return the most significant bits
+     */
+    public static long getUuidMostSignificantBits(final byte[] source, final int offset, final int length) {
+        switch (length) {
+            case UUID_BYTES_16_BIT:
+                return BASE_UUID_MSB | ((long) ByteReader.uint16LE(source, offset) << 32);
+            case UUID_BYTES_32_BIT:
+                return BASE_UUID_MSB + ((ByteReader.int32LE(source, offset) & 0xFFFFFFFFL) << 32);
+            default:
+                return ByteReader.int64LE(source, offset + 8);
+        }
+    }
+
+    /**
+     * Reads the low bits of the 128 bit form of a 16, 32 or 128 bit UUID, see
+     * {@link #getUuidMostSignificantBits(byte[], int, int)}.
+     *
+     * @param source the array holding the UUID
+     * @param offset the offset of the UUID
+     * @param length the length of the UUID, 2, 4 or 16 bytes
+     * @return the least significant bits
+     */
+    public static long getUuidLeastSignificantBits(final byte[] source, final int offset, final int length) {
+        return length == UUID_BYTES_128_BIT ? ByteReader.int64LE(source, offset) : BASE_UUID_LSB;
+    }
+}
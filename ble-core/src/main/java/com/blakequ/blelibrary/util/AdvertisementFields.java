@@ -0,0 +1,158 @@
+package com.blakequ.blelibrary.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The fields of a scan record in plain Java types, for code running off the device such as
+ * tools reprocessing recorded scans. Decoded and validated by {@link AdvertisementDecoder},
+ * as the Android {@code ScanRecordCompat} is.
+ */
+public final class AdvertisementFields implements AdvertisementDecoder.Visitor {
+    private int mAdvertiseFlags = -1;
+    private List<UUID> mServiceUuids;
+    private Map<Integer, byte[]> mManufacturerSpecificData;
+    private Map<UUID, byte[]> mServiceData;
+    private int mTxPowerLevel = Integer.MIN_VALUE;
+    private String mDeviceName;
+    private int mParseStatus;
+
+    private AdvertisementFields() {
+    }
+
+    /**
+     * Decodes the fields of a scan record.
+     *
+     * @param scanRecord the scan record of Bluetooth LE advertisement and/or scan response
+     * @return the fields, or null if scanRecord is null
+     */
+    public static AdvertisementFields parse(final byte[] scanRecord) {
+        if (scanRecord == null) {
+            return null;
+        }
+        return parse(ParsedAdvertisement.parse(scanRecord));
+    }
+
+    /**
+     * Decodes the fields of AD structures which have already been parsed.
+     *
+     * @param parsed the AD structures of a scan record
+     * @return the fields
+     */
+    public static AdvertisementFields parse(final ParsedAdvertisement parsed) {
+        final AdvertisementFields fields = new AdvertisementFields();
+        fields.mParseStatus = AdvertisementDecoder.decode(parsed, fields);
+        if (fields.mParseStatus == ParseStatus.OK) {
+            if (fields.mManufacturerSpecificData == null) {
+                fields.mManufacturerSpecificData = Collections.emptyMap();
+            }
+            if (fields.mServiceData == null) {
+                fields.mServiceData = Collections.emptyMap();
+            }
+        }
+        return fields;
+    }
+
+    @Override
+    public void onFlags(final int flags) {
+        mAdvertiseFlags = flags;
+    }
+
+    @Override
+    public void onServiceUuid(final long mostSignificantBits, final long leastSignificantBits) {
+        if (mServiceUuids == null) {
+            mServiceUuids = new ArrayList<>();
+        }
+        mServiceUuids.add(new UUID(mostSignificantBits, leastSignificantBits));
+    }
+
+    @Override
+    public void onLocalName(final String name) {
+        mDeviceName = name;
+    }
+
+    @Override
+    public void onTxPowerLevel(final int txPowerLevel) {
+        mTxPowerLevel = txPowerLevel;
+    }
+
+    @Override
+    public void onServiceData(final long uuidMostSignificantBits, final long uuidLeastSignificantBits,
+                              final byte[] source, final int offset, final int length) {
+        if (mServiceData == null) {
+            mServiceData = new LinkedHashMap<>();
+        }
+        mServiceData.put(new UUID(uuidMostSignificantBits, uuidLeastSignificantBits),
+                copyOfRange(source, offset, length));
+    }
+
+    @Override
+    public void onManufacturerData(final int manufacturerId, final byte[] source, final int offset, final int length) {
+        if (mManufacturerSpecificData == null) {
+            mManufacturerSpecificData = new LinkedHashMap<>();
+        }
+        mManufacturerSpecificData.put(manufacturerId, copyOfRange(source, offset, length));
+    }
+
+    private static byte[] copyOfRange(final byte[] source, final int offset, final int length) {
+        final byte[] bytes = new byte[length];
+        System.arraycopy(source, offset, bytes, 0, length);
+        return bytes;
+    }
+
+    /**
+     * Returns the advertising flags, or -1 if the flag field is not set.
+     */
+    public int getAdvertiseFlags() {
+        return mAdvertiseFlags;
+    }
+
+    /**
+     * Returns the service UUIDs in the order of the record, or null if there are none.
+     */
+    public List<UUID> getServiceUuids() {
+        return mServiceUuids;
+    }
+
+    /**
+     * Returns the manufacturer specific data by manufacturer id, or null if the record was
+     * rejected.
+     */
+    public Map<Integer, byte[]> getManufacturerSpecificData() {
+        return mManufacturerSpecificData;
+    }
+
+    /**
+     * Returns the service data by service data UUID, or null if the record was rejected.
+     */
+    public Map<UUID, byte[]> getServiceData() {
+        return mServiceData;
+    }
+
+    /**
+     * Returns the transmission power level in dBm, or {@link Integer#MIN_VALUE} if the field
+     * is not set.
+     */
+    public int getTxPowerLevel() {
+        return mTxPowerLevel;
+    }
+
+    /**
+     * Returns the local name of the device, or null if the field is not set.
+     */
+    public String getDeviceName() {
+        return mDeviceName;
+    }
+
+    /**
+     * Returns {@link ParseStatus#OK}, or the reason the scan record was rejected. A rejected
+     * record reports no fields.
+     */
+    public int getParseStatus() {
+        return mParseStatus;
+    }
+}
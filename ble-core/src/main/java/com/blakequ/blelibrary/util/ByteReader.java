@@ -0,0 +1,293 @@
+package com.blakequ.blelibrary.util;
+
+/**
+ * A cursor over a window of a byte array, reading fixed width values in place.
+ * <p>
+ * Nothing is copied: the reader keeps the array, the window and a position, and can be
+ * pointed at another window with {@link #reset(byte[], int, int)} to be reused across
+ * packets. Relative reads ({@code readXxx}) advance the position, absolute reads
+ * ({@code getXxx}) take an index from the start of the window. Both throw an
+ * {@link IndexOutOfBoundsException} rather than read outside the window.
+ * <p>
+ * The static methods read at a position of an array the caller has already checked, for
+ * hot paths which must not allocate a reader.
+ */
+public final class ByteReader {
+    private byte[] mSource;
+    private int mStart;
+    private int mLimit;
+    private int mPosition;
+
+    /**
+     * Creates a reader over an empty window, call {@link #reset(byte[], int, int)} before
+     * reading.
+     */
+    public ByteReader() {
+        this(new byte[0], 0, 0);
+    }
+
+    /**
+     * Creates a reader over a whole array.
+     *
+     * @param source the array
+     */
+    public ByteReader(final byte[] source) {
+        this(source, 0, source.length);
+    }
+
+    /**
+     * Creates a reader over a window of an array.
+     *
+     * @param source the array
+     * @param offset the start of the window
+     * @param length the length of the window
+     */
+    public ByteReader(final byte[] source, final int offset, final int length) {
+        reset(source, offset, length);
+    }
+
+    /**
+     * Points the reader at another window, with the position at its start.
+     *
+     * @param source the array
+     * @param offset the start of the window
+     * @param length the length of the window
+     * @return this reader
+     * @throws IndexOutOfBoundsException if the window is not inside the array
+     */
+    public ByteReader reset(final byte[] source, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset > source.length - length) {
+            throw new IndexOutOfBoundsException("window " + offset + "+" + length
+                    + " outside array of " + source.length);
+        }
+        mSource = source;
+        mStart = offset;
+        mLimit = offset + length;
+        mPosition = offset;
+        return this;
+    }
+
+    /**
+     * Gets the array the reader reads from.
+     *
+     * @return the array
+     */
+    public byte[] getSource() {
+        return mSource;
+    }
+
+    /**
+     * Gets the position in the array of the next relative read.
+     *
+     * @return the absolute position
+     */
+    public int getArrayPosition() {
+        return mPosition;
+    }
+
+    /**
+     * Gets the position of the next relative read, from the start of the window.
+     *
+     * @return the position
+     */
+    public int getPosition() {
+        return mPosition - mStart;
+    }
+
+    /**
+     * Moves the position of the next relative read.
+     *
+     * @param position the position, from the start of the window
+     * @throws IndexOutOfBoundsException if the position is outside the window
+     */
+    public void setPosition(final int position) {
+        if (position < 0 || position > mLimit - mStart) {
+            throw new IndexOutOfBoundsException("position " + position + " outside window of "
+                    + (mLimit - mStart));
+        }
+        mPosition = mStart + position;
+    }
+
+    /**
+     * Gets the length of the window.
+     *
+     * @return the length
+     */
+    public int length() {
+        return mLimit - mStart;
+    }
+
+    /**
+     * Gets the number of bytes left for relative reads.
+     *
+     * @return the remaining bytes
+     */
+    public int remaining() {
+        return mLimit - mPosition;
+    }
+
+    /**
+     * Skips bytes.
+     *
+     * @param count the number of bytes to skip
+     * @throws IndexOutOfBoundsException if fewer bytes remain
+     */
+    public void skip(final int count) {
+        mPosition = advance(count);
+    }
+
+    /*
+     * Returns the array position of a relative read of width bytes and moves past it.
+     */
+    private int advance(final int width) {
+        final int pos = mPosition;
+        if (width < 0 || width > mLimit - pos) {
+            throw new IndexOutOfBoundsException("read of " + width + " bytes with "
+                    + (mLimit - pos) + " remaining");
+        }
+        mPosition = pos + width;
+        return pos;
+    }
+
+    /*
+     * Returns the array position of an absolute read of width bytes.
+     */
+    private int at(final int index, final int width) {
+        if (index < 0 || index > mLimit - mStart - width) {
+            throw new IndexOutOfBoundsException("read of " + width + " bytes at " + index
+                    + " outside window of " + (mLimit - mStart));
+        }
+        return mStart + index;
+    }
+
+    public int readUInt8() {
+        return mSource[advance(1)] & 0xFF;
+    }
+
+    public int readInt8() {
+        return mSource[advance(1)];
+    }
+
+    public int readUInt16LE() {
+        return uint16LE(mSource, advance(2));
+    }
+
+    public int readUInt16BE() {
+        return uint16BE(mSource, advance(2));
+    }
+
+    public int readInt32LE() {
+        return int32LE(mSource, advance(4));
+    }
+
+    public int readInt32BE() {
+        return int32BE(mSource, advance(4));
+    }
+
+    public long readInt64LE() {
+        return int64LE(mSource, advance(8));
+    }
+
+    public long readInt64BE() {
+        return int64BE(mSource, advance(8));
+    }
+
+    public int getUInt8(final int index) {
+        return mSource[at(index, 1)] & 0xFF;
+    }
+
+    public int getInt8(final int index) {
+        return mSource[at(index, 1)];
+    }
+
+    public int getUInt16LE(final int index) {
+        return uint16LE(mSource, at(index, 2));
+    }
+
+    public int getUInt16BE(final int index) {
+        return uint16BE(mSource, at(index, 2));
+    }
+
+    public int getInt32LE(final int index) {
+        return int32LE(mSource, at(index, 4));
+    }
+
+    public int getInt32BE(final int index) {
+        return int32BE(mSource, at(index, 4));
+    }
+
+    public long getInt64LE(final int index) {
+        return int64LE(mSource, at(index, 8));
+    }
+
+    public long getInt64BE(final int index) {
+        return int64BE(mSource, at(index, 8));
+    }
+
+    /**
+     * Gets the most significant bits of a 128 bit UUID sent little endian, as Bluetooth
+     * does in AD structures.
+     *
+     * @param index the index of the first UUID byte
+     * @return the most significant bits
+     */
+    public long getUuidMostSignificantBitsLE(final int index) {
+        return int64LE(mSource, at(index, 16) + 8);
+    }
+
+    /**
+     * Gets the least significant bits of a 128 bit UUID sent little endian.
+     *
+     * @param index the index of the first UUID byte
+     * @return the least significant bits
+     */
+    public long getUuidLeastSignificantBitsLE(final int index) {
+        return int64LE(mSource, at(index, 16));
+    }
+
+    /**
+     * Gets the most significant bits of a 128 bit UUID sent big endian, as iBeacon does.
+     *
+     * @param index the index of the first UUID byte
+     * @return the most significant bits
+     */
+    public long getUuidMostSignificantBitsBE(final int index) {
+        return int64BE(mSource, at(index, 16));
+    }
+
+    /**
+     * Gets the least significant bits of a 128 bit UUID sent big endian.
+     *
+     * @param index the index of the first UUID byte
+     * @return the least significant bits
+     */
+    public long getUuidLeastSignificantBitsBE(final int index) {
+        return int64BE(mSource, at(index, 16) + 8);
+    }
+
+    public static int uint16LE(final byte[] source, final int pos) {
+        return (source[pos] & 0xFF) | ((source[pos + 1] & 0xFF) << 8);
+    }
+
+    public static int uint16BE(final byte[] source, final int pos) {
+        return ((source[pos] & 0xFF) << 8) | (source[pos + 1] & 0xFF);
+    }
+
+    public static int int32LE(final byte[] source, final int pos) {
+        return (source[pos] & 0xFF) | ((source[pos + 1] & 0xFF) << 8)
+                | ((source[pos + 2] & 0xFF) << 16) | (source[pos + 3] << 24);
+    }
+
+    public static int int32BE(final byte[] source, final int pos) {
+        return (source[pos] << 24) | ((source[pos + 1] & 0xFF) << 16)
+                | ((source[pos + 2] & 0xFF) << 8) | (source[pos + 3] & 0xFF);
+    }
+
+    public static long int64LE(final byte[] source, final int pos) {
+        return (int32LE(source, pos) & 0xFFFFFFFFL) | ((long) int32LE(source, pos + 4) << 32);
+    }
+
+    public static long int64BE(final byte[] source, final int pos) {
+        return ((long) int32BE(source, pos) << 32) | (int32BE(source, pos + 4) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,258 @@
+package com.blakequ.blelibrary.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A map from primitive long keys to objects, stored in two parallel arrays with open addressing
+ * and linear probing, so neither a lookup nor an update of an existing key allocates.
+ * <p>
+ * A slot is free when its value is null, so null values are not allowed. Removal shifts the
+ * following entries back instead of leaving tombstones, which keeps probe sequences short under
+ * constant churn.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <V> the type of the values
+ */
+public final class LongObjectHashMap<V> {
+    private static final int MIN_CAPACITY = 8;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private int mMask;
+    private int mSize;
+    private int mResizeThreshold;
+
+    public LongObjectHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of entries which fit without resizing
+     */
+    public LongObjectHashMap(final int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(final int size) {
+        // Keep the load factor at or under 1/2
+        final long wanted = Math.max(MIN_CAPACITY, (long) size * 2);
+        if (wanted > MAX_CAPACITY) {
+            throw new IllegalStateException("too many entries: " + size);
+        }
+        return Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+
+    private void allocate(final int capacity) {
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mMask = capacity - 1;
+        mResizeThreshold = capacity / 2;
+    }
+
+    private static int hash(final long key) {
+        // Finalizer of MurmurHash3, spreads the entropy of every key bit to the low bits
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private int indexOf(final long key) {
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        int index = hash(key) & mMask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mMask;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the key is not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : (V) mValues[index];
+    }
+
+    /**
+     * Checks if a key is mapped.
+     *
+     * @param key the key
+     * @return true if the key is mapped
+     */
+    public boolean containsKey(final long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Maps a key to a value, replacing the previous value.
+     *
+     * @param key   the key
+     * @param value the value, not null
+     * @return the previous value, or null if the key was not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value) {
+        if (value == null) {
+            throw new NullPointerException("value may not be null");
+        }
+        int index = hash(key) & mMask;
+        while (mValues[index] != null) {
+            if (mKeys[index] == key) {
+                final V previous = (V) mValues[index];
+                mValues[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mMask;
+        }
+        mKeys[index] = key;
+        mValues[index] = value;
+        if (++mSize > mResizeThreshold) {
+            rehash(capacityFor(mSize));
+        }
+        return null;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = mKeys;
+        final Object[] oldValues = mValues;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = hash(oldKeys[i]) & mMask;
+                while (mValues[index] != null) {
+                    index = (index + 1) & mMask;
+                }
+                mKeys[index] = oldKeys[i];
+                mValues[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key
+     * @return the removed value, or null if the key was not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        final int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        final V previous = (V) mValues[index];
+        removeAt(index);
+        return previous;
+    }
+
+    private void removeAt(int gap) {
+        // Move back every entry of the probe run which could not be found past the new gap
+        int index = (gap + 1) & mMask;
+        while (mValues[index] != null) {
+            final int home = hash(mKeys[index]) & mMask;
+            if (((index - home) & mMask) >= ((index - gap) & mMask)) {
+                mKeys[gap] = mKeys[index];
+                mValues[gap] = mValues[index];
+                gap = index;
+            }
+            index = (index + 1) & mMask;
+        }
+        mKeys[gap] = 0;
+        mValues[gap] = null;
+        mSize--;
+    }
+
+    /**
+     * Gets the number of mapped keys.
+     *
+     * @return the size
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Checks if no key is mapped.
+     *
+     * @return true if the map is empty
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Removes every key, keeping the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill(mKeys, 0);
+        Arrays.fill(mValues, null);
+        mSize = 0;
+    }
+
+    /**
+     * Copies the mapped keys, in no particular order.
+     *
+     * @return a new array of {@link #size()} keys
+     */
+    public long[] keys() {
+        final long[] keys = new long[mSize];
+        int count = 0;
+        for (int i = 0; i < mValues.length; i++) {
+            if (mValues[i] != null) {
+                keys[count++] = mKeys[i];
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Adds the values to a collection, in no particular order.
+     *
+     * @param out the collection to add to
+     * @return the collection
+     */
+    @SuppressWarnings("unchecked")
+    public <C extends Collection<? super V>> C values(final C out) {
+        for (int i = 0; i < mValues.length; i++) {
+            if (mValues[i] != null) {
+                out.add((V) mValues[i]);
+            }
+        }
+        return out;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < mValues.length; i++) {
+            if (mValues[i] != null) {
+                if (builder.length() > 1) {
+                    builder.append(", ");
+                }
+                builder.append(mKeys[i]).append('=').append(mValues[i]);
+            }
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,91 @@
+package com.blakequ.blelibrary.util;
+
+/**
+ * Converts Bluetooth MAC addresses between their "00:11:22:AA:BB:CC" string form and a
+ * long holding the 48 bit value, so addresses can be stored in primitive arrays and
+ * compared without strings.
+ */
+public final class MacAddress {
+    /**
+     * Returned by {@link #parse(String)} for a string which is not a MAC address.
+     */
+    public static final long INVALID = -1L;
+
+    private static final int STRING_LENGTH = 17;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private MacAddress(){
+        // TO AVOID INSTANTIATION
+    }
+
+    /**
+     * Parses a MAC address, upper or lower case, without allocating.
+     *
+     * @param address the address, for example "00:11:22:AA:BB:CC"
+     * @return the 48 bit value, or {@link #INVALID}
+     */
+    public static long parse(final String address) {
+        return parse(address, true);
+    }
+
+    /**
+     * Parses a MAC address in the upper case form {@code BluetoothAdapter#checkBluetoothAddress}
+     * accepts, without allocating. Two addresses parsed this way are equal exactly when their
+     * strings are.
+     *
+     * @param address the address, for example "00:11:22:AA:BB:CC"
+     * @return the 48 bit value, or {@link #INVALID} for a lower case or malformed address
+     */
+    public static long parseUpperCase(final String address) {
+        return parse(address, false);
+    }
+
+    private static long parse(final String address, final boolean lowerCase) {
+        if (address == null || address.length() != STRING_LENGTH) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = 0; i < STRING_LENGTH; i += 3) {
+            final int high = hexValue(address.charAt(i), lowerCase);
+            final int low = hexValue(address.charAt(i + 1), lowerCase);
+            if (high < 0 || low < 0 || (i + 2 < STRING_LENGTH && address.charAt(i + 2) != ':')) {
+                return INVALID;
+            }
+            value = (value << 8) | (high << 4) | low;
+        }
+        return value;
+    }
+
+    private static int hexValue(final char c, final boolean lowerCase) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        if (lowerCase && c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Formats a MAC address the way {@code android.bluetooth.BluetoothDevice#getAddress()}
+     * does, upper case with colons.
+     *
+     * @param address the 48 bit value
+     * @return the address string
+     */
+    public static String toString(final long address) {
+        final char[] chars = new char[STRING_LENGTH];
+        for (int i = 0, shift = 40; i < STRING_LENGTH; i += 3, shift -= 8) {
+            final int b = (int) (address >>> shift) & 0xFF;
+            chars[i] = HEX_DIGITS[b >>> 4];
+            chars[i + 1] = HEX_DIGITS[b & 0x0F];
+            if (i + 2 < STRING_LENGTH) {
+                chars[i + 2] = ':';
+            }
+        }
+        return new String(chars);
+    }
+}
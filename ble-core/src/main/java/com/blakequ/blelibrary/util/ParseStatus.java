@@ -0,0 +1,99 @@
+package com.blakequ.blelibrary.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Outcome of parsing a scan record, and process wide counters of the parse errors seen.
+ * <p>
+ * Malformed packets are common in crowded RF environments, so the parsers report them
+ * with these codes instead of throwing and logging. Read the counters with
+ * {@link #getCount(int)} to monitor how many malformed packets were rejected. A
+ * truncated packet is still accepted, and not counted, when the cut structure is of a type
+ * the parser does not read.
+ */
+public final class ParseStatus {
+    /**
+     * The record is well formed.
+     */
+    public static final int OK = 0;
+    /**
+     * An AD structure claims more bytes than the record holds.
+     */
+    public static final int TRUNCATED = 1;
+    /**
+     * An AD structure is too short for its AD type, for example flags without data or
+     * manufacturer data without a company identifier.
+     */
+    public static final int INVALID_LENGTH = 2;
+    /**
+     * A list of service UUIDs is not a whole number of UUIDs.
+     */
+    public static final int INVALID_UUID_LIST = 3;
+
+    private static final int STATUS_COUNT = 4;
+    private static final String[] NAMES = {"OK", "TRUNCATED", "INVALID_LENGTH", "INVALID_UUID_LIST"};
+    private static final AtomicLongArray sCounts = new AtomicLongArray(STATUS_COUNT);
+
+    private ParseStatus(){
+        // TO AVOID INSTANTIATION
+    }
+
+    /**
+     * Counts a parse error. The parsers call it once for each record they reject.
+     *
+     * @param status the status, {@link #OK} is not counted
+     */
+    public static void record(final int status) {
+        if (status > OK && status < STATUS_COUNT) {
+            sCounts.incrementAndGet(status);
+        }
+    }
+
+    /**
+     * Gets the number of records rejected with a status since start or the last reset.
+     *
+     * @param status the status
+     * @return the count, 0 for {@link #OK} or an unknown status
+     */
+    public static long getCount(final int status) {
+        if (status <= OK || status >= STATUS_COUNT) {
+            return 0;
+        }
+        return sCounts.get(status);
+    }
+
+    /**
+     * Gets the number of records rejected for any reason.
+     *
+     * @return the count
+     */
+    public static long getTotalErrorCount() {
+        long total = 0;
+        for (int i = OK + 1; i < STATUS_COUNT; i++) {
+            total += sCounts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Resets every counter to 0.
+     */
+    public static void resetCounts() {
+        for (int i = 0; i < STATUS_COUNT; i++) {
+            sCounts.set(i, 0);
+        }
+    }
+
+    /**
+     * Gets the name of a status, for logging.
+     *
+     * @param status the status
+     * @return the name
+     */
+    public static String toString(final int status) {
+        if (status < OK || status >= STATUS_COUNT) {
+            return "UNKNOWN(" + status + ")";
+        }
+        return NAMES[status];
+    }
+}
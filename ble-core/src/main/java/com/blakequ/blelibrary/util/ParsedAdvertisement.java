@@ -0,0 +1,189 @@
+package com.blakequ.blelibrary.util;
+
+/**
+ * The AD structures of a raw scan record, found in a single pass over the bytes.
+ * <p>
+ * The bytes are walked lazily: a lookup only scans as far as the structure it needs, and
+ * the structures found so far are remembered for the next lookup. Only the type, data
+ * offset and data length of every structure are kept, the data itself stays in the scan
+ * record. The same instance can back an {@code AdRecordStore}, a
+ * {@code ScanRecordCompat} and a {@code ScanRecordUtils}, so a packet only has to be
+ * parsed once.
+ * <p>
+ * The views of a packet may be read from different threads, so every lookup, the getters
+ * of a structure included, holds the lock of the instance: the walk grows the table of
+ * structures while other threads read it.
+ * <p>
+ * The format is defined in Bluetooth 4.1 specification, Volume 3, Part C, Section 11.
+ */
+public final class ParsedAdvertisement {
+    // Each structure takes three ints: type, data offset and data length
+    private static final int STRIDE = 3;
+    private static final int INITIAL_STRUCTURES = 6;
+
+    private final byte[] mBytes;
+    private int[] mStructures;
+    private int mCount;
+    // Position of the next length byte, or -1 once the whole record has been walked
+    private int mScanPos;
+    private boolean mMalformed;
+
+    private ParsedAdvertisement(final byte[] bytes) {
+        mBytes = bytes;
+    }
+
+    /**
+     * Prepares the AD structures of a raw scan record for parsing. Nothing is read until
+     * the first lookup.
+     *
+     * @param scanRecord the scan record of Bluetooth LE advertisement and/or scan response
+     * @return the parsed advertisement, or null if scanRecord is null
+     */
+    public static ParsedAdvertisement parse(final byte[] scanRecord) {
+        if (scanRecord == null) {
+            return null;
+        }
+        return new ParsedAdvertisement(scanRecord);
+    }
+
+    /*
+     * Walks the record until more than minCount structures are known, or the record ends.
+     */
+    private void scanUntil(final int minCount) {
+        final byte[] scanRecord = mBytes;
+        final int end = scanRecord.length;
+        int pos = mScanPos;
+        while (pos >= 0 && mCount <= minCount) {
+            if (pos >= end) {
+                pos = -1;
+                break;
+            }
+            // length is unsigned and includes the type byte
+            final int length = scanRecord[pos++] & 0xFF;
+            //Done once we run out of records
+            if (length == 0) {
+                pos = -1;
+                break;
+            }
+
+            if (pos + length > end) {
+                // The structure claims more bytes than the record has
+                mMalformed = true;
+                if (pos < end) {
+                    add(scanRecord[pos] & 0xFF, pos + 1, end - pos - 1);
+                }
+                pos = -1;
+                break;
+            }
+
+            add(scanRecord[pos] & 0xFF, pos + 1, length - 1);
+            pos += length;
+        }
+        mScanPos = pos;
+    }
+
+    private void add(final int type, final int dataOffset, final int dataLength) {
+        if (mStructures == null) {
+            mStructures = new int[INITIAL_STRUCTURES * STRIDE];
+        } else if (mCount * STRIDE == mStructures.length) {
+            final int[] grown = new int[mStructures.length * 2];
+            System.arraycopy(mStructures, 0, grown, 0, mStructures.length);
+            mStructures = grown;
+        }
+        final int i = mCount * STRIDE;
+        mStructures[i] = type;
+        mStructures[i + 1] = dataOffset;
+        mStructures[i + 2] = dataLength;
+        mCount++;
+    }
+
+    /**
+     * Checks whether the record holds a structure with the given index, walking the record
+     * only as far as needed.
+     *
+     * @param index the structure index
+     * @return true if the structure exists
+     */
+    public synchronized boolean hasStructure(final int index) {
+        if (index >= mCount) {
+            scanUntil(index);
+        }
+        return index < mCount;
+    }
+
+    /**
+     * Returns the raw scan record.
+     */
+    public byte[] getBytes() {
+        return mBytes;
+    }
+
+    /**
+     * Returns the number of AD structures of the record. This walks the whole record.
+     */
+    public synchronized int getStructureCount() {
+        scanUntil(Integer.MAX_VALUE - 1);
+        return mCount;
+    }
+
+    /**
+     * Returns the AD type of a structure.
+     *
+     * @param index the index of a structure known to exist
+     */
+    public synchronized int getType(final int index) {
+        return mStructures[index * STRIDE];
+    }
+
+    /**
+     * Returns the offset in {@link #getBytes()} of the first data byte of a structure.
+     *
+     * @param index the index of a structure known to exist
+     */
+    public synchronized int getDataOffset(final int index) {
+        return mStructures[index * STRIDE + 1];
+    }
+
+    /**
+     * Returns the number of data bytes of a structure, the type byte not included.
+     *
+     * @param index the index of a structure known to exist
+     */
+    public synchronized int getDataLength(final int index) {
+        return mStructures[index * STRIDE + 2];
+    }
+
+    /**
+     * Returns the index of the first structure of the given AD type.
+     *
+     * @param type the AD type
+     * @return the structure index, or -1 if there is no such structure
+     */
+    public synchronized int indexOf(final int type) {
+        for (int i = 0; i < mCount || hasStructure(i); i++) {
+            if (mStructures[i * STRIDE] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the last structure claimed more bytes than the record holds. That
+     * structure is still listed, with its data cut at the end of the record. This walks the
+     * whole record. Nothing is counted in {@link ParseStatus}, the parser reading the record
+     * decides whether the cut structure makes it reject the record.
+     */
+    public synchronized boolean isMalformed() {
+        scanUntil(Integer.MAX_VALUE - 1);
+        return mMalformed;
+    }
+
+    /**
+     * Returns {@link ParseStatus#TRUNCATED} if the record is malformed, see
+     * {@link #isMalformed()}, or {@link ParseStatus#OK}. This walks the whole record.
+     */
+    public int getStatus() {
+        return isMalformed() ? ParseStatus.TRUNCATED : ParseStatus.OK;
+    }
+}
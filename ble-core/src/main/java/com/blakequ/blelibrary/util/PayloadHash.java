@@ -0,0 +1,43 @@
+package com.blakequ.blelibrary.util;
+
+/**
+ * 64 bit FNV-1a hash of advert payloads, used to recognise a repeated scan record without
+ * parsing it. Over a record of at most a few hundred bytes a collision between two different
+ * payloads of the same device is far too unlikely to matter.
+ */
+public final class PayloadHash {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private PayloadHash(){
+        // TO AVOID INSTANTIATION
+    }
+
+    /**
+     * Hashes a whole array.
+     *
+     * @param src the bytes, may be null
+     * @return the hash, 0 for null
+     */
+    public static long hash64(final byte[] src) {
+        return src == null ? 0 : hash64(src, 0, src.length);
+    }
+
+    /**
+     * Hashes a window of an array.
+     *
+     * @param src    the bytes
+     * @param offset the offset of the first byte
+     * @param length the number of bytes
+     * @return the hash
+     */
+    public static long hash64(final byte[] src, final int offset, final int length) {
+        long hash = FNV_OFFSET_BASIS;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            hash ^= src[i] & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,219 @@
+package com.blakequ.blelibrary.util;
+
+import java.util.Arrays;
+
+/**
+ * The last RSSI readings of a device, kept in fixed size primitive arrays.
+ * <p>
+ * When the buffer is full a new reading replaces the oldest one. A running sum and sum of
+ * squares are updated on every change, so the mean and variance are available in constant
+ * time without walking the readings. Both sums are exact integers and never drift.
+ * <p>
+ * All methods are thread safe.
+ */
+public final class RssiRingBuffer {
+    private final long[] mTimestamps;
+    private final short[] mRssi;
+    // Index of the oldest reading
+    private int mStart;
+    private int mCount;
+    private long mSum;
+    private long mSumOfSquares;
+
+    /**
+     * @param capacity the number of readings to keep, at least 1
+     */
+    public RssiRingBuffer(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+        }
+        mTimestamps = new long[capacity];
+        mRssi = new short[capacity];
+    }
+
+    /**
+     * Creates a buffer holding the given readings, oldest first. Only the last capacity
+     * readings are kept.
+     *
+     * @param capacity   the number of readings to keep, at least 1
+     * @param timestamps the timestamps of the readings
+     * @param rssi       the readings
+     */
+    public RssiRingBuffer(final int capacity, final long[] timestamps, final int[] rssi) {
+        this(capacity);
+        final int count = Math.min(timestamps.length, rssi.length);
+        for (int i = 0; i < count; i++) {
+            add(timestamps[i], rssi[i]);
+        }
+    }
+
+    /**
+     * Adds a reading, dropping the oldest one if the buffer is full.
+     *
+     * @param timestamp the timestamp of the reading
+     * @param rssi      the reading
+     */
+    public synchronized void add(final long timestamp, final int rssi) {
+        final int capacity = mRssi.length;
+        final int index;
+        if (mCount == capacity) {
+            index = mStart;
+            final int oldest = mRssi[index];
+            mSum -= oldest;
+            mSumOfSquares -= oldest * oldest;
+            mStart = (mStart + 1) % capacity;
+        } else {
+            index = (mStart + mCount) % capacity;
+            mCount++;
+        }
+        final short value = (short) rssi;
+        mTimestamps[index] = timestamp;
+        mRssi[index] = value;
+        mSum += value;
+        mSumOfSquares += value * value;
+    }
+
+    /**
+     * Drops every reading.
+     */
+    public synchronized void clear() {
+        mStart = 0;
+        mCount = 0;
+        mSum = 0;
+        mSumOfSquares = 0;
+    }
+
+    /**
+     * Gets the maximum number of readings kept.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return mRssi.length;
+    }
+
+    /**
+     * Gets the number of readings.
+     *
+     * @return the reading count
+     */
+    public synchronized int size() {
+        return mCount;
+    }
+
+    /**
+     * Gets the mean of the readings.
+     *
+     * @return the mean, or 0 if there is no reading
+     */
+    public synchronized double getMean() {
+        return mCount == 0 ? 0 : (double) mSum / mCount;
+    }
+
+    /**
+     * Gets the population variance of the readings.
+     *
+     * @return the variance, or 0 if there is no reading
+     */
+    public synchronized double getVariance() {
+        if (mCount == 0) {
+            return 0;
+        }
+        final double mean = (double) mSum / mCount;
+        return Math.max(0, (double) mSumOfSquares / mCount - mean * mean);
+    }
+
+    /**
+     * Gets the standard deviation of the readings.
+     *
+     * @return the standard deviation, or 0 if there is no reading
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Gets a reading, 0 being the oldest.
+     *
+     * @param index the index of the reading
+     * @return the reading
+     */
+    public synchronized int getRssi(final int index) {
+        checkIndex(index);
+        return mRssi[(mStart + index) % mRssi.length];
+    }
+
+    /**
+     * Gets the timestamp of a reading, 0 being the oldest.
+     *
+     * @param index the index of the reading
+     * @return the timestamp
+     */
+    public synchronized long getTimestamp(final int index) {
+        checkIndex(index);
+        return mTimestamps[(mStart + index) % mTimestamps.length];
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("reading " + index + " of " + mCount);
+        }
+    }
+
+    /**
+     * Copies the timestamps, oldest first.
+     *
+     * @return a new array of {@link #size()} timestamps
+     */
+    public synchronized long[] getTimestamps() {
+        final long[] timestamps = new long[mCount];
+        for (int i = 0; i < mCount; i++) {
+            timestamps[i] = mTimestamps[(mStart + i) % mTimestamps.length];
+        }
+        return timestamps;
+    }
+
+    /**
+     * Copies the readings, oldest first.
+     *
+     * @return a new array of {@link #size()} readings
+     */
+    public synchronized int[] getReadings() {
+        final int[] rssi = new int[mCount];
+        for (int i = 0; i < mCount; i++) {
+            rssi[i] = mRssi[(mStart + i) % mRssi.length];
+        }
+        return rssi;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof RssiRingBuffer))
+            return false;
+        final RssiRingBuffer other = (RssiRingBuffer) obj;
+        return Arrays.equals(getTimestamps(), other.getTimestamps())
+                && Arrays.equals(getReadings(), other.getReadings());
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(getTimestamps()) + Arrays.hashCode(getReadings());
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "RssiRingBuffer [mTimestamps=" + Arrays.toString(getTimestamps())
+                + ", mRssi=" + Arrays.toString(getReadings()) + "]";
+    }
+}
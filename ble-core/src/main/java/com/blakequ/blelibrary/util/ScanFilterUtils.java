@@ -0,0 +1,81 @@
+package com.blakequ.blelibrary.util;
+
+import java.util.UUID;
+
+/**
+ * The matching rules of a scan filter, free of any platform type so they can be applied
+ * to records decoded anywhere.
+ */
+public final class ScanFilterUtils {
+
+    private ScanFilterUtils(){
+        // TO AVOID INSTANTIATION
+    }
+
+    /**
+     * Checks if the uuid pattern matches a particular service uuid.
+     *
+     * @param uuid the uuid of the filter
+     * @param mask the mask of the filter, null to compare every bit
+     * @param data the uuid found in the record
+     * @return true if they match
+     */
+    public static boolean matchesServiceUuid(final UUID uuid, final UUID mask, final UUID data) {
+        if (mask == null) {
+            return uuid.equals(data);
+        }
+        if ((uuid.getLeastSignificantBits() & mask.getLeastSignificantBits()) !=
+                (data.getLeastSignificantBits() & mask.getLeastSignificantBits())) {
+            return false;
+        }
+        return ((uuid.getMostSignificantBits() & mask.getMostSignificantBits()) ==
+                (data.getMostSignificantBits() & mask.getMostSignificantBits()));
+    }
+
+    /**
+     * Checks whether the data pattern matches the parsed data.
+     *
+     * @param data       the data of the filter
+     * @param dataMask   the mask of the filter, null to compare every bit
+     * @param parsedData the data found in the record, may be null
+     * @return true if they match
+     */
+    public static boolean matchesPartialData(final byte[] data, final byte[] dataMask, final byte[] parsedData) {
+        if (parsedData == null) {
+            return false;
+        }
+        return matchesPartialData(data, dataMask, parsedData, 0, parsedData.length);
+    }
+
+    /**
+     * Checks whether the data pattern matches data held in a larger array, usually the
+     * whole scan record, without copying it.
+     *
+     * @param data     the data of the filter
+     * @param dataMask the mask of the filter, null to compare every bit
+     * @param source   the array holding the data found in the record
+     * @param offset   the offset of the data in source
+     * @param length   the length of the data
+     * @return true if they match
+     */
+    public static boolean matchesPartialData(final byte[] data, final byte[] dataMask,
+                                             final byte[] source, final int offset, final int length) {
+        if (source == null || length < data.length) {
+            return false;
+        }
+        if (dataMask == null) {
+            for (int i = 0; i < data.length; ++i) {
+                if (source[offset + i] != data[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int i = 0; i < data.length; ++i) {
+            if ((dataMask[i] & source[offset + i]) != (dataMask[i] & data[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
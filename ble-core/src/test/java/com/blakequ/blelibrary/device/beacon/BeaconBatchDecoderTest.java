@@ -0,0 +1,103 @@
+package com.blakequ.blelibrary.device.beacon;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BeaconBatchDecoderTest {
+    private static final byte[] IBEACON_RECORD = new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15,
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 1, 0, 2, (byte) 0xc5};
+    // A phone sending Apple manufacturer data which is not an iBeacon
+    private static final byte[] PHONE_RECORD = new byte[]{2, 1, 0x1a, 0x0a, (byte) 0xff, 0x4c, 0, 0x10, 0x05,
+            1, 2, 3, 4, 5, 6};
+
+    private final BeaconBatchDecoder mDecoder = new BeaconBatchDecoder(BeaconLayouts.createDefaultRegistry());
+
+    @Test
+    public void decodesAnIBeaconRow() {
+        final BeaconBatch batch = new BeaconBatch();
+        mDecoder.decode(0x0c0000000001L, -60, IBEACON_RECORD, 1000L, batch);
+
+        assertEquals(1, batch.size());
+        assertEquals(BeaconType.IBEACON, batch.getBeaconType(0));
+        assertEquals(0x0c0000000001L, batch.getAddresses()[0]);
+        assertEquals(-60, batch.getRssi()[0]);
+        assertEquals(1000L, batch.getTimestamps()[0]);
+        assertEquals(0x0102030405060708L, batch.getUuidMostSignificantBits()[0]);
+        assertEquals(0x090a0b0c0d0e0f10L, batch.getUuidLeastSignificantBits()[0]);
+        assertEquals(1, batch.getMajors()[0]);
+        assertEquals(2, batch.getMinors()[0]);
+        assertEquals(-59, batch.getTxPowers()[0]);
+    }
+
+    @Test
+    public void keepsOtherRowsAsNonBeacons() {
+        final byte[] truncated = new byte[IBEACON_RECORD.length - 4];
+        System.arraycopy(IBEACON_RECORD, 0, truncated, 0, truncated.length);
+        final BeaconBatch batch = new BeaconBatch();
+        mDecoder.decode(new String[]{"4A:00:00:00:00:01", "0C:00:00:00:00:02", "0C:00:00:00:00:03"},
+                new int[]{-70, -71, -72}, new byte[][]{PHONE_RECORD, truncated, null},
+                new long[]{1L, 2L, 3L}, 0, 3, batch);
+
+        assertEquals(3, batch.size());
+        assertEquals(0x4a0000000001L, batch.getAddresses()[0]);
+        assertEquals(0x0c0000000003L, batch.getAddresses()[2]);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(BeaconType.NOT_A_BEACON, batch.getBeaconType(i));
+            assertEquals(-70 - i, batch.getRssi()[i]);
+            assertEquals(0L, batch.getUuidMostSignificantBits()[i]);
+            assertEquals(0, batch.getMajors()[i]);
+            assertEquals(0, batch.getTxPowers()[i]);
+        }
+    }
+
+    @Test
+    public void resetsTheBeaconColumnsOfReusedRows() {
+        final BeaconBatch batch = new BeaconBatch();
+        mDecoder.decode(1L, -60, IBEACON_RECORD, 1L, batch);
+        batch.clear();
+        mDecoder.decode(2L, -61, PHONE_RECORD, 2L, batch);
+
+        assertEquals(1, batch.size());
+        assertEquals(BeaconType.NOT_A_BEACON, batch.getBeaconType(0));
+        assertEquals(0L, batch.getUuidLeastSignificantBits()[0]);
+        assertEquals(0, batch.getMinors()[0]);
+    }
+
+    @Test
+    public void growsPastItsCapacityKeepingTheRows() {
+        final int count = 5;
+        final long[] addresses = new long[count];
+        final int[] rssi = new int[count];
+        final byte[][] records = new byte[count][];
+        final long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            addresses[i] = i;
+            rssi[i] = -50 - i;
+            records[i] = i % 2 == 0 ? IBEACON_RECORD : PHONE_RECORD;
+            timestamps[i] = 100L + i;
+        }
+        final BeaconBatch batch = new BeaconBatch(2);
+        mDecoder.decode(addresses, rssi, records, timestamps, 0, 3, batch);
+        mDecoder.decode(addresses, rssi, records, timestamps, 3, 2, batch);
+        mDecoder.decode(9L, -99, IBEACON_RECORD, 109L, batch);
+
+        assertEquals(count + 1, batch.size());
+        assertTrue(batch.getAddresses().length >= count + 1);
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, batch.getAddresses()[i]);
+            assertEquals(-50 - i, batch.getRssi()[i]);
+            assertEquals(100L + i, batch.getTimestamps()[i]);
+            assertEquals(i % 2 == 0 ? BeaconType.IBEACON : BeaconType.NOT_A_BEACON, batch.getBeaconType(i));
+        }
+        assertEquals(9L, batch.getAddresses()[count]);
+        assertEquals(2, batch.getMinors()[count]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsRowsPastTheSize() {
+        final BeaconBatch batch = new BeaconBatch();
+        mDecoder.decode(1L, -60, IBEACON_RECORD, 1L, batch);
+        batch.getBeaconType(1);
+    }
+}
@@ -0,0 +1,105 @@
+package com.blakequ.blelibrary.device.beacon;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BeaconLayoutRegistryTest {
+    private static final byte[] IBEACON_RECORD = new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15,
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 1, 0, 2, (byte) 0xc5};
+    private static final byte[] EDDYSTONE_UID_RECORD = new byte[]{2, 1, 6, 3, 0x03, (byte) 0xaa, (byte) 0xfe,
+            0x17, 0x16, (byte) 0xaa, (byte) 0xfe, 0x00, (byte) 0xe7,
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 0};
+
+    private static BeaconLayout vendor(final String name, final int companyIdentifier) {
+        return new BeaconLayout.Builder(name, BeaconType.CUSTOM, BeaconLayouts.AD_TYPE_MANUFACTURER_SPECIFIC_DATA)
+                .setMatch(0, (byte) companyIdentifier, (byte) (companyIdentifier >> 8), (byte) 2, (byte) 0x15)
+                .addField(BeaconLayouts.FIELD_MAJOR, 20, 2, true)
+                .build();
+    }
+
+    @Test
+    public void defaultRegistryClassifiesIBeacon() {
+        final BeaconLayoutRegistry registry = BeaconLayouts.createDefaultRegistry();
+        final long classification = registry.match(IBEACON_RECORD);
+        assertEquals(BeaconType.IBEACON, BeaconClassifier.getBeaconType(classification));
+        assertSame(BeaconLayouts.IBEACON, registry.getLayout(classification));
+        assertEquals(5, BeaconClassifier.getPayloadOffset(classification));
+        assertEquals(25, BeaconClassifier.getPayloadLength(classification));
+    }
+
+    @Test
+    public void defaultRegistryClassifiesEddystoneUidAfterOtherServiceUuids() {
+        final BeaconLayoutRegistry registry = BeaconLayouts.createDefaultRegistry();
+        final long classification = registry.match(EDDYSTONE_UID_RECORD);
+        assertEquals(BeaconType.EDDYSTONE_UID, BeaconClassifier.getBeaconType(classification));
+        assertEquals(9, BeaconClassifier.getPayloadOffset(classification));
+        assertEquals(22, BeaconClassifier.getPayloadLength(classification));
+    }
+
+    @Test
+    public void matchStructureAgreesWithMatch() {
+        final BeaconLayoutRegistry registry = BeaconLayouts.createDefaultRegistry();
+        assertEquals(registry.match(IBEACON_RECORD), registry.matchStructure(0xff, IBEACON_RECORD, 5, 25));
+        assertEquals(BeaconClassifier.NOT_A_BEACON, registry.matchStructure(0xff, IBEACON_RECORD, 5, 24));
+        assertEquals(BeaconClassifier.NOT_A_BEACON, registry.matchStructure(0xff, IBEACON_RECORD, 5, 26));
+        assertEquals(BeaconClassifier.NOT_A_BEACON, registry.matchStructure(0x100, IBEACON_RECORD, 5, 25));
+        assertEquals(BeaconClassifier.NOT_A_BEACON, registry.matchStructure(0xff, null, 5, 25));
+    }
+
+    @Test
+    public void truncatedAndEmptyRecordsAreNotBeacons() {
+        final BeaconLayoutRegistry registry = BeaconLayouts.createDefaultRegistry();
+        final byte[] truncated = new byte[IBEACON_RECORD.length - 1];
+        System.arraycopy(IBEACON_RECORD, 0, truncated, 0, truncated.length);
+        assertEquals(BeaconClassifier.NOT_A_BEACON, registry.match(truncated));
+        assertEquals(BeaconClassifier.NOT_A_BEACON, registry.match(new byte[0]));
+        assertEquals(BeaconClassifier.NOT_A_BEACON, registry.match(new byte[62]));
+        assertEquals(BeaconClassifier.NOT_A_BEACON, registry.match(null));
+    }
+
+    @Test
+    public void vendorLayoutsAreFoundAmongMany() {
+        final BeaconLayoutRegistry.Builder builder = BeaconLayouts.createDefaultBuilder();
+        for (int i = 0; i < 24; i++) {
+            builder.add(vendor("vendor" + i, 0x0100 + i));
+        }
+        final BeaconLayoutRegistry registry = builder.build();
+        assertEquals(29, registry.getLayoutCount());
+
+        final byte[] record = IBEACON_RECORD.clone();
+        record[5] = 0x17;
+        record[6] = 0x01;
+        final long classification = registry.match(record);
+        assertEquals(BeaconType.CUSTOM, BeaconClassifier.getBeaconType(classification));
+        assertEquals("vendor23", registry.getLayout(classification).getName());
+        // The default layouts still match as before
+        assertSame(BeaconLayouts.IBEACON, registry.getLayout(registry.match(IBEACON_RECORD)));
+    }
+
+    @Test
+    public void firstAddedLayoutWinsOnTheSameKey() {
+        final BeaconLayout first = vendor("first", 0x004c);
+        final BeaconLayoutRegistry registry = new BeaconLayoutRegistry.Builder()
+                .add(first)
+                .add(BeaconLayouts.IBEACON)
+                .build();
+        assertSame(first, registry.getLayout(registry.match(IBEACON_RECORD)));
+    }
+
+    @Test
+    public void longerMatchIsCheckedPastTheKey() {
+        final BeaconLayout longer = new BeaconLayout.Builder("longer", BeaconType.CUSTOM, 0xff)
+                .setMatch(0, (byte) 0x4c, (byte) 0, (byte) 2, (byte) 0x15, (byte) 9)
+                .build();
+        final BeaconLayoutRegistry registry = new BeaconLayoutRegistry.Builder()
+                .add(longer)
+                .add(BeaconLayouts.IBEACON)
+                .build();
+        // Same four key bytes, the fifth byte of the record is 1
+        assertSame(BeaconLayouts.IBEACON, registry.getLayout(registry.match(IBEACON_RECORD)));
+        final byte[] record = IBEACON_RECORD.clone();
+        record[9] = 9;
+        assertSame(longer, registry.getLayout(registry.match(record)));
+    }
+}
@@ -0,0 +1,101 @@
+package com.blakequ.blelibrary.device.beacon;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BeaconLayoutTest {
+    private static final byte[] IBEACON_RECORD = new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15,
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 1, 0, 2, (byte) 0xc5};
+    // Offset of the manufacturer data in IBEACON_RECORD
+    private static final int IBEACON_DATA = 5;
+
+    @Test
+    public void iBeaconLayoutMatchesAndReadsFields() {
+        final BeaconLayout layout = BeaconLayouts.IBEACON;
+        assertTrue(layout.matches(0xff, IBEACON_RECORD, IBEACON_DATA, 25));
+        assertEquals(0x004c, layout.readField(IBEACON_RECORD, IBEACON_DATA, layout.getFieldIndex(BeaconLayouts.FIELD_COMPANY_IDENTIFIER)));
+        assertEquals(0x0102030405060708L, layout.readField(IBEACON_RECORD, IBEACON_DATA, layout.getFieldIndex(BeaconLayouts.FIELD_UUID_HIGH)));
+        assertEquals(0x090a0b0c0d0e0f10L, layout.readField(IBEACON_RECORD, IBEACON_DATA, layout.getFieldIndex(BeaconLayouts.FIELD_UUID_LOW)));
+        assertEquals(1, layout.readField(IBEACON_RECORD, IBEACON_DATA, layout.getFieldIndex(BeaconLayouts.FIELD_MAJOR)));
+        assertEquals(2, layout.readField(IBEACON_RECORD, IBEACON_DATA, layout.getFieldIndex(BeaconLayouts.FIELD_MINOR)));
+        assertEquals(-59, layout.readField(IBEACON_RECORD, IBEACON_DATA, layout.getFieldIndex(BeaconLayouts.FIELD_TX_POWER)));
+    }
+
+    @Test
+    public void rejectsOtherTypeBytesAndShortData() {
+        final BeaconLayout layout = BeaconLayouts.IBEACON;
+        assertFalse(layout.matches(0x16, IBEACON_RECORD, IBEACON_DATA, 25));
+        assertFalse(layout.matches(0xff, IBEACON_RECORD, IBEACON_DATA, layout.getMinDataLength() - 1));
+        final byte[] altered = IBEACON_RECORD.clone();
+        altered[IBEACON_DATA + 3] = 0x16;
+        assertFalse(layout.matches(0xff, altered, IBEACON_DATA, 25));
+    }
+
+    @Test
+    public void minDataLengthCoversMatchAndFields() {
+        final BeaconLayout layout = new BeaconLayout.Builder("test", BeaconType.CUSTOM, 0xff)
+                .setMatch(6, (byte) 1, (byte) 2)
+                .addField("a", 2, 4, true)
+                .build();
+        assertEquals(8, layout.getMinDataLength());
+        final BeaconLayout raised = new BeaconLayout.Builder("test", BeaconType.CUSTOM, 0xff)
+                .setMatch(0, (byte) 1)
+                .addField("a", 10, 8, true)
+                .setMinDataLength(12)
+                .build();
+        assertEquals(18, raised.getMinDataLength());
+    }
+
+    @Test
+    public void readsBothByteOrdersAndSignExtends() {
+        final byte[] data = new byte[]{(byte) 0x80, (byte) 0xfe, 0x12, 0x34};
+        final BeaconLayout layout = new BeaconLayout.Builder("test", BeaconType.CUSTOM, 0xff)
+                .setMatch(0, (byte) 0x80)
+                .addField("big", 2, 2, true)
+                .addField("little", 2, 2, false)
+                .addField("unsigned", 0, 2, true)
+                .addSignedField("signed", 0, 2, true)
+                .addSignedField("signedLittle", 0, 2, false)
+                .build();
+        assertEquals(0x1234, layout.readField(data, 0, layout.getFieldIndex("big")));
+        assertEquals(0x3412, layout.readField(data, 0, layout.getFieldIndex("little")));
+        assertEquals(0x80fe, layout.readField(data, 0, layout.getFieldIndex("unsigned")));
+        assertEquals((short) 0x80fe, layout.readField(data, 0, layout.getFieldIndex("signed")));
+        assertEquals((short) 0xfe80, layout.readField(data, 0, layout.getFieldIndex("signedLittle")));
+        assertEquals(-1, layout.getFieldIndex("missing"));
+    }
+
+    @Test
+    public void builderCopiesMatchBytes() {
+        final byte[] match = new byte[]{1, 2};
+        final BeaconLayout layout = new BeaconLayout.Builder("test", BeaconType.CUSTOM, 0xff)
+                .setMatch(0, match)
+                .build();
+        match[0] = 9;
+        assertEquals(1, layout.getMatchByte(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void builderNeedsMatchBytes() {
+        new BeaconLayout.Builder("test", BeaconType.CUSTOM, 0xff).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderRejectsDuplicateFields() {
+        new BeaconLayout.Builder("test", BeaconType.CUSTOM, 0xff)
+                .addField("a", 0, 1, true)
+                .addField("a", 1, 1, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderRejectsWideFields() {
+        new BeaconLayout.Builder("test", BeaconType.CUSTOM, 0xff)
+                .addField("a", 0, BeaconLayout.MAX_FIELD_WIDTH + 1, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderRejectsNotABeacon() {
+        new BeaconLayout.Builder("test", BeaconType.NOT_A_BEACON, 0xff);
+    }
+}
@@ -0,0 +1,77 @@
+package com.blakequ.blelibrary.device.rssi;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MedianRssiFilterTest {
+
+    private static double naiveMedian(final ArrayDeque<Integer> window) {
+        final int[] sorted = new int[window.size()];
+        int i = 0;
+        for (int value : window) {
+            sorted[i++] = value;
+        }
+        Arrays.sort(sorted);
+        final int middle = sorted.length / 2;
+        return (sorted.length & 1) == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2d;
+    }
+
+    @Test
+    public void ignoresAShortFade() {
+        final MedianRssiFilter filter = new MedianRssiFilter();
+        assertFalse(filter.hasValue());
+        assertEquals(0, filter.getFilteredRssi(), 0);
+        assertEquals(-60, filter.addReading(1, -60), 0);
+        assertEquals(-61, filter.addReading(2, -62), 0);
+        assertEquals(-62, filter.addReading(3, -95), 0);
+        assertEquals(-61, filter.addReading(4, -60), 0);
+        assertEquals(-61, filter.getFilteredRssi(), 0);
+        assertTrue(filter.hasValue());
+    }
+
+    @Test
+    public void clampsReadingsToTheRssiRange() {
+        final MedianRssiFilter filter = new MedianRssiFilter(1);
+        assertEquals(-128, filter.addReading(1, -1000), 0);
+        assertEquals(127, filter.addReading(2, 1000), 0);
+    }
+
+    @Test
+    public void resetForgetsTheWindow() {
+        final MedianRssiFilter filter = new MedianRssiFilter(3);
+        filter.addReading(1, -90);
+        filter.addReading(2, -90);
+        filter.reset();
+        assertFalse(filter.hasValue());
+        assertEquals(-50, filter.addReading(3, -50), 0);
+        assertEquals(-55, filter.addReading(4, -60), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnEmptyWindow() {
+        new MedianRssiFilter(0);
+    }
+
+    @Test
+    public void matchesASortedWindow() {
+        final Random random = new Random(11);
+        for (int windowSize : new int[]{1, 2, 7, 8, 64, 255}) {
+            final MedianRssiFilter filter = new MedianRssiFilter(windowSize);
+            final ArrayDeque<Integer> window = new ArrayDeque<>();
+            for (int i = 0; i < 20000; i++) {
+                // Mostly a realistic spread, sometimes the ends of the range
+                final int rssi = random.nextInt(50) == 0 ? (random.nextBoolean() ? -128 : 127) : -40 - random.nextInt(60);
+                window.addLast(rssi);
+                if (window.size() > windowSize) {
+                    window.removeFirst();
+                }
+                assertEquals("window " + windowSize + " reading " + i, naiveMedian(window), filter.addReading(i, rssi), 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.blakequ.blelibrary.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class AdvertisementFieldsTest {
+    private static final UUID EDDYSTONE = UUID.fromString("0000feaa-0000-1000-8000-00805f9b34fb");
+
+    @Test
+    public void decodesAnIBeacon() {
+        final AdvertisementFields fields = AdvertisementFields.parse(new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0,
+                2, 0x15, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 1, 0, 2, (byte) 0xc5});
+        assertEquals(ParseStatus.OK, fields.getParseStatus());
+        assertEquals(6, fields.getAdvertiseFlags());
+        assertNull(fields.getServiceUuids());
+        assertEquals(Collections.<UUID, byte[]>emptyMap(), fields.getServiceData());
+        assertEquals(Collections.singleton(0x4c), fields.getManufacturerSpecificData().keySet());
+        assertArrayEquals(new byte[]{2, 0x15, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 1, 0, 2,
+                (byte) 0xc5}, fields.getManufacturerSpecificData().get(0x4c));
+        assertEquals(Integer.MIN_VALUE, fields.getTxPowerLevel());
+    }
+
+    @Test
+    public void decodesUuidsServiceDataNameAndTxPower() {
+        final AdvertisementFields fields = AdvertisementFields.parse(new byte[]{
+                3, 0x03, (byte) 0xaa, (byte) 0xfe,
+                5, 0x05, 0x78, 0x56, 0x34, 0x12,
+                0x11, 0x07, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                5, 0x16, (byte) 0xaa, (byte) 0xfe, 0x10, 0x20,
+                5, 0x09, 'n', 'a', 'm', 'e',
+                2, 0x0a, (byte) 0xf4, 0, 0});
+        assertEquals(ParseStatus.OK, fields.getParseStatus());
+        assertEquals(-1, fields.getAdvertiseFlags());
+        assertEquals(Arrays.asList(EDDYSTONE,
+                UUID.fromString("12345678-0000-1000-8000-00805f9b34fb"),
+                UUID.fromString("100f0e0d-0c0b-0a09-0807-060504030201")), fields.getServiceUuids());
+        assertArrayEquals(new byte[]{0x10, 0x20}, fields.getServiceData().get(EDDYSTONE));
+        assertEquals("name", fields.getDeviceName());
+        assertEquals(-12, fields.getTxPowerLevel());
+    }
+
+    @Test
+    public void rejectsMalformedRecordsWithoutFields() {
+        ParseStatus.resetCounts();
+        // Manufacturer data cut by the end of the record
+        assertRejected(ParseStatus.TRUNCATED, new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15, 1, 2});
+        // Manufacturer data without a whole company identifier
+        assertRejected(ParseStatus.INVALID_LENGTH, new byte[]{2, 1, 6, 2, (byte) 0xff, 0x4c});
+        // Three bytes of 16 bit uuids
+        assertRejected(ParseStatus.INVALID_UUID_LIST, new byte[]{4, 0x03, (byte) 0xaa, (byte) 0xfe, 1});
+        assertEquals(3, ParseStatus.getTotalErrorCount());
+    }
+
+    @Test
+    public void acceptsACutStructureItDoesNotRead() {
+        final AdvertisementFields fields = AdvertisementFields.parse(new byte[]{2, 1, 6, 9, 0x30, 1, 2});
+        assertEquals(ParseStatus.OK, fields.getParseStatus());
+        assertEquals(6, fields.getAdvertiseFlags());
+    }
+
+    @Test
+    public void convertsShortUuidsOverTheBaseUuid() {
+        final byte[] uuid16 = {(byte) 0xaa, (byte) 0xfe};
+        assertEquals(EDDYSTONE.getMostSignificantBits(), AdvertisementDecoder.getUuidMostSignificantBits(uuid16, 0, 2));
+        assertEquals(EDDYSTONE.getLeastSignificantBits(), AdvertisementDecoder.getUuidLeastSignificantBits(uuid16, 0, 2));
+        final byte[] uuid32 = {(byte) 0xaa, (byte) 0xfe, 0, (byte) 0xf0};
+        assertEquals(0xf000feaa00001000L, AdvertisementDecoder.getUuidMostSignificantBits(uuid32, 0, 4));
+    }
+
+    private static void assertRejected(final int status, final byte[] scanRecord) {
+        final AdvertisementFields fields = AdvertisementFields.parse(scanRecord);
+        assertEquals(status, fields.getParseStatus());
+        assertEquals(-1, fields.getAdvertiseFlags());
+        assertNull(fields.getManufacturerSpecificData());
+        assertNull(fields.getServiceData());
+        assertNull(fields.getServiceUuids());
+    }
+}
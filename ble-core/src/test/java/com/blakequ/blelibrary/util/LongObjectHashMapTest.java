@@ -0,0 +1,86 @@
+package com.blakequ.blelibrary.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongObjectHashMapTest {
+
+    @Test
+    public void putGetReplaceRemove() {
+        final LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1L, "a"));
+        assertNull(map.put(-1L, "b"));
+        assertNull(map.put(0L, "zero"));
+        assertEquals("a", map.put(1L, "c"));
+        assertEquals(3, map.size());
+        assertEquals("c", map.get(1L));
+        assertEquals("b", map.get(-1L));
+        assertEquals("zero", map.get(0L));
+        assertNull(map.get(2L));
+        assertTrue(map.containsKey(0L));
+        assertFalse(map.containsKey(2L));
+        assertEquals("b", map.remove(-1L));
+        assertNull(map.remove(-1L));
+        assertEquals(2, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1L));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNullValues() {
+        new LongObjectHashMap<String>().put(1L, null);
+    }
+
+    @Test
+    public void growsPastTheExpectedSize() {
+        final LongObjectHashMap<Long> map = new LongObjectHashMap<>(4);
+        for (long key = 0; key < 10000; key++) {
+            map.put(key * 0x1000000L, key);
+        }
+        assertEquals(10000, map.size());
+        for (long key = 0; key < 10000; key++) {
+            assertEquals(Long.valueOf(key), map.get(key * 0x1000000L));
+        }
+        final long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertEquals(0L, keys[0]);
+        assertEquals(9999L * 0x1000000L, keys[keys.length - 1]);
+        assertEquals(10000, map.values(new ArrayList<Long>()).size());
+    }
+
+    @Test
+    public void removalKeepsEveryProbeRunReachable() {
+        // Few keys over a small table, so probe runs are long, collide and wrap around the end
+        final Random random = new Random(42);
+        final LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        final Map<Long, Long> expected = new HashMap<>();
+        for (int op = 0; op < 200000; op++) {
+            final long key = random.nextInt(48);
+            if (random.nextInt(3) == 0 || expected.size() > 20) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                final Long value = (long) op;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+            if (op % 97 == 0) {
+                for (long probe = 0; probe < 48; probe++) {
+                    assertEquals(expected.get(probe), map.get(probe));
+                }
+            }
+        }
+        final List<Long> values = map.values(new ArrayList<Long>());
+        assertEquals(expected.size(), values.size());
+        assertTrue(values.containsAll(expected.values()));
+    }
+}
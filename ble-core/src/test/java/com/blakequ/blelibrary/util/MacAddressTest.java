@@ -0,0 +1,50 @@
+package com.blakequ.blelibrary.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MacAddressTest {
+
+    @Test
+    public void parsesUpperAndLowerCase() {
+        assertEquals(0x001122aabbccL, MacAddress.parse("00:11:22:AA:BB:CC"));
+        assertEquals(0x001122aabbccL, MacAddress.parse("00:11:22:aa:bb:cc"));
+        assertEquals(0L, MacAddress.parse("00:00:00:00:00:00"));
+        assertEquals(0xffffffffffffL, MacAddress.parse("FF:FF:FF:FF:FF:FF"));
+    }
+
+    @Test
+    public void rejectsWhatIsNotAnAddress() {
+        assertEquals(MacAddress.INVALID, MacAddress.parse(null));
+        assertEquals(MacAddress.INVALID, MacAddress.parse(""));
+        assertEquals(MacAddress.INVALID, MacAddress.parse("00:11:22:AA:BB"));
+        assertEquals(MacAddress.INVALID, MacAddress.parse("00:11:22:AA:BB:CC:"));
+        assertEquals(MacAddress.INVALID, MacAddress.parse("00-11-22-AA-BB-CC"));
+        assertEquals(MacAddress.INVALID, MacAddress.parse("00:11:22:AA:BB:CG"));
+        assertEquals(MacAddress.INVALID, MacAddress.parse("0:011:22:AA:BB:CC"));
+    }
+
+    @Test
+    public void parsesOnlyUpperCaseWhenAsked() {
+        assertEquals(0x001122aabbccL, MacAddress.parseUpperCase("00:11:22:AA:BB:CC"));
+        assertEquals(MacAddress.INVALID, MacAddress.parseUpperCase("00:11:22:aa:bb:cc"));
+        assertEquals(MacAddress.INVALID, MacAddress.parseUpperCase("00:11:22:AA:BB:Cc"));
+        assertEquals(MacAddress.INVALID, MacAddress.parseUpperCase(null));
+        assertEquals(MacAddress.INVALID, MacAddress.parseUpperCase("00-11-22-AA-BB-CC"));
+    }
+
+    @Test
+    public void formatsLikeTheFramework() {
+        assertEquals("00:11:22:AA:BB:CC", MacAddress.toString(0x001122aabbccL));
+        assertEquals("FF:FF:FF:FF:FF:FF", MacAddress.toString(0xffffffffffffL));
+        assertEquals("00:00:00:00:00:00", MacAddress.toString(0L));
+    }
+
+    @Test
+    public void roundTrips() {
+        for (long address = 1; address < 0xffffffffffffL; address = address * 3 + 7) {
+            assertEquals(address, MacAddress.parse(MacAddress.toString(address)));
+        }
+    }
+}
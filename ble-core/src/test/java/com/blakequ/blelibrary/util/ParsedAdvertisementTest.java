@@ -0,0 +1,75 @@
+package com.blakequ.blelibrary.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParsedAdvertisementTest {
+
+    @Test
+    public void listsEveryStructureOfARepeatedType() {
+        final ParsedAdvertisement parsed = ParsedAdvertisement.parse(new byte[]{
+                2, 1, 6, 3, (byte) 0xff, 0x4c, 0, 4, (byte) 0xff, 0x59, 0, 7});
+
+        assertEquals(3, parsed.getStructureCount());
+        assertEquals(1, parsed.indexOf(0xff));
+        assertEquals(0xff, parsed.getType(2));
+        assertEquals(9, parsed.getDataOffset(2));
+        assertEquals(3, parsed.getDataLength(2));
+        assertEquals(-1, parsed.indexOf(0x09));
+        assertFalse(parsed.isMalformed());
+    }
+
+    @Test
+    public void walksOnlyAsFarAsAsked() {
+        // The second structure is cut, which only a walk to the end finds
+        final ParsedAdvertisement parsed = ParsedAdvertisement.parse(new byte[]{2, 1, 6, 9, (byte) 0xff, 0x4c});
+
+        assertTrue(parsed.hasStructure(0));
+        assertEquals(0, parsed.indexOf(1));
+        assertTrue(parsed.isMalformed());
+        assertEquals(2, parsed.getStructureCount());
+    }
+
+    @Test
+    public void endsAtAZeroLength() {
+        final ParsedAdvertisement parsed = ParsedAdvertisement.parse(new byte[]{
+                2, 1, 6, 0, 3, 9, 'a', 'b', 0, 0});
+
+        assertEquals(1, parsed.getStructureCount());
+        assertFalse(parsed.hasStructure(1));
+        assertEquals(-1, parsed.indexOf(9));
+        assertFalse(parsed.isMalformed());
+        assertEquals(ParseStatus.OK, parsed.getStatus());
+    }
+
+    @Test
+    public void cutsATruncatedLastStructureAtTheEnd() {
+        final ParsedAdvertisement parsed = ParsedAdvertisement.parse(new byte[]{
+                2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2});
+
+        assertEquals(2, parsed.getStructureCount());
+        assertEquals(0xff, parsed.getType(1));
+        assertEquals(5, parsed.getDataOffset(1));
+        assertEquals(3, parsed.getDataLength(1));
+        assertTrue(parsed.isMalformed());
+        assertEquals(ParseStatus.TRUNCATED, parsed.getStatus());
+    }
+
+    @Test
+    public void dropsALengthWithoutItsType() {
+        final ParsedAdvertisement parsed = ParsedAdvertisement.parse(new byte[]{2, 1, 6, 5});
+
+        assertEquals(1, parsed.getStructureCount());
+        assertTrue(parsed.isMalformed());
+    }
+
+    @Test
+    public void keepsNullAndEmptyRecords() {
+        assertNull(ParsedAdvertisement.parse(null));
+        final ParsedAdvertisement empty = ParsedAdvertisement.parse(new byte[0]);
+        assertEquals(0, empty.getStructureCount());
+        assertFalse(empty.hasStructure(0));
+        assertFalse(empty.isMalformed());
+    }
+}
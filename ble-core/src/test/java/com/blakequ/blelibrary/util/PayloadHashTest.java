@@ -0,0 +1,30 @@
+package com.blakequ.blelibrary.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PayloadHashTest {
+
+    private static byte[] iBeacon(final int beacon) {
+        return new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15,
+                1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                0, 1, (byte) (beacon >> 8), (byte) beacon, (byte) 0xc5};
+    }
+
+    @Test
+    public void hashesMatchFnv1a() {
+        assertEquals(0xcbf29ce484222325L, PayloadHash.hash64(new byte[0]));
+        assertEquals(0xaf63dc4c8601ec8cL, PayloadHash.hash64(new byte[]{'a'}));
+        assertEquals(0, PayloadHash.hash64(null));
+    }
+
+    @Test
+    public void hashesAWindowLikeItsCopy() {
+        final byte[] record = iBeacon(7);
+        final byte[] window = new byte[25];
+        System.arraycopy(record, 5, window, 0, window.length);
+        assertEquals(PayloadHash.hash64(window), PayloadHash.hash64(record, 5, 25));
+        assertNotEquals(PayloadHash.hash64(iBeacon(7)), PayloadHash.hash64(iBeacon(8)));
+    }
+}
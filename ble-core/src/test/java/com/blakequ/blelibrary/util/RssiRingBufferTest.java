@@ -0,0 +1,89 @@
+package com.blakequ.blelibrary.util;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RssiRingBufferTest {
+
+    @Test
+    public void keepsTheLastReadingsOldestFirst() {
+        final RssiRingBuffer buffer = new RssiRingBuffer(3);
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getMean(), 0);
+        buffer.add(1, -50);
+        buffer.add(2, -60);
+        assertArrayEquals(new int[]{-50, -60}, buffer.getReadings());
+        buffer.add(3, -70);
+        buffer.add(4, -80);
+        buffer.add(5, -90);
+        assertEquals(3, buffer.size());
+        assertArrayEquals(new int[]{-70, -80, -90}, buffer.getReadings());
+        assertArrayEquals(new long[]{3, 4, 5}, buffer.getTimestamps());
+        assertEquals(-70, buffer.getRssi(0));
+        assertEquals(5, buffer.getTimestamp(2));
+        assertEquals(-80, buffer.getMean(), 1e-9);
+        assertEquals(200.0 / 3, buffer.getVariance(), 1e-9);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndexPastTheReadings() {
+        final RssiRingBuffer buffer = new RssiRingBuffer(4);
+        buffer.add(1, -50);
+        buffer.getRssi(1);
+    }
+
+    @Test
+    public void initialReadingsKeepOnlyTheLast() {
+        final RssiRingBuffer buffer = new RssiRingBuffer(2, new long[]{1, 2, 3}, new int[]{-40, -50, -60});
+        assertArrayEquals(new int[]{-50, -60}, buffer.getReadings());
+        assertEquals(new RssiRingBuffer(2, new long[]{2, 3}, new int[]{-50, -60}), buffer);
+        assertEquals(new RssiRingBuffer(2, new long[]{2, 3}, new int[]{-50, -60}).hashCode(), buffer.hashCode());
+    }
+
+    @Test
+    public void clearDropsReadingsAndSums() {
+        final RssiRingBuffer buffer = new RssiRingBuffer(2);
+        buffer.add(1, -50);
+        buffer.add(2, -70);
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getVariance(), 0);
+        buffer.add(3, -65);
+        assertEquals(-65, buffer.getMean(), 0);
+        assertEquals(0, buffer.getVariance(), 0);
+    }
+
+    @Test
+    public void runningSumsMatchTheReadingsAfterWrapping() {
+        final Random random = new Random(7);
+        final int capacity = 20;
+        final RssiRingBuffer buffer = new RssiRingBuffer(capacity);
+        final ArrayDeque<Integer> expected = new ArrayDeque<>();
+        for (int i = 0; i < 100000; i++) {
+            final int rssi = -30 - random.nextInt(70);
+            buffer.add(i, rssi);
+            expected.addLast(rssi);
+            if (expected.size() > capacity) {
+                expected.removeFirst();
+            }
+            if (i % 1013 == 0) {
+                double sum = 0;
+                for (int value : expected) {
+                    sum += value;
+                }
+                final double mean = sum / expected.size();
+                double squares = 0;
+                for (int value : expected) {
+                    squares += (value - mean) * (value - mean);
+                }
+                assertEquals(mean, buffer.getMean(), 1e-9);
+                assertEquals(squares / expected.size(), buffer.getVariance(), 1e-6);
+                assertEquals(Math.sqrt(squares / expected.size()), buffer.getStandardDeviation(), 1e-6);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.blakequ.blelibrary;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts the bytes allocated by the current thread, on VMs which can. Robolectric runs the
+ * framework classes on the JVM, so the counts are of the JVM object layout, not of ART.
+ */
+public final class Allocations {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private Allocations() {
+        // TO AVOID INSTANTIATION
+    }
+
+    /**
+     * @return whether the VM counts the bytes allocated by a thread
+     */
+    public static boolean isSupported() {
+        return THREADS instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported();
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far, -1 if the VM doesn't count them
+     */
+    public static long currentThread() {
+        if (!isSupported()) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+    }
+}
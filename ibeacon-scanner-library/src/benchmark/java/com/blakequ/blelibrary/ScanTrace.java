@@ -0,0 +1,222 @@
+package com.blakequ.blelibrary;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.blakequ.blelibrary.util.LongObjectHashMap;
+import com.blakequ.blelibrary.util.MacAddress;
+
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The adverts of a scan, in the order they were received, for benchmarks to replay.
+ * <p>
+ * A recorded trace is read from the file named by the {@code benchmark.trace} system property,
+ * set by gradle from {@code -PbenchmarkTrace=<file>}. Each line holds the timestamp in
+ * milliseconds, the address, the rssi and the scan record in hex of one advert, separated by
+ * spaces. Lines starting with {@code #} are comments.
+ * <p>
+ * Without a recorded trace a steady state venue is made up from a fixed seed: 200 iBeacons
+ * sending a fixed frame make 80% of the adverts, 20 Eddystone beacons interleaving UID and TLM
+ * frames with a changing counter make 10%, and 30 phones rotating their manufacturer data make
+ * the rest, 1000 adverts a second.
+ */
+public final class ScanTrace {
+    private static final long SEED = 0x7eaceL;
+    private static final int SYNTHETIC_ADVERTS = 100000;
+    private static final int IBEACONS = 200;
+    private static final int EDDYSTONES = 20;
+    private static final int PHONES = 30;
+
+    private final String mSource;
+    private final BluetoothDevice[] mDevices;
+    private final int[] mRssis;
+    private final byte[][] mScanRecords;
+    private final long[] mTimestamps;
+    private final int mDeviceCount;
+
+    private ScanTrace(final String source, final List<String> addresses, final int[] rssis,
+                      final byte[][] scanRecords, final long[] timestamps) {
+        mSource = source;
+        mRssis = rssis;
+        mScanRecords = scanRecords;
+        mTimestamps = timestamps;
+        mDevices = new BluetoothDevice[addresses.size()];
+        // A device binds to the bluetooth service when it is created, which Robolectric lacks
+        if (ReflectionHelpers.getStaticField(BluetoothDevice.class, "sService") == null) {
+            final Class<?> service = ReflectionHelpers.loadClass(BluetoothDevice.class.getClassLoader(),
+                    "android.bluetooth.IBluetooth");
+            ReflectionHelpers.setStaticField(BluetoothDevice.class, "sService", Proxy.newProxyInstance(
+                    service.getClassLoader(), new Class<?>[]{service}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    }));
+        }
+        // One device object per address, as the framework hands out
+        final LongObjectHashMap<BluetoothDevice> devices = new LongObjectHashMap<>();
+        for (int i = 0; i < mDevices.length; i++) {
+            final long address = MacAddress.parse(addresses.get(i));
+            BluetoothDevice device = devices.get(address);
+            if (device == null) {
+                device = ReflectionHelpers.callConstructor(BluetoothDevice.class,
+                        ClassParameter.from(String.class, addresses.get(i)));
+                devices.put(address, device);
+            }
+            mDevices[i] = device;
+        }
+        mDeviceCount = devices.size();
+    }
+
+    /**
+     * Loads the recorded trace, or makes up the synthetic one if none is set.
+     *
+     * @return the trace
+     * @throws IOException if the recorded trace can't be read
+     */
+    public static ScanTrace load() throws IOException {
+        final String file = System.getProperty("benchmark.trace");
+        return file == null || file.isEmpty() ? synthetic() : read(new File(file));
+    }
+
+    private static ScanTrace read(final File file) throws IOException {
+        final List<String> addresses = new ArrayList<>();
+        final List<String> lines = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        final int[] rssis = new int[lines.size()];
+        final byte[][] scanRecords = new byte[lines.size()][];
+        final long[] timestamps = new long[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            final String[] fields = lines.get(i).split("\\s+");
+            if (fields.length != 4 || MacAddress.parse(fields[1]) == MacAddress.INVALID) {
+                throw new IOException(file + ":" + (i + 1) + ": expected <timestamp> <address> <rssi> <scan record>");
+            }
+            timestamps[i] = Long.parseLong(fields[0]);
+            addresses.add(fields[1]);
+            rssis[i] = Integer.parseInt(fields[2]);
+            scanRecords[i] = fromHex(fields[3]);
+        }
+        return new ScanTrace("recorded " + file.getName(), addresses, rssis, scanRecords, timestamps);
+    }
+
+    private static byte[] fromHex(final String hex) {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static ScanTrace synthetic() {
+        final Random random = new Random(SEED);
+        final List<String> addresses = new ArrayList<>(SYNTHETIC_ADVERTS);
+        final int[] rssis = new int[SYNTHETIC_ADVERTS];
+        final byte[][] scanRecords = new byte[SYNTHETIC_ADVERTS][];
+        final long[] timestamps = new long[SYNTHETIC_ADVERTS];
+        final int[] tlmCounts = new int[EDDYSTONES];
+        for (int i = 0; i < SYNTHETIC_ADVERTS; i++) {
+            final int kind = random.nextInt(10);
+            if (kind < 8) {
+                final int beacon = random.nextInt(IBEACONS);
+                addresses.add(MacAddress.toString(0x0c0000000000L + beacon));
+                scanRecords[i] = iBeacon(beacon);
+            } else if (kind == 8) {
+                final int beacon = random.nextInt(EDDYSTONES);
+                addresses.add(MacAddress.toString(0x0e0000000000L + beacon));
+                scanRecords[i] = random.nextBoolean() ? eddystoneUid(beacon) : eddystoneTlm(++tlmCounts[beacon]);
+            } else {
+                addresses.add(MacAddress.toString(0x4a0000000000L + random.nextInt(PHONES)));
+                scanRecords[i] = phone(random);
+            }
+            rssis[i] = -50 - random.nextInt(40);
+            timestamps[i] = i;
+        }
+        return new ScanTrace("synthetic venue", addresses, rssis, scanRecords, timestamps);
+    }
+
+    private static byte[] iBeacon(final int beacon) {
+        return new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15,
+                1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                0, 1, (byte) (beacon >> 8), (byte) beacon, (byte) 0xc5};
+    }
+
+    private static byte[] eddystoneUid(final int beacon) {
+        return new byte[]{2, 1, 6, 3, 0x03, (byte) 0xaa, (byte) 0xfe, 0x17, 0x16, (byte) 0xaa, (byte) 0xfe, 0x00, (byte) 0xe7,
+                1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 0, 0, 0, 0, 0, (byte) beacon, 0, 0};
+    }
+
+    private static byte[] eddystoneTlm(final int count) {
+        return new byte[]{2, 1, 6, 3, 0x03, (byte) 0xaa, (byte) 0xfe, 0x11, 0x16, (byte) 0xaa, (byte) 0xfe, 0x20, 0,
+                0x0b, (byte) 0xb8, 0x17, 0, (byte) (count >> 24), (byte) (count >> 16), (byte) (count >> 8), (byte) count,
+                0, 0, 0, 0};
+    }
+
+    private static byte[] phone(final Random random) {
+        final byte[] record = new byte[]{2, 1, 0x1a, 0x0a, (byte) 0xff, 0x4c, 0, 0x10, 0x05, 0, 0, 0, 0, 0, 0};
+        for (int i = 9; i < record.length; i++) {
+            record[i] = (byte) random.nextInt(256);
+        }
+        return record;
+    }
+
+    /**
+     * @return where the trace comes from, for the report
+     */
+    public String getSource() {
+        return mSource;
+    }
+
+    /**
+     * @return the number of adverts
+     */
+    public int size() {
+        return mScanRecords.length;
+    }
+
+    /**
+     * @return the number of distinct addresses
+     */
+    public int getDeviceCount() {
+        return mDeviceCount;
+    }
+
+    public BluetoothDevice getDevice(final int advert) {
+        return mDevices[advert];
+    }
+
+    public int getRssi(final int advert) {
+        return mRssis[advert];
+    }
+
+    public byte[] getScanRecord(final int advert) {
+        return mScanRecords[advert];
+    }
+
+    public long getTimestamp(final int advert) {
+        return mTimestamps[advert];
+    }
+}
@@ -0,0 +1,71 @@
+package com.blakequ.blelibrary.bluetoothcompat;
+
+import com.blakequ.blelibrary.BenchmarkReport;
+import com.blakequ.blelibrary.util.ParseStatus;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+
+/**
+ * Compares the time to parse well formed records with the time to parse mostly malformed ones
+ * from {@link ScanRecordCompatFuzzTest}, rejected without any exception.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class MalformedRecordBenchmark {
+    private static final int RECORDS = 1000;
+    private static final int ROUNDS = 5;
+    private static final int PASSES = 100;
+
+    private static volatile ScanRecordCompat sSink;
+
+    private static long parseTime(final byte[][] records) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            for (int pass = 0; pass < PASSES; pass++) {
+                for (byte[] record : records) {
+                    sSink = ScanRecordCompat.parseFromBytes(record);
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    @Test
+    public void garbageHeavyAgainstWellFormedTraffic() throws IOException {
+        // Nine of every ten records are malformed ones of the fuzz corpus, the others well formed
+        final byte[][] garbage = new byte[RECORDS][];
+        final byte[][] valid = new byte[RECORDS][];
+        int next = 0;
+        for (byte[] record : ScanRecordCompatFuzzTest.corpus(20000)) {
+            if (next == RECORDS) {
+                break;
+            }
+            if (next % 10 == 9) {
+                garbage[next] = ScanRecordCompatFuzzTest.VALID_RECORDS[next % 3].clone();
+                next++;
+            } else if (ScanRecordCompat.parseFromBytes(record).getParseStatus() != ParseStatus.OK) {
+                garbage[next] = record;
+                next++;
+            }
+        }
+        for (int i = 0; i < RECORDS; i++) {
+            valid[i] = ScanRecordCompatFuzzTest.VALID_RECORDS[i % 3].clone();
+        }
+        final long validTime = parseTime(valid);
+        final long garbageTime = parseTime(garbage);
+
+        final int records = RECORDS * PASSES;
+        final BenchmarkReport report = BenchmarkReport.open(MalformedRecordBenchmark.class);
+        report.line("%d records, best of %d rounds", records, ROUNDS);
+        report.line("well formed   %.0f records/s", records * 1e9 / validTime);
+        report.line("90%% malformed %.0f records/s", records * 1e9 / garbageTime);
+        report.close();
+    }
+}
@@ -0,0 +1,71 @@
+package com.blakequ.blelibrary.bluetoothcompat;
+
+import com.blakequ.blelibrary.Allocations;
+import com.blakequ.blelibrary.BenchmarkReport;
+import com.blakequ.blelibrary.util.ParsedAdvertisement;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+
+/**
+ * Measures the bytes allocated by {@link ScanRecordCompat#fromParsedAdvertisement} per
+ * record, the parse of the AD structures not included. Containers are only created for the
+ * AD types a record holds, so a record without uuids, service or manufacturer data only
+ * costs the record itself and the builder its fields are decoded into. A rejected record
+ * costs no builder.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class ScanRecordCompatBenchmark {
+    private static final int RECORDS = 20000;
+    private static final int ROUNDS = 5;
+
+    private static final byte[] FLAGS_AND_TX_POWER = new byte[]{2, 1, 6, 2, 0x0a, (byte) 0xc5, 0, 0, 0};
+    private static final byte[] IBEACON = new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15,
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 1, 0, 2, (byte) 0xc5};
+    private static final byte[] EDDYSTONE_UID = new byte[]{2, 1, 6, 3, 0x03, (byte) 0xaa, (byte) 0xfe,
+            0x17, 0x16, (byte) 0xaa, (byte) 0xfe, 0x00, (byte) 0xe7,
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 0};
+    // The manufacturer data claims more bytes than the record holds
+    private static final byte[] TRUNCATED = new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15, 1, 2};
+
+    private static volatile ScanRecordCompat sSink;
+
+    private static double bytesPerRecord(final byte[] record) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            // Parsed and walked beforehand, as the device and its record store share the parse
+            final ParsedAdvertisement[] parsed = new ParsedAdvertisement[RECORDS];
+            for (int i = 0; i < RECORDS; i++) {
+                parsed[i] = ParsedAdvertisement.parse(record.clone());
+                parsed[i].getStructureCount();
+            }
+            final long before = Allocations.currentThread();
+            for (int i = 0; i < RECORDS; i++) {
+                sSink = ScanRecordCompat.fromParsedAdvertisement(parsed[i]);
+            }
+            final long allocated = Allocations.currentThread() - before;
+            best = Math.min(best, (double) allocated / RECORDS);
+        }
+        return best;
+    }
+
+    @Test
+    public void bytesPerRecord() throws IOException {
+        final BenchmarkReport report = BenchmarkReport.open(ScanRecordCompatBenchmark.class);
+        if (!Allocations.isSupported()) {
+            report.line("the VM doesn't count the bytes allocated by a thread");
+        } else {
+            report.line("bytes per record, best of %d rounds of %d records", ROUNDS, RECORDS);
+            report.line("flags and tx power %.1f", bytesPerRecord(FLAGS_AND_TX_POWER));
+            report.line("iBeacon            %.1f", bytesPerRecord(IBEACON));
+            report.line("Eddystone-UID      %.1f", bytesPerRecord(EDDYSTONE_UID));
+            report.line("truncated          %.1f", bytesPerRecord(TRUNCATED));
+        }
+        report.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.blakequ.blelibrary.device;
+
+import com.blakequ.blelibrary.BenchmarkReport;
+import com.blakequ.blelibrary.ScanTrace;
+import com.blakequ.blelibrary.device.beacon.BeaconType;
+import com.blakequ.blelibrary.device.beacon.BeaconUtils;
+import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconDevice;
+import com.blakequ.blelibrary.util.LongObjectHashMap;
+import com.blakequ.blelibrary.util.MacAddress;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+
+/**
+ * Replays a {@link ScanTrace} through {@link DeviceRegistry#update}, which skips decoding the
+ * adverts repeating the payload of their device, against decoding every advert the way the
+ * registry decodes a new payload.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class DeviceRegistryBenchmark {
+    private static final int ROUNDS = 5;
+
+    private static volatile Object sSink;
+
+    private static long replay(final ScanTrace trace, final DeviceRegistry registry) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < trace.size(); i++) {
+            sSink = registry.update(trace.getDevice(i), trace.getRssi(i), trace.getScanRecord(i), trace.getTimestamp(i));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long decodeAll(final ScanTrace trace) {
+        final long start = System.nanoTime();
+        final LongObjectHashMap<BluetoothLeDevice> devices = new LongObjectHashMap<>();
+        for (int i = 0; i < trace.size(); i++) {
+            final long address = MacAddress.parse(trace.getDevice(i).getAddress());
+            BluetoothLeDevice device = new BluetoothLeDevice(trace.getDevice(i), trace.getRssi(i),
+                    trace.getScanRecord(i), trace.getTimestamp(i));
+            if (BeaconUtils.getBeaconType(device) == BeaconType.IBEACON) {
+                device = new IBeaconDevice(device);
+            }
+            final BluetoothLeDevice known = devices.get(address);
+            if (known != null) {
+                device.takeRssiHistory(known);
+            }
+            devices.put(address, device);
+        }
+        sSink = devices;
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void repeatSkipAgainstDecodingEveryAdvert() throws IOException {
+        final ScanTrace trace = ScanTrace.load();
+        DeviceRegistry registry = null;
+        long skip = Long.MAX_VALUE;
+        long all = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            registry = new DeviceRegistry();
+            skip = Math.min(skip, replay(trace, registry));
+            all = Math.min(all, decodeAll(trace));
+        }
+
+        final BenchmarkReport report = BenchmarkReport.open(DeviceRegistryBenchmark.class);
+        report.line("%s trace, %d adverts from %d devices, best of %d rounds", trace.getSource(),
+                trace.size(), trace.getDeviceCount(), ROUNDS);
+        report.line("registry skip ratio %.3f", registry.getSkipRatio());
+        report.line("DeviceRegistry.update %.1f ns/advert", (double) skip / trace.size());
+        report.line("decode every advert   %.1f ns/advert", (double) all / trace.size());
+        report.close();
+    }
+}
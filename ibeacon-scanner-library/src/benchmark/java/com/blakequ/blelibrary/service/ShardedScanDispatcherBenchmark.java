@@ -0,0 +1,163 @@
+package com.blakequ.blelibrary.service;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.blakequ.blelibrary.BenchmarkReport;
+import com.blakequ.blelibrary.ScanTrace;
+import com.blakequ.blelibrary.device.DeviceRegistry;
+import com.blakequ.blelibrary.scanner.ScanResultRing;
+import com.blakequ.blelibrary.scanner.ScanResultWorker;
+import com.blakequ.blelibrary.scanner.ShardedScanDispatcher;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+
+/**
+ * Measures the scan results processed per second against the number of shards. One producer
+ * replays a {@link ScanTrace} into a {@link ShardedScanDispatcher} as fast as it can, and every
+ * shard runs the {@link ScanService.ScanResultProcessor} of the service: its own
+ * {@link DeviceRegistry}, and the ranging aggregator and region monitor shared by all shards,
+ * each with a region matching every beacon.
+ * <p>
+ * The producer keeps one core busy, so shards are only added while there are cores left for
+ * them. Results the shards can't keep up with are dropped and reported as lost.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class ShardedScanDispatcherBenchmark {
+    private static final long WARM_UP = 500L;
+    private static final long DURATION = 1000L;
+    private static final int ROUNDS = 3;
+
+    private static final class CountingProcessor implements ScanResultRing.Handler {
+        private final ScanService.ScanResultProcessor mProcessor;
+        // Only written by the thread of the shard
+        volatile long processed;
+
+        CountingProcessor(final ScanService.ScanResultProcessor processor) {
+            mProcessor = processor;
+        }
+
+        @Override
+        public void onScanResult(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+            mProcessor.onScanResult(device, rssi, scanRecord, timestamp);
+            processed++;
+        }
+    }
+
+    private static final class Result {
+        double throughput;
+        double lost;
+        double[] perShard;
+    }
+
+    private static Result measure(final ScanTrace trace, final int shardCount) {
+        final RangingAggregator aggregator = new RangingAggregator();
+        final RegionMonitor monitor = new RegionMonitor(10000L);
+        aggregator.addRegion(new Region("benchmark"));
+        monitor.addRegion(new Region("benchmark"));
+        final CountingProcessor[] processors = new CountingProcessor[shardCount];
+        final ShardedScanDispatcher dispatcher = new ShardedScanDispatcher("benchmark", shardCount,
+                ScanResultWorker.DEFAULT_CAPACITY, new ShardedScanDispatcher.HandlerFactory() {
+                    @Override
+                    public ScanResultRing.Handler newHandler(final int shard) {
+                        processors[shard] = new CountingProcessor(new ScanService.ScanResultProcessor(
+                                new DeviceRegistry(), aggregator, monitor));
+                        return processors[shard];
+                    }
+                });
+        dispatcher.start();
+        try {
+            final long[] next = new long[1];
+            replayFor(dispatcher, trace, WARM_UP, next);
+            final long[] before = processed(processors);
+            final long lostBefore = dispatcher.getLostCount();
+            final long offeredBefore = next[0];
+            final long start = System.nanoTime();
+            replayFor(dispatcher, trace, DURATION, next);
+            final long elapsed = System.nanoTime() - start;
+            final long[] after = processed(processors);
+
+            final Result result = new Result();
+            result.perShard = new double[shardCount];
+            long total = 0;
+            for (int shard = 0; shard < shardCount; shard++) {
+                result.perShard[shard] = (after[shard] - before[shard]) * 1e9 / elapsed;
+                total += after[shard] - before[shard];
+            }
+            result.throughput = total * 1e9 / elapsed;
+            result.lost = (double) (dispatcher.getLostCount() - lostBefore) / (next[0] - offeredBefore);
+            return result;
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    // Offers the trace over and over, next[0] counts the adverts offered
+    private static void replayFor(final ShardedScanDispatcher dispatcher, final ScanTrace trace,
+                                  final long duration, final long[] next) {
+        final int size = trace.size();
+        final long span = trace.getTimestamp(size - 1) - trace.getTimestamp(0) + 1;
+        final long end = System.nanoTime() + duration * 1000000L;
+        long offered = next[0];
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 1024; i++, offered++) {
+                final int advert = (int) (offered % size);
+                final long timestamp = trace.getTimestamp(advert) + offered / size * span;
+                dispatcher.offer(trace.getDevice(advert), trace.getRssi(advert), trace.getScanRecord(advert), timestamp);
+            }
+        }
+        next[0] = offered;
+    }
+
+    private static long[] processed(final CountingProcessor[] processors) {
+        final long[] processed = new long[processors.length];
+        for (int i = 0; i < processors.length; i++) {
+            processed[i] = processors[i].processed;
+        }
+        return processed;
+    }
+
+    private static Result best(final ScanTrace trace, final int shardCount) {
+        Result best = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            final Result result = measure(trace, shardCount);
+            if (best == null || result.throughput > best.throughput) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void throughputAgainstShardCount() throws IOException {
+        final ScanTrace trace = ScanTrace.load();
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final int maxShards = Math.max(1, cores - 1);
+
+        final BenchmarkReport report = BenchmarkReport.open(ShardedScanDispatcherBenchmark.class);
+        report.line("%s trace, %d adverts from %d devices, best of %d rounds of %d ms", trace.getSource(),
+                trace.size(), trace.getDeviceCount(), ROUNDS, DURATION);
+        if (cores < 3) {
+            report.line("fewer than 3 cores: the producer and the shards share cores, scaling can't be measured");
+        }
+        double one = 0;
+        for (int shards = 1; shards <= maxShards; shards++) {
+            final Result result = best(trace, shards);
+            if (shards == 1) {
+                one = result.throughput;
+            }
+            final StringBuilder perShard = new StringBuilder();
+            for (double throughput : result.perShard) {
+                perShard.append(perShard.length() == 0 ? "" : " ").append(Math.round(throughput));
+            }
+            report.line("%d shards: %.0f results/s, %.2fx 1 shard, %.1f%% lost, per shard %s results/s",
+                    shards, result.throughput, result.throughput / one, result.lost * 100, perShard);
+        }
+        report.close();
+    }
+}
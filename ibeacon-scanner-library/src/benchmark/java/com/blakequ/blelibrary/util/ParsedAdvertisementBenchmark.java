@@ -0,0 +1,116 @@
+package com.blakequ.blelibrary.util;
+
+import com.blakequ.blelibrary.Allocations;
+import com.blakequ.blelibrary.BenchmarkReport;
+import com.blakequ.blelibrary.bluetoothcompat.ScanRecordCompat;
+import com.blakequ.blelibrary.device.adrecord.AdRecordStore;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+
+/**
+ * Compares the three parsers an advert went through before {@link ParsedAdvertisement}, see
+ * {@link PreSeriesParsers}, with a single parse shared by the record store of the device,
+ * {@link ScanRecordCompat} and {@link ScanRecordUtils}. Each side reads the same fields.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class ParsedAdvertisementBenchmark {
+    private static final int RECORDS = 1024;
+    private static final int PASSES = 100;
+    private static final int ROUNDS = 7;
+    private static final byte[][] CORPUS = new byte[][]{
+            // iBeacon advert followed by a scan response with a name, a service UUID and the tx power
+            {2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13,
+                    14, 15, 16, 0, 1, 0, 2, (byte) 0xc5, 8, 0x09, 'B', 'e', 'a', 'c', 'o', 'n', '1',
+                    3, 0x03, (byte) 0xaa, (byte) 0xfe, 2, 0x0a, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                    0, 0, 0, 0, 0, 0, 0, 0, 0},
+            // Eddystone UID
+            {2, 1, 6, 3, 0x03, (byte) 0xaa, (byte) 0xfe, 0x17, 0x16, (byte) 0xaa, (byte) 0xfe, 0,
+                    (byte) 0xee, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 0, 0, 0,
+                    0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                    0, 0},
+            // Phone with manufacturer data, a 128 bit service UUID and a short name
+            {2, 1, 0x1a, 0x11, 0x07, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 9,
+                    (byte) 0xff, 0x06, 0, 1, 9, 0x20, 2, 0x33, 0x44, 5, 0x08, 'P', 'h', 'o', 'n', 0,
+                    0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
+    };
+
+    private static volatile int sSink;
+
+    private static int separate(final byte[] record) {
+        final AdRecordStore store = new AdRecordStore(PreSeriesParsers.parseScanRecordAsSparseArray(record));
+        final PreSeriesParsers.Fields compat = PreSeriesParsers.parseScanRecordCompat(record);
+        final PreSeriesParsers.Fields utils = PreSeriesParsers.parseScanRecordUtils(record);
+        int sum = store.getRecord(0xff) == null ? 0 : 1;
+        sum += store.getLocalNameComplete() == null ? 0 : 1;
+        sum += compat.manufacturerSpecificData.get(0x4c) == null ? 0 : 1;
+        sum += compat.serviceData.size() + compat.txPowerLevel;
+        sum += utils.serviceUuids == null ? 0 : utils.serviceUuids.size();
+        sum += utils.deviceName == null ? 0 : 1;
+        return sum;
+    }
+
+    private static int shared(final byte[] record) {
+        final ParsedAdvertisement parsed = ParsedAdvertisement.parse(record);
+        final AdRecordStore store = new AdRecordStore(parsed);
+        final ScanRecordCompat compat = ScanRecordCompat.fromParsedAdvertisement(parsed);
+        final ScanRecordUtils utils = ScanRecordUtils.fromParsedAdvertisement(parsed);
+        int sum = store.getRecord(0xff) == null ? 0 : 1;
+        sum += store.getLocalNameComplete() == null ? 0 : 1;
+        sum += compat.getManufacturerSpecificData(0x4c) == null ? 0 : 1;
+        sum += compat.getServiceData().size() + compat.getTxPowerLevel();
+        sum += utils.getServiceUuids() == null ? 0 : utils.getServiceUuids().size();
+        sum += utils.getDeviceName() == null ? 0 : 1;
+        return sum;
+    }
+
+    // Returns the nanoseconds, and the allocated bytes in bytes[0]
+    private static long run(final byte[][] records, final boolean shared, final long[] bytes) {
+        final long allocated = Allocations.currentThread();
+        final long start = System.nanoTime();
+        int sum = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (byte[] record : records) {
+                sum += shared ? shared(record) : separate(record);
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        bytes[0] = Allocations.currentThread() - allocated;
+        sSink = sum;
+        return elapsed;
+    }
+
+    @Test
+    public void preSeriesParsersAgainstSharedParse() throws IOException {
+        // Distinct arrays, as every scan callback delivers a new one, few enough to stay in cache
+        final byte[][] records = new byte[RECORDS][];
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = CORPUS[i % CORPUS.length].clone();
+        }
+        final long[] bytes = new long[1];
+        long separate = Long.MAX_VALUE;
+        long shared = Long.MAX_VALUE;
+        long separateBytes = 0;
+        long sharedBytes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            separate = Math.min(separate, run(records, false, bytes));
+            separateBytes = bytes[0];
+            shared = Math.min(shared, run(records, true, bytes));
+            sharedBytes = bytes[0];
+        }
+
+        final double adverts = (double) RECORDS * PASSES;
+        final BenchmarkReport report = BenchmarkReport.open(ParsedAdvertisementBenchmark.class);
+        report.line("%d adverts of %d kinds, best of %d rounds", RECORDS * PASSES, CORPUS.length, ROUNDS);
+        report.line("pre-series parsers: %.1f ns/advert, %.0f bytes/advert", separate / adverts,
+                separateBytes < 0 ? Double.NaN : separateBytes / adverts);
+        report.line("shared parse:       %.1f ns/advert, %.0f bytes/advert", shared / adverts,
+                sharedBytes < 0 ? Double.NaN : sharedBytes / adverts);
+        report.close();
+    }
+}
@@ -0,0 +1,196 @@
+package com.blakequ.blelibrary.util;
+
+import android.os.ParcelUuid;
+import android.support.v4.util.ArrayMap;
+import android.util.SparseArray;
+
+import com.blakequ.blelibrary.device.adrecord.AdRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The scan record parsers as they were before {@link ParsedAdvertisement}, each walking and
+ * copying the whole record: {@code AdRecordUtils.parseScanRecordAsSparseArray} for the record
+ * store of a device, and the {@code parseFromBytes} of {@code ScanRecordCompat} and of
+ * {@link ScanRecordUtils}, which only differed in their service data map.
+ */
+final class PreSeriesParsers {
+    private static final int DATA_TYPE_FLAGS = 0x01;
+    private static final int DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL = 0x02;
+    private static final int DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE = 0x03;
+    private static final int DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL = 0x04;
+    private static final int DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE = 0x05;
+    private static final int DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL = 0x06;
+    private static final int DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE = 0x07;
+    private static final int DATA_TYPE_LOCAL_NAME_SHORT = 0x08;
+    private static final int DATA_TYPE_LOCAL_NAME_COMPLETE = 0x09;
+    private static final int DATA_TYPE_TX_POWER_LEVEL = 0x0A;
+    private static final int DATA_TYPE_SERVICE_DATA = 0x16;
+    private static final int DATA_TYPE_MANUFACTURER_SPECIFIC_DATA = 0xFF;
+    private static final int UUID_BYTES_16_BIT = 2;
+    private static final int UUID_BYTES_32_BIT = 4;
+    private static final int UUID_BYTES_128_BIT = 16;
+    private static final ParcelUuid BASE_UUID =
+            ParcelUuid.fromString("00000000-0000-1000-8000-00805F9B34FB");
+
+    /**
+     * The fields of a scan record, as {@code ScanRecordCompat} and {@link ScanRecordUtils} kept them.
+     */
+    static final class Fields {
+        final List<ParcelUuid> serviceUuids;
+        final SparseArray<byte[]> manufacturerSpecificData;
+        final Map<ParcelUuid, byte[]> serviceData;
+        final int advertiseFlags;
+        final int txPowerLevel;
+        final String deviceName;
+
+        Fields(final List<ParcelUuid> serviceUuids, final SparseArray<byte[]> manufacturerData,
+               final Map<ParcelUuid, byte[]> serviceData, final int advertiseFlags,
+               final int txPowerLevel, final String localName) {
+            this.serviceUuids = serviceUuids;
+            this.manufacturerSpecificData = manufacturerData;
+            this.serviceData = serviceData;
+            this.advertiseFlags = advertiseFlags;
+            this.txPowerLevel = txPowerLevel;
+            this.deviceName = localName;
+        }
+    }
+
+    private PreSeriesParsers() {
+        // TO AVOID INSTANTIATION
+    }
+
+    static SparseArray<AdRecord> parseScanRecordAsSparseArray(final byte[] scanRecord) {
+        final SparseArray<AdRecord> records = new SparseArray<>();
+
+        int index = 0;
+        while (index < scanRecord.length) {
+            final int length = scanRecord[index++];
+            if (length == 0) break;
+
+            final int type = ByteUtils.getIntFromByte(scanRecord[index]);
+            if (type == 0) break;
+
+            final byte[] data = Arrays.copyOfRange(scanRecord, index + 1, index + length);
+            records.put(type, new AdRecord(length, type, data));
+            index += length;
+        }
+        return records;
+    }
+
+    static Fields parseScanRecordCompat(final byte[] scanRecord) {
+        return parseFromBytes(scanRecord, new ArrayMap<ParcelUuid, byte[]>());
+    }
+
+    static Fields parseScanRecordUtils(final byte[] scanRecord) {
+        return parseFromBytes(scanRecord, new HashMap<ParcelUuid, byte[]>());
+    }
+
+    private static Fields parseFromBytes(final byte[] scanRecord, final Map<ParcelUuid, byte[]> serviceData) {
+        int currentPos = 0;
+        int advertiseFlag = -1;
+        List<ParcelUuid> serviceUuids = new ArrayList<>();
+        String localName = null;
+        int txPowerLevel = Integer.MIN_VALUE;
+        final SparseArray<byte[]> manufacturerData = new SparseArray<>();
+
+        try {
+            while (currentPos < scanRecord.length) {
+                final int length = scanRecord[currentPos++] & 0xFF;
+                if (length == 0) {
+                    break;
+                }
+                final int dataLength = length - 1;
+                final int fieldType = scanRecord[currentPos++] & 0xFF;
+                switch (fieldType) {
+                    case DATA_TYPE_FLAGS:
+                        advertiseFlag = scanRecord[currentPos] & 0xFF;
+                        break;
+                    case DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL:
+                    case DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE:
+                        parseServiceUuid(scanRecord, currentPos, dataLength, UUID_BYTES_16_BIT, serviceUuids);
+                        break;
+                    case DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL:
+                    case DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE:
+                        parseServiceUuid(scanRecord, currentPos, dataLength, UUID_BYTES_32_BIT, serviceUuids);
+                        break;
+                    case DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL:
+                    case DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE:
+                        parseServiceUuid(scanRecord, currentPos, dataLength, UUID_BYTES_128_BIT, serviceUuids);
+                        break;
+                    case DATA_TYPE_LOCAL_NAME_SHORT:
+                    case DATA_TYPE_LOCAL_NAME_COMPLETE:
+                        localName = new String(extractBytes(scanRecord, currentPos, dataLength));
+                        break;
+                    case DATA_TYPE_TX_POWER_LEVEL:
+                        txPowerLevel = scanRecord[currentPos];
+                        break;
+                    case DATA_TYPE_SERVICE_DATA:
+                        final ParcelUuid serviceDataUuid = parseUuidFrom(
+                                extractBytes(scanRecord, currentPos, UUID_BYTES_16_BIT));
+                        serviceData.put(serviceDataUuid, extractBytes(scanRecord,
+                                currentPos + UUID_BYTES_16_BIT, dataLength - UUID_BYTES_16_BIT));
+                        break;
+                    case DATA_TYPE_MANUFACTURER_SPECIFIC_DATA:
+                        final int manufacturerId = ((scanRecord[currentPos + 1] & 0xFF) << 8) +
+                                (scanRecord[currentPos] & 0xFF);
+                        manufacturerData.put(manufacturerId,
+                                extractBytes(scanRecord, currentPos + 2, dataLength - 2));
+                        break;
+                    default:
+                        break;
+                }
+                currentPos += dataLength;
+            }
+
+            if (serviceUuids.isEmpty()) {
+                serviceUuids = null;
+            }
+            return new Fields(serviceUuids, manufacturerData, serviceData, advertiseFlag, txPowerLevel, localName);
+        } catch (Exception e) {
+            return new Fields(null, null, null, -1, Integer.MIN_VALUE, null);
+        }
+    }
+
+    private static void parseServiceUuid(final byte[] scanRecord, int currentPos, int dataLength,
+                                         final int uuidLength, final List<ParcelUuid> serviceUuids) {
+        while (dataLength > 0) {
+            serviceUuids.add(parseUuidFrom(extractBytes(scanRecord, currentPos, uuidLength)));
+            dataLength -= uuidLength;
+            currentPos += uuidLength;
+        }
+    }
+
+    private static ParcelUuid parseUuidFrom(final byte[] uuidBytes) {
+        final int length = uuidBytes.length;
+        if (length != UUID_BYTES_16_BIT && length != UUID_BYTES_32_BIT && length != UUID_BYTES_128_BIT) {
+            throw new IllegalArgumentException("uuidBytes length invalid - " + length);
+        }
+        if (length == UUID_BYTES_128_BIT) {
+            final ByteBuffer buf = ByteBuffer.wrap(uuidBytes).order(ByteOrder.LITTLE_ENDIAN);
+            return new ParcelUuid(new UUID(buf.getLong(8), buf.getLong(0)));
+        }
+        long shortUuid = uuidBytes[0] & 0xFF;
+        shortUuid += (uuidBytes[1] & 0xFF) << 8;
+        if (length == UUID_BYTES_32_BIT) {
+            shortUuid += (uuidBytes[2] & 0xFF) << 16;
+            shortUuid += (uuidBytes[3] & 0xFF) << 24;
+        }
+        final long msb = BASE_UUID.getUuid().getMostSignificantBits() + (shortUuid << 32);
+        final long lsb = BASE_UUID.getUuid().getLeastSignificantBits();
+        return new ParcelUuid(new UUID(msb, lsb));
+    }
+
+    private static byte[] extractBytes(final byte[] scanRecord, final int start, final int length) {
+        final byte[] bytes = new byte[length];
+        System.arraycopy(scanRecord, start, bytes, 0, length);
+        return bytes;
+    }
+}
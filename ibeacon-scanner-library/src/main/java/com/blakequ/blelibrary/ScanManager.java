@@ -13,8 +13,13 @@ import android.os.Messenger;
 import android.os.RemoteException;
 
 import com.blakequ.blelibrary.bluetoothcompat.ScanFilterCompat;
+import com.blakequ.blelibrary.device.beacon.BeaconClassifier;
+import com.blakequ.blelibrary.device.beacon.BeaconLayoutRegistry;
+import com.blakequ.blelibrary.device.beacon.BeaconLayouts;
 import com.blakequ.blelibrary.logging.LogManager;
 import com.blakequ.blelibrary.powersave.BackgroundPowerSaver;
+import com.blakequ.blelibrary.scanner.OverloadPolicy;
+import com.blakequ.blelibrary.scanner.ScanResultWorker;
 import com.blakequ.blelibrary.scanner.StartRMData;
 import com.blakequ.blelibrary.service.MonitorNotifier;
 import com.blakequ.blelibrary.service.RangeNotifier;
@@ -83,6 +88,8 @@ public class ScanManager {
      */
     public static final long DEFAULT_EXIT_PERIOD = 10000L;
     private static long sExitRegionPeriod = DEFAULT_EXIT_PERIOD;
+    private static OverloadPolicy sOverloadPolicy = OverloadPolicy.DROP_NEWEST;
+    private static int sOverloadSampleRate = ScanResultWorker.DEFAULT_SAMPLE_RATE;
     private boolean mBackgroundMode = false;
     private boolean serviceConnected = false;
     private static boolean sAndroidLScanningDisabled = false;
@@ -459,6 +466,68 @@ public class ScanManager {
         return sExitRegionPeriod;
     }
 
+    /**
+     * Set what the scan service does with new scan results when it can't keep up with them,
+     * takes effect the next time the service is created
+     *
+     * @param policy the overload policy, {@link OverloadPolicy#DROP_NEWEST} by default
+     */
+    public static void setOverloadPolicy(OverloadPolicy policy){
+        if (policy == null) {
+            throw new NullPointerException("policy may not be null");
+        }
+        sOverloadPolicy = policy;
+    }
+
+    /**
+     * Get what the scan service does with new scan results when it can't keep up with them
+     *
+     * @return the overload policy
+     */
+    public static OverloadPolicy getOverloadPolicy(){
+        return sOverloadPolicy;
+    }
+
+    /**
+     * Set how many scan results of a device {@link OverloadPolicy#SAMPLE} keeps one of
+     *
+     * @param sampleRate the sample rate, at least 1
+     */
+    public static void setOverloadSampleRate(int sampleRate){
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sampleRate must be at least 1: " + sampleRate);
+        }
+        sOverloadSampleRate = sampleRate;
+    }
+
+    /**
+     * Get how many scan results of a device {@link OverloadPolicy#SAMPLE} keeps one of
+     *
+     * @return the sample rate
+     */
+    public static int getOverloadSampleRate(){
+        return sOverloadSampleRate;
+    }
+
+    /**
+     * Set the beacon layouts used to classify scanned devices, for example the default
+     * layouts of {@link BeaconLayouts#createDefaultBuilder()} with vendor layouts added.
+     *
+     * @param registry the compiled beacon layouts
+     */
+    public static void setBeaconLayoutRegistry(BeaconLayoutRegistry registry){
+        BeaconClassifier.setLayoutRegistry(registry);
+    }
+
+    /**
+     * Get the beacon layouts used to classify scanned devices
+     *
+     * @return the compiled beacon layouts
+     */
+    public static BeaconLayoutRegistry getBeaconLayoutRegistry(){
+        return BeaconClassifier.getLayoutRegistry();
+    }
+
     private void verifyServiceDeclaration() {
         final PackageManager packageManager = mContext.getPackageManager();
         final Intent intent = new Intent(mContext, ScanService.class);
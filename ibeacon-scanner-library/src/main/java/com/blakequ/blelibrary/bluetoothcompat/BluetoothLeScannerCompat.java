@@ -28,6 +28,12 @@ import android.support.annotation.Nullable;
 import android.support.annotation.RequiresPermission;
 import android.support.v4.util.SimpleArrayMap;
 
+import com.blakequ.blelibrary.device.beacon.BeaconBatch;
+import com.blakequ.blelibrary.device.beacon.BeaconBatchDecoder;
+import com.blakequ.blelibrary.device.beacon.BeaconClassifier;
+import com.blakequ.blelibrary.device.beacon.BeaconUtils;
+import com.blakequ.blelibrary.util.ParsedAdvertisement;
+
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
@@ -194,9 +200,11 @@ public class BluetoothLeScannerCompat {
             ScanCallbackCompat callbackCompat = callbackCompatRef.get();
             if (callbackCompat == null) return;
 
+            // Parsed once, a BluetoothLeDevice built from the result shares the same parse
+            ParsedAdvertisement parsed = ParsedAdvertisement.parse(scanRecord);
             ScanResultCompat result = new ScanResultCompat(
                     device,
-                    ScanRecordCompat.parseFromBytes(scanRecord),
+                    ScanRecordCompat.fromParsedAdvertisement(parsed),
                     rssi, System.nanoTime());
 
             // No filters so return any result
@@ -219,6 +227,9 @@ public class BluetoothLeScannerCompat {
     static class API21ScanCallback extends ScanCallback {
 
         private final WeakReference<ScanCallbackCompat> callbackCompatRef;
+        // Batches are delivered one at a time, so the columns are reused across them
+        private final BeaconBatch beaconBatch = new BeaconBatch();
+        private BeaconBatchDecoder batchDecoder;
 
         API21ScanCallback(ScanCallbackCompat callbackCompat) {
             this.callbackCompatRef = new WeakReference<>(callbackCompat);
@@ -241,6 +252,13 @@ public class BluetoothLeScannerCompat {
                 compatResults.add(new ScanResultCompat(result));
             }
             callbackCompat.onBatchScanResults(compatResults);
+
+            if (batchDecoder == null || batchDecoder.getRegistry() != BeaconClassifier.getLayoutRegistry()) {
+                batchDecoder = new BeaconBatchDecoder();
+            }
+            beaconBatch.clear();
+            BeaconUtils.decodeBatch(batchDecoder, compatResults, beaconBatch);
+            callbackCompat.onBatchBeaconResults(beaconBatch);
         }
 
         @Override
@@ -16,6 +16,8 @@
  */
 package com.blakequ.blelibrary.bluetoothcompat;
 
+import com.blakequ.blelibrary.device.beacon.BeaconBatch;
+
 import java.util.List;
 
 /**
@@ -66,6 +68,18 @@ public abstract class ScanCallbackCompat {
     public void onBatchScanResults(List<ScanResultCompat> results) {
     }
 
+    /**
+     * Callback when batch results are delivered, right after {@link #onBatchScanResults(List)},
+     * with the same results decoded column by column against the current beacon layouts.
+     * <p>
+     * The batch is reused for the next delivery, copy what must outlive the call.
+     *
+     * @param batch One row per scan result, in the order of the results.
+     */
+    @SuppressWarnings("EmptyMethod")
+    public void onBatchBeaconResults(BeaconBatch batch) {
+    }
+
     /**
      * Callback when scan could not be started.
      *
@@ -28,6 +28,10 @@ import android.os.ParcelUuid;
 import android.os.Parcelable;
 import android.support.annotation.Nullable;
 
+import com.blakequ.blelibrary.util.MacAddress;
+import com.blakequ.blelibrary.util.ParcelUuidCache;
+import com.blakequ.blelibrary.util.ScanFilterUtils;
+
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
@@ -52,6 +56,9 @@ public class ScanFilterCompat implements Parcelable {
 
     @Nullable
     private final String mDeviceAddress;
+    // mDeviceAddress as a 48 bit value, compared instead of the string for every scan result.
+    // Parsed upper case only, so it matches the same addresses String.equals did
+    private final long mMacAddress;
 
     @Nullable
     private final ParcelUuid mServiceUuid;
@@ -77,10 +84,12 @@ public class ScanFilterCompat implements Parcelable {
                              @Nullable byte[] serviceData, @Nullable byte[] serviceDataMask,
                              int manufacturerId, @Nullable byte[] manufacturerData, @Nullable byte[] manufacturerDataMask) {
         mDeviceName = name;
-        mServiceUuid = uuid;
+        // Canonical instances, so parsed UUIDs can be compared by identity first
+        mServiceUuid = ParcelUuidCache.canonicalize(uuid);
         mServiceUuidMask = uuidMask;
         mDeviceAddress = deviceAddress;
-        mServiceDataUuid = serviceDataUuid;
+        mMacAddress = MacAddress.parseUpperCase(deviceAddress);
+        mServiceDataUuid = ParcelUuidCache.canonicalize(serviceDataUuid);
         mServiceData = serviceData;
         mServiceDataMask = serviceDataMask;
         mManufacturerId = manufacturerId;
@@ -299,9 +308,12 @@ public class ScanFilterCompat implements Parcelable {
         }
         BluetoothDevice device = scanResult.getDevice();
         // Device match.
-        if (mDeviceAddress != null
-                && (device == null || !mDeviceAddress.equals(device.getAddress()))) {
-            return false;
+        if (mDeviceAddress != null) {
+            final long address = device == null ? MacAddress.INVALID : MacAddress.parseUpperCase(device.getAddress());
+            // An address which doesn't parse matches nothing, as String.equals did
+            if (address == MacAddress.INVALID || mMacAddress == MacAddress.INVALID || address != mMacAddress) {
+                return false;
+            }
         }
 
         ScanRecordCompat scanRecord = scanResult.getScanRecord();
@@ -326,7 +338,7 @@ public class ScanFilterCompat implements Parcelable {
 
         // Service data match
         if (mServiceDataUuid != null) {
-            if (!matchesPartialData(mServiceData, mServiceDataMask,
+            if (!ScanFilterUtils.matchesPartialData(mServiceData, mServiceDataMask,
                     scanRecord.getServiceData(mServiceDataUuid))) {
                 return false;
             }
@@ -334,7 +346,7 @@ public class ScanFilterCompat implements Parcelable {
 
         // Manufacturer data match.
         if (mManufacturerId >= 0 && scanRecord != null) {
-            if (!matchesPartialData(mManufacturerData, mManufacturerDataMask,
+            if (!ScanFilterUtils.matchesPartialData(mManufacturerData, mManufacturerDataMask,
                     scanRecord.getManufacturerSpecificData(mManufacturerId))) {
                 return false;
             }
@@ -353,47 +365,17 @@ public class ScanFilterCompat implements Parcelable {
             return false;
         }
 
+        UUID uuidMask = parcelUuidMask == null ? null : parcelUuidMask.getUuid();
         for (ParcelUuid parcelUuid : uuids) {
-            UUID uuidMask = parcelUuidMask == null ? null : parcelUuidMask.getUuid();
-            if (matchesServiceUuid(uuid.getUuid(), uuidMask, parcelUuid.getUuid())) {
+            // Parsed UUIDs come from ParcelUuidCache, as does the filter UUID
+            if (parcelUuid == uuid) {
                 return true;
             }
-        }
-        return false;
-    }
-
-    // Check if the uuid pattern matches the particular service uuid.
-    private boolean matchesServiceUuid(UUID uuid, UUID mask, UUID data) {
-        if (mask == null) {
-            return uuid.equals(data);
-        }
-        if ((uuid.getLeastSignificantBits() & mask.getLeastSignificantBits()) !=
-                (data.getLeastSignificantBits() & mask.getLeastSignificantBits())) {
-            return false;
-        }
-        return ((uuid.getMostSignificantBits() & mask.getMostSignificantBits()) ==
-                (data.getMostSignificantBits() & mask.getMostSignificantBits()));
-    }
-
-    // Check whether the data pattern matches the parsed data.
-    private boolean matchesPartialData(byte[] data, byte[] dataMask, byte[] parsedData) {
-        if (parsedData == null || parsedData.length < data.length) {
-            return false;
-        }
-        if (dataMask == null) {
-            for (int i = 0; i < data.length; ++i) {
-                if (parsedData[i] != data[i]) {
-                    return false;
-                }
-            }
-            return true;
-        }
-        for (int i = 0; i < data.length; ++i) {
-            if ((dataMask[i] & parsedData[i]) != (dataMask[i] & data[i])) {
-                return false;
+            if (ScanFilterUtils.matchesServiceUuid(uuid.getUuid(), uuidMask, parcelUuid.getUuid())) {
+                return true;
             }
         }
-        return true;
+        return false;
     }
 
     @Override
@@ -480,7 +462,8 @@ public class ScanFilterCompat implements Parcelable {
          * @throws IllegalArgumentException If the {@code deviceAddress} is invalid.
          */
         public Builder setDeviceAddress(String deviceAddress) {
-            if (deviceAddress != null && !BluetoothAdapter.checkBluetoothAddress(deviceAddress)) {
+            if (deviceAddress != null && (MacAddress.parseUpperCase(deviceAddress) == MacAddress.INVALID
+                    || !BluetoothAdapter.checkBluetoothAddress(deviceAddress))) {
                 throw new IllegalArgumentException("invalid device address " + deviceAddress);
             }
             mDeviceAddress = deviceAddress;
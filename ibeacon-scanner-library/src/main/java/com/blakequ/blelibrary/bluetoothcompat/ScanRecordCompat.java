@@ -23,35 +23,30 @@ import android.os.Build;
 import android.os.ParcelUuid;
 import android.support.annotation.Nullable;
 import android.support.v4.util.ArrayMap;
-import android.util.Log;
 import android.util.SparseArray;
 
+import com.blakequ.blelibrary.util.AdvertisementDecoder;
+import com.blakequ.blelibrary.util.ParcelUuidCache;
+import com.blakequ.blelibrary.util.ParseStatus;
+import com.blakequ.blelibrary.util.ParsedAdvertisement;
+
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Compatible version so the ScanRecord
+ * <p>
+ * Records parsed from bytes only allocate the containers their AD types need: single
+ * entries are held in singleton collections and missing ones share immutable empties, so
+ * the returned collections must be treated as read only.
  */
 public class ScanRecordCompat {
-    private static final String TAG = "ScanRecordCompat";
-
-    // The following data type values are assigned by Bluetooth SIG.
-    // For more details refer to Bluetooth 4.1 specification, Volume 3, Part C, Section 18.
-    private static final int DATA_TYPE_FLAGS = 0x01;
-    private static final int DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL = 0x02;
-    private static final int DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE = 0x03;
-    private static final int DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL = 0x04;
-    private static final int DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE = 0x05;
-    private static final int DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL = 0x06;
-    private static final int DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE = 0x07;
-    private static final int DATA_TYPE_LOCAL_NAME_SHORT = 0x08;
-    private static final int DATA_TYPE_LOCAL_NAME_COMPLETE = 0x09;
-    private static final int DATA_TYPE_TX_POWER_LEVEL = 0x0A;
-    private static final int DATA_TYPE_SERVICE_DATA = 0x16;
-    private static final int DATA_TYPE_MANUFACTURER_SPECIFIC_DATA = 0xFF;
+    // Shared by every record without manufacturer data.
+    private static final SparseArray<byte[]> EMPTY_MANUFACTURER_DATA = new EmptySparseArray();
 
     // Flags of the advertising data.
     private final int mAdvertiseFlags;
@@ -72,6 +67,12 @@ public class ScanRecordCompat {
     // Raw bytes of scan record.
     private final byte[] mBytes;
 
+    // Outcome of parsing mBytes, one of the ParseStatus codes.
+    private final int mParseStatus;
+
+    // AD structures of mBytes, shared with the other views of the same packet.
+    private ParsedAdvertisement mParsed;
+
     /**
      * Returns the advertising flags indicating the discoverable mode and capability of the device.
      * Returns -1 if the flag field is not set.
@@ -90,7 +91,12 @@ public class ScanRecordCompat {
 
     /**
      * Returns a sparse array of manufacturer identifier and its corresponding manufacturer specific
-     * data.
+     * data, or null if the record was rejected, see {@link #getParseStatus()}.
+     * <p>
+     * The array must be treated as read only. A record without manufacturer data returns an
+     * empty array shared by every such record, on which {@code put}, {@code append},
+     * {@code delete}, {@code remove}, {@code removeAt}, {@code setValueAt} and {@code clear}
+     * throw {@link UnsupportedOperationException}. Copy it into a new SparseArray to modify it.
      */
     public SparseArray<byte[]> getManufacturerSpecificData() {
         return mManufacturerSpecificData;
@@ -102,6 +108,9 @@ public class ScanRecordCompat {
      */
     @Nullable
     public byte[] getManufacturerSpecificData(int manufacturerId) {
+        if (mManufacturerSpecificData == null) {
+            return null;
+        }
         return mManufacturerSpecificData.get(manufacturerId);
     }
 
@@ -118,7 +127,7 @@ public class ScanRecordCompat {
      */
     @Nullable
     public byte[] getServiceData(ParcelUuid serviceDataUuid) {
-        if (serviceDataUuid == null) {
+        if (serviceDataUuid == null || mServiceData == null) {
             return null;
         }
         return mServiceData.get(serviceDataUuid);
@@ -150,18 +159,39 @@ public class ScanRecordCompat {
         return mBytes;
     }
 
+    /**
+     * Returns {@link ParseStatus#OK}, or the reason the scan record was rejected. A rejected
+     * record keeps its raw bytes but reports no fields, and its containers are null.
+     */
+    public int getParseStatus() {
+        return mParseStatus;
+    }
+
+    /**
+     * Returns the AD structures of the scan record, so the same parse can be reused by an
+     * {@link com.blakequ.blelibrary.device.adrecord.AdRecordStore}.
+     */
+    public ParsedAdvertisement getParsedAdvertisement() {
+        if (mParsed == null) {
+            mParsed = ParsedAdvertisement.parse(mBytes);
+        }
+        return mParsed;
+    }
+
     private ScanRecordCompat(@Nullable List<ParcelUuid> serviceUuids,
                        SparseArray<byte[]> manufacturerData,
                        Map<ParcelUuid, byte[]> serviceData,
                        int advertiseFlags, int txPowerLevel,
-                       String localName, byte[] bytes) {
+                       String localName, ParsedAdvertisement parsed, int parseStatus) {
         mServiceUuids = serviceUuids;
         mManufacturerSpecificData = manufacturerData;
         mServiceData = serviceData;
         mDeviceName = localName;
         mAdvertiseFlags = advertiseFlags;
         mTxPowerLevel = txPowerLevel;
-        mBytes = bytes;
+        mBytes = parsed.getBytes();
+        mParsed = parsed;
+        mParseStatus = parseStatus;
     }
 
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
@@ -173,6 +203,7 @@ public class ScanRecordCompat {
         mAdvertiseFlags = record.getAdvertiseFlags();
         mTxPowerLevel = record.getTxPowerLevel();
         mBytes = record.getBytes();
+        mParseStatus = ParseStatus.OK;
     }
 
     /**
@@ -189,93 +220,36 @@ public class ScanRecordCompat {
         if (scanRecord == null) {
             return null;
         }
+        return fromParsedAdvertisement(ParsedAdvertisement.parse(scanRecord));
+    }
 
-        int currentPos = 0;
-        int advertiseFlag = -1;
-        List<ParcelUuid> serviceUuids = new ArrayList<>();
-        String localName = null;
-        int txPowerLevel = Integer.MIN_VALUE;
-
-        SparseArray<byte[]> manufacturerData = new SparseArray<>();
-        Map<ParcelUuid, byte[]> serviceData = new ArrayMap<>();
-
-        try {
-            while (currentPos < scanRecord.length) {
-                // length is unsigned int.
-                int length = scanRecord[currentPos++] & 0xFF;
-                if (length == 0) {
-                    break;
-                }
-                // Note the length includes the length of the field type itself.
-                int dataLength = length - 1;
-                // fieldType is unsigned int.
-                int fieldType = scanRecord[currentPos++] & 0xFF;
-                switch (fieldType) {
-                    case DATA_TYPE_FLAGS:
-                        advertiseFlag = scanRecord[currentPos] & 0xFF;
-                        break;
-                    case DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL:
-                    case DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE:
-                        parseServiceUuid(scanRecord, currentPos,
-                                dataLength, BluetoothUuidCompat.UUID_BYTES_16_BIT, serviceUuids);
-                        break;
-                    case DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL:
-                    case DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE:
-                        parseServiceUuid(scanRecord, currentPos, dataLength,
-                                BluetoothUuidCompat.UUID_BYTES_32_BIT, serviceUuids);
-                        break;
-                    case DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL:
-                    case DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE:
-                        parseServiceUuid(scanRecord, currentPos, dataLength,
-                                BluetoothUuidCompat.UUID_BYTES_128_BIT, serviceUuids);
-                        break;
-                    case DATA_TYPE_LOCAL_NAME_SHORT:
-                    case DATA_TYPE_LOCAL_NAME_COMPLETE:
-                        localName = new String(
-                                extractBytes(scanRecord, currentPos, dataLength));
-                        break;
-                    case DATA_TYPE_TX_POWER_LEVEL:
-                        txPowerLevel = scanRecord[currentPos];
-                        break;
-                    case DATA_TYPE_SERVICE_DATA:
-                        // The first two bytes of the service data are service data UUID in little
-                        // endian. The rest bytes are service data.
-                        int serviceUuidLength = BluetoothUuidCompat.UUID_BYTES_16_BIT;
-                        byte[] serviceDataUuidBytes = extractBytes(scanRecord, currentPos,
-                                serviceUuidLength);
-                        ParcelUuid serviceDataUuid = BluetoothUuidCompat.parseUuidFrom(
-                                serviceDataUuidBytes);
-                        byte[] serviceDataArray = extractBytes(scanRecord,
-                                currentPos + serviceUuidLength, dataLength - serviceUuidLength);
-                        serviceData.put(serviceDataUuid, serviceDataArray);
-                        break;
-                    case DATA_TYPE_MANUFACTURER_SPECIFIC_DATA:
-                        // The first two bytes of the manufacturer specific data are
-                        // manufacturer ids in little endian.
-                        int manufacturerId = ((scanRecord[currentPos + 1] & 0xFF) << 8) +
-                                (scanRecord[currentPos] & 0xFF);
-                        byte[] manufacturerDataBytes = extractBytes(scanRecord, currentPos + 2,
-                                dataLength - 2);
-                        manufacturerData.put(manufacturerId, manufacturerDataBytes);
-                        break;
-                    default:
-                        // Just ignore, we don't handle such data type.
-                        break;
-                }
-                currentPos += dataLength;
-            }
+    /**
+     * Builds a {@link ScanRecordCompat} from AD structures which have already been parsed.
+     * The fields are decoded and validated by {@link AdvertisementDecoder}.
+     *
+     * @param parsed The AD structures of a Bluetooth LE advertisement and/or scan response.
+     */
+    public static ScanRecordCompat fromParsedAdvertisement(ParsedAdvertisement parsed) {
+        if (parsed == null) {
+            return null;
+        }
 
-            if (serviceUuids.isEmpty()) {
-                serviceUuids = null;
-            }
-            return new ScanRecordCompat(serviceUuids, manufacturerData, serviceData,
-                    advertiseFlag, txPowerLevel, localName, scanRecord);
-        } catch (Exception e) {
-            Log.e(TAG, "unable to parse scan record: " + Arrays.toString(scanRecord));
+        final int status = AdvertisementDecoder.validate(parsed);
+        if (status != ParseStatus.OK) {
+            // Only the records rejected are counted, not every cut one
+            ParseStatus.record(status);
             // As the record is invalid, ignore all the parsed results for this packet
             // and return an empty record with raw scanRecord bytes in results
-            return new ScanRecordCompat(null, null, null, -1, Integer.MIN_VALUE, null, scanRecord);
+            return new ScanRecordCompat(null, null, null, -1, Integer.MIN_VALUE, null,
+                    parsed, status);
         }
+        // Validated first, so a rejected record doesn't cost a builder
+        final Builder builder = new Builder();
+        AdvertisementDecoder.decode(parsed, builder);
+        return new ScanRecordCompat(builder.serviceUuids,
+                builder.manufacturerData == null ? EMPTY_MANUFACTURER_DATA : builder.manufacturerData,
+                builder.serviceData == null ? Collections.<ParcelUuid, byte[]>emptyMap() : builder.serviceData,
+                builder.advertiseFlag, builder.txPowerLevel, builder.localName, parsed, ParseStatus.OK);
     }
 
     @Override
@@ -286,26 +260,6 @@ public class ScanRecordCompat {
                 + ", mTxPowerLevel=" + mTxPowerLevel + ", mDeviceName=" + mDeviceName + "]";
     }
 
-    // Parse service UUIDs.
-    private static int parseServiceUuid(byte[] scanRecord, int currentPos, int dataLength,
-                                        int uuidLength, List<ParcelUuid> serviceUuids) {
-        while (dataLength > 0) {
-            byte[] uuidBytes = extractBytes(scanRecord, currentPos,
-                    uuidLength);
-            serviceUuids.add(BluetoothUuidCompat.parseUuidFrom(uuidBytes));
-            dataLength -= uuidLength;
-            currentPos += uuidLength;
-        }
-        return currentPos;
-    }
-
-    // Helper method to extract bytes from byte array.
-    private static byte[] extractBytes(byte[] scanRecord, int start, int length) {
-        byte[] bytes = new byte[length];
-        System.arraycopy(scanRecord, start, bytes, 0, length);
-        return bytes;
-    }
-
     /**
      * Returns a string composed from a {@link SparseArray}.
      */
@@ -349,4 +303,131 @@ public class ScanRecordCompat {
         buffer.append('}');
         return buffer.toString();
     }
+
+    /**
+     * Collects the fields decoded from the bytes into the framework containers. Containers
+     * are only created once their AD type is seen.
+     */
+    private static final class Builder implements AdvertisementDecoder.Visitor {
+        int advertiseFlag = -1;
+        List<ParcelUuid> serviceUuids;
+        String localName;
+        int txPowerLevel = Integer.MIN_VALUE;
+        SparseArray<byte[]> manufacturerData;
+        Map<ParcelUuid, byte[]> serviceData;
+
+        @Override
+        public void onFlags(int flags) {
+            advertiseFlag = flags;
+        }
+
+        @Override
+        public void onServiceUuid(long mostSignificantBits, long leastSignificantBits) {
+            // The same instances are returned for repeated values, see ParcelUuidCache
+            ParcelUuid uuid = ParcelUuidCache.get(mostSignificantBits, leastSignificantBits);
+            if (serviceUuids == null) {
+                serviceUuids = Collections.singletonList(uuid);
+                return;
+            }
+            if (!(serviceUuids instanceof ArrayList)) {
+                List<ParcelUuid> grown = new ArrayList<>(4);
+                grown.addAll(serviceUuids);
+                serviceUuids = grown;
+            }
+            serviceUuids.add(uuid);
+        }
+
+        @Override
+        public void onLocalName(String name) {
+            localName = name;
+        }
+
+        @Override
+        public void onTxPowerLevel(int txPowerLevel) {
+            this.txPowerLevel = txPowerLevel;
+        }
+
+        // Adds service data, starting with a single entry map and moving to an ArrayMap.
+        @Override
+        public void onServiceData(long uuidMostSignificantBits, long uuidLeastSignificantBits,
+                                  byte[] source, int offset, int length) {
+            ParcelUuid uuid = ParcelUuidCache.get(uuidMostSignificantBits, uuidLeastSignificantBits);
+            byte[] data = extractBytes(source, offset, length);
+            if (serviceData == null) {
+                serviceData = Collections.singletonMap(uuid, data);
+                return;
+            }
+            if (!(serviceData instanceof ArrayMap)) {
+                if (serviceData.containsKey(uuid)) {
+                    serviceData = Collections.singletonMap(uuid, data);
+                    return;
+                }
+                Map<ParcelUuid, byte[]> grown = new ArrayMap<>(2);
+                grown.putAll(serviceData);
+                serviceData = grown;
+            }
+            serviceData.put(uuid, data);
+        }
+
+        @Override
+        public void onManufacturerData(int manufacturerId, byte[] source, int offset, int length) {
+            if (manufacturerData == null) {
+                // Most adverts carry a single manufacturer entry
+                manufacturerData = new SparseArray<>(1);
+            }
+            manufacturerData.put(manufacturerId, extractBytes(source, offset, length));
+        }
+
+        // Helper method to extract bytes from byte array.
+        private static byte[] extractBytes(byte[] scanRecord, int start, int length) {
+            byte[] bytes = new byte[length];
+            System.arraycopy(scanRecord, start, bytes, 0, length);
+            return bytes;
+        }
+    }
+
+    /**
+     * An empty {@link SparseArray} which can be shared, every mutator throws
+     * {@link UnsupportedOperationException}.
+     */
+    private static final class EmptySparseArray extends SparseArray<byte[]> {
+        EmptySparseArray() {
+            super(0);
+        }
+
+        @Override
+        public void put(int key, byte[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void append(int key, byte[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(int key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void remove(int key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeAt(int index) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setValueAt(int index, byte[] value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
@@ -10,6 +10,8 @@ import android.content.IntentFilter;
 import android.os.SystemClock;
 
 import com.blakequ.blelibrary.logging.LogManager;
+import com.blakequ.blelibrary.util.LongObjectHashMap;
+import com.blakequ.blelibrary.util.MacAddress;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -17,8 +19,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  *
@@ -61,7 +61,8 @@ public class BluetoothCrashResolver {
 
     private Context context = null;
     private UpdateNotifier updateNotifier;
-    private final Set<String> distinctBluetoothAddresses = new HashSet<String>();
+    // Keyed by MacAddress value, the values are unused
+    private final LongObjectHashMap<Boolean> distinctBluetoothAddresses = new LongObjectHashMap<Boolean>();
     /**
      // It is very likely a crash if Bluetooth turns off and comes
      // back on in an extremely short interval.  Testing on a Nexus 4 shows
@@ -156,7 +157,7 @@ public class BluetoothCrashResolver {
         oldSize = distinctBluetoothAddresses.size();
 
         synchronized(distinctBluetoothAddresses) {
-            distinctBluetoothAddresses.add(device.getAddress());
+            distinctBluetoothAddresses.put(MacAddress.parse(device.getAddress()), Boolean.TRUE);
         }
 
         newSize = distinctBluetoothAddresses.size();
@@ -355,8 +356,8 @@ public class BluetoothCrashResolver {
             writer.write(recoveryAttemptCount+"\n");
             writer.write(lastRecoverySucceeded ? "1\n" : "0\n");
             synchronized (distinctBluetoothAddresses) {
-                for (String mac : distinctBluetoothAddresses) {
-                    writer.write(mac);
+                for (long mac : distinctBluetoothAddresses.keys()) {
+                    writer.write(MacAddress.toString(mac));
                     writer.write("\n");
                 }
             }
@@ -404,7 +405,10 @@ public class BluetoothCrashResolver {
 
             String mac;
             while ((mac = reader.readLine()) != null) {
-                distinctBluetoothAddresses.add(mac);
+                final long address = MacAddress.parse(mac);
+                if (address != MacAddress.INVALID) {
+                    distinctBluetoothAddresses.put(address, Boolean.TRUE);
+                }
             }
 
         } catch (IOException e) {
@@ -1,21 +1,22 @@
 package com.blakequ.blelibrary.device;
 
 import android.bluetooth.BluetoothDevice;
-import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.blakequ.blelibrary.bluetoothcompat.ScanRecordCompat;
+import com.blakequ.blelibrary.bluetoothcompat.ScanResultCompat;
 import com.blakequ.blelibrary.device.adrecord.AdRecordStore;
+import com.blakequ.blelibrary.device.rssi.RssiFilter;
 import com.blakequ.blelibrary.resolvers.BluetoothClassResolver;
-import com.blakequ.blelibrary.util.AdRecordUtils;
 import com.blakequ.blelibrary.util.ByteUtils;
-import com.blakequ.blelibrary.util.LimitedLinkHashMap;
+import com.blakequ.blelibrary.util.MacAddress;
+import com.blakequ.blelibrary.util.ParsedAdvertisement;
+import com.blakequ.blelibrary.util.PayloadHash;
+import com.blakequ.blelibrary.util.RssiRingBuffer;
 
-import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 
@@ -25,6 +26,13 @@ import java.util.Set;
  * This is a wrapper around the default BluetoothDevice object
  * As BluetoothDevice is final it cannot be extended, so to get it you
  * need to call {@link #getDevice()} method.
+ * <p>
+ * The name, bond state and class of the device are served from the
+ * {@link DeviceMetadataCache} without any IPC call. They are read on a background thread
+ * the first time one of them is asked for, so until that read completes, usually before the
+ * next scan of the device, {@link #getName()} returns null, the bond state "Unknown", the
+ * class names an "Unknown (...)" name of {@link DeviceMetadata#UNKNOWN} and the known services
+ * are empty.
  *
  * @author Alexandros Schillings
  */
@@ -42,24 +50,24 @@ public class BluetoothLeDevice implements Parcelable {
         }
     };
     protected static final int MAX_RSSI_LOG_SIZE = 10;
-    private static final String PARCEL_EXTRA_BLUETOOTH_DEVICE = "bluetooth_device";
-    private static final String PARCEL_EXTRA_CURRENT_RSSI = "current_rssi";
-    private static final String PARCEL_EXTRA_CURRENT_TIMESTAMP = "current_timestamp";
-    private static final String PARCEL_EXTRA_DEVICE_RSSI_LOG = "device_rssi_log";
-    private static final String PARCEL_EXTRA_DEVICE_SCANRECORD = "device_scanrecord";
-    private static final String PARCEL_EXTRA_DEVICE_SCANRECORD_STORE = "device_scanrecord_store";
-    private static final String PARCEL_EXTRA_FIRST_RSSI = "device_first_rssi";
-    private static final String PARCEL_EXTRA_FIRST_TIMESTAMP = "first_timestamp";
+    // Increased whenever the parcel layout changes
+    private static final byte PARCEL_VERSION = 1;
     private static final long LOG_INVALIDATION_THRESHOLD = 10 * 1000;
-    private final AdRecordStore mRecordStore;
+    // Built on first use, most devices are only ranged and never look at their records
+    private volatile AdRecordStore mRecordStore;
     private final BluetoothDevice mDevice;
-    private final Map<Long, Integer> mRssiLog;
+    private final long mMacAddress;
+    private final DeviceIdentity mIdentity;
+    private final RssiRingBuffer mRssiLog;
     private final byte[] mScanRecord;
-    private final int mFirstRssi;
-    private final long mFirstTimestamp;
+    private final long mScanRecordHash;
+    private final ParsedAdvertisement mParsedAdvertisement;
+    // Only changed by takeRssiHistory, before the device is published
+    private int mFirstRssi;
+    private long mFirstTimestamp;
     private int mCurrentRssi;
     private long mCurrentTimestamp;
-    private transient Set<BluetoothService> mServiceSet;
+    private transient RssiFilter mRssiFilter;
 
     /**
      * Instantiates a new Bluetooth LE device.
@@ -70,17 +78,60 @@ public class BluetoothLeDevice implements Parcelable {
      * @param timestamp  the timestamp of the RSSI reading
      */
     public BluetoothLeDevice(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+        this(device, rssi, ParsedAdvertisement.parse(scanRecord), timestamp);
+    }
+
+    /**
+     * Instantiates a new Bluetooth LE device from a scan record which has already been parsed,
+     * for example by {@link ScanRecordCompat}.
+     *
+     * @param device     a standard android Bluetooth device
+     * @param rssi       the RSSI value of the Bluetooth device
+     * @param parsed     the parsed scan record of the device
+     * @param timestamp  the timestamp of the RSSI reading
+     */
+    public BluetoothLeDevice(final BluetoothDevice device, final int rssi, final ParsedAdvertisement parsed, final long timestamp) {
+        this(device, rssi, parsed, timestamp, MAX_RSSI_LOG_SIZE);
+    }
+
+    /**
+     * Instantiates a new Bluetooth LE device from a scan result, sharing the parse of its
+     * {@link ScanRecordCompat}.
+     *
+     * @param result     the scan result
+     * @param timestamp  the timestamp of the RSSI reading
+     */
+    public BluetoothLeDevice(final ScanResultCompat result, final long timestamp) {
+        this(result.getDevice(), result.getRssi(), result.getScanRecord().getParsedAdvertisement(), timestamp);
+    }
+
+    /**
+     * Instantiates a new Bluetooth LE device keeping a custom number of RSSI readings for
+     * {@link #getRunningAverageRssi()}.
+     *
+     * @param device         a standard android Bluetooth device
+     * @param rssi           the RSSI value of the Bluetooth device
+     * @param parsed         the parsed scan record of the device
+     * @param timestamp      the timestamp of the RSSI reading
+     * @param rssiWindowSize the number of RSSI readings to keep, at least 1
+     */
+    public BluetoothLeDevice(final BluetoothDevice device, final int rssi, final ParsedAdvertisement parsed,
+                             final long timestamp, final int rssiWindowSize) {
         mDevice = device;
+        mMacAddress = parseMacAddress(device);
+        mIdentity = DeviceIdentity.ofAddress(mMacAddress);
         mFirstRssi = rssi;
         mFirstTimestamp = timestamp;
-        mRecordStore = new AdRecordStore(AdRecordUtils.parseScanRecordAsSparseArray(scanRecord));
-        mScanRecord = scanRecord;
-        mRssiLog = new LimitedLinkHashMap<>(MAX_RSSI_LOG_SIZE);
+        mParsedAdvertisement = parsed;
+        mScanRecord = parsed.getBytes();
+        mScanRecordHash = PayloadHash.hash64(mScanRecord);
+        mRssiLog = new RssiRingBuffer(rssiWindowSize);
         updateRssiReading(timestamp, rssi);
     }
 
     /**
-     * Instantiates a new Bluetooth LE device.
+     * Instantiates a new Bluetooth LE device. The copy has no rssi filter, see
+     * {@link #setRssiFilter(RssiFilter)}.
      *
      * @param device the device
      */
@@ -88,12 +139,17 @@ public class BluetoothLeDevice implements Parcelable {
         mCurrentRssi = device.getRssi();
         mCurrentTimestamp = device.getTimestamp();
         mDevice = device.getDevice();
+        mMacAddress = device.getMacAddress();
+        mIdentity = DeviceIdentity.ofAddress(mMacAddress);
         mFirstRssi = device.getFirstRssi();
         mFirstTimestamp = device.getFirstTimestamp();
-        mRecordStore = new AdRecordStore(
-                AdRecordUtils.parseScanRecordAsSparseArray(device.getScanRecord()));
+        // The store is immutable, so it can be shared instead of parsing the record again
+        mParsedAdvertisement = device.getParsedAdvertisement();
+        mRecordStore = device.mRecordStore;
         mRssiLog = device.getRssiLog();
+        // Filters keep per device state and are never shared, a region gives the copy its own
         mScanRecord = device.getScanRecord();
+        mScanRecordHash = device.getScanRecordHash();
     }
 
     /**
@@ -101,18 +157,30 @@ public class BluetoothLeDevice implements Parcelable {
      *
      * @param in the in
      */
-    @SuppressWarnings("unchecked")
     protected BluetoothLeDevice(final Parcel in) {
-        final Bundle b = in.readBundle(getClass().getClassLoader());
+        final byte version = in.readByte();
+        if (version != PARCEL_VERSION) {
+            throw new IllegalStateException("Unsupported parcel version: " + version);
+        }
+        mDevice = in.readParcelable(BluetoothDevice.class.getClassLoader());
+        mMacAddress = parseMacAddress(mDevice);
+        mIdentity = DeviceIdentity.ofAddress(mMacAddress);
+        mScanRecord = in.createByteArray();
+        mScanRecordHash = PayloadHash.hash64(mScanRecord);
+        mParsedAdvertisement = ParsedAdvertisement.parse(mScanRecord);
+        mFirstRssi = in.readInt();
+        mFirstTimestamp = in.readLong();
+        mCurrentRssi = in.readInt();
+        mCurrentTimestamp = in.readLong();
+        mRssiLog = new RssiRingBuffer(in.readInt());
+        final int rssiCount = in.readInt();
+        for (int i = 0; i < rssiCount; i++) {
+            mRssiLog.add(in.readLong(), in.readInt());
+        }
+    }
 
-        mCurrentRssi = b.getInt(PARCEL_EXTRA_CURRENT_RSSI, 0);
-        mCurrentTimestamp = b.getLong(PARCEL_EXTRA_CURRENT_TIMESTAMP, 0);
-        mDevice = b.getParcelable(PARCEL_EXTRA_BLUETOOTH_DEVICE);
-        mFirstRssi = b.getInt(PARCEL_EXTRA_FIRST_RSSI, 0);
-        mFirstTimestamp = b.getLong(PARCEL_EXTRA_FIRST_TIMESTAMP, 0);
-        mRecordStore = b.getParcelable(PARCEL_EXTRA_DEVICE_SCANRECORD_STORE);
-        mRssiLog = (Map<Long, Integer>) b.getSerializable(PARCEL_EXTRA_DEVICE_RSSI_LOG);
-        mScanRecord = b.getByteArray(PARCEL_EXTRA_DEVICE_SCANRECORD);
+    private static long parseMacAddress(final BluetoothDevice device) {
+        return device == null ? MacAddress.INVALID : MacAddress.parse(device.getAddress());
     }
 
     /**
@@ -125,11 +193,17 @@ public class BluetoothLeDevice implements Parcelable {
         synchronized (mRssiLog) {
             if (timestamp - mCurrentTimestamp > LOG_INVALIDATION_THRESHOLD) {
                 mRssiLog.clear();
+                if (mRssiFilter != null) {
+                    mRssiFilter.reset();
+                }
             }
 
             mCurrentRssi = rssiReading;
             mCurrentTimestamp = timestamp;
-            mRssiLog.put(timestamp, rssiReading);
+            mRssiLog.add(timestamp, rssiReading);
+            if (mRssiFilter != null) {
+                mRssiFilter.addReading(timestamp, rssiReading);
+            }
         }
     }
 
@@ -141,18 +215,36 @@ public class BluetoothLeDevice implements Parcelable {
         return 0;
     }
 
-    /* (non-Javadoc)
-     * @see java.lang.Object#equals(java.lang.Object)
+    /**
+     * Checks if two devices have the same {@link #getIdentity() identity}, whatever their
+     * readings. Use {@link #contentEquals(BluetoothLeDevice)} to compare the readings too.
+     *
+     * @param obj the other object
+     * @return true if the other object is a device with the same identity
      */
     @Override
     public boolean equals(final Object obj) {
         if (this == obj)
             return true;
-        if (obj == null)
+        if (!(obj instanceof BluetoothLeDevice))
             return false;
-        if (getClass() != obj.getClass())
+        return getIdentity().equals(((BluetoothLeDevice) obj).getIdentity());
+    }
+
+    /**
+     * Checks if two devices hold the same readings: the same device, scan record, first and
+     * current rssi and timestamps, and rssi log.
+     *
+     * @param other the other device
+     * @return true if both devices hold the same readings
+     */
+    public boolean contentEquals(final BluetoothLeDevice other) {
+        if (this == other)
+            return true;
+        if (other == null)
+            return false;
+        if (getClass() != other.getClass())
             return false;
-        final BluetoothLeDevice other = (BluetoothLeDevice) obj;
         if (mCurrentRssi != other.mCurrentRssi)
             return false;
         if (mCurrentTimestamp != other.mCurrentTimestamp)
@@ -166,11 +258,6 @@ public class BluetoothLeDevice implements Parcelable {
             return false;
         if (mFirstTimestamp != other.mFirstTimestamp)
             return false;
-        if (mRecordStore == null) {
-            if (other.mRecordStore != null)
-                return false;
-        } else if (!mRecordStore.equals(other.mRecordStore))
-            return false;
         if (mRssiLog == null) {
             if (other.mRssiLog != null)
                 return false;
@@ -187,7 +274,22 @@ public class BluetoothLeDevice implements Parcelable {
      * @return the ad record store
      */
     public AdRecordStore getAdRecordStore() {
-        return mRecordStore;
+        AdRecordStore store = mRecordStore;
+        if (store == null) {
+            // Building it twice in a race is harmless, the store is immutable
+            store = new AdRecordStore(mParsedAdvertisement);
+            mRecordStore = store;
+        }
+        return store;
+    }
+
+    /**
+     * Gets the AD structures of the scan record.
+     *
+     * @return the parsed advertisement
+     */
+    public ParsedAdvertisement getParsedAdvertisement() {
+        return mParsedAdvertisement;
     }
 
     /**
@@ -200,49 +302,70 @@ public class BluetoothLeDevice implements Parcelable {
     }
 
     /**
-     * Gets the bluetooth device bond state.
+     * Gets the address as a 48 bit value, see {@link MacAddress}.
+     *
+     * @return the address, or {@link MacAddress#INVALID} if the device has none
+     */
+    public long getMacAddress() {
+        return mMacAddress;
+    }
+
+    /**
+     * Gets the stable identity of the device, its address. Subclasses may identify the device
+     * by its payload instead.
+     *
+     * @return the identity
+     */
+    public DeviceIdentity getIdentity() {
+        return mIdentity;
+    }
+
+    private DeviceMetadata getMetadata() {
+        return DeviceMetadataCache.getInstance().get(mDevice, mMacAddress);
+    }
+
+    /**
+     * Gets the bluetooth device bond state from the {@link DeviceMetadataCache}.
      *
-     * @return the bluetooth device bond state
+     * @return the bluetooth device bond state, "Unknown" until the background read of the
+     * metadata completes, see the class comment
      */
     public String getBluetoothDeviceBondState() {
-        return resolveBondingState(mDevice.getBondState());
+        final DeviceMetadata metadata = getMetadata();
+        return resolveBondingState(metadata == null ? DeviceMetadata.UNKNOWN : metadata.getBondState());
     }
 
     /**
-     * Gets the bluetooth device class name.
+     * Gets the bluetooth device class name from the {@link DeviceMetadataCache}.
      *
-     * @return the bluetooth device class name
+     * @return the bluetooth device class name, an "Unknown" name until the background read of
+     * the metadata completes, see the class comment
      */
     public String getBluetoothDeviceClassName() {
-        return BluetoothClassResolver.resolveDeviceClass(mDevice.getBluetoothClass().getDeviceClass());
+        final DeviceMetadata metadata = getMetadata();
+        return BluetoothClassResolver.resolveDeviceClass(metadata == null ? DeviceMetadata.UNKNOWN : metadata.getDeviceClass());
     }
 
+    /**
+     * Gets the services advertised by the bluetooth class from the {@link DeviceMetadataCache}.
+     *
+     * @return an unmodifiable set of services, empty until the background read of the
+     * metadata completes, see the class comment
+     */
     public Set<BluetoothService> getBluetoothDeviceKnownSupportedServices() {
-        if (mServiceSet == null) {
-            synchronized (this) {
-                if (mServiceSet == null) {
-                    final Set<BluetoothService> serviceSet = new HashSet<>();
-                    for (final BluetoothService service : BluetoothService.values()) {
-
-                        if (mDevice.getBluetoothClass().hasService(service.getAndroidConstant())) {
-                            serviceSet.add(service);
-                        }
-                    }
-                    mServiceSet = Collections.unmodifiableSet(serviceSet);
-                }
-            }
-        }
-
-        return mServiceSet;
+        final DeviceMetadata metadata = getMetadata();
+        return metadata == null ? Collections.<BluetoothService>emptySet() : metadata.getServices();
     }
 
     /**
-     * Gets the bluetooth device major class name.
+     * Gets the bluetooth device major class name from the {@link DeviceMetadataCache}.
      *
-     * @return the bluetooth device major class name
+     * @return the bluetooth device major class name, an "Unknown" name until the background
+     * read of the metadata completes, see the class comment
      */
     public String getBluetoothDeviceMajorClassName() {
-        return BluetoothClassResolver.resolveMajorDeviceClass(mDevice.getBluetoothClass().getMajorDeviceClass());
+        final DeviceMetadata metadata = getMetadata();
+        return BluetoothClassResolver.resolveMajorDeviceClass(metadata == null ? DeviceMetadata.UNKNOWN : metadata.getMajorDeviceClass());
     }
 
     /**
@@ -273,12 +396,14 @@ public class BluetoothLeDevice implements Parcelable {
     }
 
     /**
-     * Gets the name.
+     * Gets the name from the {@link DeviceMetadataCache}.
      *
-     * @return the name
+     * @return the name, null until the background read of the metadata completes, see the
+     * class comment. The name in the advertisement, if any, is in the scan record.
      */
     public String getName() {
-        return mDevice.getName();
+        final DeviceMetadata metadata = getMetadata();
+        return metadata == null ? null : metadata.getName();
     }
 
     /**
@@ -295,10 +420,8 @@ public class BluetoothLeDevice implements Parcelable {
      *
      * @return the rssi log
      */
-    protected Map<Long, Integer> getRssiLog() {
-        synchronized (mRssiLog) {
-            return mRssiLog;
-        }
+    protected RssiRingBuffer getRssiLog() {
+        return mRssiLog;
     }
 
     /**
@@ -307,23 +430,62 @@ public class BluetoothLeDevice implements Parcelable {
      * @return the running average rssi
      */
     public double getRunningAverageRssi() {
-        int sum = 0;
-        int count = 0;
+        return mRssiLog.getMean();
+    }
 
+    /**
+     * Gets the rssi smoothed by the filter set with {@link #setRssiFilter(RssiFilter)}, or the
+     * running average rssi if there is no filter.
+     *
+     * @return the filtered rssi
+     */
+    public double getFilteredRssi() {
         synchronized (mRssiLog) {
-
-            for (final Long aLong : mRssiLog.keySet()) {
-                count++;
-                sum += mRssiLog.get(aLong);
+            if (mRssiFilter != null && mRssiFilter.hasValue()) {
+                return mRssiFilter.getFilteredRssi();
             }
+            return mRssiLog.getMean();
+        }
+    }
+
+    /**
+     * Gets the rssi filter.
+     *
+     * @return the rssi filter, or null if there is none
+     */
+    public RssiFilter getRssiFilter() {
+        synchronized (mRssiLog) {
+            return mRssiFilter;
         }
+    }
 
-        if (count > 0) {
-            return sum / count;
-        } else {
-            return 0;
+    /**
+     * Sets the filter smoothing the rssi readings of this device, seeding it with the logged
+     * readings. A filter holds the state of a single device and must not be shared. The filter
+     * is not kept when the device is parcelled.
+     *
+     * @param filter the rssi filter, or null to use the running average rssi
+     */
+    public void setRssiFilter(final RssiFilter filter) {
+        synchronized (mRssiLog) {
+            mRssiFilter = filter;
+            if (filter != null) {
+                filter.reset();
+                final int count = mRssiLog.size();
+                for (int i = 0; i < count; i++) {
+                    filter.addReading(mRssiLog.getTimestamp(i), mRssiLog.getRssi(i));
+                }
+            }
         }
+    }
 
+    /**
+     * Gets the variance of the logged rssi readings.
+     *
+     * @return the rssi variance
+     */
+    public double getRssiVariance() {
+        return mRssiLog.getVariance();
     }
 
     /**
@@ -335,6 +497,15 @@ public class BluetoothLeDevice implements Parcelable {
         return mScanRecord;
     }
 
+    /**
+     * Gets the 64 bit hash of the scan record, see {@link PayloadHash}.
+     *
+     * @return the scan record hash
+     */
+    public long getScanRecordHash() {
+        return mScanRecordHash;
+    }
+
     /**
      * Gets the timestamp.
      *
@@ -344,22 +515,15 @@ public class BluetoothLeDevice implements Parcelable {
         return mCurrentTimestamp;
     }
 
-    /* (non-Javadoc)
-     * @see java.lang.Object#hashCode()
+    /**
+     * Gets the hash of the {@link #getIdentity() identity}, which does not change when
+     * readings arrive.
+     *
+     * @return the hash
      */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + mCurrentRssi;
-        result = prime * result + (int) (mCurrentTimestamp ^ (mCurrentTimestamp >>> 32));
-        result = prime * result + ((mDevice == null) ? 0 : mDevice.hashCode());
-        result = prime * result + mFirstRssi;
-        result = prime * result + (int) (mFirstTimestamp ^ (mFirstTimestamp >>> 32));
-        result = prime * result + ((mRecordStore == null) ? 0 : mRecordStore.hashCode());
-        result = prime * result + ((mRssiLog == null) ? 0 : mRssiLog.hashCode());
-        result = prime * result + Arrays.hashCode(mScanRecord);
-        return result;
+        return getIdentity().hashCode();
     }
 
     /* (non-Javadoc)
@@ -367,7 +531,7 @@ public class BluetoothLeDevice implements Parcelable {
      */
     @Override
     public String toString() {
-        return "BluetoothLeDevice [mDevice=" + mDevice + ", mRssi=" + mFirstRssi + ", mScanRecord=" + ByteUtils.byteArrayToHexString(mScanRecord) + ", mRecordStore=" + mRecordStore + ", getBluetoothDeviceBondState()=" + getBluetoothDeviceBondState() + ", getBluetoothDeviceClassName()=" + getBluetoothDeviceClassName() + "]";
+        return "BluetoothLeDevice [mDevice=" + mDevice + ", mRssi=" + mFirstRssi + ", mScanRecord=" + ByteUtils.byteArrayToHexString(mScanRecord) + ", mRecordStore=" + getAdRecordStore() + ", getBluetoothDeviceBondState()=" + getBluetoothDeviceBondState() + ", getBluetoothDeviceClassName()=" + getBluetoothDeviceClassName() + "]";
     }
 
     /**
@@ -380,26 +544,58 @@ public class BluetoothLeDevice implements Parcelable {
         addToRssiLog(timestamp, rssiReading);
     }
 
+    /**
+     * Takes over the rssi history of the device this one replaces after a payload change: the
+     * first reading, the logged readings and the rssi filter, followed by the reading this
+     * device was created with. The previous device loses its filter and must not be used
+     * any more. Only call it before this device is shared with other threads.
+     *
+     * @param previous the device replaced by this one
+     */
+    void takeRssiHistory(final BluetoothLeDevice previous) {
+        synchronized (previous.mRssiLog) {
+            synchronized (mRssiLog) {
+                final int rssi = mCurrentRssi;
+                final long timestamp = mCurrentTimestamp;
+                mFirstRssi = previous.mFirstRssi;
+                mFirstTimestamp = previous.mFirstTimestamp;
+                mCurrentRssi = previous.mCurrentRssi;
+                mCurrentTimestamp = previous.mCurrentTimestamp;
+                mRssiLog.clear();
+                final int count = previous.mRssiLog.size();
+                for (int i = 0; i < count; i++) {
+                    mRssiLog.add(previous.mRssiLog.getTimestamp(i), previous.mRssiLog.getRssi(i));
+                }
+                // Moved rather than shared, a filter holds the state of a single device
+                mRssiFilter = previous.mRssiFilter;
+                previous.mRssiFilter = null;
+                addToRssiLog(timestamp, rssi);
+            }
+        }
+    }
+
     /* (non-Javadoc)
      * @see android.os.Parcelable#writeToParcel(android.os.Parcel, int)
      */
     @Override
     public void writeToParcel(final Parcel parcel, final int arg1) {
-        final Bundle b = new Bundle(getClass().getClassLoader());
-
-        b.putByteArray(PARCEL_EXTRA_DEVICE_SCANRECORD, mScanRecord);
-
-        b.putInt(PARCEL_EXTRA_FIRST_RSSI, mFirstRssi);
-        b.putInt(PARCEL_EXTRA_CURRENT_RSSI, mCurrentRssi);
-
-        b.putLong(PARCEL_EXTRA_FIRST_TIMESTAMP, mFirstTimestamp);
-        b.putLong(PARCEL_EXTRA_CURRENT_TIMESTAMP, mCurrentTimestamp);
-
-        b.putParcelable(PARCEL_EXTRA_BLUETOOTH_DEVICE, mDevice);
-        b.putParcelable(PARCEL_EXTRA_DEVICE_SCANRECORD_STORE, mRecordStore);
-        b.putSerializable(PARCEL_EXTRA_DEVICE_RSSI_LOG, (Serializable) mRssiLog);
-
-        parcel.writeBundle(b);
+        parcel.writeByte(PARCEL_VERSION);
+        parcel.writeParcelable(mDevice, arg1);
+        // The record store is not written, the receiver rebuilds it from the record when needed
+        parcel.writeByteArray(mScanRecord);
+        parcel.writeInt(mFirstRssi);
+        parcel.writeLong(mFirstTimestamp);
+        synchronized (mRssiLog) {
+            parcel.writeInt(mCurrentRssi);
+            parcel.writeLong(mCurrentTimestamp);
+            parcel.writeInt(mRssiLog.capacity());
+            final int rssiCount = mRssiLog.size();
+            parcel.writeInt(rssiCount);
+            for (int i = 0; i < rssiCount; i++) {
+                parcel.writeLong(mRssiLog.getTimestamp(i));
+                parcel.writeInt(mRssiLog.getRssi(i));
+            }
+        }
     }
 
     /**
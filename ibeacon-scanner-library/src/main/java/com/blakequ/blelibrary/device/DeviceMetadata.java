@@ -0,0 +1,131 @@
+package com.blakequ.blelibrary.device;
+
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A snapshot of the {@link BluetoothDevice} properties which are read over binder IPC from the
+ * Bluetooth service: the name, bond state and bluetooth class. See {@link DeviceMetadataCache}.
+ */
+public final class DeviceMetadata {
+    /**
+     * The class or bond state of a device whose metadata is not known.
+     */
+    public static final int UNKNOWN = -1;
+
+    private final String mName;
+    private final int mBondState;
+    private final int mDeviceClass;
+    private final int mMajorDeviceClass;
+    private final Set<BluetoothService> mServices;
+    private final long mRefreshTime;
+
+    private DeviceMetadata(final String name, final int bondState, final int deviceClass, final int majorDeviceClass,
+                           final Set<BluetoothService> services, final long refreshTime) {
+        mName = name;
+        mBondState = bondState;
+        mDeviceClass = deviceClass;
+        mMajorDeviceClass = majorDeviceClass;
+        mServices = services;
+        mRefreshTime = refreshTime;
+    }
+
+    /**
+     * Reads the metadata of a device, making several IPC calls. Must not be called on a thread
+     * processing scan results.
+     *
+     * @param device      the device
+     * @param refreshTime the time of the read
+     * @return the metadata
+     */
+    static DeviceMetadata read(final BluetoothDevice device, final long refreshTime) {
+        final BluetoothClass bluetoothClass = device.getBluetoothClass();
+        final int deviceClass;
+        final int majorDeviceClass;
+        final Set<BluetoothService> services;
+        if (bluetoothClass == null) {
+            deviceClass = UNKNOWN;
+            majorDeviceClass = UNKNOWN;
+            services = Collections.emptySet();
+        } else {
+            deviceClass = bluetoothClass.getDeviceClass();
+            majorDeviceClass = bluetoothClass.getMajorDeviceClass();
+            final Set<BluetoothService> serviceSet = EnumSet.noneOf(BluetoothService.class);
+            for (final BluetoothService service : BluetoothService.values()) {
+                if (bluetoothClass.hasService(service.getAndroidConstant())) {
+                    serviceSet.add(service);
+                }
+            }
+            services = Collections.unmodifiableSet(serviceSet);
+        }
+        return new DeviceMetadata(device.getName(), device.getBondState(), deviceClass, majorDeviceClass,
+                services, refreshTime);
+    }
+
+    /**
+     * Gets the device name.
+     *
+     * @return the name, or null if the device has none
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Gets the bond state.
+     *
+     * @return one of the {@code BluetoothDevice.BOND_*} constants
+     */
+    public int getBondState() {
+        return mBondState;
+    }
+
+    /**
+     * Gets the device class.
+     *
+     * @return the device class, or {@link #UNKNOWN}
+     */
+    public int getDeviceClass() {
+        return mDeviceClass;
+    }
+
+    /**
+     * Gets the major device class.
+     *
+     * @return the major device class, or {@link #UNKNOWN}
+     */
+    public int getMajorDeviceClass() {
+        return mMajorDeviceClass;
+    }
+
+    /**
+     * Gets the services the bluetooth class advertises.
+     *
+     * @return an unmodifiable set of services
+     */
+    public Set<BluetoothService> getServices() {
+        return mServices;
+    }
+
+    /**
+     * Gets the time the metadata was read.
+     *
+     * @return the {@code SystemClock#elapsedRealtime()} of the read
+     */
+    public long getRefreshTime() {
+        return mRefreshTime;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "DeviceMetadata [mName=" + mName + ", mBondState=" + mBondState + ", mDeviceClass=" + mDeviceClass
+                + ", mMajorDeviceClass=" + mMajorDeviceClass + ", mServices=" + mServices + "]";
+    }
+}
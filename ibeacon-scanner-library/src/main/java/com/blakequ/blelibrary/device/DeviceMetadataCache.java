@@ -0,0 +1,197 @@
+package com.blakequ.blelibrary.device;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.SystemClock;
+
+import com.blakequ.blelibrary.logging.LogManager;
+import com.blakequ.blelibrary.util.LongObjectHashMap;
+import com.blakequ.blelibrary.util.MacAddress;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Caches the {@link DeviceMetadata} of devices by address.
+ * <p>
+ * Reading the name, bond state or class of a {@link BluetoothDevice} is a binder call to the
+ * Bluetooth service, too slow for the thread processing scan results. {@link #get} only reads
+ * the cache. A missing or stale entry is read again on a background thread, so the first call
+ * for a device returns null and later calls return the metadata once it is read.
+ * <p>
+ * Entries are dropped with their device by {@link DeviceRegistry}. An entry is also dropped
+ * once it is two refresh periods old: a device still asked for is read again as soon as its
+ * entry is stale, so only devices nobody asked for since expire, including those built
+ * outside a registry. Expired entries are swept at most once a refresh period, when a read
+ * completes.
+ * <p>
+ * All methods are thread safe.
+ */
+public class DeviceMetadataCache {
+    private static final String TAG = "DeviceMetadataCache";
+    /**
+     * The default time after which metadata is read again, in milliseconds.
+     */
+    public static final long DEFAULT_REFRESH_PERIOD = 60000L;
+    private static DeviceMetadataCache sInstance = null;
+
+    private final LongObjectHashMap<DeviceMetadata> mEntries = new LongObjectHashMap<>();
+    // Addresses waiting for a read, so a device seen many times is only read once. Removing
+    // a device also drops it from here, so a read in flight doesn't bring its entry back
+    private final LongObjectHashMap<BluetoothDevice> mPending = new LongObjectHashMap<>();
+    private final Executor mExecutor;
+    private volatile long mRefreshPeriod = DEFAULT_REFRESH_PERIOD;
+    // Time of the last sweep of expired entries, guarded by mEntries
+    private long mLastSweep;
+
+    private DeviceMetadataCache() {
+        this(Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * @param executor runs the reads of the metadata
+     */
+    DeviceMetadataCache(final Executor executor) {
+        mExecutor = executor;
+    }
+
+    public static synchronized DeviceMetadataCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new DeviceMetadataCache();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Sets the time after which the metadata of a device is read again. Entries expire after
+     * two periods.
+     *
+     * @param refreshPeriod the refresh period in milliseconds
+     */
+    public void setRefreshPeriod(final long refreshPeriod) {
+        mRefreshPeriod = refreshPeriod;
+    }
+
+    /**
+     * Gets the time after which the metadata of a device is read again.
+     *
+     * @return the refresh period in milliseconds
+     */
+    public long getRefreshPeriod() {
+        return mRefreshPeriod;
+    }
+
+    /**
+     * Gets the cached metadata of a device, scheduling a background read if it is missing or
+     * stale. Never makes an IPC call.
+     *
+     * @param device  the device
+     * @param address the address of the device, see {@link MacAddress}
+     * @return the metadata, possibly stale, or null if it was never read
+     */
+    public DeviceMetadata get(final BluetoothDevice device, final long address) {
+        final DeviceMetadata metadata;
+        synchronized (mEntries) {
+            metadata = mEntries.get(address);
+            if (device == null || (metadata != null
+                    && SystemClock.elapsedRealtime() - metadata.getRefreshTime() < mRefreshPeriod)) {
+                return metadata;
+            }
+            if (mPending.put(address, device) != null) {
+                return metadata;
+            }
+        }
+        schedule(device, address);
+        return metadata;
+    }
+
+    private void schedule(final BluetoothDevice device, final long address) {
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    refresh(device, address);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (mEntries) {
+                mPending.remove(address);
+            }
+        }
+    }
+
+    private void refresh(final BluetoothDevice device, final long address) {
+        DeviceMetadata metadata = null;
+        try {
+            metadata = DeviceMetadata.read(device, SystemClock.elapsedRealtime());
+        } catch (RuntimeException e) {
+            // The Bluetooth service may be restarting, the next get schedules another read
+            LogManager.w(TAG, "Can't read metadata of %s", MacAddress.toString(address));
+        }
+        synchronized (mEntries) {
+            // Not pending any more if the device was removed while it was read
+            if (mPending.remove(address) != null && metadata != null) {
+                mEntries.put(address, metadata);
+            }
+            sweep(SystemClock.elapsedRealtime());
+        }
+    }
+
+    /*
+     * Drops the entries read two periods ago or more, see the class comment.
+     */
+    private void sweep(final long now) {
+        final long refreshPeriod = mRefreshPeriod;
+        if (now - mLastSweep < refreshPeriod) {
+            return;
+        }
+        mLastSweep = now;
+        for (long address : mEntries.keys()) {
+            if (now - mEntries.get(address).getRefreshTime() >= 2 * refreshPeriod) {
+                mEntries.remove(address);
+            }
+        }
+    }
+
+    /**
+     * Drops the metadata of a device. A read of the device in progress is not cached.
+     *
+     * @param address the address of the device, see {@link MacAddress}
+     */
+    public void remove(final long address) {
+        synchronized (mEntries) {
+            mEntries.remove(address);
+            mPending.remove(address);
+        }
+    }
+
+    /**
+     * Drops every entry. The reads in progress are not cached.
+     */
+    public void clear() {
+        synchronized (mEntries) {
+            mEntries.clear();
+            mPending.clear();
+        }
+    }
+
+    /**
+     * Gets the number of devices whose metadata is cached.
+     *
+     * @return the size
+     */
+    public int size() {
+        synchronized (mEntries) {
+            return mEntries.size();
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.blakequ.blelibrary.device;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.blakequ.blelibrary.device.beacon.BeaconType;
+import com.blakequ.blelibrary.device.beacon.BeaconUtils;
+import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconDevice;
+
+import com.blakequ.blelibrary.util.LongObjectHashMap;
+import com.blakequ.blelibrary.util.MacAddress;
+import com.blakequ.blelibrary.util.PayloadHash;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The devices seen by a scan, keyed by bluetooth address as a {@link MacAddress} value.
+ * <p>
+ * The devices are spread over segments each guarded by its own lock, so scan results of
+ * different devices processed on several threads rarely contend.
+ * <p>
+ * A repeat advert, recognised by the length and {@link PayloadHash} of its scan record, only
+ * adds its rssi reading to the device already known and skips every parsing stage. The scan
+ * record is decoded again only for a new device or when the device changes its payload. Devices not seen
+ * for a while are dropped by {@link #evict(long)}.
+ * <p>
+ * All methods are thread safe.
+ */
+public class DeviceRegistry {
+    private static final int SEGMENT_COUNT = 16;
+    private static final int DEFAULT_INITIAL_CAPACITY = 64;
+    @SuppressWarnings("unchecked")
+    private final LongObjectHashMap<BluetoothLeDevice>[] mSegments = new LongObjectHashMap[SEGMENT_COUNT];
+    private final AtomicInteger mSize = new AtomicInteger();
+    private final AtomicLong mUpdateCount = new AtomicLong();
+    private final AtomicLong mDecodeCount = new AtomicLong();
+    private final AtomicLong mEvictionCount = new AtomicLong();
+    private final AtomicInteger mPeakSize = new AtomicInteger();
+
+    public DeviceRegistry() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity the number of devices expected
+     */
+    public DeviceRegistry(final int initialCapacity) {
+        final int segmentCapacity = (initialCapacity + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            mSegments[i] = new LongObjectHashMap<>(segmentCapacity);
+        }
+    }
+
+    private LongObjectHashMap<BluetoothLeDevice> segmentFor(final long address) {
+        // The segment maps hash the low bits themselves, so fold in bits they weigh less
+        return mSegments[(int) (address ^ (address >>> 20) ^ (address >>> 40)) & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * Records an advert. Adverts of the same device may be recorded by several threads at once:
+     * a repeat updates the rssi of the known device under the lock of its segment, and a new
+     * payload only replaces the device it was decoded against, retrying otherwise, so no
+     * reading or rssi history is lost.
+     *
+     * @param device     the device which sent the advert
+     * @param rssi       the RSSI value of the advert
+     * @param scanRecord the scan record of the advert
+     * @param timestamp  the timestamp of the advert
+     * @return the device, an {@link IBeaconDevice} if the advert is an iBeacon one, or null if
+     * the address of the device can't be parsed
+     */
+    public BluetoothLeDevice update(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+        final long address = MacAddress.parse(device.getAddress());
+        if (address == MacAddress.INVALID) {
+            // Every such device would share the one invalid key
+            return null;
+        }
+        final LongObjectHashMap<BluetoothLeDevice> segment = segmentFor(address);
+        final long hash = PayloadHash.hash64(scanRecord);
+        while (true) {
+            final BluetoothLeDevice known;
+            synchronized (segment) {
+                known = segment.get(address);
+                if (known != null && isSamePayload(known, scanRecord, hash)) {
+                    known.updateRssiReading(timestamp, rssi);
+                    mUpdateCount.incrementAndGet();
+                    return known;
+                }
+            }
+
+            // Decoded outside of the lock, the other devices of the segment are not held up
+            final BluetoothLeDevice decoded = decode(device, rssi, scanRecord, timestamp);
+            synchronized (segment) {
+                if (segment.get(address) != known) {
+                    // Another thread replaced the device meanwhile, check against its payload
+                    continue;
+                }
+                if (known != null) {
+                    // A payload change, e.g. alternating frames, must not restart the rssi smoothing
+                    decoded.takeRssiHistory(known);
+                }
+                segment.put(address, decoded);
+            }
+            mDecodeCount.incrementAndGet();
+            if (known == null) {
+                updatePeakSize(mSize.incrementAndGet());
+            }
+            return decoded;
+        }
+    }
+
+    private static boolean isSamePayload(final BluetoothLeDevice known, final byte[] scanRecord, final long hash) {
+        final byte[] knownRecord = known.getScanRecord();
+        if (knownRecord == null || scanRecord == null) {
+            return knownRecord == scanRecord;
+        }
+        return knownRecord.length == scanRecord.length && known.getScanRecordHash() == hash;
+    }
+
+    private static BluetoothLeDevice decode(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+        final BluetoothLeDevice deviceLe = new BluetoothLeDevice(device, rssi, scanRecord, timestamp);
+        if (BeaconUtils.getBeaconType(deviceLe) == BeaconType.IBEACON) {
+            // Decoded from the manufacturer structure the classifier matched
+            return new IBeaconDevice(deviceLe);
+        }
+        return deviceLe;
+    }
+
+    private void updatePeakSize(final int size) {
+        int peak;
+        while (size > (peak = mPeakSize.get())) {
+            if (mPeakSize.compareAndSet(peak, size)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets a device.
+     *
+     * @param address the bluetooth address of the device
+     * @return the device, or null if it is not known
+     */
+    public BluetoothLeDevice get(final String address) {
+        return get(MacAddress.parse(address));
+    }
+
+    /**
+     * Gets a device.
+     *
+     * @param address the bluetooth address of the device, see {@link MacAddress}
+     * @return the device, or null if it is not known
+     */
+    public BluetoothLeDevice get(final long address) {
+        final LongObjectHashMap<BluetoothLeDevice> segment = segmentFor(address);
+        synchronized (segment) {
+            return segment.get(address);
+        }
+    }
+
+    /**
+     * Gets a snapshot of the known devices.
+     *
+     * @return the devices
+     */
+    public List<BluetoothLeDevice> getDevices() {
+        final List<BluetoothLeDevice> devices = new ArrayList<>(size());
+        for (LongObjectHashMap<BluetoothLeDevice> segment : mSegments) {
+            synchronized (segment) {
+                segment.values(devices);
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * Drops the devices last seen before a time, with their {@link DeviceMetadataCache} entries.
+     *
+     * @param oldestTimestamp the timestamp of the oldest advert to keep
+     * @return the number of devices dropped
+     */
+    public int evict(final long oldestTimestamp) {
+        int evicted = 0;
+        for (LongObjectHashMap<BluetoothLeDevice> segment : mSegments) {
+            synchronized (segment) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                for (long address : segment.keys()) {
+                    if (segment.get(address).getTimestamp() < oldestTimestamp) {
+                        segment.remove(address);
+                        DeviceMetadataCache.getInstance().remove(address);
+                        evicted++;
+                    }
+                }
+            }
+        }
+        mSize.addAndGet(-evicted);
+        mEvictionCount.addAndGet(evicted);
+        return evicted;
+    }
+
+    /**
+     * Drops every device. The counters are kept.
+     */
+    public void clear() {
+        for (LongObjectHashMap<BluetoothLeDevice> segment : mSegments) {
+            synchronized (segment) {
+                mSize.addAndGet(-segment.size());
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of known devices.
+     *
+     * @return the size
+     */
+    public int size() {
+        return mSize.get();
+    }
+
+    /**
+     * Gets the largest number of devices known at once.
+     *
+     * @return the peak size
+     */
+    public int getPeakSize() {
+        return mPeakSize.get();
+    }
+
+    /**
+     * Gets the number of adverts which only updated the rssi of a known device.
+     *
+     * @return the update count
+     */
+    public long getUpdateCount() {
+        return mUpdateCount.get();
+    }
+
+    /**
+     * Gets the share of adverts which skipped decoding because their payload was already known.
+     *
+     * @return the skip ratio between 0 and 1, 0 if there was no advert
+     */
+    public double getSkipRatio() {
+        final long updates = mUpdateCount.get();
+        final long total = updates + mDecodeCount.get();
+        return total == 0 ? 0 : (double) updates / total;
+    }
+
+    /**
+     * Gets the number of adverts which were decoded, because the device was new or changed
+     * its payload.
+     *
+     * @return the decode count
+     */
+    public long getDecodeCount() {
+        return mDecodeCount.get();
+    }
+
+    /**
+     * Gets the number of devices dropped by {@link #evict(long)}.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return mEvictionCount.get();
+    }
+
+    /**
+     * Resets the update, decode and eviction counters and the peak size.
+     */
+    public void resetCounts() {
+        mUpdateCount.set(0);
+        mDecodeCount.set(0);
+        mEvictionCount.set(0);
+        mPeakSize.set(size());
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "DeviceRegistry [size=" + size() + ", peakSize=" + getPeakSize() + ", updates=" + getUpdateCount()
+                + ", skipRatio=" + getSkipRatio()
+                + ", decodes=" + getDecodeCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+}
@@ -4,6 +4,8 @@ import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.blakequ.blelibrary.util.ByteReader;
+
 import java.util.Arrays;
 
 /**
@@ -126,12 +128,39 @@ public final class AdRecord implements Parcelable {
     /* Model Object Definition */
     private final int mLength;
     private final int mType;
-    private final byte[] mData;
+    // Backing array of the data. For a view this is the whole scan record.
+    private final byte[] mSource;
+    private final int mDataOffset;
+    private final int mDataLength;
+    // Lazily created copy of a view's data, see getData().
+    private byte[] mData;
 
     public AdRecord(final int length, final int type, final byte[] data) {
         mLength = length;
         mType = type;
         mData = data;
+        mSource = data;
+        mDataOffset = 0;
+        mDataLength = data == null ? 0 : data.length;
+    }
+
+    /**
+     * Instantiates an AdRecord which is a view over an AD structure of a raw scan record.
+     * The data is not copied, it is read from {@code scanRecord} until {@link #getData()}
+     * is called.
+     *
+     * @param length     the length of the AD structure (type byte included)
+     * @param type       the AD type
+     * @param scanRecord the raw scan record
+     * @param dataOffset the offset of the first data byte in {@code scanRecord}
+     */
+    public AdRecord(final int length, final int type, final byte[] scanRecord, final int dataOffset) {
+        mLength = length;
+        mType = type;
+        mSource = scanRecord;
+        mDataOffset = dataOffset;
+        // Never let a view reach past the end of the record
+        mDataLength = Math.max(0, Math.min(length - 1, scanRecord.length - dataOffset));
     }
 
     public AdRecord(final Parcel in) {
@@ -139,6 +168,9 @@ public final class AdRecord implements Parcelable {
         mLength = b.getInt(PARCEL_RECORD_LENGTH);
         mType = b.getInt(PARCEL_RECORD_TYPE);
         mData = b.getByteArray(PARCEL_RECORD_DATA);
+        mSource = mData;
+        mDataOffset = 0;
+        mDataLength = mData == null ? 0 : mData.length;
     }
 
     @Override
@@ -146,8 +178,106 @@ public final class AdRecord implements Parcelable {
         return 0;
     }
 
+    /**
+     * Gets the data of this record. For a view the data is copied out of the scan record
+     * on the first call.
+     *
+     * @return the data
+     */
     public byte[] getData() {
-        return mData;
+        byte[] data = mData;
+        if (data == null && mSource != null) {
+            data = new byte[mDataLength];
+            System.arraycopy(mSource, mDataOffset, data, 0, mDataLength);
+            mData = data;
+        }
+        return data;
+    }
+
+    /**
+     * Gets a byte of the record data.
+     *
+     * @param index the index in the record data
+     * @return the byte
+     * @throws IndexOutOfBoundsException if index is outside the record data
+     */
+    public byte getByte(final int index) {
+        checkIndex(index, 1);
+        return mSource[mDataOffset + index];
+    }
+
+    /**
+     * Gets a byte of the record data as an unsigned value.
+     *
+     * @param index the index in the record data
+     * @return the value, between 0 and 255
+     * @throws IndexOutOfBoundsException if index is outside the record data
+     */
+    public int getUnsignedByte(final int index) {
+        return getByte(index) & 0xFF;
+    }
+
+    /**
+     * Gets an unsigned little endian 16 bit value of the record data.
+     *
+     * @param index the index in the record data
+     * @return the value
+     * @throws IndexOutOfBoundsException if the value is not inside the record data
+     */
+    public int getUnsignedShortLE(final int index) {
+        checkIndex(index, 2);
+        return ByteReader.uint16LE(mSource, mDataOffset + index);
+    }
+
+    /**
+     * Copies a part of the record data into a destination array.
+     *
+     * @param index   the index in the record data
+     * @param dest    the destination array
+     * @param destPos the start position in the destination array
+     * @param length  the number of bytes to copy
+     * @throws IndexOutOfBoundsException if the range is not inside the record data
+     */
+    public void copyData(final int index, final byte[] dest, final int destPos, final int length) {
+        checkIndex(index, length);
+        System.arraycopy(mSource, mDataOffset + index, dest, destPos, length);
+    }
+
+    /**
+     * Gets the number of bytes of record data.
+     *
+     * @return the data length
+     */
+    public int getDataLength() {
+        return mDataLength;
+    }
+
+    /**
+     * Gets the offset of the record data in {@link #getSource()}.
+     *
+     * @return the data offset
+     */
+    public int getDataOffset() {
+        return mDataOffset;
+    }
+
+    /**
+     * Gets the array backing this record. For a view this is the whole scan record, so
+     * only the range starting at {@link #getDataOffset()} belongs to this record.
+     *
+     * @return the backing array
+     */
+    public byte[] getSource() {
+        return mSource;
+    }
+
+    /**
+     * Checks whether this record reads its data from the scan record it was parsed from.
+     *
+     * @return true if the record is a view
+     */
+    public boolean isView() {
+        return mSource != mData;
     }
 
     public String getHumanReadableType() {
@@ -164,7 +294,7 @@ public final class AdRecord implements Parcelable {
 
     @Override
     public String toString() {
-        return "AdRecord [mLength=" + mLength + ", mType=" + mType + ", mData=" + Arrays.toString(mData) + ", getHumanReadableType()=" + getHumanReadableType() + "]";
+        return "AdRecord [mLength=" + mLength + ", mType=" + mType + ", mData=" + Arrays.toString(getData()) + ", getHumanReadableType()=" + getHumanReadableType() + "]";
     }
 
     @Override
@@ -173,11 +303,18 @@ public final class AdRecord implements Parcelable {
 
         b.putInt(PARCEL_RECORD_LENGTH, mLength);
         b.putInt(PARCEL_RECORD_TYPE, mType);
-        b.putByteArray(PARCEL_RECORD_DATA, mData);
+        b.putByteArray(PARCEL_RECORD_DATA, getData());
 
         parcel.writeBundle(b);
     }
 
+    private void checkIndex(final int index, final int count) {
+        if (index < 0 || count < 0 || index > mDataLength - count) {
+            throw new IndexOutOfBoundsException(
+                    "index=" + index + ", count=" + count + ", length=" + mDataLength);
+        }
+    }
+
     private static String getHumanReadableAdType(final int type) {
         switch (type) {
             case TYPE_CONNECTION_INTERVAL_RANGE:
@@ -6,14 +6,29 @@ import android.os.Parcelable;
 import android.util.SparseArray;
 
 import com.blakequ.blelibrary.util.AdRecordUtils;
+import com.blakequ.blelibrary.util.ParsedAdvertisement;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 
 
 /**
  * The Class AdRecordStore.
+ * <p>
+ * A store created from a {@link ParsedAdvertisement} is lazy: records and local names are
+ * only built when asked for. When a type appears more than once the last record of that type
+ * is used, like the eagerly parsed {@link SparseArray} does. The first lookup therefore walks
+ * the AD structure headers once to the end of the record and remembers the last structure of
+ * each type; later lookups and {@link #isRecordPresent(int)} only read that table, and no
+ * record but the one asked for is built.
+ * <p>
+ * A lookup does not stop at the first structure of its type on purpose. Only the rest of the
+ * record can tell whether that structure is the last of its type, and stopping early would
+ * return a different record than the eager store for records repeating a type. The walk
+ * only reads the headers, which the {@link ParsedAdvertisement} shared with the other
+ * views of the packet keeps anyway.
  */
 public class AdRecordStore implements Parcelable {
     public static final Parcelable.Creator<AdRecordStore> CREATOR = new Parcelable.Creator<AdRecordStore>() {
@@ -25,13 +40,23 @@ public class AdRecordStore implements Parcelable {
             return new AdRecordStore[size];
         }
     };
-    private final SparseArray<AdRecord> mAdRecords;
-    private final String mLocalNameComplete;
-    private final String mLocalNameShort;
+    private static final int TYPE_SHIFT = 16;
+    private static final int INDEX_MASK = (1 << TYPE_SHIFT) - 1;
+    // Null when the store was built from an already parsed SparseArray
+    private final ParsedAdvertisement mParsed;
+    // Records looked up so far, or all of them once mComplete is set
+    private SparseArray<AdRecord> mAdRecords;
+    private boolean mComplete;
+    // Type in the high bits and index of the last structure of each type, once looked up
+    private int[] mLastOfType;
+    private String mLocalNameComplete;
+    private String mLocalNameShort;
 
     public AdRecordStore(final Parcel in) {
         final Bundle b = in.readBundle(getClass().getClassLoader());
+        mParsed = null;
         mAdRecords = b.getSparseParcelableArray("records_array");
+        mComplete = true;
         mLocalNameComplete = b.getString("local_name_complete");
         mLocalNameShort = b.getString("local_name_short");
     }
@@ -42,7 +67,9 @@ public class AdRecordStore implements Parcelable {
      * @param adRecords the ad records
      */
     public AdRecordStore(final SparseArray<AdRecord> adRecords) {
+        mParsed = null;
         mAdRecords = adRecords;
+        mComplete = true;
 
         mLocalNameComplete = AdRecordUtils.getRecordDataAsString(
                 mAdRecords.get(AdRecord.TYPE_LOCAL_NAME_COMPLETE));
@@ -52,6 +79,15 @@ public class AdRecordStore implements Parcelable {
 
     }
 
+    /**
+     * Instantiates a new lazy Bluetooth LE device Ad Record Store.
+     *
+     * @param parsed the AD structures of the scan record
+     */
+    public AdRecordStore(final ParsedAdvertisement parsed) {
+        mParsed = parsed;
+    }
+
     /* (non-Javadoc)
      * @see android.os.Parcelable#describeContents()
      */
@@ -65,7 +101,11 @@ public class AdRecordStore implements Parcelable {
      *
      * @return the local name complete
      */
-    public String getLocalNameComplete() {
+    public synchronized String getLocalNameComplete() {
+        if (mLocalNameComplete == null) {
+            mLocalNameComplete = AdRecordUtils.getRecordDataAsString(
+                    getRecord(AdRecord.TYPE_LOCAL_NAME_COMPLETE));
+        }
         return mLocalNameComplete;
     }
 
@@ -74,7 +114,11 @@ public class AdRecordStore implements Parcelable {
      *
      * @return the local name short
      */
-    public String getLocalNameShort() {
+    public synchronized String getLocalNameShort() {
+        if (mLocalNameShort == null) {
+            mLocalNameShort = AdRecordUtils.getRecordDataAsString(
+                    getRecord(AdRecord.TYPE_LOCAL_NAME_SHORT));
+        }
         return mLocalNameShort;
     }
 
@@ -84,8 +128,22 @@ public class AdRecordStore implements Parcelable {
      * @param record the record
      * @return the record
      */
-    public AdRecord getRecord(final int record) {
-        return mAdRecords.get(record);
+    public synchronized AdRecord getRecord(final int record) {
+        final AdRecord cached = mAdRecords == null ? null : mAdRecords.get(record);
+        if (cached != null || mComplete) {
+            return cached;
+        }
+
+        final int index = findStructure(record);
+        if (index < 0) {
+            return null;
+        }
+        final AdRecord adRecord = createRecord(index);
+        if (mAdRecords == null) {
+            mAdRecords = new SparseArray<>(1);
+        }
+        mAdRecords.put(record, adRecord);
+        return adRecord;
     }
 
     /**
@@ -95,8 +153,7 @@ public class AdRecordStore implements Parcelable {
      * @return the record data as string
      */
     public String getRecordDataAsString(final int record) {
-        return AdRecordUtils.getRecordDataAsString(
-                mAdRecords.get(record));
+        return AdRecordUtils.getRecordDataAsString(getRecord(record));
     }
 
     /**
@@ -105,7 +162,7 @@ public class AdRecordStore implements Parcelable {
      * @return the records as collection
      */
     public Collection<AdRecord> getRecordsAsCollection() {
-        return Collections.unmodifiableCollection(asList(mAdRecords));
+        return Collections.unmodifiableCollection(asList(getAllRecords()));
     }
 
     /**
@@ -114,8 +171,11 @@ public class AdRecordStore implements Parcelable {
      * @param record the record
      * @return true, if is record present
      */
-    public boolean isRecordPresent(final int record) {
-        return mAdRecords.indexOfKey(record) >= 0;
+    public synchronized boolean isRecordPresent(final int record) {
+        if (mComplete) {
+            return mAdRecords.get(record) != null;
+        }
+        return findStructure(record) >= 0;
     }
 
     /* (non-Javadoc)
@@ -123,7 +183,7 @@ public class AdRecordStore implements Parcelable {
      */
     @Override
     public String toString() {
-        return "AdRecordStore [mLocalNameComplete=" + mLocalNameComplete + ", mLocalNameShort=" + mLocalNameShort + "]";
+        return "AdRecordStore [mLocalNameComplete=" + getLocalNameComplete() + ", mLocalNameShort=" + getLocalNameShort() + "]";
     }
 
     /* (non-Javadoc)
@@ -132,13 +192,80 @@ public class AdRecordStore implements Parcelable {
     @Override
     public void writeToParcel(final Parcel parcel, final int arg1) {
         final Bundle b = new Bundle();
-        b.putString("local_name_complete", mLocalNameComplete);
-        b.putString("local_name_short", mLocalNameShort);
-        b.putSparseParcelableArray("records_array", mAdRecords);
+        b.putString("local_name_complete", getLocalNameComplete());
+        b.putString("local_name_short", getLocalNameShort());
+        b.putSparseParcelableArray("records_array", getAllRecords());
 
         parcel.writeBundle(b);
     }
 
+    /*
+     * Builds every record which has not been looked up yet.
+     */
+    private synchronized SparseArray<AdRecord> getAllRecords() {
+        if (!mComplete) {
+            final int[] lastOfType = getLastOfType();
+            final SparseArray<AdRecord> records = new SparseArray<>(lastOfType.length);
+            for (int entry : lastOfType) {
+                final int type = entry >>> TYPE_SHIFT;
+                final AdRecord cached = mAdRecords == null ? null : mAdRecords.get(type);
+                records.put(type, cached != null ? cached : createRecord(entry & INDEX_MASK));
+            }
+            mAdRecords = records;
+            mComplete = true;
+        }
+        return mAdRecords;
+    }
+
+    /*
+     * Index of the last structure of the given type.
+     */
+    private int findStructure(final int type) {
+        for (int entry : getLastOfType()) {
+            if (entry >>> TYPE_SHIFT == type) return entry & INDEX_MASK;
+        }
+        return -1;
+    }
+
+    /*
+     * Walks the structure headers once, keeping the last structure of each type.
+     */
+    private int[] getLastOfType() {
+        if (mLastOfType == null) {
+            final int count = structureCount();
+            final int[] lastOfType = new int[count];
+            int size = 0;
+            // Backwards, so the last structure of a type is the one kept
+            for (int i = count - 1; i >= 0; i--) {
+                final int type = mParsed.getType(i);
+                int j = 0;
+                while (j < size && lastOfType[j] >>> TYPE_SHIFT != type) j++;
+                if (j == size) {
+                    lastOfType[size++] = type << TYPE_SHIFT | i;
+                }
+            }
+            mLastOfType = size == count ? lastOfType : Arrays.copyOf(lastOfType, size);
+        }
+        return mLastOfType;
+    }
+
+    /*
+     * Number of structures before the first one of an invalid type.
+     */
+    private int structureCount() {
+        final int count = mParsed.getStructureCount();
+        for (int i = 0; i < count; i++) {
+            //Done if our record isn't a valid type
+            if (mParsed.getType(i) == 0) return i;
+        }
+        return count;
+    }
+
+    private AdRecord createRecord(final int index) {
+        return new AdRecord(mParsed.getDataLength(index) + 1, mParsed.getType(index),
+                mParsed.getBytes(), mParsed.getDataOffset(index));
+    }
+
     /**
      * As list.
      *
@@ -1,15 +0,0 @@
-package com.blakequ.blelibrary.device.beacon;
-
-/**
- * ble device type
- */
-public enum BeaconType {
-    /**
-     * not ibeacon device
-     */
-    NOT_A_BEACON,
-    /**
-     * ibeacon device
-     * */
-    IBEACON,
-}
@@ -1,10 +1,13 @@
 package com.blakequ.blelibrary.device.beacon;
 
 
+import com.blakequ.blelibrary.bluetoothcompat.ScanRecordCompat;
+import com.blakequ.blelibrary.bluetoothcompat.ScanResultCompat;
 import com.blakequ.blelibrary.device.BluetoothLeDevice;
-import com.blakequ.blelibrary.device.adrecord.AdRecord;
-import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconConstants;
-import com.blakequ.blelibrary.util.ByteUtils;
+import com.blakequ.blelibrary.util.MacAddress;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -22,38 +25,56 @@ public final class BeaconUtils {
      * @return the {@link BeaconType}
      */
     public static BeaconType getBeaconType(final byte[] manufacturerData) {
-        if (manufacturerData == null || manufacturerData.length == 0) {
+        if (manufacturerData == null) {
             return BeaconType.NOT_A_BEACON;
         }
+        return getBeaconType(manufacturerData, 0, manufacturerData.length);
+    }
 
-        if(isIBeacon(manufacturerData)){
-            return BeaconType.IBEACON;
-        } else {
+    /**
+     * Ascertains whether Manufacturer Data held in a larger array belongs to a known Beacon type;
+     *
+     * @param source the array holding a Bluetooth LE device's raw manufacturerData.
+     * @param offset the offset of the manufacturerData in source
+     * @param length the length of the manufacturerData
+     * @return the {@link BeaconType}
+     */
+    public static BeaconType getBeaconType(final byte[] source, final int offset, final int length) {
+        if (source == null || length == 0) {
             return BeaconType.NOT_A_BEACON;
         }
+
+        return BeaconClassifier.getBeaconType(BeaconClassifier.classifyManufacturerData(source, offset, length));
     }
 
     /**
-     * Ascertains whether a {@link com.blakequ.blelibrary.device.BluetoothLeDevice} is an iBeacon;
+     * Ascertains whether a {@link com.blakequ.blelibrary.device.BluetoothLeDevice} is a known Beacon type;
      *
      * @param device a {@link com.blakequ.blelibrary.device.BluetoothLeDevice} device.
      * @return the {@link BeaconType}
      */
     public static BeaconType getBeaconType(final BluetoothLeDevice device) {
-        final int key = AdRecord.TYPE_MANUFACTURER_SPECIFIC_DATA;
-        return getBeaconType(device.getAdRecordStore().getRecordDataAsString(key).getBytes());
+        return BeaconClassifier.getBeaconType(BeaconClassifier.classify(device.getScanRecord()));
     }
 
-    private static boolean isIBeacon(final byte[] manufacturerData){
-        // An iBeacon record must be at least 25 chars long
-        if (!(manufacturerData.length >= 25)) {
-            return false;
-        }
-
-        if (ByteUtils.doesArrayBeginWith(manufacturerData, IBeaconConstants.MANUFACTURER_DATA_IBEACON_PREFIX)) {
-            return true;
+    /**
+     * Appends batch scan results to a {@link BeaconBatch}. The timestamps are those of the
+     * results, converted to milliseconds of {@link android.os.SystemClock#elapsedRealtime()}.
+     *
+     * @param decoder the decoder holding the beacon layouts
+     * @param results the scan results
+     * @param batch   the batch to append to
+     */
+    public static void decodeBatch(final BeaconBatchDecoder decoder,
+                                   final List<ScanResultCompat> results, final BeaconBatch batch) {
+        final int count = results.size();
+        batch.ensureCapacity(batch.size() + count);
+        for (int i = 0; i < count; i++) {
+            final ScanResultCompat result = results.get(i);
+            final ScanRecordCompat record = result.getScanRecord();
+            decoder.decode(MacAddress.parse(result.getDevice().getAddress()), result.getRssi(),
+                    record == null ? null : record.getBytes(),
+                    TimeUnit.NANOSECONDS.toMillis(result.getTimestampNanos()), batch);
         }
-
-        return false;
     }
 }
@@ -1,21 +1,34 @@
 package com.blakequ.blelibrary.device.beacon.ibeacon;
 
-import android.annotation.SuppressLint;
 import android.bluetooth.BluetoothDevice;
 import android.os.Parcel;
+import android.os.Parcelable;
 
 import com.blakequ.blelibrary.device.BluetoothLeDevice;
+import com.blakequ.blelibrary.device.DeviceIdentity;
 import com.blakequ.blelibrary.device.beacon.BeaconDevice;
 import com.blakequ.blelibrary.device.beacon.BeaconType;
 
 
-@SuppressLint("ParcelCreator")
 public class IBeaconDevice extends BluetoothLeDevice implements BeaconDevice {
+    /**
+     * The Constant CREATOR, the iBeacon data is decoded again from the parcelled scan record.
+     */
+    public static final Parcelable.Creator<IBeaconDevice> CREATOR = new Parcelable.Creator<IBeaconDevice>() {
+        public IBeaconDevice createFromParcel(final Parcel in) {
+            return new IBeaconDevice(in);
+        }
+
+        public IBeaconDevice[] newArray(final int size) {
+            return new IBeaconDevice[size];
+        }
+    };
 
     /**
      * The m iBeacon data.
      */
     private final IBeaconManufacturerData mIBeaconData;
+    private final DeviceIdentity mIdentity;
 
     /**
      * Instantiates a new iBeacon device.
@@ -28,6 +41,7 @@ public class IBeaconDevice extends BluetoothLeDevice implements BeaconDevice {
     public IBeaconDevice(final BluetoothDevice device, final int rssi, final byte[] scanRecord) {
         super(device, rssi, scanRecord, 0);
         mIBeaconData = new IBeaconManufacturerData(this);
+        mIdentity = createIdentity(mIBeaconData);
     }
 
     /**
@@ -42,6 +56,7 @@ public class IBeaconDevice extends BluetoothLeDevice implements BeaconDevice {
     public IBeaconDevice(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
         super(device, rssi, scanRecord, timestamp);
         mIBeaconData = new IBeaconManufacturerData(this);
+        mIdentity = createIdentity(mIBeaconData);
     }
 
     /**
@@ -54,24 +69,43 @@ public class IBeaconDevice extends BluetoothLeDevice implements BeaconDevice {
     public IBeaconDevice(final BluetoothLeDevice device) {
         super(device);
         mIBeaconData = new IBeaconManufacturerData(this);
+        mIdentity = createIdentity(mIBeaconData);
     }
 
     private IBeaconDevice(final Parcel in) {
         super(in);
         mIBeaconData = new IBeaconManufacturerData(this);
+        mIdentity = createIdentity(mIBeaconData);
+    }
+
+    private static DeviceIdentity createIdentity(final IBeaconManufacturerData data) {
+        return DeviceIdentity.ofIBeacon(data.getUuidMostSignificantBits(), data.getUuidLeastSignificantBits(),
+                data.getMajor(), data.getMinor());
+    }
+
+    /**
+     * Gets the identity of the iBeacon, its UUID, major and minor, which stays the same
+     * when the beacon rotates its address.
+     *
+     * @return the identity
+     */
+    @Override
+    public DeviceIdentity getIdentity() {
+        return mIdentity;
     }
 
     /**
      * Gets the estimated Accuracy of the reading in meters based on
-     * a simple running average of the last {@link #MAX_RSSI_LOG_SIZE}
-     * samples.
+     * the rssi filter of the device, or a simple running average of the
+     * last {@link #MAX_RSSI_LOG_SIZE} samples if there is none.
      *
      * @return the accuracy in meters
+     * @see #setRssiFilter(com.blakequ.blelibrary.device.rssi.RssiFilter)
      */
     public double getAccuracy() {
         return IBeaconUtils.calculateAccuracy(
                 getCalibratedTxPower(),
-                getRunningAverageRssi());
+                getFilteredRssi());
     }
 
     @Override
@@ -2,12 +2,9 @@ package com.blakequ.blelibrary.device.beacon.ibeacon;
 
 import com.blakequ.blelibrary.device.BluetoothLeDevice;
 import com.blakequ.blelibrary.device.adrecord.AdRecord;
+import com.blakequ.blelibrary.device.beacon.BeaconClassifier;
 import com.blakequ.blelibrary.device.beacon.BeaconManufacturerData;
 import com.blakequ.blelibrary.device.beacon.BeaconType;
-import com.blakequ.blelibrary.util.ByteUtils;
-
-import java.util.Arrays;
-
 
 /**
  * Parses the Manufactured Data field of an iBeacon
@@ -51,16 +48,25 @@ public final class IBeaconManufacturerData extends BeaconManufacturerData {
     private final int mIBeaconAdvertisment;
     private final int mMajor;
     private final int mMinor;
-    private final String mUUID;
+    private final long mUuidMostSignificantBits;
+    private final long mUuidLeastSignificantBits;
+    private String mUUID;
 
     /**
-     * Instantiates a new iBeacon manufacturer data object.
+     * Instantiates a new iBeacon manufacturer data object from the manufacturer data structure
+     * {@link BeaconClassifier} recognised as an iBeacon, which need not be the first one of
+     * the scan record.
      *
      * @param device a {@link BluetoothLeDevice}
      * @throws IllegalArgumentException if the data is not from an iBeacon.
      */
     public IBeaconManufacturerData(final BluetoothLeDevice device) {
-        this(device.getAdRecordStore().getRecord(AdRecord.TYPE_MANUFACTURER_SPECIFIC_DATA).getData());
+        this(device.getScanRecord(), BeaconClassifier.classify(device.getScanRecord()));
+    }
+
+    private IBeaconManufacturerData(final byte[] scanRecord, final long classification) {
+        this(scanRecord, BeaconClassifier.getPayloadOffset(classification),
+                BeaconClassifier.getPayloadLength(classification));
     }
 
     /**
@@ -70,17 +76,29 @@ public final class IBeaconManufacturerData extends BeaconManufacturerData {
      * @throws IllegalArgumentException if the data is not from an iBeacon.
      */
     public IBeaconManufacturerData(final byte[] manufacturerData) {
-        super(BeaconType.IBEACON, manufacturerData);
+        this(manufacturerData, 0, manufacturerData == null ? 0 : manufacturerData.length);
+    }
 
-        final byte[] intArray = Arrays.copyOfRange(manufacturerData, 0, 2);
-        ByteUtils.invertArray(intArray);
+    /**
+     * Instantiates a new iBeacon manufacturer data object reading the fields straight from
+     * a larger array, usually the whole scan record. Nothing is copied.
+     *
+     * @param source the array holding the {@link AdRecord#TYPE_MANUFACTURER_SPECIFIC_DATA} data
+     * @param offset the offset of the manufacturer data in source
+     * @param length the length of the manufacturer data
+     * @throws IllegalArgumentException if the data is not from an iBeacon.
+     */
+    public IBeaconManufacturerData(final byte[] source, final int offset, final int length) {
+        super(BeaconType.IBEACON, source, offset, length);
 
-        mCompanyIdentidier = ByteUtils.getIntFrom2ByteArray(intArray);
-        mIBeaconAdvertisment = ByteUtils.getIntFrom2ByteArray(Arrays.copyOfRange(manufacturerData, 2, 4));
-        mUUID = IBeaconUtils.calculateUuidString(Arrays.copyOfRange(manufacturerData, 4, 20));
-        mMajor = ByteUtils.getIntFrom2ByteArray(Arrays.copyOfRange(manufacturerData, 20, 22));
-        mMinor = ByteUtils.getIntFrom2ByteArray(Arrays.copyOfRange(manufacturerData, 22, 24));
-        mCalibratedTxPower = manufacturerData[24];
+        // Checked by the super constructor, read in place without a reader per packet
+        mCompanyIdentidier = IBeaconDecoder.getCompanyIdentifier(source, offset);
+        mIBeaconAdvertisment = IBeaconDecoder.getIBeaconAdvertisement(source, offset);
+        mUuidMostSignificantBits = IBeaconDecoder.getUuidMostSignificantBits(source, offset);
+        mUuidLeastSignificantBits = IBeaconDecoder.getUuidLeastSignificantBits(source, offset);
+        mMajor = IBeaconDecoder.getMajor(source, offset);
+        mMinor = IBeaconDecoder.getMinor(source, offset);
+        mCalibratedTxPower = IBeaconDecoder.getCalibratedTxPower(source, offset);
     }
 
     /**
@@ -124,11 +142,32 @@ public final class IBeaconManufacturerData extends BeaconManufacturerData {
     }
 
     /**
-     * Gets the iBeacon UUID.
+     * Gets the iBeacon UUID. The string is only built on the first call.
      *
      * @return the UUID
      */
     public String getUUID() {
+        if (mUUID == null) {
+            mUUID = IBeaconUtils.calculateUuidString(mUuidMostSignificantBits, mUuidLeastSignificantBits);
+        }
         return mUUID;
     }
+
+    /**
+     * Gets the most significant 64 bits of the iBeacon UUID.
+     *
+     * @return the most significant bits
+     */
+    public long getUuidMostSignificantBits() {
+        return mUuidMostSignificantBits;
+    }
+
+    /**
+     * Gets the least significant 64 bits of the iBeacon UUID.
+     *
+     * @return the least significant bits
+     */
+    public long getUuidLeastSignificantBits() {
+        return mUuidLeastSignificantBits;
+    }
 }
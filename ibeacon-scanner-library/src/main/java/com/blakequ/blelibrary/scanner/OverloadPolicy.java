@@ -0,0 +1,28 @@
+package com.blakequ.blelibrary.scanner;
+
+/**
+ * What a {@link ScanResultWorker} does with new scan results while it is overloaded, that is
+ * while its ring is filled past the high water mark.
+ */
+public enum OverloadPolicy {
+    /**
+     * Drops the new scan results until the worker catches up.
+     */
+    DROP_NEWEST,
+    /**
+     * Drops the oldest queued scan result to make room for every new one, favouring fresh
+     * readings over complete ones.
+     */
+    DROP_OLDEST,
+    /**
+     * Keeps only the latest scan result of every device aside from the ring, so every device
+     * stays visible with its freshest rssi. It is processed after the results queued before it.
+     */
+    COALESCE,
+    /**
+     * Queues only one of every N scan results of a device, see
+     * {@link ScanResultWorker#setSampleRate(int)}. Devices are counted by MAC address, and the
+     * counts start over once the worker has caught up.
+     */
+    SAMPLE
+}
@@ -0,0 +1,188 @@
+package com.blakequ.blelibrary.scanner;
+
+import android.bluetooth.BluetoothDevice;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded queue of scan results kept in preallocated, reusable slots.
+ * <p>
+ * This is Dmitry Vyukov's bounded multi producer multi consumer queue: every slot carries a
+ * sequence number telling producers and consumers whether it is free or filled for their
+ * position, so offering and polling only take a compare and set on a position counter and
+ * never allocate. When the ring is full {@link #offer} fails instead of growing, which caps
+ * the memory a burst of adverts can use.
+ * <p>
+ * All methods are thread safe.
+ */
+public final class ScanResultRing {
+    private final int mMask;
+    private final AtomicLongArray mSequences;
+    private final BluetoothDevice[] mDevices;
+    private final int[] mRssi;
+    private final byte[][] mScanRecords;
+    private final long[] mTimestamps;
+    private final AtomicLong mEnqueuePosition = new AtomicLong();
+    private final AtomicLong mDequeuePosition = new AtomicLong();
+
+    /**
+     * Receives the scan results polled from the ring.
+     */
+    public interface Handler {
+
+        /**
+         * Called for every scan result, after its slot was released.
+         *
+         * @param device     the device which sent the advert
+         * @param rssi       the RSSI value of the advert
+         * @param scanRecord the scan record of the advert
+         * @param timestamp  the timestamp of the advert
+         */
+        void onScanResult(BluetoothDevice device, int rssi, byte[] scanRecord, long timestamp);
+    }
+
+    /**
+     * @param capacity the number of slots, rounded up to a power of two, at least 2
+     */
+    public ScanResultRing(final int capacity) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 2 and 2^30: " + capacity);
+        }
+        final int size = Integer.highestOneBit(capacity - 1) << 1;
+        mMask = size - 1;
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+        mDevices = new BluetoothDevice[size];
+        mRssi = new int[size];
+        mScanRecords = new byte[size][];
+        mTimestamps = new long[size];
+    }
+
+    /**
+     * Adds a scan result.
+     *
+     * @param device     the device which sent the advert
+     * @param rssi       the RSSI value of the advert
+     * @param scanRecord the scan record of the advert
+     * @param timestamp  the timestamp of the advert
+     * @return false if the ring is full and the scan result was not added
+     */
+    public boolean offer(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+        long position = mEnqueuePosition.get();
+        int index;
+        while (true) {
+            index = (int) position & mMask;
+            final long difference = mSequences.get(index) - position;
+            if (difference == 0) {
+                if (mEnqueuePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = mEnqueuePosition.get();
+            } else if (difference < 0) {
+                // The slot still holds the result of the previous lap
+                return false;
+            } else {
+                position = mEnqueuePosition.get();
+            }
+        }
+        mDevices[index] = device;
+        mRssi[index] = rssi;
+        mScanRecords[index] = scanRecord;
+        mTimestamps[index] = timestamp;
+        // Publishes the slot, the volatile write orders the plain writes above before it
+        mSequences.set(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Polls at most a given number of scan results, handing each to a handler.
+     *
+     * @param handler  the handler of the scan results
+     * @param maxCount the maximum number of scan results to poll
+     * @return the number of scan results polled
+     */
+    public int drain(final Handler handler, final int maxCount) {
+        int count = 0;
+        while (count < maxCount) {
+            long position = mDequeuePosition.get();
+            int index;
+            while (true) {
+                index = (int) position & mMask;
+                final long difference = mSequences.get(index) - (position + 1);
+                if (difference == 0) {
+                    if (mDequeuePosition.compareAndSet(position, position + 1)) {
+                        break;
+                    }
+                    position = mDequeuePosition.get();
+                } else if (difference < 0) {
+                    return count;
+                } else {
+                    position = mDequeuePosition.get();
+                }
+            }
+            final BluetoothDevice device = mDevices[index];
+            final int rssi = mRssi[index];
+            final byte[] scanRecord = mScanRecords[index];
+            final long timestamp = mTimestamps[index];
+            // Don't keep the last lap of devices and records reachable
+            mDevices[index] = null;
+            mScanRecords[index] = null;
+            mSequences.set(index, position + mMask + 1);
+            count++;
+            handler.onScanResult(device, rssi, scanRecord, timestamp);
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the ring holds no scan result. Only a hint while other threads offer or drain.
+     *
+     * @return true if the ring is empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets the number of scan results in the ring. Only a hint while other threads offer or
+     * drain.
+     *
+     * @return the size
+     */
+    public int size() {
+        final long size = mEnqueuePosition.get() - mDequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * Gets the number of scan results added since the ring was created, counting the ones
+     * still being written.
+     *
+     * @return the enqueued count
+     */
+    public long getEnqueuedCount() {
+        return mEnqueuePosition.get();
+    }
+
+    /**
+     * Gets the number of scan results polled since the ring was created. Every result added
+     * before the enqueued count was a given value has been polled once this count reaches it.
+     *
+     * @return the dequeued count
+     */
+    public long getDequeuedCount() {
+        return mDequeuePosition.get();
+    }
+
+    /**
+     * Gets the number of slots.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return mMask + 1;
+    }
+}
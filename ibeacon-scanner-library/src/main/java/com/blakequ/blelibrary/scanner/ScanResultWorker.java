@@ -0,0 +1,388 @@
+package com.blakequ.blelibrary.scanner;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.blakequ.blelibrary.logging.LogManager;
+import com.blakequ.blelibrary.util.LongObjectHashMap;
+import com.blakequ.blelibrary.util.MacAddress;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread processing the scan results published into a {@link ScanResultRing}, in batches.
+ * <p>
+ * The scan callbacks {@link #offer} results without allocating; the worker sleeps while the
+ * ring is empty and is woken by the next offer. While the ring is filled past its high water
+ * mark, new results are handled by the {@link OverloadPolicy}, and every result which is not
+ * processed as offered is counted.
+ * <p>
+ * A coalesced result is processed once every result queued before it was coalesced, so the
+ * results of a device are always processed in the order they were offered.
+ */
+public class ScanResultWorker {
+    private static final String TAG = "ScanResultWorker";
+    /**
+     * The default number of slots of the ring.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    /**
+     * The default rate of {@link OverloadPolicy#SAMPLE}, one result of every 4 per device.
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 4;
+    // Results processed before checking for a stop request
+    private static final int BATCH_SIZE = 64;
+
+    private final ScanResultRing mRing;
+    private final ScanResultRing.Handler mHandler;
+    private final Thread mThread;
+    private final int mHighWaterMark;
+    private volatile boolean mRunning = true;
+    private volatile boolean mWaiting;
+    private volatile OverloadPolicy mOverloadPolicy = OverloadPolicy.DROP_NEWEST;
+    private volatile int mSampleRate = DEFAULT_SAMPLE_RATE;
+
+    // Results offered to SAMPLE by every device, dropped once the worker has caught up
+    private final LongObjectHashMap<int[]> mSampleCounts = new LongObjectHashMap<>();
+    private volatile boolean mHasSampleCounts;
+    // The latest coalesced result of every device, also linked in the order of their barriers
+    private final LongObjectHashMap<CoalescedResult> mCoalesced = new LongObjectHashMap<>();
+    private CoalescedResult mCoalescedHead;
+    private CoalescedResult mCoalescedTail;
+    private final Object mCoalesceLock = new Object();
+    private volatile boolean mHasCoalesced;
+
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+    private final AtomicLong mSampledOutCount = new AtomicLong();
+
+    private final ScanResultRing.Handler mDiscardHandler = new ScanResultRing.Handler() {
+        @Override
+        public void onScanResult(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+            mDroppedCount.incrementAndGet();
+        }
+    };
+
+    private static final class CoalescedResult {
+        final long address;
+        BluetoothDevice device;
+        int rssi;
+        byte[] scanRecord;
+        long timestamp;
+        // The enqueued count of the ring when the result was coalesced, processed once dequeued
+        long barrier;
+        CoalescedResult prev;
+        CoalescedResult next;
+
+        CoalescedResult(final long address) {
+            this.address = address;
+        }
+    }
+
+    /**
+     * @param name     the name of the thread
+     * @param capacity the number of slots of the ring
+     * @param handler  processes the scan results on the worker thread
+     */
+    public ScanResultWorker(final String name, final int capacity, final ScanResultRing.Handler handler) {
+        mRing = new ScanResultRing(capacity);
+        mHighWaterMark = mRing.capacity() - mRing.capacity() / 4;
+        mHandler = handler;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, name);
+        mThread.setDaemon(true);
+    }
+
+    /**
+     * Starts the thread.
+     */
+    public void start() {
+        mThread.start();
+    }
+
+    /**
+     * Stops the thread once the current batch is processed. The results left in the ring and
+     * the coalesced ones are dropped.
+     */
+    public void stop() {
+        mRunning = false;
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Sets what to do with new scan results while the worker is overloaded.
+     *
+     * @param policy the overload policy
+     */
+    public void setOverloadPolicy(final OverloadPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException("policy may not be null");
+        }
+        mOverloadPolicy = policy;
+    }
+
+    /**
+     * Gets what to do with new scan results while the worker is overloaded.
+     *
+     * @return the overload policy
+     */
+    public OverloadPolicy getOverloadPolicy() {
+        return mOverloadPolicy;
+    }
+
+    /**
+     * Sets how many scan results of a device {@link OverloadPolicy#SAMPLE} takes one of.
+     *
+     * @param sampleRate the sample rate, at least 1
+     */
+    public void setSampleRate(final int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sampleRate must be at least 1: " + sampleRate);
+        }
+        mSampleRate = sampleRate;
+    }
+
+    /**
+     * Publishes a scan result to the worker.
+     *
+     * @param device     the device which sent the advert
+     * @param rssi       the RSSI value of the advert
+     * @param scanRecord the scan record of the advert
+     * @param timestamp  the timestamp of the advert
+     * @return false if the scan result was dropped or sampled out
+     */
+    public boolean offer(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+        final boolean accepted = mRing.size() < mHighWaterMark
+                ? enqueue(device, rssi, scanRecord, timestamp)
+                : offerOverloaded(device, rssi, scanRecord, timestamp);
+        if (accepted && mWaiting) {
+            LockSupport.unpark(mThread);
+        }
+        return accepted;
+    }
+
+    private boolean enqueue(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+        if (mRing.offer(device, rssi, scanRecord, timestamp)) {
+            return true;
+        }
+        mDroppedCount.incrementAndGet();
+        return false;
+    }
+
+    private boolean offerOverloaded(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+        switch (mOverloadPolicy) {
+            case DROP_OLDEST:
+                if (mRing.offer(device, rssi, scanRecord, timestamp)) {
+                    return true;
+                }
+                mRing.drain(mDiscardHandler, 1);
+                return enqueue(device, rssi, scanRecord, timestamp);
+            case COALESCE:
+                coalesce(device, rssi, scanRecord, timestamp);
+                return true;
+            case SAMPLE:
+                if (sampleCount(device) % mSampleRate != 0) {
+                    mSampledOutCount.incrementAndGet();
+                    return false;
+                }
+                return enqueue(device, rssi, scanRecord, timestamp);
+            case DROP_NEWEST:
+            default:
+                // Dropped only once the ring is actually full
+                return enqueue(device, rssi, scanRecord, timestamp);
+        }
+    }
+
+    // Counts a result of the device, returns the count before it
+    private int sampleCount(final BluetoothDevice device) {
+        final long address = device == null ? MacAddress.INVALID : MacAddress.parse(device.getAddress());
+        synchronized (mSampleCounts) {
+            int[] count = mSampleCounts.get(address);
+            if (count == null) {
+                count = new int[1];
+                mSampleCounts.put(address, count);
+                mHasSampleCounts = true;
+            }
+            return count[0]++ & Integer.MAX_VALUE;
+        }
+    }
+
+    private void coalesce(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+        final long address = device == null ? MacAddress.INVALID : MacAddress.parse(device.getAddress());
+        synchronized (mCoalesceLock) {
+            CoalescedResult result = mCoalesced.get(address);
+            if (result == null) {
+                result = new CoalescedResult(address);
+                mCoalesced.put(address, result);
+            } else {
+                mCoalescedCount.incrementAndGet();
+                unlink(result);
+            }
+            result.device = device;
+            result.rssi = rssi;
+            result.scanRecord = scanRecord;
+            result.timestamp = timestamp;
+            // Moved behind the results of the device queued since it was first coalesced
+            result.barrier = mRing.getEnqueuedCount();
+            result.prev = mCoalescedTail;
+            if (mCoalescedTail == null) {
+                mCoalescedHead = result;
+            } else {
+                mCoalescedTail.next = result;
+            }
+            mCoalescedTail = result;
+            mHasCoalesced = true;
+        }
+    }
+
+    private void unlink(final CoalescedResult result) {
+        if (result.prev == null) {
+            mCoalescedHead = result.next;
+        } else {
+            result.prev.next = result.next;
+        }
+        if (result.next == null) {
+            mCoalescedTail = result.prev;
+        } else {
+            result.next.prev = result.prev;
+        }
+        result.prev = null;
+        result.next = null;
+    }
+
+    private int flushCoalesced() {
+        int count = 0;
+        while (mHasCoalesced) {
+            final CoalescedResult result;
+            synchronized (mCoalesceLock) {
+                result = mCoalescedHead;
+                if (result == null || result.barrier > mRing.getDequeuedCount()) {
+                    break;
+                }
+                unlink(result);
+                mCoalesced.remove(result.address);
+                mHasCoalesced = mCoalescedHead != null;
+            }
+            // Processed outside of the lock, the result is no longer reachable by the producers
+            count++;
+            mHandler.onScanResult(result.device, result.rssi, result.scanRecord, result.timestamp);
+        }
+        return count;
+    }
+
+    private int drainLimit() {
+        if (!mHasCoalesced) {
+            return BATCH_SIZE;
+        }
+        synchronized (mCoalesceLock) {
+            if (mCoalescedHead == null) {
+                return BATCH_SIZE;
+            }
+            // Stop at the next barrier, the results queued after it are newer than its result
+            final long remaining = mCoalescedHead.barrier - mRing.getDequeuedCount();
+            return (int) Math.max(0, Math.min(BATCH_SIZE, remaining));
+        }
+    }
+
+    /**
+     * Gets the ring the results are published to.
+     *
+     * @return the ring
+     */
+    public ScanResultRing getRing() {
+        return mRing;
+    }
+
+    /**
+     * Gets the number of scan results dropped because the ring was full, by
+     * {@link OverloadPolicy#DROP_NEWEST} and {@link OverloadPolicy#DROP_OLDEST}, or because the
+     * handler failed to process them.
+     *
+     * @return the dropped count
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Gets the number of scan results replaced by a later one of the same device with
+     * {@link OverloadPolicy#COALESCE}.
+     *
+     * @return the coalesced count
+     */
+    public long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+
+    /**
+     * Gets the number of scan results skipped by {@link OverloadPolicy#SAMPLE}.
+     *
+     * @return the sampled out count
+     */
+    public long getSampledOutCount() {
+        return mSampledOutCount.get();
+    }
+
+    /**
+     * Gets the number of scan results which were offered but not processed, whatever the reason.
+     *
+     * @return the lost count
+     */
+    public long getLostCount() {
+        return getDroppedCount() + getCoalescedCount() + getSampledOutCount();
+    }
+
+    /**
+     * Resets the dropped, coalesced and sampled out counters.
+     */
+    public void resetCounts() {
+        mDroppedCount.set(0);
+        mCoalescedCount.set(0);
+        mSampledOutCount.set(0);
+    }
+
+    private void loop() {
+        while (mRunning) {
+            int count;
+            try {
+                count = flushCoalesced();
+                count += mRing.drain(mHandler, drainLimit());
+                count += flushCoalesced();
+            } catch (RuntimeException e) {
+                // One bad advert must not stop the processing of the next ones, it is lost though
+                mDroppedCount.incrementAndGet();
+                LogManager.e(e, TAG, "Failed to process a scan result");
+                continue;
+            }
+            if (count == 0) {
+                if (mHasSampleCounts) {
+                    // Caught up, every device starts over with the next overload
+                    synchronized (mSampleCounts) {
+                        mSampleCounts.clear();
+                        mHasSampleCounts = false;
+                    }
+                }
+                mWaiting = true;
+                // Checked again after announcing the wait, an offer in between unparks us
+                if (mRing.isEmpty() && !mHasCoalesced && mRunning) {
+                    LockSupport.park(this);
+                }
+                mWaiting = false;
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "ScanResultWorker [policy=" + mOverloadPolicy + ", queued=" + mRing.size() + "/" + mRing.capacity()
+                + ", dropped=" + getDroppedCount() + ", coalesced=" + getCoalescedCount()
+                + ", sampledOut=" + getSampledOutCount() + "]";
+    }
+}
@@ -0,0 +1,218 @@
+package com.blakequ.blelibrary.scanner;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.blakequ.blelibrary.util.MacAddress;
+
+/**
+ * Spreads scan results over several {@link ScanResultWorker}s by device address.
+ * <p>
+ * All the results of a device go to the same shard, so they are processed in order by a single
+ * thread, and the state a shard keeps about its devices is never touched by another shard.
+ * Devices are spread evenly, so the throughput grows with the number of shards up to the
+ * number of cores.
+ */
+public class ShardedScanDispatcher {
+    private final ScanResultWorker[] mShards;
+
+    /**
+     * Creates the handler of each shard.
+     */
+    public interface HandlerFactory {
+
+        /**
+         * Creates the handler of a shard. Called by the constructor of the dispatcher on the
+         * calling thread, before any shard is started; the handler is then only called on the
+         * thread of its shard, starting the thread publishes it safely.
+         *
+         * @param shard the index of the shard
+         * @return the handler
+         */
+        ScanResultRing.Handler newHandler(int shard);
+    }
+
+    /**
+     * @param name       the prefix of the shard thread names
+     * @param shardCount the number of shards, at least 1
+     * @param capacity   the number of slots of the ring of each shard
+     * @param factory    creates the handler of each shard
+     */
+    public ShardedScanDispatcher(final String name, final int shardCount, final int capacity, final HandlerFactory factory) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1: " + shardCount);
+        }
+        mShards = new ScanResultWorker[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            mShards[i] = new ScanResultWorker(name + "-" + i, capacity, factory.newHandler(i));
+        }
+    }
+
+    /**
+     * Gets the default number of shards, one per available core.
+     *
+     * @return the default shard count
+     */
+    public static int getDefaultShardCount() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Gets the shard processing the results of a device.
+     *
+     * @param address the address of the device, see {@link MacAddress}
+     * @param shardCount the number of shards
+     * @return the index of the shard
+     */
+    public static int shardOf(final long address, final int shardCount) {
+        long h = address * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 32;
+        return (int) ((h & 0xFFFFFFFFL) % shardCount);
+    }
+
+    /**
+     * Starts the shard threads.
+     */
+    public void start() {
+        for (ScanResultWorker shard : mShards) {
+            shard.start();
+        }
+    }
+
+    /**
+     * Stops the shard threads, see {@link ScanResultWorker#stop()}.
+     */
+    public void stop() {
+        for (ScanResultWorker shard : mShards) {
+            shard.stop();
+        }
+    }
+
+    /**
+     * Publishes a scan result to the shard of its device.
+     *
+     * @param device     the device which sent the advert
+     * @param rssi       the RSSI value of the advert
+     * @param scanRecord the scan record of the advert
+     * @param timestamp  the timestamp of the advert
+     * @return false if the scan result was dropped or sampled out
+     */
+    public boolean offer(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+        if (mShards.length == 1) {
+            return mShards[0].offer(device, rssi, scanRecord, timestamp);
+        }
+        final long address = device == null ? MacAddress.INVALID : MacAddress.parse(device.getAddress());
+        return offer(address, device, rssi, scanRecord, timestamp);
+    }
+
+    /**
+     * Publishes a scan result to the shard of its device, whose address is already parsed.
+     *
+     * @param address    the address of the device, see {@link MacAddress}
+     * @param device     the device which sent the advert
+     * @param rssi       the RSSI value of the advert
+     * @param scanRecord the scan record of the advert
+     * @param timestamp  the timestamp of the advert
+     * @return false if the scan result was dropped or sampled out
+     */
+    public boolean offer(final long address, final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+        return mShards[shardOf(address, mShards.length)].offer(device, rssi, scanRecord, timestamp);
+    }
+
+    /**
+     * Sets the overload policy of every shard.
+     *
+     * @param policy the overload policy
+     */
+    public void setOverloadPolicy(final OverloadPolicy policy) {
+        for (ScanResultWorker shard : mShards) {
+            shard.setOverloadPolicy(policy);
+        }
+    }
+
+    /**
+     * Sets the {@link OverloadPolicy#SAMPLE} rate of every shard.
+     *
+     * @param sampleRate the sample rate, at least 1
+     */
+    public void setSampleRate(final int sampleRate) {
+        for (ScanResultWorker shard : mShards) {
+            shard.setSampleRate(sampleRate);
+        }
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return mShards.length;
+    }
+
+    /**
+     * Gets a shard.
+     *
+     * @param index the index of the shard
+     * @return the shard
+     */
+    public ScanResultWorker getShard(final int index) {
+        return mShards[index];
+    }
+
+    /**
+     * Gets the number of scan results dropped by all shards.
+     *
+     * @return the dropped count
+     */
+    public long getDroppedCount() {
+        long count = 0;
+        for (ScanResultWorker shard : mShards) {
+            count += shard.getDroppedCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of scan results coalesced by all shards.
+     *
+     * @return the coalesced count
+     */
+    public long getCoalescedCount() {
+        long count = 0;
+        for (ScanResultWorker shard : mShards) {
+            count += shard.getCoalescedCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of scan results sampled out by all shards.
+     *
+     * @return the sampled out count
+     */
+    public long getSampledOutCount() {
+        long count = 0;
+        for (ScanResultWorker shard : mShards) {
+            count += shard.getSampledOutCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of scan results offered but not processed by all shards.
+     *
+     * @return the lost count
+     */
+    public long getLostCount() {
+        return getDroppedCount() + getCoalescedCount() + getSampledOutCount();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "ShardedScanDispatcher [shards=" + mShards.length + ", dropped=" + getDroppedCount()
+                + ", coalesced=" + getCoalescedCount() + ", sampledOut=" + getSampledOutCount() + "]";
+    }
+}
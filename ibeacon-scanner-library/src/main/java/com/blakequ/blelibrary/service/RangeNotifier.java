@@ -40,6 +40,10 @@ import java.util.Collection;
 public interface RangeNotifier {
     /**
      * Called once per second to give an estimate of the mDistance to visible beacons
+     * <p>
+     * The collection is read only and only valid during this call, it is reused to collect the
+     * next cycle afterwards. Copy it, e.g. into a new <code>ArrayList</code>, to keep the beacons
+     * or hand them to another thread.
      * @param beacons a collection of <code>Beacon<code> objects that have been seen in the past second
      * @param region the <code>Region</code> object that defines the criteria for the ranged beacons
      */
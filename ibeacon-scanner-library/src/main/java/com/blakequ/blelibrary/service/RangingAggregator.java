@@ -0,0 +1,178 @@
+package com.blakequ.blelibrary.service;
+
+import com.blakequ.blelibrary.device.DeviceIdentity;
+import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconDevice;
+import com.blakequ.blelibrary.logging.LogManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Collects the beacons seen in each ranged {@link Region} during a scan cycle, and hands one
+ * collection per region to the {@link RangeNotifier} at the end of the cycle.
+ * <p>
+ * Every beacon is added to the regions it matches as it is processed, keyed by its
+ * {@link DeviceIdentity} so a beacon advertising many times per cycle appears once. Each region
+ * keeps two collections: one being filled by the scan threads and one last delivered. At the end
+ * of a cycle they are swapped, the new one is cleared and reused, so nothing is rebuilt or
+ * allocated per cycle.
+ * <p>
+ * A delivered collection is read only and only valid during the notifier call, it is reused for
+ * collecting afterwards; the notifier copies it to keep it longer.
+ * <p>
+ * All methods are thread safe.
+ */
+public class RangingAggregator {
+    private static final String TAG = "RangingAggregator";
+    private static final RangedRegion[] NO_REGIONS = new RangedRegion[0];
+
+    // Copied on write, regions change rarely and are read for every beacon
+    private volatile RangedRegion[] mRegions = NO_REGIONS;
+    private final Object mRegionsLock = new Object();
+
+    private static final class RangedRegion {
+        final Region region;
+        private HashMap<DeviceIdentity, IBeaconDevice> mCollecting = new HashMap<>();
+        private HashMap<DeviceIdentity, IBeaconDevice> mDelivered = new HashMap<>();
+        private Collection<IBeaconDevice> mCollectingView = Collections.unmodifiableCollection(mCollecting.values());
+        private Collection<IBeaconDevice> mDeliveredView = Collections.unmodifiableCollection(mDelivered.values());
+
+        RangedRegion(final Region region) {
+            this.region = region;
+        }
+
+        synchronized void add(final IBeaconDevice beacon) {
+            mCollecting.put(beacon.getIdentity(), beacon);
+        }
+
+        synchronized Collection<IBeaconDevice> swap() {
+            final HashMap<DeviceIdentity, IBeaconDevice> collected = mCollecting;
+            final Collection<IBeaconDevice> collectedView = mCollectingView;
+            mCollecting = mDelivered;
+            mCollectingView = mDeliveredView;
+            mCollecting.clear();
+            mDelivered = collected;
+            mDeliveredView = collectedView;
+            return collectedView;
+        }
+    }
+
+    /**
+     * Starts ranging a region, replacing the region with the same unique id if any.
+     *
+     * @param region the region
+     */
+    public void addRegion(final Region region) {
+        synchronized (mRegionsLock) {
+            final RangedRegion[] regions = mRegions;
+            final int index = indexOf(regions, region);
+            final RangedRegion[] updated;
+            if (index < 0) {
+                updated = new RangedRegion[regions.length + 1];
+                System.arraycopy(regions, 0, updated, 0, regions.length);
+                updated[regions.length] = new RangedRegion(region);
+            } else {
+                updated = regions.clone();
+                updated[index] = new RangedRegion(region);
+            }
+            mRegions = updated;
+        }
+    }
+
+    /**
+     * Stops ranging a region. Its beacons collected during the current cycle are dropped.
+     *
+     * @param region the region, matched by unique id
+     * @return false if the region was not ranged
+     */
+    public boolean removeRegion(final Region region) {
+        synchronized (mRegionsLock) {
+            final RangedRegion[] regions = mRegions;
+            final int index = indexOf(regions, region);
+            if (index < 0) {
+                return false;
+            }
+            final RangedRegion[] updated = new RangedRegion[regions.length - 1];
+            System.arraycopy(regions, 0, updated, 0, index);
+            System.arraycopy(regions, index + 1, updated, index, updated.length - index);
+            mRegions = updated;
+            return true;
+        }
+    }
+
+    private static int indexOf(final RangedRegion[] regions, final Region region) {
+        for (int i = 0; i < regions.length; i++) {
+            if (regions[i].region.equals(region)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a beacon to the collection of every ranged region it matches, giving it the rssi
+     * filter of the region, see {@link Region#applyRssiFilter}.
+     *
+     * @param beacon the beacon
+     * @return true if at least one region matched the beacon
+     */
+    public boolean add(final IBeaconDevice beacon) {
+        boolean matched = false;
+        for (RangedRegion ranged : mRegions) {
+            if (ranged.region.matchesBeacon(beacon)) {
+                ranged.region.applyRssiFilter(beacon);
+                ranged.add(beacon);
+                matched = true;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Ends the current cycle: hands the collection of every ranged region, possibly empty, to a
+     * notifier and starts collecting the next cycle. Call from a single thread.
+     *
+     * @param notifier the notifier, or null to only start the next cycle
+     */
+    public void deliver(final RangeNotifier notifier) {
+        for (RangedRegion ranged : mRegions) {
+            final Collection<IBeaconDevice> beacons = ranged.swap();
+            if (notifier == null) {
+                continue;
+            }
+            try {
+                notifier.didRangeBeaconsInRegion(beacons, ranged.region);
+            } catch (RuntimeException e) {
+                // A failing notifier must not keep the other regions from being delivered
+                LogManager.e(e, TAG, "Range notifier failed for %s", ranged.region);
+            }
+        }
+    }
+
+    /**
+     * Checks if no region is ranged.
+     *
+     * @return true if no region is ranged
+     */
+    public boolean isEmpty() {
+        return mRegions.length == 0;
+    }
+
+    /**
+     * Gets the number of ranged regions.
+     *
+     * @return the region count
+     */
+    public int getRegionCount() {
+        return mRegions.length;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "RangingAggregator [regions=" + mRegions.length + "]";
+    }
+}
@@ -26,8 +26,13 @@ package com.blakequ.blelibrary.service;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.blakequ.blelibrary.device.BluetoothLeDevice;
 import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconDevice;
+import com.blakequ.blelibrary.device.rssi.RssiFilter;
+import com.blakequ.blelibrary.util.MacAddress;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.regex.Pattern;
 
@@ -45,6 +50,9 @@ import java.util.regex.Pattern;
  *
  */
 public class Region implements Parcelable, Serializable {
+    // The value computed for the class before the address and filter fields were added,
+    // so regions serialized by earlier versions can still be read
+    private static final long serialVersionUID = -2368541551187069074L;
     private static final String TAG = "Region";
     private static final Pattern MAC_PATTERN = Pattern.compile("^[0-9A-Fa-f]{2}\\:[0-9A-Fa-f]{2}\\:[0-9A-Fa-f]{2}\\:[0-9A-Fa-f]{2}\\:[0-9A-Fa-f]{2}\\:[0-9A-Fa-f]{2}$");
 
@@ -62,8 +70,12 @@ public class Region implements Parcelable, Serializable {
         }
     };
     protected final String mBluetoothAddress;
+    // mBluetoothAddress as a 48 bit value, or MacAddress.INVALID if there is none. Not
+    // serialized, it is derived again by readObject
+    protected transient long mMacAddress;
     protected final String mUniqueId;
-
+    // Not parcelled, a region received from another process falls back to the running average
+    protected final transient RssiFilter.Factory mRssiFilterFactory;
 
     /**
      * Constructs a new Region object to be used for Ranging or Monitoring
@@ -79,9 +91,22 @@ public class Region implements Parcelable, Serializable {
      * @param bluetoothAddress - mac address
      */
     public Region(String uniqueId, String bluetoothAddress) {
+        this(uniqueId, bluetoothAddress, null);
+    }
+
+    /**
+     * Constructs a new Region object to be used for Ranging or Monitoring
+     * @param uniqueId - A unique identifier used to later cancel Ranging and Monitoring, or change the region being Ranged/Monitored
+     * @param bluetoothAddress - mac address
+     * @param rssiFilterFactory - creates the rssi filter of every beacon matched by this region, null to use the running average
+     * @see com.blakequ.blelibrary.device.rssi.RssiFilters
+     */
+    public Region(String uniqueId, String bluetoothAddress, RssiFilter.Factory rssiFilterFactory) {
         validateMac(bluetoothAddress);
         this.mUniqueId = uniqueId;
         this.mBluetoothAddress = bluetoothAddress;
+        this.mMacAddress = MacAddress.parse(bluetoothAddress);
+        this.mRssiFilterFactory = rssiFilterFactory;
         if (uniqueId == null) {
             throw new NullPointerException("uniqueId may not be null");
         }
@@ -102,13 +127,30 @@ public class Region implements Parcelable, Serializable {
      */
     public String getBluetoothAddress() { return mBluetoothAddress; }
 
+    /**
+     * Returns the factory of the rssi filters of the beacons matched by this region
+     * @return the factory, or null if the beacons use the running average
+     */
+    public RssiFilter.Factory getRssiFilterFactory() { return mRssiFilterFactory; }
+
+    /**
+     * Gives a matched device an rssi filter from {@link #getRssiFilterFactory()}, unless the
+     * region has no factory or the device already has a filter
+     * @param device the device matched by this region
+     */
+    public void applyRssiFilter(BluetoothLeDevice device) {
+        if (mRssiFilterFactory != null && device.getRssiFilter() == null) {
+            device.setRssiFilter(mRssiFilterFactory.newFilter());
+        }
+    }
+
     /**
      * Checks to see if an Beacon object is included in the matching criteria of this Region
      * @param beacon the beacon to check to see if it is in the Region
      * @return true if is covered
      */
     public boolean matchesBeacon(IBeaconDevice beacon) {
-        if (mBluetoothAddress != null && !mBluetoothAddress.equalsIgnoreCase(beacon.getAddress())) {
+        if (mBluetoothAddress != null && mMacAddress != beacon.getMacAddress()) {
             return false;
         }
         return true;
@@ -150,6 +192,13 @@ public class Region implements Parcelable, Serializable {
     protected Region(Parcel in) {
         mUniqueId = in.readString();
         mBluetoothAddress = in.readString();
+        mMacAddress = MacAddress.parse(mBluetoothAddress);
+        mRssiFilterFactory = null;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        mMacAddress = MacAddress.parse(mBluetoothAddress);
     }
 
     private void validateMac(String mac) throws IllegalArgumentException {
@@ -169,6 +218,6 @@ public class Region implements Parcelable, Serializable {
     @Override
     @Deprecated
     public Region clone() {
-        return new Region(mUniqueId, mBluetoothAddress);
+        return new Region(mUniqueId, mBluetoothAddress, mRssiFilterFactory);
     }
 }
@@ -0,0 +1,405 @@
+package com.blakequ.blelibrary.service;
+
+import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconDevice;
+import com.blakequ.blelibrary.logging.LogManager;
+import com.blakequ.blelibrary.util.LongObjectHashMap;
+import com.blakequ.blelibrary.util.MacAddress;
+
+import java.util.ArrayList;
+
+/**
+ * Tracks whether each monitored {@link Region} is inside or outside, and tells the
+ * {@link MonitorNotifier} when it changes.
+ * <p>
+ * A region enters when a beacon matches it, and exits when no beacon matched it for the exit
+ * period. A detection only records the time of the match, and takes the lock only when the
+ * region was outside. The exit of every inside region is scheduled in a hashed timer wheel,
+ * so a {@link #tick} only visits the slots elapsed since the previous one instead of every
+ * region. A timeout reaching a region matched since it was scheduled is simply scheduled again
+ * from the last match.
+ * <p>
+ * Regions with a bluetooth address are indexed by it, so a beacon is only matched against the
+ * regions of its own address and the regions without one.
+ * <p>
+ * Changes are queued and delivered by {@link #tick}, in the order they happened. All methods
+ * are thread safe.
+ */
+public class RegionMonitor {
+    private static final String TAG = "RegionMonitor";
+    // Width of a slot of the wheel in milliseconds
+    private static final long TICK_DURATION = 100L;
+    // 512 slots of 100 ms, a timeout further than 51.2 s waits for its round in its slot
+    private static final int WHEEL_SIZE = 512;
+    private static final Index NO_REGIONS = new Index(new MonitoredRegion[0]);
+
+    // Copied on write, regions change rarely and are read for every beacon
+    private volatile Index mIndex = NO_REGIONS;
+    private volatile long mExitPeriod;
+
+    // Guarded by mLock
+    private final Object mLock = new Object();
+    private final MonitoredRegion[] mWheel = new MonitoredRegion[WHEEL_SIZE];
+    // The last tick whose slot was processed, -1 until the first timeout or tick
+    private long mCurrentTick = -1;
+    private int mScheduledCount;
+    private ArrayList<MonitoredRegion> mEventRegions = new ArrayList<>();
+    private ArrayList<Boolean> mEventStates = new ArrayList<>();
+    // Only used by the delivering thread, swapped with the event lists
+    private ArrayList<MonitoredRegion> mDeliveredRegions = new ArrayList<>();
+    private ArrayList<Boolean> mDeliveredStates = new ArrayList<>();
+
+    private static final class MonitoredRegion {
+        final Region region;
+        volatile long lastMatchTime;
+        volatile boolean inside;
+        // Guarded by the lock of the monitor
+        boolean removed;
+        long deadline;
+        int slot = -1;
+        MonitoredRegion prev;
+        MonitoredRegion next;
+
+        MonitoredRegion(final Region region) {
+            this.region = region;
+        }
+    }
+
+    private static final class Index {
+        final MonitoredRegion[] all;
+        final MonitoredRegion[] anyAddress;
+        final LongObjectHashMap<MonitoredRegion[]> byAddress = new LongObjectHashMap<>();
+
+        Index(final MonitoredRegion[] all) {
+            this.all = all;
+            final ArrayList<MonitoredRegion> anyAddress = new ArrayList<>();
+            for (MonitoredRegion monitored : all) {
+                final long address = monitored.region.mMacAddress;
+                if (address == MacAddress.INVALID) {
+                    anyAddress.add(monitored);
+                    continue;
+                }
+                final MonitoredRegion[] regions = byAddress.get(address);
+                final MonitoredRegion[] updated;
+                if (regions == null) {
+                    updated = new MonitoredRegion[]{monitored};
+                } else {
+                    updated = new MonitoredRegion[regions.length + 1];
+                    System.arraycopy(regions, 0, updated, 0, regions.length);
+                    updated[regions.length] = monitored;
+                }
+                byAddress.put(address, updated);
+            }
+            this.anyAddress = anyAddress.toArray(new MonitoredRegion[anyAddress.size()]);
+        }
+    }
+
+    /**
+     * @param exitPeriod the time without a match after which a region exits, in milliseconds
+     */
+    public RegionMonitor(final long exitPeriod) {
+        setExitPeriod(exitPeriod);
+    }
+
+    /**
+     * Sets the time without a match after which a region exits. Timeouts already scheduled
+     * use the new period when they are reached.
+     *
+     * @param exitPeriod the exit period in milliseconds
+     */
+    public void setExitPeriod(final long exitPeriod) {
+        if (exitPeriod < 0) {
+            throw new IllegalArgumentException("exitPeriod may not be negative: " + exitPeriod);
+        }
+        mExitPeriod = exitPeriod;
+    }
+
+    /**
+     * Gets the time without a match after which a region exits.
+     *
+     * @return the exit period in milliseconds
+     */
+    public long getExitPeriod() {
+        return mExitPeriod;
+    }
+
+    /**
+     * Starts monitoring a region, outside until a beacon matches it. Replaces the region with
+     * the same unique id if any.
+     *
+     * @param region the region
+     */
+    public void addRegion(final Region region) {
+        synchronized (mLock) {
+            final MonitoredRegion[] regions = mIndex.all;
+            final int index = indexOf(regions, region);
+            final MonitoredRegion[] updated;
+            if (index < 0) {
+                updated = new MonitoredRegion[regions.length + 1];
+                System.arraycopy(regions, 0, updated, 0, regions.length);
+                updated[regions.length] = new MonitoredRegion(region);
+            } else {
+                discard(regions[index]);
+                updated = regions.clone();
+                updated[index] = new MonitoredRegion(region);
+            }
+            mIndex = new Index(updated);
+        }
+    }
+
+    /**
+     * Stops monitoring a region. Its pending changes are not delivered.
+     *
+     * @param region the region, matched by unique id
+     * @return false if the region was not monitored
+     */
+    public boolean removeRegion(final Region region) {
+        synchronized (mLock) {
+            final MonitoredRegion[] regions = mIndex.all;
+            final int index = indexOf(regions, region);
+            if (index < 0) {
+                return false;
+            }
+            discard(regions[index]);
+            final MonitoredRegion[] updated = new MonitoredRegion[regions.length - 1];
+            System.arraycopy(regions, 0, updated, 0, index);
+            System.arraycopy(regions, index + 1, updated, index, updated.length - index);
+            mIndex = new Index(updated);
+            return true;
+        }
+    }
+
+    private void discard(final MonitoredRegion monitored) {
+        monitored.removed = true;
+        if (monitored.slot >= 0) {
+            unlink(monitored);
+        }
+    }
+
+    private static int indexOf(final MonitoredRegion[] regions, final Region region) {
+        for (int i = 0; i < regions.length; i++) {
+            if (regions[i].region.equals(region)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records a beacon seen at a given time in every monitored region it matches.
+     *
+     * @param beacon    the beacon
+     * @param timestamp the time the beacon was seen, in milliseconds
+     * @return true if at least one region matched the beacon
+     */
+    public boolean onBeacon(final IBeaconDevice beacon, final long timestamp) {
+        final Index index = mIndex;
+        boolean matched = onBeacon(index.anyAddress, beacon, timestamp);
+        final MonitoredRegion[] regions = index.byAddress.get(beacon.getMacAddress());
+        if (regions != null) {
+            matched |= onBeacon(regions, beacon, timestamp);
+        }
+        return matched;
+    }
+
+    private boolean onBeacon(final MonitoredRegion[] regions, final IBeaconDevice beacon, final long timestamp) {
+        boolean matched = false;
+        for (MonitoredRegion monitored : regions) {
+            if (!monitored.region.matchesBeacon(beacon)) {
+                continue;
+            }
+            matched = true;
+            if (timestamp > monitored.lastMatchTime) {
+                monitored.lastMatchTime = timestamp;
+            }
+            // Read after the write above, a concurrent exit either sees the match or is seen here
+            if (!monitored.inside) {
+                enter(monitored, timestamp);
+            }
+        }
+        return matched;
+    }
+
+    private void enter(final MonitoredRegion monitored, final long timestamp) {
+        synchronized (mLock) {
+            if (monitored.inside || monitored.removed) {
+                return;
+            }
+            monitored.inside = true;
+            mEventRegions.add(monitored);
+            mEventStates.add(Boolean.TRUE);
+            if (mCurrentTick < 0) {
+                mCurrentTick = timestamp / TICK_DURATION;
+            }
+            schedule(monitored, timestamp + mExitPeriod);
+        }
+    }
+
+    private void schedule(final MonitoredRegion monitored, final long deadline) {
+        // The first slot starting at or after the deadline, so a timeout never fires early
+        final long tick = Math.max((deadline + TICK_DURATION - 1) / TICK_DURATION, mCurrentTick + 1);
+        final int slot = (int) (tick & (WHEEL_SIZE - 1));
+        monitored.deadline = deadline;
+        monitored.slot = slot;
+        monitored.prev = null;
+        monitored.next = mWheel[slot];
+        if (monitored.next != null) {
+            monitored.next.prev = monitored;
+        }
+        mWheel[slot] = monitored;
+        mScheduledCount++;
+    }
+
+    private void unlink(final MonitoredRegion monitored) {
+        if (monitored.prev == null) {
+            mWheel[monitored.slot] = monitored.next;
+        } else {
+            monitored.prev.next = monitored.next;
+        }
+        if (monitored.next != null) {
+            monitored.next.prev = monitored.prev;
+        }
+        monitored.prev = null;
+        monitored.next = null;
+        monitored.slot = -1;
+        mScheduledCount--;
+    }
+
+    /**
+     * Processes the timeouts reached by a given time, then delivers the queued changes to a
+     * notifier. Only the slots elapsed since the previous tick are visited, at most once each.
+     * Call from a single thread.
+     *
+     * @param now      the current time in milliseconds
+     * @param notifier the notifier, or null to drop the changes
+     */
+    public void tick(final long now, final MonitorNotifier notifier) {
+        final ArrayList<MonitoredRegion> regions;
+        final ArrayList<Boolean> states;
+        synchronized (mLock) {
+            expire(now);
+            regions = mEventRegions;
+            states = mEventStates;
+            mEventRegions = mDeliveredRegions;
+            mEventStates = mDeliveredStates;
+            mDeliveredRegions = regions;
+            mDeliveredStates = states;
+        }
+        try {
+            for (int i = 0; i < regions.size(); i++) {
+                final MonitoredRegion monitored = regions.get(i);
+                if (notifier != null && !isRemoved(monitored)) {
+                    deliver(notifier, monitored.region, states.get(i));
+                }
+            }
+        } finally {
+            regions.clear();
+            states.clear();
+        }
+    }
+
+    private boolean isRemoved(final MonitoredRegion monitored) {
+        synchronized (mLock) {
+            return monitored.removed;
+        }
+    }
+
+    private void deliver(final MonitorNotifier notifier, final Region region, final boolean inside) {
+        try {
+            if (inside) {
+                notifier.didEnterRegion(region);
+                notifier.didDetermineStateForRegion(MonitorNotifier.INSIDE, region);
+            } else {
+                notifier.didExitRegion(region);
+                notifier.didDetermineStateForRegion(MonitorNotifier.OUTSIDE, region);
+            }
+        } catch (RuntimeException e) {
+            // A failing notifier must not keep the other changes from being delivered
+            LogManager.e(e, TAG, "Monitor notifier failed for %s", region);
+        }
+    }
+
+    private void expire(final long now) {
+        final long target = now / TICK_DURATION;
+        if (mCurrentTick < 0 || target <= mCurrentTick) {
+            if (mCurrentTick < 0) {
+                mCurrentTick = target;
+            }
+            return;
+        }
+        // After a long pause every slot is visited once, the deadlines tell which timeouts are due
+        final long steps = Math.min(target - mCurrentTick, WHEEL_SIZE);
+        final long first = target - steps + 1;
+        mCurrentTick = target;
+        for (long tick = first; tick <= target && mScheduledCount > 0; tick++) {
+            final int slot = (int) (tick & (WHEEL_SIZE - 1));
+            MonitoredRegion monitored = mWheel[slot];
+            while (monitored != null) {
+                final MonitoredRegion next = monitored.next;
+                if (monitored.deadline <= now) {
+                    unlink(monitored);
+                    timeout(monitored, now);
+                }
+                monitored = next;
+            }
+        }
+    }
+
+    private void timeout(final MonitoredRegion monitored, final long now) {
+        final long exitPeriod = mExitPeriod;
+        long deadline = monitored.lastMatchTime + exitPeriod;
+        if (deadline <= now) {
+            monitored.inside = false;
+            // Read after the write above, a concurrent match either is seen here or enters again
+            deadline = monitored.lastMatchTime + exitPeriod;
+            if (deadline <= now) {
+                mEventRegions.add(monitored);
+                mEventStates.add(Boolean.FALSE);
+                return;
+            }
+            monitored.inside = true;
+        }
+        // Matched since the timeout was scheduled
+        schedule(monitored, deadline);
+    }
+
+    /**
+     * Checks if a region is inside.
+     *
+     * @param region the region, matched by unique id
+     * @return true if the region is monitored and inside
+     */
+    public boolean isInside(final Region region) {
+        final MonitoredRegion[] regions = mIndex.all;
+        final int index = indexOf(regions, region);
+        return index >= 0 && regions[index].inside;
+    }
+
+    /**
+     * Checks if no region is monitored.
+     *
+     * @return true if no region is monitored
+     */
+    public boolean isEmpty() {
+        return mIndex.all.length == 0;
+    }
+
+    /**
+     * Gets the number of monitored regions.
+     *
+     * @return the region count
+     */
+    public int getRegionCount() {
+        return mIndex.all.length;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        synchronized (mLock) {
+            return "RegionMonitor [regions=" + mIndex.all.length + ", scheduled=" + mScheduledCount
+                    + ", exitPeriod=" + mExitPeriod + "]";
+        }
+    }
+}
@@ -7,7 +7,6 @@ import android.app.Service;
 import android.bluetooth.BluetoothDevice;
 import android.content.Context;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
@@ -17,22 +16,21 @@ import android.os.Messenger;
 import android.support.annotation.Nullable;
 
 import com.blakequ.blelibrary.BuildConfig;
+import com.blakequ.blelibrary.ScanManager;
 import com.blakequ.blelibrary.device.BluetoothCrashResolver;
 import com.blakequ.blelibrary.device.BluetoothLeDevice;
-import com.blakequ.blelibrary.device.beacon.BeaconType;
-import com.blakequ.blelibrary.device.beacon.BeaconUtils;
+import com.blakequ.blelibrary.device.DeviceRegistry;
 import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconDevice;
 import com.blakequ.blelibrary.logging.LogManager;
 import com.blakequ.blelibrary.powersave.BackgroundPowerSaver;
 import com.blakequ.blelibrary.scanner.CycledLeScanCallback;
 import com.blakequ.blelibrary.scanner.CycledLeScanner;
-import com.blakequ.blelibrary.scanner.DetectionTracker;
+import com.blakequ.blelibrary.scanner.ScanResultRing;
+import com.blakequ.blelibrary.scanner.ScanResultWorker;
+import com.blakequ.blelibrary.scanner.ShardedScanDispatcher;
 import com.blakequ.blelibrary.scanner.StartRMData;
 
 import java.lang.ref.WeakReference;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
 
 import static android.app.PendingIntent.FLAG_ONE_SHOT;
 import static android.app.PendingIntent.getBroadcast;
@@ -62,7 +60,13 @@ public class ScanService extends Service{
      */
     private BluetoothCrashResolver bluetoothCrashResolver;
     final Messenger mMessenger = new Messenger(new IncomingHandler(this));
-    private ExecutorService mExecutor;
+    private ShardedScanDispatcher mScanDispatcher;
+    // The devices of each shard, updated by the thread of that shard. onScanEnd evicts them
+    // from the scanner thread, which the segment locks of the registry guard against
+    private DeviceRegistry[] mDeviceRegistries;
+    private long mLastLostCount;
+    private final RangingAggregator mRangingAggregator = new RangingAggregator();
+    private final RegionMonitor mRegionMonitor = new RegionMonitor(ScanManager.getRegionExitPeriod());
     private CycledLeScanner mCycledScanner;
     private boolean mBackgroundFlag = false;
 
@@ -91,7 +95,7 @@ public class ScanService extends Service{
                 switch (msg.what) {
                     case MSG_START_RANGING:
                         LogManager.i(TAG, "start ranging received");
-                        service.startRangingBeaconsInRegion(startRMData.getRegionData(), new org.altbeacon.beacon.service.Callback(startRMData.getCallbackPackageName()));
+                        service.startRangingBeaconsInRegion(startRMData.getRegionData());
                         service.setScanPeriods(startRMData.getScanPeriod(), startRMData.getBetweenScanPeriod(), startRMData.getBackgroundFlag());
                         break;
                     case MSG_STOP_RANGING:
@@ -101,7 +105,7 @@ public class ScanService extends Service{
                         break;
                     case MSG_START_MONITORING:
                         LogManager.i(TAG, "start monitoring received");
-                        service.startMonitoringBeaconsInRegion(startRMData.getRegionData(), new org.altbeacon.beacon.service.Callback(startRMData.getCallbackPackageName()));
+                        service.startMonitoringBeaconsInRegion(startRMData.getRegionData());
                         service.setScanPeriods(startRMData.getScanPeriod(), startRMData.getBetweenScanPeriod(), startRMData.getBackgroundFlag());
                         break;
                     case MSG_STOP_MONITORING:
@@ -138,9 +142,22 @@ public class ScanService extends Service{
         LogManager.i(TAG, "beaconService version %s is starting up", BuildConfig.VERSION_NAME);
         bluetoothCrashResolver = new BluetoothCrashResolver(this);
         bluetoothCrashResolver.start();
-        // Create a private executor so we don't compete with threads used by AsyncTask
-        // This uses fewer threads than the default executor so it won't hog CPU
-        mExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 1);
+        // One worker per core each draining a bounded ring, a device always goes to the same
+        // worker so its adverts are processed in order. Bursts beyond the ring capacity are
+        // handled by the overload policy instead of queueing an unbounded number of tasks
+        final int shardCount = ShardedScanDispatcher.getDefaultShardCount();
+        mDeviceRegistries = new DeviceRegistry[shardCount];
+        mScanDispatcher = new ShardedScanDispatcher(TAG, shardCount, ScanResultWorker.DEFAULT_CAPACITY,
+                new ShardedScanDispatcher.HandlerFactory() {
+                    @Override
+                    public ScanResultRing.Handler newHandler(int shard) {
+                        mDeviceRegistries[shard] = new DeviceRegistry();
+                        return new ScanResultProcessor(mDeviceRegistries[shard], mRangingAggregator, mRegionMonitor);
+                    }
+                });
+        mScanDispatcher.setOverloadPolicy(ScanManager.getOverloadPolicy());
+        mScanDispatcher.setSampleRate(ScanManager.getOverloadSampleRate());
+        mScanDispatcher.start();
 
         mCycledScanner = CycledLeScanner.createScanner(this, BackgroundPowerSaver.DEFAULT_FOREGROUND_SCAN_PERIOD,
                 BackgroundPowerSaver.DEFAULT_FOREGROUND_BETWEEN_SCAN_PERIOD, mBackgroundFlag, mCycledLeScanCallback, bluetoothCrashResolver);
@@ -169,6 +186,11 @@ public class ScanService extends Service{
         bluetoothCrashResolver.stop();
         LogManager.i(TAG, "onDestroy called.  stopping scanning");
         mCycledScanner.stop();
+        mScanDispatcher.stop();
+        for (DeviceRegistry registry : mDeviceRegistries) {
+            LogManager.i(TAG, "releasing devices: %s", registry);
+            registry.clear();
+        }
     }
 
     @Override
@@ -204,74 +226,90 @@ public class ScanService extends Service{
     /**
      * methods for clients
      */
-    public void startRangingBeaconsInRegion(Region region, Callback callback) {
-
+    public void startRangingBeaconsInRegion(Region region) {
+        LogManager.d(TAG, "startRanging called");
+        mRangingAggregator.addRegion(region);
         mCycledScanner.start();
     }
 
     public void stopRangingBeaconsInRegion(Region region) {
-
-        mCycledScanner.stop();
+        LogManager.d(TAG, "stopRanging called");
+        mRangingAggregator.removeRegion(region);
+        stopScanIfIdle();
     }
 
-    public void startMonitoringBeaconsInRegion(Region region, Callback callback) {
+    public void startMonitoringBeaconsInRegion(Region region) {
         LogManager.d(TAG, "startMonitoring called");
+        mRegionMonitor.addRegion(region);
         mCycledScanner.start();
     }
 
     public void stopMonitoringBeaconsInRegion(Region region) {
         LogManager.d(TAG, "stopMonitoring called");
-        mCycledScanner.stop();
+        mRegionMonitor.removeRegion(region);
+        stopScanIfIdle();
     }
 
-    private class ScanData {
-        public ScanData(BluetoothDevice device, int rssi, byte[] scanRecord) {
-            this.device = device;
-            this.rssi = rssi;
-            this.scanRecord = scanRecord;
+    private void stopScanIfIdle() {
+        if (mRangingAggregator.isEmpty() && mRegionMonitor.isEmpty()) {
+            mCycledScanner.stop();
         }
-
-        int rssi;
-        BluetoothDevice device;
-        byte[] scanRecord;
     }
 
-
     /**
-     * callback class
+     * callback class, runs on the scanner thread and only publishes the results to the workers
      */
     protected final CycledLeScanCallback mCycledLeScanCallback = new CycledLeScanCallback(){
 
         @Override
         public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
-            try {
-                new ScanProcessor().executeOnExecutor(mExecutor,
-                        new ScanData(device, rssi, scanRecord));
-            } catch (RejectedExecutionException e) {
-                LogManager.w(TAG, "Ignoring scan result because we cannot keep up.");
-            }
+            // Results the workers can't keep up with are counted by their overload policy
+            mScanDispatcher.offer(device, rssi, scanRecord, System.currentTimeMillis());
         }
 
         @Override
         public void onScanEnd() {
-//            monitoringStatus.updateNewlyOutside();
+            final long lostCount = mScanDispatcher.getLostCount();
+            if (lostCount != mLastLostCount) {
+                LogManager.w(TAG, "Scan results lost because we cannot keep up: %s", mScanDispatcher);
+                mLastLostCount = lostCount;
+            }
+            final ScanManager scanManager = ScanManager.getInstance(ScanService.this);
+            mRangingAggregator.deliver(scanManager.getRangeNotifier());
+            // Only the exits whose time has come are visited, not every monitored region
+            final long now = System.currentTimeMillis();
+            mRegionMonitor.setExitPeriod(ScanManager.getRegionExitPeriod());
+            mRegionMonitor.tick(now, scanManager.getMonitorNotifier());
+            final long oldestTimestamp = now - ScanManager.getRegionExitPeriod();
+            for (DeviceRegistry registry : mDeviceRegistries) {
+                registry.evict(oldestTimestamp);
+            }
         }
     };
 
-    private class ScanProcessor extends AsyncTask<ScanData, Void, Void> {
-        final DetectionTracker mDetectionTracker = DetectionTracker.getInstance();
+    /**
+     * processes the scan results on the thread of a shard, the aggregator and the monitor are
+     * shared by every shard
+     */
+    static class ScanResultProcessor implements ScanResultRing.Handler {
+        private final DeviceRegistry mDeviceRegistry;
+        private final RangingAggregator mRangingAggregator;
+        private final RegionMonitor mRegionMonitor;
+
+        ScanResultProcessor(DeviceRegistry deviceRegistry, RangingAggregator rangingAggregator, RegionMonitor regionMonitor) {
+            mDeviceRegistry = deviceRegistry;
+            mRangingAggregator = rangingAggregator;
+            mRegionMonitor = regionMonitor;
+        }
 
         @Override
-        protected Void doInBackground(ScanData... params) {
-            ScanData scanData = params[0];
-            BluetoothLeDevice deviceLe = new BluetoothLeDevice(scanData.device, scanData.rssi, scanData.scanRecord, System.currentTimeMillis());
-            final boolean isIBeacon = BeaconUtils.getBeaconType(deviceLe) == BeaconType.IBEACON;
-            if (isIBeacon){
-                IBeaconDevice iBeaconDevice = new IBeaconDevice(deviceLe);
+        public void onScanResult(BluetoothDevice device, int rssi, byte[] scanRecord, long timestamp) {
+            BluetoothLeDevice deviceLe = mDeviceRegistry.update(device, rssi, scanRecord, timestamp);
+            if (deviceLe instanceof IBeaconDevice){
+                IBeaconDevice iBeaconDevice = (IBeaconDevice) deviceLe;
+                mRangingAggregator.add(iBeaconDevice);
+                mRegionMonitor.onBeacon(iBeaconDevice, timestamp);
             }
-
-            //下面过滤设备
-            return null;
         }
     }
 }
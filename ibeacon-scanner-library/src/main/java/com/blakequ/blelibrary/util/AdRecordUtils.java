@@ -23,7 +23,10 @@ public final class AdRecordUtils {
         if (nameRecord == null) {
             return "";
         }
-        return new String(nameRecord.getData());
+        if (nameRecord.getSource() == null) {
+            return "";
+        }
+        return new String(nameRecord.getSource(), nameRecord.getDataOffset(), nameRecord.getDataLength());
     }
 
     public static byte[] getServiceData(final AdRecord serviceData) {
@@ -31,10 +34,13 @@ public final class AdRecordUtils {
             return null;
         }
         if (serviceData.getType() != AdRecord.TYPE_SERVICE_DATA) return null;
+        // Too short to even hold the uuid
+        if (serviceData.getDataLength() < 2) return null;
 
-        final byte[] raw = serviceData.getData();
         //Chop out the uuid
-        return Arrays.copyOfRange(raw, 2, raw.length);
+        final int start = serviceData.getDataOffset() + 2;
+        return Arrays.copyOfRange(serviceData.getSource(), start,
+                serviceData.getDataOffset() + serviceData.getDataLength());
     }
 
     public static int getServiceDataUuid(final AdRecord serviceData) {
@@ -42,38 +48,27 @@ public final class AdRecordUtils {
             return -1;
         }
         if (serviceData.getType() != AdRecord.TYPE_SERVICE_DATA) return -1;
+        if (serviceData.getDataLength() < 2) return -1;
 
-        final byte[] raw = serviceData.getData();
         //Find UUID data in byte array
-        int uuid = (raw[1] & 0xFF) << 8;
-        uuid += (raw[0] & 0xFF);
-
-        return uuid;
+        return serviceData.getUnsignedShortLE(0);
     }
 
     /*
-     * Read out all the AD structures from the raw scan record
+     * Read out all the AD structures from the raw scan record.
+     * The returned records are views over scanRecord, the data is only copied
+     * when AdRecord.getData() is called.
      */
     public static List<AdRecord> parseScanRecordAsList(final byte[] scanRecord) {
-        final List<AdRecord> records = new ArrayList<>();
-
-        int index = 0;
-        while (index < scanRecord.length) {
-            final int length = scanRecord[index++];
-            //Done once we run out of records
-            if (length == 0) break;
-
-            final int type = ByteUtils.getIntFromByte(scanRecord[index]);
-
-            //Done if our record isn't a valid type
-            if (type == 0) break;
-
-            final byte[] data = Arrays.copyOfRange(scanRecord, index + 1, index + length);
+        return parseScanRecordAsList(ParsedAdvertisement.parse(scanRecord));
+    }
 
-            records.add(new AdRecord(length, type, data));
+    public static List<AdRecord> parseScanRecordAsList(final ParsedAdvertisement parsed) {
+        final List<AdRecord> records = new ArrayList<>();
 
-            //Advance
-            index += length;
+        final int count = getValidStructureCount(parsed);
+        for (int i = 0; i < count; i++) {
+            records.add(createRecord(parsed, i));
         }
 
         return Collections.unmodifiableList(records);
@@ -81,52 +76,50 @@ public final class AdRecordUtils {
 
     @SuppressLint("UseSparseArrays")
     public static Map<Integer, AdRecord> parseScanRecordAsMap(final byte[] scanRecord) {
-        final Map<Integer, AdRecord> records = new HashMap<>();
-
-        int index = 0;
-        while (index < scanRecord.length) {
-            final int length = scanRecord[index++];
-            //Done once we run out of records
-            if (length == 0) break;
-
-            final int type = ByteUtils.getIntFromByte(scanRecord[index]);
-
-            //Done if our record isn't a valid type
-            if (type == 0) break;
-
-            final byte[] data = Arrays.copyOfRange(scanRecord, index + 1, index + length);
+        return parseScanRecordAsMap(ParsedAdvertisement.parse(scanRecord));
+    }
 
-            records.put(type, new AdRecord(length, type, data));
+    @SuppressLint("UseSparseArrays")
+    public static Map<Integer, AdRecord> parseScanRecordAsMap(final ParsedAdvertisement parsed) {
+        final Map<Integer, AdRecord> records = new HashMap<>();
 
-            //Advance
-            index += length;
+        final int count = getValidStructureCount(parsed);
+        for (int i = 0; i < count; i++) {
+            records.put(parsed.getType(i), createRecord(parsed, i));
         }
 
         return Collections.unmodifiableMap(records);
     }
 
     public static SparseArray<AdRecord> parseScanRecordAsSparseArray(final byte[] scanRecord) {
-        final SparseArray<AdRecord> records = new SparseArray<>();
-
-        int index = 0;
-        while (index < scanRecord.length) {
-            final int length = scanRecord[index++];
-            //Done once we run out of records
-            if (length == 0) break;
+        return parseScanRecordAsSparseArray(ParsedAdvertisement.parse(scanRecord));
+    }
 
-            final int type = ByteUtils.getIntFromByte(scanRecord[index]);
+    public static SparseArray<AdRecord> parseScanRecordAsSparseArray(final ParsedAdvertisement parsed) {
+        final SparseArray<AdRecord> records = new SparseArray<>();
 
-            //Done if our record isn't a valid type
-            if (type == 0) break;
+        final int count = getValidStructureCount(parsed);
+        for (int i = 0; i < count; i++) {
+            records.put(parsed.getType(i), createRecord(parsed, i));
+        }
 
-            final byte[] data = Arrays.copyOfRange(scanRecord, index + 1, index + length);
+        return records;
+    }
 
-            records.put(type, new AdRecord(length, type, data));
+    private static AdRecord createRecord(final ParsedAdvertisement parsed, final int index) {
+        return new AdRecord(parsed.getDataLength(index) + 1, parsed.getType(index),
+                parsed.getBytes(), parsed.getDataOffset(index));
+    }
 
-            //Advance
-            index += length;
+    /*
+     * Number of structures before the first one with an invalid (0) type
+     */
+    private static int getValidStructureCount(final ParsedAdvertisement parsed) {
+        final int count = parsed.getStructureCount();
+        for (int i = 0; i < count; i++) {
+            //Done if our record isn't a valid type
+            if (parsed.getType(i) == 0) return i;
         }
-
-        return records;
+        return count;
     }
 }
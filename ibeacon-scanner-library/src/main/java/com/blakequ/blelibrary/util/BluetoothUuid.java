@@ -2,8 +2,6 @@ package com.blakequ.blelibrary.util;
 
 import android.os.ParcelUuid;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.UUID;
@@ -219,33 +217,45 @@ public class BluetoothUuid {
         if (uuidBytes == null) {
             throw new IllegalArgumentException("uuidBytes cannot be null");
         }
-        int length = uuidBytes.length;
+        return parseUuidFrom(uuidBytes, 0, uuidBytes.length);
+    }
+
+    /**
+     * Parse UUID from a part of a larger array, usually the whole scan record, without
+     * copying it out first. See {@link #parseUuidFrom(byte[])}.
+     *
+     * @param source Array holding the uuid.
+     * @param offset Offset of the uuid in source.
+     * @param length Length of the uuid, 2, 4 or 16 bytes.
+     * @return {@link ParcelUuid} parsed from bytes.
+     * @throws IllegalArgumentException If the bytes cannot be parsed.
+     */
+    public static ParcelUuid parseUuidFrom(byte[] source, int offset, int length) {
+        if (source == null) {
+            throw new IllegalArgumentException("uuidBytes cannot be null");
+        }
         if (length != UUID_BYTES_16_BIT && length != UUID_BYTES_32_BIT &&
                 length != UUID_BYTES_128_BIT) {
             throw new IllegalArgumentException("uuidBytes length invalid - " + length);
         }
+        if (offset < 0 || offset > source.length - length) {
+            throw new IllegalArgumentException("uuidBytes out of range - " + offset);
+        }
+
         // Construct a 128 bit UUID.
         if (length == UUID_BYTES_128_BIT) {
-            ByteBuffer buf = ByteBuffer.wrap(uuidBytes).order(ByteOrder.LITTLE_ENDIAN);
-            long msb = buf.getLong(8);
-            long lsb = buf.getLong(0);
-            return new ParcelUuid(new UUID(msb, lsb));
+            long msb = ByteReader.int64LE(source, offset + 8);
+            long lsb = ByteReader.int64LE(source, offset);
+            return ParcelUuidCache.get(msb, lsb);
         }
+
         // For 16 bit and 32 bit UUID we need to convert them to 128 bit value.
         // 128_bit_value = uuid * 2^96 + BASE_UUID
-        long shortUuid;
+        // The same instances are returned for repeated values, see ParcelUuidCache
         if (length == UUID_BYTES_16_BIT) {
-            shortUuid = uuidBytes[0] & 0xFF;
-            shortUuid += (uuidBytes[1] & 0xFF) << 8;
-        } else {
-            shortUuid = uuidBytes[0] & 0xFF;
-            shortUuid += (uuidBytes[1] & 0xFF) << 8;
-            shortUuid += (uuidBytes[2] & 0xFF) << 16;
-            shortUuid += (uuidBytes[3] & 0xFF) << 24;
+            return ParcelUuidCache.from16Bit(ByteReader.uint16LE(source, offset));
         }
-        long msb = BASE_UUID.getUuid().getMostSignificantBits() + (shortUuid << 32);
-        long lsb = BASE_UUID.getUuid().getLeastSignificantBits();
-        return new ParcelUuid(new UUID(msb, lsb));
+        return ParcelUuidCache.from32Bit(ByteReader.int32LE(source, offset) & 0xFFFFFFFFL);
     }
 
     /**
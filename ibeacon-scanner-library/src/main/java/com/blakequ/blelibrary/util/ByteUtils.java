@@ -2,7 +2,6 @@ package com.blakequ.blelibrary.util;
 
 import android.util.SparseArray;
 
-import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
@@ -72,14 +71,8 @@ public class ByteUtils {
      * @return the int from the array
      */
     public static int getIntFrom2ByteArray(final byte[] input) {
-        final byte[] result = new byte[4];
-
-        result[0] = 0;
-        result[1] = 0;
-        result[2] = input[0];
-        result[3] = input[1];
-
-        return ByteUtils.getIntFromByteArray(result);
+        checkLength(input, 2);
+        return ByteReader.uint16BE(input, 0);
     }
 
     /**
@@ -101,7 +94,8 @@ public class ByteUtils {
      * @return the int from byte array
      */
     public static int getIntFromByteArray(final byte[] bytes) {
-        return ByteBuffer.wrap(bytes).getInt();
+        checkLength(bytes, 4);
+        return ByteReader.int32BE(bytes, 0);
     }
 
     /**
@@ -111,7 +105,14 @@ public class ByteUtils {
      * @return the long from byte array
      */
     public static long getLongFromByteArray(final byte[] bytes) {
-        return ByteBuffer.wrap(bytes).getLong();
+        checkLength(bytes, 8);
+        return ByteReader.int64BE(bytes, 0);
+    }
+
+    private static void checkLength(final byte[] bytes, final int length) {
+        if (bytes.length < length) {
+            throw new IndexOutOfBoundsException("need " + length + " bytes, got " + bytes.length);
+        }
     }
 
 
@@ -0,0 +1,129 @@
+package com.blakequ.blelibrary.util;
+
+import android.os.ParcelUuid;
+
+import java.util.UUID;
+
+/**
+ * Canonical {@link ParcelUuid} instances for Bluetooth service UUIDs, so parsing the same
+ * UUID from every advert returns the same object instead of allocating a new one.
+ * <p>
+ * 16 bit UUIDs live in a table indexed directly by their value, split in pages of 256
+ * which are only created once a UUID of that page is seen. 32 and 128 bit UUIDs go to a
+ * bounded direct mapped cache where a new UUID replaces the one in its slot, so memory
+ * stays fixed however many distinct UUIDs are seen. Each slot keeps the two halves of its
+ * UUID as longs next to the instance, so a lookup compares them without reading the UUID back
+ * from the ParcelUuid.
+ * <p>
+ * The caches are filled without locking. Two threads may race to create the same UUID,
+ * one of the instances then wins, which is harmless as ParcelUuid is immutable. A slot is
+ * replaced as a whole by an {@link Entry} with final fields, so a reader never sees the halves
+ * of one UUID next to the instance of another.
+ */
+public final class ParcelUuidCache {
+    // 00000000-0000-1000-8000-00805F9B34FB
+    private static final long BASE_UUID_MSB = 0x0000000000001000L;
+    private static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final ParcelUuid[][] s16BitPages = new ParcelUuid[0x10000 / PAGE_SIZE][];
+
+    private static final int CACHE_SIZE = 1024;
+    private static final Entry[] sCache = new Entry[CACHE_SIZE];
+
+    private ParcelUuidCache(){
+        // TO AVOID INSTANTIATION
+    }
+
+    /**
+     * Gets the 128 bit UUID of a 16 bit Bluetooth UUID.
+     *
+     * @param uuid16 the 16 bit value
+     * @return the canonical instance
+     */
+    public static ParcelUuid from16Bit(final int uuid16) {
+        final int value = uuid16 & 0xFFFF;
+        ParcelUuid[] page = s16BitPages[value >>> PAGE_BITS];
+        if (page == null) {
+            page = new ParcelUuid[PAGE_SIZE];
+            s16BitPages[value >>> PAGE_BITS] = page;
+        }
+        ParcelUuid uuid = page[value & (PAGE_SIZE - 1)];
+        if (uuid == null) {
+            uuid = new ParcelUuid(new UUID(BASE_UUID_MSB | ((long) value << 32), BASE_UUID_LSB));
+            page[value & (PAGE_SIZE - 1)] = uuid;
+        }
+        return uuid;
+    }
+
+    /**
+     * Gets the 128 bit UUID of a 32 bit Bluetooth UUID.
+     *
+     * @param uuid32 the 32 bit value
+     * @return the cached instance
+     */
+    public static ParcelUuid from32Bit(final long uuid32) {
+        return get(BASE_UUID_MSB + ((uuid32 & 0xFFFFFFFFL) << 32), BASE_UUID_LSB);
+    }
+
+    /**
+     * Gets a UUID from its two halves.
+     *
+     * @param mostSignificantBits  the most significant bits
+     * @param leastSignificantBits the least significant bits
+     * @return the cached instance
+     */
+    public static ParcelUuid get(final long mostSignificantBits, final long leastSignificantBits) {
+        if (leastSignificantBits == BASE_UUID_LSB
+                && (mostSignificantBits & 0xFFFF0000FFFFFFFFL) == BASE_UUID_MSB) {
+            return from16Bit((int) (mostSignificantBits >>> 32));
+        }
+
+        final int slot = slotOf(mostSignificantBits, leastSignificantBits);
+        final Entry cached = sCache[slot];
+        if (cached != null
+                && cached.mostSignificantBits == mostSignificantBits
+                && cached.leastSignificantBits == leastSignificantBits) {
+            return cached.uuid;
+        }
+        final ParcelUuid created = new ParcelUuid(new UUID(mostSignificantBits, leastSignificantBits));
+        sCache[slot] = new Entry(mostSignificantBits, leastSignificantBits, created);
+        return created;
+    }
+
+    /**
+     * Gets the cached instance equal to a UUID, for example to compare a filter UUID with
+     * parsed ones by identity.
+     *
+     * @param uuid the UUID
+     * @return the cached instance, or null if uuid is null
+     */
+    public static ParcelUuid canonicalize(final ParcelUuid uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        final UUID value = uuid.getUuid();
+        return get(value.getMostSignificantBits(), value.getLeastSignificantBits());
+    }
+
+    // Package private for the tests to find UUIDs sharing a slot
+    static int slotOf(final long mostSignificantBits, final long leastSignificantBits) {
+        long h = mostSignificantBits * 0x9E3779B97F4A7C15L ^ leastSignificantBits;
+        h ^= h >>> 32;
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (CACHE_SIZE - 1);
+    }
+
+    private static final class Entry {
+        final long mostSignificantBits;
+        final long leastSignificantBits;
+        final ParcelUuid uuid;
+
+        Entry(final long mostSignificantBits, final long leastSignificantBits, final ParcelUuid uuid) {
+            this.mostSignificantBits = mostSignificantBits;
+            this.leastSignificantBits = leastSignificantBits;
+            this.uuid = uuid;
+        }
+    }
+}
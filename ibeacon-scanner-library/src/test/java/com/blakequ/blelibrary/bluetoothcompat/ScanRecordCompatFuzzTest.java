@@ -0,0 +1,157 @@
+package com.blakequ.blelibrary.bluetoothcompat;
+
+import com.blakequ.blelibrary.util.ParseStatus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Validates scan records built from a fixed seed: random bytes, and valid records with
+ * flipped bytes, altered length bytes and cut ends, as seen in crowded RF environments.
+ */
+public class ScanRecordCompatFuzzTest {
+    private static final long SEED = 0x5eedL;
+    private static final int CORPUS_SIZE = 20000;
+
+    static final byte[][] VALID_RECORDS = {
+            // iBeacon
+            {2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                    0, 1, 0, 2, (byte) 0xc5},
+            // Eddystone-UID with its service uuid
+            {2, 1, 6, 3, 0x03, (byte) 0xaa, (byte) 0xfe, 0x17, 0x16, (byte) 0xaa, (byte) 0xfe, 0x00, (byte) 0xe7,
+                    1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 0},
+            // Named device with a 128 bit service uuid and tx power, padded with zeros
+            {2, 1, 6, 5, 0x09, 'n', 'a', 'm', 'e', 0x11, 0x07, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                    2, 0x0a, (byte) 0xf4, 0, 0, 0, 0, 0, 0}
+    };
+
+    /**
+     * Builds the corpus, the same for every run.
+     */
+    static List<byte[]> corpus(final int size) {
+        final Random random = new Random(SEED);
+        final List<byte[]> corpus = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final byte[] valid = VALID_RECORDS[random.nextInt(VALID_RECORDS.length)];
+            final byte[] record;
+            switch (random.nextInt(4)) {
+                case 0:
+                    record = new byte[random.nextInt(63)];
+                    random.nextBytes(record);
+                    break;
+                case 1:
+                    record = valid.clone();
+                    record[random.nextInt(record.length)] = (byte) random.nextInt(256);
+                    break;
+                case 2:
+                    record = valid.clone();
+                    final List<Integer> lengths = lengthPositions(valid);
+                    record[lengths.get(random.nextInt(lengths.size()))] = (byte) random.nextInt(256);
+                    break;
+                default:
+                    record = new byte[random.nextInt(valid.length)];
+                    System.arraycopy(valid, 0, record, 0, record.length);
+                    break;
+            }
+            corpus.add(record);
+        }
+        return corpus;
+    }
+
+    private static List<Integer> lengthPositions(final byte[] record) {
+        final List<Integer> positions = new ArrayList<>();
+        int pos = 0;
+        while (pos < record.length && record[pos] != 0) {
+            positions.add(pos);
+            pos += 1 + (record[pos] & 0xff);
+        }
+        return positions;
+    }
+
+    private static void assertRejected(final ScanRecordCompat record, final byte[] bytes) {
+        assertSame(bytes, record.getBytes());
+        assertNull(record.getServiceUuids());
+        assertNull(record.getManufacturerSpecificData());
+        assertNull(record.getServiceData());
+        assertNull(record.getDeviceName());
+        assertEquals(-1, record.getAdvertiseFlags());
+        assertEquals(Integer.MIN_VALUE, record.getTxPowerLevel());
+    }
+
+    private static int status(final byte[] bytes) {
+        return ScanRecordCompat.parseFromBytes(bytes).getParseStatus();
+    }
+
+    private static int status(final int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return status(bytes);
+    }
+
+    @Test
+    public void rejectsOnlyStructuresWhichAreReadAndMalformed() {
+        assertEquals(ParseStatus.OK, status(VALID_RECORDS[0]));
+        assertEquals(ParseStatus.OK, status(VALID_RECORDS[1]));
+        assertEquals(ParseStatus.OK, status(VALID_RECORDS[2]));
+        // Manufacturer data without a whole company identifier
+        assertEquals(ParseStatus.INVALID_LENGTH, status(2, 1, 6, 2, 0xff, 0x4c));
+        // Service data without a whole uuid
+        assertEquals(ParseStatus.INVALID_LENGTH, status(2, 0x16, 0xaa));
+        // 16 bit uuid list of three bytes
+        assertEquals(ParseStatus.INVALID_UUID_LIST, status(4, 0x03, 1, 2, 3));
+        // Name cut by the end of the record
+        assertEquals(ParseStatus.TRUNCATED, status(2, 1, 6, 9, 0x09, 'n', 'a'));
+        // Cut manufacturer data
+        assertEquals(ParseStatus.TRUNCATED, status(2, 1, 6, 0x1a, 0xff, 0x4c, 0, 2, 0x15, 1));
+        // Flags cut after their byte, and a cut structure of a type which is not read
+        assertEquals(ParseStatus.OK, status(3, 1, 6));
+        assertEquals(ParseStatus.OK, status(2, 1, 6, 9, 0x2a, 1, 2));
+        // Empty flags and tx power are skipped
+        assertEquals(ParseStatus.OK, status(1, 1, 1, 0x0a, 2, 1, 6));
+        // Whatever follows the terminating zero is ignored
+        assertEquals(ParseStatus.OK, status(2, 1, 6, 0, 0xff, 0x13));
+        assertEquals(ParseStatus.OK, status(new byte[0]));
+    }
+
+    @Test
+    public void rejectedRecordsHoldOnlyTheirBytes() {
+        final byte[] bytes = new byte[]{2, 1, 6, 5, 0x09, 'n', 'a', 'm', 'e', 4, 0x03, 1, 2, 3};
+        final ScanRecordCompat record = ScanRecordCompat.parseFromBytes(bytes);
+        assertEquals(ParseStatus.INVALID_UUID_LIST, record.getParseStatus());
+        assertRejected(record, bytes);
+        assertNull(record.getManufacturerSpecificData(0x004c));
+        assertNull(record.getServiceData(null));
+    }
+
+    @Test
+    public void corpusNeverThrowsAndIsCounted() {
+        final List<byte[]> corpus = corpus(CORPUS_SIZE);
+        ParseStatus.resetCounts();
+        final int[] statuses = new int[4];
+        for (byte[] bytes : corpus) {
+            final ScanRecordCompat record = ScanRecordCompat.parseFromBytes(bytes);
+            final int status = record.getParseStatus();
+            assertTrue("status " + status, status >= ParseStatus.OK && status <= ParseStatus.INVALID_UUID_LIST);
+            statuses[status]++;
+            if (status != ParseStatus.OK) {
+                assertRejected(record, bytes);
+            }
+        }
+        // Each kind of malformed record shows up in the corpus
+        assertTrue(statuses[ParseStatus.OK] > 0);
+        assertTrue(statuses[ParseStatus.TRUNCATED] > 0);
+        assertTrue(statuses[ParseStatus.INVALID_LENGTH] > 0);
+        assertTrue(statuses[ParseStatus.INVALID_UUID_LIST] > 0);
+        // Only rejected records are counted, not the accepted ones with a cut structure
+        assertEquals(statuses[ParseStatus.TRUNCATED], ParseStatus.getCount(ParseStatus.TRUNCATED));
+        assertEquals(statuses[ParseStatus.INVALID_LENGTH], ParseStatus.getCount(ParseStatus.INVALID_LENGTH));
+        assertEquals(statuses[ParseStatus.INVALID_UUID_LIST], ParseStatus.getCount(ParseStatus.INVALID_UUID_LIST));
+    }
+}
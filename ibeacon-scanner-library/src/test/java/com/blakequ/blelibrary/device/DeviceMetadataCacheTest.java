@@ -0,0 +1,119 @@
+package com.blakequ.blelibrary.device;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.SystemClock;
+
+import com.blakequ.blelibrary.util.MacAddress;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class DeviceMetadataCacheTest {
+    private static final long REFRESH_PERIOD = 1000L;
+
+    // Holds the reads until the test runs them
+    private static final class QueueExecutor implements Executor {
+        final List<Runnable> queue = new ArrayList<>();
+
+        @Override
+        public void execute(final Runnable command) {
+            queue.add(command);
+        }
+
+        void runAll() {
+            while (!queue.isEmpty()) {
+                queue.remove(0).run();
+            }
+        }
+    }
+
+    private final QueueExecutor mExecutor = new QueueExecutor();
+    private DeviceMetadataCache mCache;
+
+    @Before
+    public void setUp() {
+        // A device binds to the bluetooth service when it is created, which Robolectric lacks.
+        // The remote calls of the metadata read return 0.
+        final Class<?> service = ReflectionHelpers.loadClass(BluetoothDevice.class.getClassLoader(),
+                "android.bluetooth.IBluetooth");
+        ReflectionHelpers.setStaticField(BluetoothDevice.class, "sService", Proxy.newProxyInstance(
+                service.getClassLoader(), new Class<?>[]{service}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        return method.getReturnType() == int.class ? 0 : null;
+                    }
+                }));
+        mCache = new DeviceMetadataCache(mExecutor);
+        mCache.setRefreshPeriod(REFRESH_PERIOD);
+    }
+
+    private static BluetoothDevice device(final long address, final String name) {
+        final BluetoothDevice device = ReflectionHelpers.callConstructor(BluetoothDevice.class,
+                ClassParameter.from(String.class, MacAddress.toString(address)));
+        Shadows.shadowOf(device).setName(name);
+        return device;
+    }
+
+    @Test
+    public void returnsNullUntilTheReadCompletes() {
+        final BluetoothDevice device = device(1L, "beacon");
+        assertNull(mCache.get(device, 1L));
+        assertNull(mCache.get(device, 1L));
+        // Asked for twice, read once
+        assertEquals(1, mExecutor.queue.size());
+
+        mExecutor.runAll();
+        assertEquals("beacon", mCache.get(device, 1L).getName());
+        assertTrue(mExecutor.queue.isEmpty());
+    }
+
+    @Test
+    public void expiresTheDevicesNobodyAsksFor() {
+        final BluetoothDevice asked = device(1L, "asked");
+        final BluetoothDevice forgotten = device(2L, "forgotten");
+        mCache.get(asked, 1L);
+        mCache.get(forgotten, 2L);
+        mExecutor.runAll();
+        assertEquals(2, mCache.size());
+
+        // Stale, so asking reads it again
+        SystemClock.sleep(REFRESH_PERIOD + REFRESH_PERIOD / 2);
+        assertNotNull(mCache.get(asked, 1L));
+        mExecutor.runAll();
+        assertEquals(2, mCache.size());
+
+        SystemClock.sleep(REFRESH_PERIOD);
+        mCache.get(asked, 1L);
+        mExecutor.runAll();
+        assertEquals(1, mCache.size());
+        assertEquals("asked", mCache.get(null, 1L).getName());
+        assertNull(mCache.get(null, 2L));
+    }
+
+    @Test
+    public void doesNotCacheAReadOfARemovedDevice() {
+        final BluetoothDevice device = device(1L, "beacon");
+        mCache.get(device, 1L);
+        mCache.remove(1L);
+        mExecutor.runAll();
+        assertEquals(0, mCache.size());
+        assertNull(mCache.get(null, 1L));
+    }
+}
@@ -0,0 +1,98 @@
+package com.blakequ.blelibrary.device.adrecord;
+
+import com.blakequ.blelibrary.util.AdRecordUtils;
+import com.blakequ.blelibrary.util.ParsedAdvertisement;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the lazy store answers like the store built from the eagerly parsed
+ * SparseArray. Runs on Robolectric for the framework containers.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class AdRecordStoreTest {
+
+    private static AdRecordStore lazy(final byte[] scanRecord) {
+        return new AdRecordStore(ParsedAdvertisement.parse(scanRecord));
+    }
+
+    private static AdRecordStore eager(final byte[] scanRecord) {
+        return new AdRecordStore(AdRecordUtils.parseScanRecordAsSparseArray(scanRecord));
+    }
+
+    private static List<String> describe(final Collection<AdRecord> records) {
+        final List<String> described = new ArrayList<>();
+        for (AdRecord record : records) {
+            described.add(record.getType() + ":" + record.getLength() + ":" + new String(record.getData()));
+        }
+        return described;
+    }
+
+    private static void assertSameAsEager(final byte[] scanRecord) {
+        assertEquals(describe(eager(scanRecord).getRecordsAsCollection()),
+                describe(lazy(scanRecord).getRecordsAsCollection()));
+        assertEquals(eager(scanRecord).getLocalNameComplete(), lazy(scanRecord).getLocalNameComplete());
+        assertEquals(eager(scanRecord).getLocalNameShort(), lazy(scanRecord).getLocalNameShort());
+    }
+
+    @Test
+    public void keepsTheLastStructureOfARepeatedType() {
+        final byte[] scanRecord = {3, 9, 'a', 'b', 2, 1, 6, 4, 9, 'c', 'd', 'e', 3, 8, 'c', 'd'};
+        final AdRecordStore store = lazy(scanRecord);
+
+        assertEquals("cde", store.getLocalNameComplete());
+        assertEquals("cd", store.getLocalNameShort());
+        assertEquals(4, store.getRecord(AdRecord.TYPE_LOCAL_NAME_COMPLETE).getLength());
+        assertTrue(store.isRecordPresent(AdRecord.TYPE_FLAGS));
+        assertEquals(3, store.getRecordsAsCollection().size());
+        assertSameAsEager(scanRecord);
+    }
+
+    @Test
+    public void endsTheWalkAtAZeroType() {
+        final byte[] scanRecord = {2, 1, 6, 2, 0, 0, 3, 9, 'a', 'b'};
+        final AdRecordStore store = lazy(scanRecord);
+
+        assertFalse(store.isRecordPresent(AdRecord.TYPE_LOCAL_NAME_COMPLETE));
+        assertNull(store.getRecord(AdRecord.TYPE_LOCAL_NAME_COMPLETE));
+        assertEquals("", store.getLocalNameComplete());
+        assertNotNull(store.getRecord(AdRecord.TYPE_FLAGS));
+        assertEquals(1, store.getRecordsAsCollection().size());
+        assertSameAsEager(scanRecord);
+    }
+
+    @Test
+    public void cutsATruncatedLastStructure() {
+        final byte[] scanRecord = {2, 1, 6, 9, (byte) 0xff, 0x4c, 0, 2};
+        final AdRecordStore store = lazy(scanRecord);
+
+        final AdRecord record = store.getRecord(AdRecord.TYPE_MANUFACTURER_SPECIFIC_DATA);
+        // The length is the one of the structure as cut
+        assertEquals(4, record.getLength());
+        assertArrayEquals(new byte[]{0x4c, 0, 2}, record.getData());
+        assertSameAsEager(scanRecord);
+    }
+
+    @Test
+    public void buildsTheRestAfterALookup() {
+        final byte[] scanRecord = {2, 1, 6, 3, 9, 'a', 'b', 3, (byte) 0xff, 0x4c, 0};
+        final AdRecordStore store = lazy(scanRecord);
+        final AdRecord flags = store.getRecord(AdRecord.TYPE_FLAGS);
+
+        final Collection<AdRecord> records = store.getRecordsAsCollection();
+        assertEquals(3, records.size());
+        assertTrue(records.contains(flags));
+        assertSame(flags, store.getRecord(AdRecord.TYPE_FLAGS));
+        assertEquals("ab", store.getLocalNameComplete());
+    }
+}
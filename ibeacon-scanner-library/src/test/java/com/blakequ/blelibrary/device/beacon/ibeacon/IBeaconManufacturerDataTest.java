@@ -0,0 +1,33 @@
+package com.blakequ.blelibrary.device.beacon.ibeacon;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IBeaconManufacturerDataTest {
+    // Flags, then the iBeacon manufacturer data at offset 5
+    private static final byte[] RECORD = {2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15,
+            (byte) 0xe2, (byte) 0xc5, 0x6d, (byte) 0xb5, (byte) 0xdf, (byte) 0xfb, 0x48, (byte) 0xd2,
+            (byte) 0xb0, 0x60, (byte) 0xd0, (byte) 0xf5, (byte) 0xa7, 0x10, (byte) 0x96, (byte) 0xe0,
+            0x01, 0x02, (byte) 0xff, (byte) 0xfe, (byte) 0xc5};
+
+    @Test
+    public void readsTheFieldsInPlace() {
+        final IBeaconManufacturerData data = new IBeaconManufacturerData(RECORD, 5, 25);
+        assertEquals(0x004c, data.getCompanyIdentifier());
+        assertEquals(0x0215, data.getIBeaconAdvertisement());
+        assertEquals(0xe2c56db5dffb48d2L, data.getUuidMostSignificantBits());
+        assertEquals(0xb060d0f5a71096e0L, data.getUuidLeastSignificantBits());
+        assertEquals("e2c56db5-dffb-48d2-b060-d0f5a71096e0", data.getUUID().toLowerCase());
+        assertEquals(0x0102, data.getMajor());
+        assertEquals(0xfffe, data.getMinor());
+        assertEquals(-59, data.getCalibratedTxPower());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherManufacturerData() {
+        final byte[] record = RECORD.clone();
+        record[7] = 0x10;
+        new IBeaconManufacturerData(record, 5, 25);
+    }
+}
@@ -0,0 +1,134 @@
+package com.blakequ.blelibrary.scanner;
+
+import android.bluetooth.BluetoothDevice;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScanResultRingTest {
+
+    private static final class Collector implements ScanResultRing.Handler {
+        final List<Long> timestamps = new ArrayList<>();
+        final List<Integer> rssi = new ArrayList<>();
+        final List<byte[]> records = new ArrayList<>();
+
+        @Override
+        public void onScanResult(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+            timestamps.add(timestamp);
+            this.rssi.add(rssi);
+            records.add(scanRecord);
+        }
+    }
+
+    @Test
+    public void roundsTheCapacityUpToAPowerOfTwo() {
+        assertEquals(2, new ScanResultRing(2).capacity());
+        assertEquals(8, new ScanResultRing(5).capacity());
+        assertEquals(8, new ScanResultRing(8).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsASingleSlot() {
+        new ScanResultRing(1);
+    }
+
+    @Test
+    public void pollsInOrderAndRefusesWhenFull() {
+        final ScanResultRing ring = new ScanResultRing(4);
+        final byte[] record = new byte[]{2, 1, 6};
+        assertTrue(ring.isEmpty());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(null, -50 - i, record, i));
+        }
+        assertFalse(ring.offer(null, -99, record, 99));
+        assertEquals(4, ring.size());
+        assertEquals(4, ring.getEnqueuedCount());
+
+        final Collector collector = new Collector();
+        assertEquals(3, ring.drain(collector, 3));
+        assertEquals(3, ring.getDequeuedCount());
+        assertEquals(1, ring.size());
+        assertTrue(ring.offer(null, -54, record, 4));
+        assertEquals(2, ring.drain(collector, 10));
+        assertEquals(0, ring.drain(collector, 10));
+        assertTrue(ring.isEmpty());
+
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), collector.timestamps);
+        assertEquals(Arrays.asList(-50, -51, -52, -53, -54), collector.rssi);
+        assertSame(record, collector.records.get(4));
+    }
+
+    @Test
+    public void keepsOrderOverManyLaps() {
+        final ScanResultRing ring = new ScanResultRing(8);
+        final Collector collector = new Collector();
+        long next = 0;
+        for (int lap = 0; lap < 1000; lap++) {
+            // Fill part of the ring and drain part of it, so the positions move around the slots
+            final int offers = lap % 7 + 1;
+            for (int i = 0; i < offers; i++) {
+                if (ring.offer(null, -60, null, next)) {
+                    next++;
+                }
+            }
+            ring.drain(collector, lap % 5 + 1);
+        }
+        ring.drain(collector, Integer.MAX_VALUE);
+        assertEquals(next, collector.timestamps.size());
+        for (int i = 0; i < collector.timestamps.size(); i++) {
+            assertEquals(Long.valueOf(i), collector.timestamps.get(i));
+        }
+        assertEquals(ring.getEnqueuedCount(), ring.getDequeuedCount());
+    }
+
+    @Test
+    public void concurrentProducersLoseNothing() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 50000;
+        final ScanResultRing ring = new ScanResultRing(64);
+        final Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!ring.offer(null, producer, null, i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        // Every producer's results come out in the order it offered them
+        final long[] expected = new long[producers];
+        final int[] received = new int[1];
+        final ScanResultRing.Handler handler = new ScanResultRing.Handler() {
+            @Override
+            public void onScanResult(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+                assertEquals(expected[rssi]++, timestamp);
+                received[0]++;
+            }
+        };
+        while (received[0] < producers * perProducer) {
+            if (ring.drain(handler, 32) == 0) {
+                Thread.yield();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int p = 0; p < producers; p++) {
+            assertEquals(perProducer, expected[p]);
+        }
+        assertTrue(ring.isEmpty());
+        assertEquals(producers * perProducer, ring.getDequeuedCount());
+    }
+}
@@ -0,0 +1,121 @@
+package com.blakequ.blelibrary.scanner;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.blakequ.blelibrary.logging.LogManager;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs on the JVM, the scan results come from a null device so no framework code is called.
+ */
+public class ScanResultWorkerTest {
+    private static final byte[] RECORD = new byte[]{2, 1, 6};
+
+    private static final class Recorder implements ScanResultRing.Handler {
+        final List<Long> timestamps = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final long last;
+
+        Recorder(final long last) {
+            this.last = last;
+        }
+
+        @Override
+        public void onScanResult(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+            synchronized (timestamps) {
+                timestamps.add(timestamp);
+            }
+            if (timestamp == last) {
+                done.countDown();
+            }
+        }
+    }
+
+    @Test
+    public void coalescedResultIsProcessedAfterTheOlderQueuedOnes() throws Exception {
+        final Recorder recorder = new Recorder(202);
+        final ScanResultWorker worker = new ScanResultWorker("test", 256, recorder);
+        worker.setOverloadPolicy(OverloadPolicy.COALESCE);
+        // 192 results fill the ring up to the high water mark, the next ones are coalesced
+        for (long i = 0; i < 200; i++) {
+            assertTrue(worker.offer(null, -60, RECORD, i));
+        }
+        assertEquals(192, worker.getRing().size());
+        // Below the high water mark again, two results are queued behind the coalesced one
+        final Recorder discarded = new Recorder(-1);
+        assertEquals(2, worker.getRing().drain(discarded, 2));
+        assertTrue(worker.offer(null, -60, RECORD, 200));
+        assertTrue(worker.offer(null, -60, RECORD, 201));
+        // Coalesced again, it must now wait for the two results queued above
+        assertTrue(worker.offer(null, -60, RECORD, 202));
+
+        worker.start();
+        try {
+            assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+        } finally {
+            worker.stop();
+        }
+        synchronized (recorder.timestamps) {
+            assertEquals(193, recorder.timestamps.size());
+            for (int i = 1; i < recorder.timestamps.size(); i++) {
+                assertTrue(recorder.timestamps.get(i - 1) < recorder.timestamps.get(i));
+            }
+            assertEquals(202L, (long) recorder.timestamps.get(192));
+        }
+        assertEquals(8, worker.getCoalescedCount());
+        assertEquals(8, worker.getLostCount());
+    }
+
+    @Test
+    public void sampleQueuesOneResultOfEveryNOfADevice() throws Exception {
+        final Recorder recorder = new Recorder(-1);
+        final ScanResultWorker worker = new ScanResultWorker("test", 256, recorder);
+        worker.setOverloadPolicy(OverloadPolicy.SAMPLE);
+        worker.setSampleRate(4);
+        for (long i = 0; i < 192; i++) {
+            assertTrue(worker.offer(null, -60, RECORD, i));
+        }
+        // Past the high water mark, the first of every 4 results of the device is queued
+        for (long i = 192; i < 200; i++) {
+            assertEquals(i % 4 == 0, worker.offer(null, -60, RECORD, i));
+        }
+        assertEquals(194, worker.getRing().size());
+        assertEquals(6, worker.getSampledOutCount());
+        assertEquals(6, worker.getLostCount());
+    }
+
+    @Test
+    public void failedResultIsCountedAsDropped() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final ScanResultWorker worker = new ScanResultWorker("test", 16, new ScanResultRing.Handler() {
+            @Override
+            public void onScanResult(final BluetoothDevice device, final int rssi, final byte[] scanRecord, final long timestamp) {
+                if (timestamp == 0) {
+                    throw new IllegalStateException("bad advert");
+                }
+                done.countDown();
+            }
+        });
+        assertTrue(worker.offer(null, -60, RECORD, 0));
+        assertTrue(worker.offer(null, -60, RECORD, 1));
+        // The failure is logged through the framework, which is not available here
+        final LogManager.LogLevel level = LogManager.getLogLevel();
+        LogManager.setLogLevel(LogManager.LogLevel.NONE);
+        worker.start();
+        try {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            worker.stop();
+            LogManager.setLogLevel(level);
+        }
+        assertEquals(1, worker.getDroppedCount());
+    }
+}
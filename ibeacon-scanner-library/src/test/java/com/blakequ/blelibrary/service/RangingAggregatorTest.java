@@ -0,0 +1,124 @@
+package com.blakequ.blelibrary.service;
+
+import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconDevice;
+import com.blakequ.blelibrary.logging.LogManager;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * The beacons have no device, so only regions without a bluetooth address match them.
+ */
+public class RangingAggregatorTest {
+
+    private static final class Recorder implements RangeNotifier {
+        final List<Collection<IBeaconDevice>> delivered = new ArrayList<>();
+        final List<Set<Integer>> minors = new ArrayList<>();
+
+        @Override
+        public void didRangeBeaconsInRegion(final Collection<IBeaconDevice> beacons, final Region region) {
+            delivered.add(beacons);
+            final Set<Integer> seen = new HashSet<>();
+            for (IBeaconDevice beacon : beacons) {
+                seen.add(beacon.getMinor());
+            }
+            minors.add(seen);
+        }
+    }
+
+    private static IBeaconDevice beacon(final int minor) {
+        return new IBeaconDevice(null, -60, new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15,
+                1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 1, 0, (byte) minor, (byte) 0xc5}, 0);
+    }
+
+    private static Set<Integer> set(final Integer... minors) {
+        final Set<Integer> set = new HashSet<>();
+        for (Integer minor : minors) {
+            set.add(minor);
+        }
+        return set;
+    }
+
+    @Test
+    public void swapsTheCollectionsAtTheEndOfACycle() {
+        final RangingAggregator aggregator = new RangingAggregator();
+        aggregator.addRegion(new Region("a"));
+        final Recorder recorder = new Recorder();
+
+        assertTrue(aggregator.add(beacon(1)));
+        assertTrue(aggregator.add(beacon(1)));
+        assertTrue(aggregator.add(beacon(2)));
+        aggregator.deliver(recorder);
+        // A beacon advertising twice in a cycle is delivered once
+        assertEquals(set(1, 2), recorder.minors.get(0));
+        final Collection<IBeaconDevice> first = recorder.delivered.get(0);
+        assertEquals(2, first.size());
+
+        // Collected into the other collection, the delivered one is left alone
+        aggregator.add(beacon(3));
+        assertEquals(2, first.size());
+        aggregator.deliver(recorder);
+        assertEquals(set(3), recorder.minors.get(1));
+        assertNotSame(first, recorder.delivered.get(1));
+        // Cleared once it collects the next cycle
+        assertTrue(first.isEmpty());
+
+        aggregator.add(beacon(4));
+        aggregator.deliver(recorder);
+        assertSame(first, recorder.delivered.get(2));
+        assertEquals(set(4), recorder.minors.get(2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void deliversReadOnlyCollections() {
+        final RangingAggregator aggregator = new RangingAggregator();
+        aggregator.addRegion(new Region("a"));
+        final Recorder recorder = new Recorder();
+        aggregator.add(beacon(1));
+        aggregator.deliver(recorder);
+        recorder.delivered.get(0).clear();
+    }
+
+    @Test
+    public void startsTheNextCycleWithoutANotifier() {
+        final RangingAggregator aggregator = new RangingAggregator();
+        aggregator.addRegion(new Region("a"));
+        final Recorder recorder = new Recorder();
+        aggregator.add(beacon(1));
+        aggregator.deliver(null);
+        aggregator.add(beacon(2));
+        aggregator.deliver(recorder);
+        assertEquals(set(2), recorder.minors.get(0));
+    }
+
+    @Test
+    public void deliversEveryRegionWhenANotifierFails() {
+        final RangingAggregator aggregator = new RangingAggregator();
+        aggregator.addRegion(new Region("a"));
+        aggregator.addRegion(new Region("b"));
+        final List<String> regions = new ArrayList<>();
+        aggregator.add(beacon(1));
+        // The failure is logged through the framework, which is not available here
+        final LogManager.LogLevel level = LogManager.getLogLevel();
+        LogManager.setLogLevel(LogManager.LogLevel.NONE);
+        try {
+            aggregator.deliver(new RangeNotifier() {
+                @Override
+                public void didRangeBeaconsInRegion(final Collection<IBeaconDevice> beacons, final Region region) {
+                    regions.add(region.getUniqueId());
+                    throw new IllegalStateException("notifier failed");
+                }
+            });
+        } finally {
+            LogManager.setLogLevel(level);
+        }
+        assertEquals(2, regions.size());
+    }
+}
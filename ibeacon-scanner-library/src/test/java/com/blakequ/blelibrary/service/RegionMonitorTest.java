@@ -0,0 +1,264 @@
+package com.blakequ.blelibrary.service;
+
+import com.blakequ.blelibrary.device.beacon.ibeacon.IBeaconDevice;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the timer wheel of {@link RegionMonitor} through its public methods. The beacons have
+ * no device, so only regions without a bluetooth address match them.
+ */
+public class RegionMonitorTest {
+    private static final long SLOT = 100;
+    private static final byte[] IBEACON = new byte[]{2, 1, 6, 0x1a, (byte) 0xff, 0x4c, 0, 2, 0x15,
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 0, 1, 0, 2, (byte) 0xc5};
+
+    private static final class Recorder implements MonitorNotifier {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void didEnterRegion(final Region region) {
+            events.add("enter " + region.getUniqueId());
+        }
+
+        @Override
+        public void didExitRegion(final Region region) {
+            events.add("exit " + region.getUniqueId());
+        }
+
+        @Override
+        public void didDetermineStateForRegion(final int state, final Region region) {
+        }
+    }
+
+    private final Recorder mRecorder = new Recorder();
+
+    private static IBeaconDevice beacon(final long timestamp) {
+        return new IBeaconDevice(null, -60, IBEACON, timestamp);
+    }
+
+    private static long ceilToSlot(final long time) {
+        return (time + SLOT - 1) / SLOT;
+    }
+
+    @Test
+    public void neverExitsBeforeTheExitPeriod() {
+        for (long exitPeriod : new long[]{150, 1000, 1234}) {
+            for (long start = 0; start < 2 * SLOT; start += 37) {
+                final RegionMonitor monitor = new RegionMonitor(exitPeriod);
+                final Region region = new Region("a");
+                monitor.addRegion(region);
+                monitor.onBeacon(beacon(start), start);
+                long exitTime = -1;
+                for (long now = start; exitTime < 0 && now < start + exitPeriod + 10 * SLOT; now += 7) {
+                    monitor.tick(now, mRecorder);
+                    if (!monitor.isInside(region)) {
+                        exitTime = now;
+                    }
+                }
+                final long deadline = start + exitPeriod;
+                assertTrue("still inside at " + (start + exitPeriod + 10 * SLOT), exitTime >= 0);
+                assertTrue("exited at " + exitTime + " before " + deadline, exitTime >= deadline);
+                // The slot holding the deadline is processed once a tick reaches its start
+                assertTrue("exited at " + exitTime + " for " + deadline, exitTime < ceilToSlot(deadline) * SLOT + 7);
+            }
+        }
+    }
+
+    @Test
+    public void waitsForTheRoundOfAPeriodLongerThanTheWheel() {
+        // Longer than the 51.2 s the wheel spans, the slot is visited twice before the deadline
+        final RegionMonitor monitor = new RegionMonitor(120000);
+        final Region region = new Region("a");
+        monitor.addRegion(region);
+        monitor.onBeacon(beacon(50), 50);
+        for (long now = 0; now < 120050; now += SLOT) {
+            monitor.tick(now, mRecorder);
+            assertTrue("exited at " + now, monitor.isInside(region));
+        }
+        monitor.tick(120100, mRecorder);
+        assertFalse(monitor.isInside(region));
+        assertEquals(2, mRecorder.events.size());
+        assertEquals("exit a", mRecorder.events.get(1));
+    }
+
+    @Test
+    public void longPauseStillExitsEveryDueRegion() {
+        final RegionMonitor monitor = new RegionMonitor(1000);
+        final Region early = new Region("early");
+        final Region late = new Region("late");
+        monitor.addRegion(early);
+        monitor.onBeacon(beacon(0), 0);
+        monitor.tick(0, mRecorder);
+        monitor.addRegion(late);
+        monitor.onBeacon(beacon(700), 700);
+        // Far more than a round of the wheel without a tick
+        monitor.tick(10 * 60 * 1000, mRecorder);
+        assertFalse(monitor.isInside(early));
+        assertFalse(monitor.isInside(late));
+        assertEquals("[enter early, enter late, exit early, exit late]", mRecorder.events.toString());
+    }
+
+    @Test
+    public void pauseLongerThanTheWheelVisitsEverySlot() {
+        // One timeout in every slot of the wheel: the region added before the n-th beacon
+        // enters with it and is scheduled in the n-th slot from the first
+        final int slots = 512;
+        final RegionMonitor monitor = new RegionMonitor(1000);
+        final Region[] regions = new Region[slots];
+        for (int i = 0; i < slots; i++) {
+            regions[i] = new Region("r" + i);
+            monitor.addRegion(regions[i]);
+            monitor.onBeacon(beacon(i * SLOT), i * SLOT);
+        }
+        monitor.tick(slots * SLOT + 60 * 1000, null);
+        for (Region region : regions) {
+            assertFalse(region.getUniqueId(), monitor.isInside(region));
+        }
+        assertTrue(monitor.toString().contains("scheduled=0"));
+    }
+
+    @Test
+    public void aMatchPostponesTheExit() {
+        final RegionMonitor monitor = new RegionMonitor(1000);
+        final Region region = new Region("a");
+        monitor.addRegion(region);
+        monitor.onBeacon(beacon(0), 0);
+        monitor.onBeacon(beacon(800), 800);
+        monitor.tick(1000, mRecorder);
+        assertTrue(monitor.isInside(region));
+        monitor.tick(1799, mRecorder);
+        assertTrue(monitor.isInside(region));
+        monitor.tick(1800, mRecorder);
+        assertFalse(monitor.isInside(region));
+        assertEquals("[enter a, exit a]", mRecorder.events.toString());
+    }
+
+    @Test
+    public void removedRegionsLeaveTheirSlot() {
+        final RegionMonitor monitor = new RegionMonitor(1000);
+        final Region[] regions = new Region[]{new Region("a"), new Region("b"), new Region("c")};
+        for (Region region : regions) {
+            monitor.addRegion(region);
+        }
+        // All three share a slot, the middle one of its list is unlinked
+        monitor.onBeacon(beacon(0), 0);
+        monitor.tick(0, mRecorder);
+        assertTrue(monitor.removeRegion(regions[1]));
+        assertFalse(monitor.removeRegion(regions[1]));
+        assertTrue(monitor.toString().contains("scheduled=2"));
+        monitor.tick(1000, mRecorder);
+        assertEquals("[enter a, enter b, enter c]", mRecorder.events.subList(0, 3).toString());
+        assertEquals(new HashSet<>(Arrays.asList("exit a", "exit c")), new HashSet<>(mRecorder.events.subList(3, 5)));
+        assertEquals(5, mRecorder.events.size());
+        assertTrue(monitor.toString().contains("scheduled=0"));
+
+        // Replacing a region drops its timeout and its pending change
+        monitor.onBeacon(beacon(1500), 1500);
+        monitor.addRegion(new Region("a"));
+        monitor.tick(5000, mRecorder);
+        assertEquals("[enter c, exit c]", mRecorder.events.subList(5, mRecorder.events.size()).toString());
+        assertFalse(monitor.isInside(regions[0]));
+    }
+
+    @Test
+    public void matchesANaiveScanOfEveryRegion() {
+        final Random random = new Random(25);
+        for (long exitPeriod : new long[]{150, 1000, 60000}) {
+            final int regionCount = 8;
+            final RegionMonitor monitor = new RegionMonitor(exitPeriod);
+            final Region[] regions = new Region[regionCount];
+            // The model: the regions in the order the monitor keeps them, monitored, inside and
+            // last match of every region, and the pending changes
+            final List<Integer> order = new ArrayList<>();
+            final boolean[] monitored = new boolean[regionCount];
+            final boolean[] inside = new boolean[regionCount];
+            final long[] lastMatch = new long[regionCount];
+            final List<String> expected = new ArrayList<>();
+            final List<Integer> pendingRegions = new ArrayList<>();
+            final List<String> pendingEvents = new ArrayList<>();
+            mRecorder.events.clear();
+
+            long now = 0;
+            for (int step = 0; step < 20000; step++) {
+                final int action = random.nextInt(20);
+                if (action == 0) {
+                    // Add or replace a region, its pending changes are dropped
+                    final int r = random.nextInt(regionCount);
+                    regions[r] = new Region("r" + r);
+                    monitor.addRegion(regions[r]);
+                    if (!monitored[r]) {
+                        order.add(r);
+                    }
+                    monitored[r] = true;
+                    inside[r] = false;
+                    lastMatch[r] = 0;
+                    dropPending(pendingRegions, pendingEvents, r);
+                } else if (action == 1) {
+                    final int r = random.nextInt(regionCount);
+                    assertEquals(monitored[r], regions[r] != null && monitor.removeRegion(regions[r]));
+                    monitored[r] = false;
+                    inside[r] = false;
+                    order.remove(Integer.valueOf(r));
+                    dropPending(pendingRegions, pendingEvents, r);
+                } else if (action < 12) {
+                    now += random.nextInt(random.nextInt(50) == 0 ? 200000 : 400);
+                    monitor.onBeacon(beacon(now), now);
+                    for (int r : order) {
+                        lastMatch[r] = now;
+                        if (!inside[r]) {
+                            inside[r] = true;
+                            pendingRegions.add(r);
+                            pendingEvents.add("enter r" + r);
+                        }
+                    }
+                } else {
+                    now += random.nextInt(random.nextInt(50) == 0 ? 200000 : 400);
+                    monitor.tick(now, mRecorder);
+                    // A region exits once a tick gets to the start of the slot holding its
+                    // deadline, and may exit sooner after a pause visiting every slot, never
+                    // before its deadline
+                    final List<String> exits = new ArrayList<>();
+                    for (int r = 0; r < regionCount; r++) {
+                        final long deadline = lastMatch[r] + exitPeriod;
+                        if (inside[r] && (now / SLOT >= ceilToSlot(deadline)
+                                || deadline <= now && !monitor.isInside(regions[r]))) {
+                            inside[r] = false;
+                            exits.add("exit r" + r);
+                        }
+                    }
+                    expected.addAll(pendingEvents);
+                    pendingRegions.clear();
+                    pendingEvents.clear();
+                    // The exits of a tick come in slot order, compare them as a set
+                    final int delivered = mRecorder.events.size() - exits.size();
+                    assertEquals(expected, mRecorder.events.subList(0, delivered));
+                    assertEquals(new HashSet<>(exits), new HashSet<>(mRecorder.events.subList(delivered, mRecorder.events.size())));
+                    expected.addAll(mRecorder.events.subList(delivered, mRecorder.events.size()));
+                    for (int r = 0; r < regionCount; r++) {
+                        if (regions[r] != null) {
+                            assertEquals("r" + r + " at " + now, inside[r], monitor.isInside(regions[r]));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void dropPending(final List<Integer> pendingRegions, final List<String> pendingEvents, final int region) {
+        for (int i = pendingRegions.size() - 1; i >= 0; i--) {
+            if (pendingRegions.get(i) == region) {
+                pendingRegions.remove(i);
+                pendingEvents.remove(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.blakequ.blelibrary.util;
+
+import android.os.ParcelUuid;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs on Robolectric for the real {@link ParcelUuid}. The cache is process wide, so every test
+ * uses UUIDs of its own.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class ParcelUuidCacheTest {
+    private static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+    @Test
+    public void returnsTheSameInstanceFor16BitUuids() {
+        final ParcelUuid uuid = ParcelUuidCache.from16Bit(0xfeaa);
+        assertEquals(ParcelUuid.fromString("0000feaa-0000-1000-8000-00805f9b34fb"), uuid);
+        assertSame(uuid, ParcelUuidCache.from16Bit(0xfeaa));
+        // The same value reached as a 32 bit or 128 bit UUID
+        assertSame(uuid, ParcelUuidCache.from32Bit(0xfeaaL));
+        assertSame(uuid, ParcelUuidCache.get(0x0000feaa00001000L, BASE_UUID_LSB));
+        assertSame(uuid, ParcelUuidCache.canonicalize(ParcelUuid.fromString("0000FEAA-0000-1000-8000-00805F9B34FB")));
+    }
+
+    @Test
+    public void returnsTheSameInstanceFor32BitUuids() {
+        final ParcelUuid uuid = ParcelUuidCache.from32Bit(0x1234feabL);
+        assertEquals(ParcelUuid.fromString("1234feab-0000-1000-8000-00805f9b34fb"), uuid);
+        assertSame(uuid, ParcelUuidCache.from32Bit(0x1234feabL));
+        assertSame(uuid, ParcelUuidCache.get(0x1234feab00001000L, BASE_UUID_LSB));
+    }
+
+    @Test
+    public void returnsTheSameInstanceFor128BitUuids() {
+        final UUID value = UUID.fromString("e2c56db5-dffb-48d2-b060-d0f5a71096e0");
+        final ParcelUuid uuid = ParcelUuidCache.get(value.getMostSignificantBits(), value.getLeastSignificantBits());
+        assertEquals(new ParcelUuid(value), uuid);
+        assertSame(uuid, ParcelUuidCache.get(value.getMostSignificantBits(), value.getLeastSignificantBits()));
+        assertSame(uuid, ParcelUuidCache.canonicalize(new ParcelUuid(value)));
+        assertNull(ParcelUuidCache.canonicalize(null));
+    }
+
+    @Test
+    public void replacesTheUuidOfASlotWithTheNextOne() {
+        final long msb = 0x0102030405060708L;
+        final long lsb = 0x090a0b0c0d0e0f10L;
+        // Another UUID mapped to the same slot of the bounded cache
+        long other = lsb + 1;
+        while (ParcelUuidCache.slotOf(msb, other) != ParcelUuidCache.slotOf(msb, lsb)) {
+            other++;
+        }
+
+        final ParcelUuid first = ParcelUuidCache.get(msb, lsb);
+        final ParcelUuid evicting = ParcelUuidCache.get(msb, other);
+        assertEquals(new UUID(msb, other), evicting.getUuid());
+        // Created again, equal but not the same instance
+        final ParcelUuid again = ParcelUuidCache.get(msb, lsb);
+        assertNotSame(first, again);
+        assertEquals(first, again);
+        assertNotSame(evicting, ParcelUuidCache.get(msb, other));
+    }
+
+    @Test
+    public void neverEvicts16BitUuids() {
+        final ParcelUuid uuid = ParcelUuidCache.from16Bit(0x180f);
+        for (long i = 0; i < 4096; i++) {
+            ParcelUuidCache.get(0x7700000000001000L + (i << 32), BASE_UUID_LSB);
+            ParcelUuidCache.get(i, i);
+        }
+        assertSame(uuid, ParcelUuidCache.from16Bit(0x180f));
+    }
+}